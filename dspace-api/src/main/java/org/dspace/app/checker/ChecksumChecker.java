@@ -76,6 +76,8 @@ public final class ChecksumChecker
      *            <dd>Report only errors in the logs</dd>
      *            <dt>-p</dt>
      *            <dd>Don't prune results before running checker</dd>
+     *            <dt>-t [threads]</dt>
+     *            <dd>number of bitstreams to check at once</dd>
      *            </dl>
      */
     public static void main(String[] args)
@@ -95,6 +97,7 @@ public final class ChecksumChecker
         options.addOption("c", "count", true, "Check count");
         options.addOption("a", "handle", true, "Specify a handle to check");
         options.addOption("v", "verbose", false, "Report all processing");
+        options.addOption("t", "threads", true, "Number of bitstreams to check at once");
 
         OptionBuilder.withArgName("bitstream-ids").hasArgs().withDescription(
                 "Space separated list of bitstream ids");
@@ -227,6 +230,20 @@ public final class ChecksumChecker
             checker.setReportVerbose(true);
         }
 
+        if (line.hasOption('t'))
+        {
+            try
+            {
+                checker.setThreads(Integer.parseInt(line.getOptionValue('t')));
+            }
+            catch (NumberFormatException nfe)
+            {
+                System.err.println("The number of threads: " + line.getOptionValue('t')
+                        + " is not an integer");
+                System.exit(0);
+            }
+        }
+
         checker.setProcessStartDate(processStart);
         checker.setDispatcher(dispatcher);
         checker.setCollector(logger);
@@ -8,6 +8,8 @@
 package org.dspace.app.util;
 
 import org.dspace.core.ConfigurationManager;
+import org.dspace.discovery.IndexingQueue;
+import org.dspace.statistics.SolrLoggerQueue;
 import org.dspace.storage.rdbms.DatabaseManager;
 import org.apache.log4j.Logger;
 
@@ -147,6 +149,13 @@ public class DSpaceContextListener implements ServletContextListener
 
         try
         {
+            // Store any usage events still buffered, while the database and
+            // Solr are still there, and stop the thread storing them
+            SolrLoggerQueue.shutdown();
+
+            // Stop indexing queued changes; the rest stay queued
+            IndexingQueue.shutdown();
+
             // Remove the database pool
             DatabaseManager.shutdown();
 
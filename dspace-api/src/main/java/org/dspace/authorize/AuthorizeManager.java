@@ -10,7 +10,9 @@ package org.dspace.authorize;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.dspace.content.*;
 import org.dspace.core.Constants;
@@ -35,9 +37,15 @@ import org.dspace.storage.rdbms.TableRowIterator;
  * Note: If an eperson is a member of the administrator group (id 1), then they
  * are automatically given permission for all requests another special group is
  * group 0, which is anonymous - all EPeople are members of group 0.
+ * <p>
+ * Decisions are remembered by the Context for the rest of the transaction,
+ * or until policies or group memberships are changed through the API.
  */
 public class AuthorizeManager
 {
+    /** Maximum number of objects whose policies are fetched in one query */
+    private static final int POLICY_QUERY_BATCH_SIZE = 500;
+
     /**
      * Utility method, checks that the current user of the given context can
      * perform all of the specified actions on the given object. An
@@ -242,6 +250,106 @@ public class AuthorizeManager
         return isAuthorized;
     }
 
+    /**
+     * Check whether the current user can perform an action on each of a list
+     * of objects. The result is the same as calling
+     * <code>authorizeActionBoolean</code> for each object, but the policies of
+     * objects not already decided in this context are fetched with a few
+     * queries rather than one per object.
+     *
+     * @param c
+     *         DSpace context, containing current user
+     * @param objects
+     *         the objects; <code>null</code> entries are never authorized
+     * @param action
+     *         action being attempted, from
+     *         <code>org.dspace.core.Constants</code>
+     * @return for each object, in the same order, <code>true</code> if the
+     *         current user is authorized to perform the action on it
+     * @throws SQLException
+     *         if there's a database problem
+     */
+    public static boolean[] authorizeActionBoolean(Context c,
+            List<? extends DSpaceObject> objects, int action) throws SQLException
+    {
+        boolean[] results = new boolean[objects.size()];
+
+        if (c.ignoreAuthorization() || isAdmin(c))
+        {
+            for (int i = 0; i < results.length; i++)
+            {
+                results[i] = (objects.get(i) != null);
+            }
+            return results;
+        }
+
+        EPerson e = c.getCurrentUser();
+        int userid = (e == null) ? 0 : e.getID();
+
+        // positions of the objects which still need deciding, by type
+        Map<Integer, List<Integer>> undecided = new HashMap<Integer, List<Integer>>();
+
+        for (int i = 0; i < results.length; i++)
+        {
+            DSpaceObject o = objects.get(i);
+            if (o == null)
+            {
+                continue;
+            }
+
+            Boolean cached = c.getCachedAuthorizationResult(
+                    authorizationKey(userid, o, action, true));
+            if (cached != null)
+            {
+                results[i] = cached.booleanValue();
+            }
+            else if (e != null && isAdmin(c, o.getAdminObject(action)))
+            {
+                results[i] = true;
+                c.cacheAuthorizationResult(
+                        authorizationKey(userid, o, action, true), true);
+            }
+            else
+            {
+                Integer type = Integer.valueOf(o.getType());
+                List<Integer> positions = undecided.get(type);
+                if (positions == null)
+                {
+                    positions = new ArrayList<Integer>();
+                    undecided.put(type, positions);
+                }
+                positions.add(Integer.valueOf(i));
+            }
+        }
+
+        for (Map.Entry<Integer, List<Integer>> entry : undecided.entrySet())
+        {
+            List<Integer> positions = entry.getValue();
+
+            for (int start = 0; start < positions.size(); start += POLICY_QUERY_BATCH_SIZE)
+            {
+                List<Integer> batch = positions.subList(start,
+                        Math.min(start + POLICY_QUERY_BATCH_SIZE, positions.size()));
+                Map<Integer, List<ResourcePolicy>> policies = getPoliciesActionFilter(c,
+                        entry.getKey().intValue(), objects, batch, action);
+
+                for (Integer position : batch)
+                {
+                    DSpaceObject o = objects.get(position.intValue());
+                    List<ResourcePolicy> objectPolicies = policies.get(Integer.valueOf(o.getID()));
+                    boolean authorized = (objectPolicies != null)
+                            && isAuthorizedByPolicies(c, objectPolicies, userid);
+
+                    results[position.intValue()] = authorized;
+                    c.cacheAuthorizationResult(
+                            authorizationKey(userid, o, action, true), authorized);
+                }
+            }
+        }
+
+        return results;
+    }
+
     /**
      * Check to see if the given user can perform the given action on the given
      * object. Always returns true if the ignore authorization flat is set in
@@ -284,18 +392,55 @@ public class AuthorizeManager
         if (e != null)
         {
             userid = e.getID();
+        }
 
+        // has this already been decided in this context?
+        String key = authorizationKey(userid, o, action, useInheritance);
+        Boolean cached = c.getCachedAuthorizationResult(key);
+        if (cached != null)
+        {
+            return cached.booleanValue();
+        }
+
+        boolean authorized = false;
+
+        if (e != null)
+        {
             // perform isAdmin check to see
             // if user is an Admin on this object
             DSpaceObject testObject = useInheritance ? o.getAdminObject(action) : null;
 
-            if (isAdmin(c, testObject))
-            {
-                return true;
-            }
+            authorized = isAdmin(c, testObject);
+        }
+
+        if (!authorized)
+        {
+            authorized = isAuthorizedByPolicies(c,
+                    getPoliciesActionFilter(c, o, action), userid);
         }
 
-        for (ResourcePolicy rp : getPoliciesActionFilter(c, o, action))
+        c.cacheAuthorizationResult(key, authorized);
+
+        return authorized;
+    }
+
+    /**
+     * Check whether any of a list of policies grants the current user its
+     * action, either directly or through one of their groups.
+     *
+     * @param c
+     *         current context
+     * @param policies
+     *         the policies to check
+     * @param userid
+     *         ID of the current user, or 0 if anonymous
+     * @return <code>true</code> if a valid policy matches the user
+     * @throws SQLException
+     */
+    private static boolean isAuthorizedByPolicies(Context c,
+            List<ResourcePolicy> policies, int userid) throws SQLException
+    {
+        for (ResourcePolicy rp : policies)
         {
             // check policies for date validity
             if (rp.isDateValid())
@@ -319,6 +464,16 @@ public class AuthorizeManager
         return false;
     }
 
+    /**
+     * Key of an authorization decision in the context's cache.
+     */
+    private static String authorizationKey(int userid, DSpaceObject o,
+            int action, boolean useInheritance)
+    {
+        return userid + ":" + o.getType() + ":" + o.getID() + ":" + action
+                + ":" + useInheritance;
+    }
+
     ///////////////////////////////////////////////
     // admin check methods
     ///////////////////////////////////////////////
@@ -359,42 +514,37 @@ public class AuthorizeManager
             userid = e.getID();
         }
 
+        // has this already been decided in this context?
+        String key = "admin:" + userid + ":" + o.getType() + ":" + o.getID();
+        Boolean cached = c.getCachedAuthorizationResult(key);
+        if (cached != null)
+        {
+            return cached.booleanValue();
+        }
+
         //
         // First, check all Resource Policies directly on this object
         //
         List<ResourcePolicy> policies = getPoliciesActionFilter(c, o, Constants.ADMIN);
 
-        for (ResourcePolicy rp : policies)
-        {
-            // check policies for date validity
-            if (rp.isDateValid())
-            {
-                if ((rp.getEPersonID() != -1) && (rp.getEPersonID() == userid))
-                {
-                    return true; // match
-                }
-
-                if ((rp.getGroupID() != -1)
-                        && (Group.isMember(c, rp.getGroupID())))
-                {
-                    // group was set, and eperson is a member
-                    // of that group
-                    return true;
-                }
-            }
-        }
+        boolean admin = isAuthorizedByPolicies(c, policies, userid);
 
         // If user doesn't have specific Admin permissions on this object,
         // check the *parent* objects of this object.  This allows Admin
         // permissions to be inherited automatically (e.g. Admin on Community
         // is also an Admin of all Collections/Items in that Community)
-        DSpaceObject parent = o.getParentObject();
-        if (parent != null)
+        if (!admin)
         {
-            return isAdmin(c, parent);
+            DSpaceObject parent = o.getParentObject();
+            if (parent != null)
+            {
+                admin = isAdmin(c, parent);
+            }
         }
 
-        return false;
+        c.cacheAuthorizationResult(key, admin);
+
+        return admin;
     }
 
 
@@ -731,6 +881,85 @@ public class AuthorizeManager
         return policies;
     }
 
+    /**
+     * Fetch the policies matching an action for several objects of the same
+     * type in one query.
+     *
+     * @param c
+     *         context
+     * @param type
+     *         type of the objects
+     * @param objects
+     *         list containing the objects
+     * @param positions
+     *         positions in <code>objects</code> of the objects to fetch
+     *         policies for
+     * @param actionID
+     *         action (defined in class Constants)
+     * @return policies, keyed by the ID of the object they relate to; objects
+     *         with no matching policies are absent
+     * @throws SQLException
+     *         if there's a database problem
+     */
+    private static Map<Integer, List<ResourcePolicy>> getPoliciesActionFilter(Context c,
+            int type, List<? extends DSpaceObject> objects, List<Integer> positions,
+            int actionID) throws SQLException
+    {
+        StringBuilder query = new StringBuilder(
+                "SELECT * FROM resourcepolicy WHERE resource_type_id= ? "
+                        + "AND action_id= ? AND resource_id IN (");
+        Object[] parameters = new Object[positions.size() + 2];
+        parameters[0] = Integer.valueOf(type);
+        parameters[1] = Integer.valueOf(actionID);
+
+        for (int i = 0; i < positions.size(); i++)
+        {
+            query.append((i == 0) ? "?" : ", ?");
+            parameters[i + 2] = Integer.valueOf(
+                    objects.get(positions.get(i).intValue()).getID());
+        }
+        query.append(")");
+
+        Map<Integer, List<ResourcePolicy>> policies = new HashMap<Integer, List<ResourcePolicy>>();
+
+        TableRowIterator tri = DatabaseManager.queryTable(c, "resourcepolicy",
+                query.toString(), parameters);
+
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+
+                // first check the cache
+                ResourcePolicy policy = (ResourcePolicy) c.fromCache(
+                        ResourcePolicy.class, row.getIntColumn("policy_id"));
+
+                if (policy == null)
+                {
+                    policy = new ResourcePolicy(c, row);
+                }
+
+                Integer resourceID = Integer.valueOf(row.getIntColumn("resource_id"));
+                List<ResourcePolicy> objectPolicies = policies.get(resourceID);
+                if (objectPolicies == null)
+                {
+                    objectPolicies = new ArrayList<ResourcePolicy>();
+                    policies.put(resourceID, objectPolicies);
+                }
+                objectPolicies.add(policy);
+            }
+        } finally
+        {
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+
+        return policies;
+    }
+
     /**
      * Add policies to an object to match those from a previous object
      *
@@ -780,10 +1009,12 @@ public class AuthorizeManager
     public static void addPolicies(Context c, List<ResourcePolicy> policies, DSpaceObject dest)
             throws SQLException, AuthorizeException
     {
+        List<ResourcePolicy> newPolicies = new ArrayList<ResourcePolicy>(policies.size());
+
         // now add them to the destination object
         for (ResourcePolicy srp : policies)
         {
-            ResourcePolicy drp = ResourcePolicy.create(c);
+            ResourcePolicy drp = ResourcePolicy.prepare(c);
 
             // copy over values
             drp.setResource(dest);
@@ -795,10 +1026,12 @@ public class AuthorizeManager
             drp.setRpName(srp.getRpName());
             drp.setRpDescription(srp.getRpDescription());
             drp.setRpType(srp.getRpType());
-            // and write out new policy
-            drp.update();
+            newPolicies.add(drp);
         }
 
+        // and write out the new policies in one go
+        ResourcePolicy.insert(c, newPolicies);
+
         dest.updateLastModified();
     }
 
@@ -821,6 +1054,8 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? ",
                 o.getType(), o.getID());
+
+        c.clearAuthorizationCache();
     }
 
     /**
@@ -839,6 +1074,8 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND rptype <> ? ",
                 o.getType(), o.getID(), type);
+
+        c.clearAuthorizationCache();
     }
 
 
@@ -860,6 +1097,8 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND rptype=? ",
                 o.getType(), o.getID(), type);
+
+        c.clearAuthorizationCache();
     }
 
     /**
@@ -891,6 +1130,8 @@ public class AuthorizeManager
                             "resource_id= ? AND action_id= ? ",
                     dso.getType(), dso.getID(), actionID);
         }
+
+        context.clearAuthorizationCache();
     }
 
     /**
@@ -909,6 +1150,8 @@ public class AuthorizeManager
     {
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "epersongroup_id= ? ", groupID);
+
+        c.clearAuthorizationCache();
     }
 
     /**
@@ -932,6 +1175,8 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND epersongroup_id= ? ",
                 o.getType(), o.getID(), g.getID());
+
+        c.clearAuthorizationCache();
     }
 
     /**
@@ -954,6 +1199,8 @@ public class AuthorizeManager
         DatabaseManager.updateQuery(c, "DELETE FROM resourcepolicy WHERE "
                 + "resource_type_id= ? AND resource_id= ? AND eperson_id= ? ",
                 o.getType(), o.getID(), e.getID());
+
+        c.clearAuthorizationCache();
     }
 
     /**
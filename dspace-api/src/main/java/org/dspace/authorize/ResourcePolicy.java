@@ -8,8 +8,10 @@
 package org.dspace.authorize;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import org.apache.log4j.Logger;
 
 import org.dspace.content.DSpaceObject;
@@ -174,6 +176,43 @@ public class ResourcePolicy
         return new ResourcePolicy(context, row);
     }
 
+    /**
+     * Prepare a new ResourcePolicy without writing it to the database. Used
+     * to create several policies at once with {@link #insert(Context, List)}.
+     * 
+     * @param context
+     *            DSpace context object
+     */
+    static ResourcePolicy prepare(Context context) throws SQLException
+    {
+        TableRow row = DatabaseManager.row("ResourcePolicy");
+
+        return new ResourcePolicy(context, row);
+    }
+
+    /**
+     * Write ResourcePolicies made with {@link #prepare(Context)} to the
+     * database in a single batch.
+     * 
+     * @param context
+     *            DSpace context object
+     * @param policies
+     *            the prepared policies
+     */
+    static void insert(Context context, List<ResourcePolicy> policies) throws SQLException
+    {
+        List<TableRow> rows = new ArrayList<TableRow>(policies.size());
+        for (ResourcePolicy policy : policies)
+        {
+            rows.add(policy.myRow);
+        }
+
+        DatabaseManager.insert(context, rows);
+
+        // authorization decisions may have changed
+        context.clearAuthorizationCache();
+    }
+
     /**
      * Delete an ResourcePolicy
      *  
@@ -193,6 +232,9 @@ public class ResourcePolicy
         // FIXME: authorizations
         // Remove ourself
         DatabaseManager.delete(myContext, myRow);
+
+        // authorization decisions may have changed
+        myContext.clearAuthorizationCache();
     }
 
     /**
@@ -476,6 +518,9 @@ public class ResourcePolicy
 
         // FIXME: Check authorisation
         DatabaseManager.update(myContext, myRow);
+
+        // authorization decisions may have changed
+        myContext.clearAuthorizationCache();
     }
 
 
@@ -145,6 +145,9 @@ public class BrowseConsumer implements Consumer
             // browse updates wrote to the DB, so we have to commit.
             ctx.getDBConnection().commit();
 
+            // and the counts of browse results may have changed
+            BrowseCountCache.invalidate();
+
         }
         
         // clean out toUpdate
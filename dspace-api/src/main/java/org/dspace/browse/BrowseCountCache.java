@@ -0,0 +1,131 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.browse;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dspace.core.ConfigurationManager;
+
+/**
+ * Cache of the counts of browse results, keyed by the count query and its
+ * parameters, and so by browse index, container and filter value. Counting a
+ * large browse table takes about as long as reading it, and the count is
+ * needed for every page.
+ * <p>
+ * The cache is emptied whenever the browse tables are updated by this JVM
+ * (see BrowseConsumer); counts are also dropped after
+ * <code>browse.count.cache.ttl</code> seconds, to catch changes made by other
+ * processes.
+ *
+ * @version $Revision$
+ */
+final class BrowseCountCache
+{
+    /** The maximum number of counts held, 0 to disable the cache */
+    static final int SIZE = ConfigurationManager.getIntProperty("browse.count.cache.size", 1000);
+
+    /** How long a count is used for, in milliseconds */
+    static final long TTL = ConfigurationManager.getLongProperty("browse.count.cache.ttl", 300) * 1000L;
+
+    /** Count and time counted, by query */
+    private static final Map<String, long[]> counts = new LinkedHashMap<String, long[]>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest)
+        {
+            return size() > SIZE;
+        }
+    };
+
+    private BrowseCountCache()
+    {
+    }
+
+    /**
+     * Get a cached count.
+     *
+     * @param query     the count query
+     * @param params    its parameters
+     * @return  the count, or -1 if there is none
+     */
+    static int get(String query, Object[] params)
+    {
+        return get(query, params, System.currentTimeMillis());
+    }
+
+    /**
+     * Get a cached count as it stands at the given time.
+     *
+     * @param query     the count query
+     * @param params    its parameters
+     * @param now       the current time, in milliseconds
+     * @return  the count, or -1 if there is none or it has expired
+     */
+    static int get(String query, Object[] params, long now)
+    {
+        if (SIZE <= 0)
+        {
+            return -1;
+        }
+
+        synchronized (counts)
+        {
+            String key = key(query, params);
+            long[] count = counts.get(key);
+            if (count == null)
+            {
+                return -1;
+            }
+
+            if (now - count[1] > TTL)
+            {
+                counts.remove(key);
+                return -1;
+            }
+            return (int) count[0];
+        }
+    }
+
+    /**
+     * Cache a count.
+     *
+     * @param query     the count query
+     * @param params    its parameters
+     * @param count     the count
+     */
+    static void put(String query, Object[] params, int count)
+    {
+        if (SIZE <= 0)
+        {
+            return;
+        }
+
+        synchronized (counts)
+        {
+            counts.put(key(query, params), new long[] { count, System.currentTimeMillis() });
+        }
+    }
+
+    /**
+     * Drop all the cached counts, after the browse tables have changed.
+     */
+    static void invalidate()
+    {
+        synchronized (counts)
+        {
+            counts.clear();
+        }
+    }
+
+    private static String key(String query, Object[] params)
+    {
+        return query + Arrays.toString(params);
+    }
+}
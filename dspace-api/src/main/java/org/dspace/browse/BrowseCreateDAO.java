@@ -208,6 +208,22 @@ public interface BrowseCreateDAO
      * @throws BrowseException
      */
     public String dropView(String view, boolean execute) throws BrowseException;
+
+    /**
+     * Rename the given table, along with its sequence ([table]_seq) and the indexes
+     * named after it, so that a table built under another name can take the place of
+     * one which has been dropped.  If the boolean execute is true this operation should
+     * be carried out, and if it is false it should not.  The returned string should
+     * contain the SQL (if relevant) that the caller can do with what they like (for
+     * example, output to the screen)
+     * 
+     * @param table         the table to rename
+     * @param newName       its new name
+     * @param execute       whether to action the rename or not
+     * @return              The instructions (SQL) that effect the rename
+     * @throws BrowseException
+     */
+    public String renameTable(String table, String newName, boolean execute) throws BrowseException;
     
 	/**
 	 * Create the sequence with the given name.  This is relevant to most forms of database, but not all.
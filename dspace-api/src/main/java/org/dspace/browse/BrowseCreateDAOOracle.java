@@ -138,9 +138,10 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
                 array.add("CREATE INDEX " + table + "_value_idx ON " + table + "(sort_value)");
             }
     
+            // the item id breaks ties in the sort order, and is where a browse continues from
             for (Integer i : sortCols)
             {
-                array.add("CREATE INDEX " + table + "_s" + i + "_idx ON " + table + "(sort_" + i + ")");
+                array.add("CREATE INDEX " + table + "_s" + i + "_idx ON " + table + "(sort_" + i + ", item_id)");
             }
             
             if (execute)
@@ -228,6 +229,9 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
         {
             Set<Integer> addDistinctIDs = null;
 
+            List<TableRow> deleteRows = new ArrayList<TableRow>();
+            List<TableRow> insertRows = new ArrayList<TableRow>();
+
             // Find all existing mappings for this item
             TableRowIterator tri = DatabaseManager.queryTable(context, table, "SELECT * FROM " + table + " WHERE item_id=?", itemID);
             if (tri != null)
@@ -255,7 +259,7 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
                         if (!itemIsMapped)
                         {
                             results.addRemovedDistinctId(trDistinctID);
-                            DatabaseManager.delete(context, tr);
+                            deleteRows.add(tr);
                         }
                     }
                 }
@@ -277,10 +281,13 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
                     TableRow row = DatabaseManager.row(table);
                     row.setColumn("item_id", itemID);
                     row.setColumn("distinct_id", distinctID);
-                    DatabaseManager.insert(context, row);
+                    insertRows.add(row);
                     results.addAddedDistinctId(distinctID);
                 }
             }
+
+            DatabaseManager.delete(context, deleteRows);
+            DatabaseManager.insert(context, insertRows);
         }
         catch (SQLException e)
         {
@@ -453,6 +460,56 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.dspace.browse.BrowseCreateDAO#renameTable(java.lang.String, java.lang.String, boolean)
+     */
+    public String renameTable(String table, String newName, boolean execute) throws BrowseException
+    {
+        TableRowIterator tri = null;
+
+        try
+        {
+            List<String> statements = new ArrayList<String>();
+            statements.add("ALTER TABLE " + table + " RENAME TO " + newName);
+            statements.add("RENAME " + table + "_seq TO " + newName + "_seq");
+
+            // the indexes named after the table
+            String prefix = table.toUpperCase();
+            tri = DatabaseManager.query(context, "SELECT index_name FROM user_indexes WHERE table_name = ?", prefix);
+            while (tri.hasNext())
+            {
+                String index = tri.next().getStringColumn("index_name");
+                if (index.startsWith(prefix))
+                {
+                    statements.add("ALTER INDEX " + index + " RENAME TO " + newName + index.substring(prefix.length()));
+                }
+            }
+
+            StringBuilder sql = new StringBuilder();
+            for (String statement : statements)
+            {
+                if (execute)
+                {
+                    DatabaseManager.updateQuery(context, statement);
+                }
+                sql.append(statement).append(";\n");
+            }
+            return sql.toString();
+        }
+        catch (SQLException e)
+        {
+            log.error("caught exception: ", e);
+            throw new BrowseException(e);
+        }
+        finally
+        {
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.dspace.browse.BrowseCreateDAO#dropView(java.lang.String, boolean)
      */
@@ -586,6 +643,9 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
                 }
             }
 
+            List<TableRow> deleteRows = new ArrayList<TableRow>();
+            List<TableRow> insertRows = new ArrayList<TableRow>();
+
             // Find all existing mappings for this item
             TableRowIterator tri = DatabaseManager.queryTable(context, "Communities2Item", "SELECT * FROM Communities2Item WHERE item_id=?", itemID);
             if (tri != null)
@@ -613,7 +673,7 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
                         // The item is no longer mapped to this community, so remove the database record
                         if (!itemIsMapped)
                         {
-                            DatabaseManager.delete(context, tr);
+                            deleteRows.add(tr);
                         }
                     }
                 }
@@ -631,9 +691,12 @@ public class BrowseCreateDAOOracle implements BrowseCreateDAO
                     TableRow row = DatabaseManager.row("Communities2Item");
                     row.setColumn("item_id", itemID);
                     row.setColumn("community_id", commID[i]);
-                    DatabaseManager.insert(context, row);
+                    insertRows.add(row);
                 }
             }
+
+            DatabaseManager.delete(context, deleteRows);
+            DatabaseManager.insert(context, insertRows);
         }
         catch (SQLException e)
         {
@@ -134,9 +134,10 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
                 array.add("CREATE INDEX " + table + "_value_idx ON " + table + "(sort_value);");
             }
 
+            // the item id breaks ties in the sort order, and is where a browse continues from
             for (Integer i : sortCols)
             {
-                array.add("CREATE INDEX " + table + "_s" + i + "_idx ON " + table + "(sort_" + i + ");");
+                array.add("CREATE INDEX " + table + "_s" + i + "_idx ON " + table + "(sort_" + i + ", item_id);");
             }
             
             if (execute)
@@ -225,6 +226,9 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
         {
             Set<Integer> addDistinctIDs = null;
 
+            List<TableRow> deleteRows = new ArrayList<TableRow>();
+            List<TableRow> insertRows = new ArrayList<TableRow>();
+
             // Find all existing mappings for this item
             TableRowIterator tri = DatabaseManager.queryTable(context, table, "SELECT * FROM " + table + " WHERE item_id=?", itemID);
             if (tri != null)
@@ -252,7 +256,7 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
                         if (!itemIsMapped)
                         {
                             results.addRemovedDistinctId(trDistinctID);
-                            DatabaseManager.delete(context, tr);
+                            deleteRows.add(tr);
                         }
                     }
                 }
@@ -274,10 +278,13 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
                     TableRow row = DatabaseManager.row(table);
                     row.setColumn("item_id", itemID);
                     row.setColumn("distinct_id", distinctID);
-                    DatabaseManager.insert(context, row);
+                    insertRows.add(row);
                     results.addAddedDistinctId(distinctID);
                 }
             }
+
+            DatabaseManager.delete(context, deleteRows);
+            DatabaseManager.insert(context, insertRows);
         }
         catch (SQLException e)
         {
@@ -458,6 +465,56 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
         }
     }
     
+    /* (non-Javadoc)
+     * @see org.dspace.browse.BrowseCreateDAO#renameTable(java.lang.String, java.lang.String, boolean)
+     */
+    public String renameTable(String table, String newName, boolean execute)
+        throws BrowseException
+    {
+        TableRowIterator tri = null;
+
+        try
+        {
+            List<String> statements = new ArrayList<String>();
+            statements.add("ALTER TABLE " + table + " RENAME TO " + newName + ";");
+            statements.add("ALTER SEQUENCE " + table + "_seq RENAME TO " + newName + "_seq;");
+
+            // the indexes named after the table, including that of the primary key
+            tri = DatabaseManager.query(context, "SELECT indexname FROM pg_indexes WHERE tablename = ?", table);
+            while (tri.hasNext())
+            {
+                String index = tri.next().getStringColumn("indexname");
+                if (index.startsWith(table))
+                {
+                    statements.add("ALTER INDEX " + index + " RENAME TO " + newName + index.substring(table.length()) + ";");
+                }
+            }
+
+            StringBuilder sql = new StringBuilder();
+            for (String statement : statements)
+            {
+                if (execute)
+                {
+                    DatabaseManager.updateQuery(context, statement);
+                }
+                sql.append(statement).append("\n");
+            }
+            return sql.toString();
+        }
+        catch (SQLException e)
+        {
+            log.error("caught exception: ", e);
+            throw new BrowseException(e);
+        }
+        finally
+        {
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.dspace.browse.BrowseCreateDAO#dropView(java.lang.String, boolean)
      */
@@ -587,6 +644,9 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
                 }
             }
 
+            List<TableRow> deleteRows = new ArrayList<TableRow>();
+            List<TableRow> insertRows = new ArrayList<TableRow>();
+
             // Find all existing mappings for this item
             TableRowIterator tri = DatabaseManager.queryTable(context, "Communities2Item", "SELECT * FROM Communities2Item WHERE item_id=?", itemID);
             if (tri != null)
@@ -614,7 +674,7 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
                         // The item is no longer mapped to this community, so remove the database record
                         if (!itemIsMapped)
                         {
-                            DatabaseManager.delete(context, tr);
+                            deleteRows.add(tr);
                         }
                     }
                 }
@@ -632,9 +692,12 @@ public class BrowseCreateDAOPostgres implements BrowseCreateDAO
                     TableRow row = DatabaseManager.row("Communities2Item");
                     row.setColumn("item_id", itemID);
                     row.setColumn("community_id", commID[i]);
-                    DatabaseManager.insert(context, row);
+                    insertRows.add(row);
                 }
             }
+
+            DatabaseManager.delete(context, deleteRows);
+            DatabaseManager.insert(context, insertRows);
         }
         catch (SQLException e)
         {
@@ -245,6 +245,37 @@ public interface BrowseDAO
      */
     public void setOffset(int offset);
 
+    /**
+     * Continue an item browse from the row after a given one, rather than from
+     * the offset: only rows which sort after the given sort value and item id,
+     * in order of the order field and then the item id, are returned.  This
+     * reads only the rows returned, where an offset reads all those skipped.
+     * The offset should still be set, for a DAO which cannot seek and uses it
+     * instead.  An item id of -1, the default, means do not seek.
+     *
+     * @param value     the value of the order field in the last row seen, may be null
+     * @param itemID    the item id of the last row seen
+     */
+    public void setKeyset(String value, int itemID);
+
+    /**
+     * @return  the value of the order field of the row to continue after
+     */
+    public String getKeysetValue();
+
+    /**
+     * @return  the item id of the row to continue after, or -1
+     */
+    public int getKeysetItemID();
+
+    /**
+     * Get the value of the order field in the last row returned by doQuery,
+     * which the next page can be continued after with setKeyset.
+     *
+     * @return  the value, or null if there is none or it is not known
+     */
+    public String getLastOrderValue();
+
     /**
      * Get the database field which will be used to do the sorting of result sets on.
      *
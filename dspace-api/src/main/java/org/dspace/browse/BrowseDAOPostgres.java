@@ -95,6 +95,16 @@ public class BrowseDAOPostgres implements BrowseDAO
     /** the offset of the start point */
     private int offset = 0;
 
+    /** the sort value and item id of the row to continue the browse after */
+    private String keysetValue = null;
+    private int keysetItemID = -1;
+
+    /** whether to continue with the rows with no sort value, which come after all the others */
+    private boolean keysetNulls = false;
+
+    /** the value of the order field in the last row returned by doQuery */
+    private String lastOrderValue = null;
+
     /** whether to use the equals comparator in value comparisons */
     private boolean equalsComparator = true;
 
@@ -148,6 +158,12 @@ public class BrowseDAOPostgres implements BrowseDAO
             log.debug(LogManager.getHeader(context, "executing_count_query", "query=" + query));
         }
 
+        int cached = BrowseCountCache.get(query, params);
+        if (cached > -1)
+        {
+            return cached;
+        }
+
         TableRowIterator tri = null;
 
         try
@@ -158,7 +174,9 @@ public class BrowseDAOPostgres implements BrowseDAO
             if (tri.hasNext())
             {
                 TableRow row = tri.next();
-                return (int) row.getLongColumn("num");
+                int count = (int) row.getLongColumn("num");
+                BrowseCountCache.put(query, params, count);
+                return count;
             }
             else
             {
@@ -346,6 +364,41 @@ public class BrowseDAOPostgres implements BrowseDAO
      */
     public List<BrowseItem> doQuery()
         throws BrowseException
+    {
+        lastOrderValue = null;
+        List<BrowseItem> results = doItemQuery();
+
+        // the rows with no sort value come last, but are not in the range
+        // sought from a sort value, so go on to them if the page is short
+        if (isSeeking() && keysetValue != null && limit > 0 && results.size() < limit)
+        {
+            int pageLimit = limit;
+            keysetNulls = true;
+            limit = pageLimit - results.size();
+            rebuildQuery = true;
+            try
+            {
+                results.addAll(doItemQuery());
+            }
+            finally
+            {
+                keysetNulls = false;
+                limit = pageLimit;
+                rebuildQuery = true;
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Run the query for the items of a full browse.
+     *
+     * @return  the items
+     * @throws BrowseException
+     */
+    private List<BrowseItem> doItemQuery()
+        throws BrowseException
     {
         String query = getQuery();
         Object[] params = getQueryParams();
@@ -371,6 +424,11 @@ public class BrowseDAOPostgres implements BrowseDAO
                                                   itemsWithdrawn,
                                                   itemsDiscoverable);
                 results.add(browseItem);
+
+                if (orderField != null)
+                {
+                    lastOrderValue = row.getStringColumn(orderField);
+                }
             }
 
             return results;
@@ -657,6 +715,40 @@ public class BrowseDAOPostgres implements BrowseDAO
         this.rebuildQuery = true;
     }
 
+    /* (non-Javadoc)
+     * @see org.dspace.browse.BrowseDAO#setKeyset(java.lang.String, int)
+     */
+    public void setKeyset(String value, int itemID)
+    {
+        this.keysetValue = value;
+        this.keysetItemID = itemID;
+        this.rebuildQuery = true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.dspace.browse.BrowseDAO#getKeysetValue()
+     */
+    public String getKeysetValue()
+    {
+        return keysetValue;
+    }
+
+    /* (non-Javadoc)
+     * @see org.dspace.browse.BrowseDAO#getKeysetItemID()
+     */
+    public int getKeysetItemID()
+    {
+        return keysetItemID;
+    }
+
+    /* (non-Javadoc)
+     * @see org.dspace.browse.BrowseDAO#getLastOrderValue()
+     */
+    public String getLastOrderValue()
+    {
+        return lastOrderValue;
+    }
+
     /* (non-Javadoc)
      * @see org.dspace.browse.BrowseDAO#setOrderField(java.lang.String)
      */
@@ -837,6 +929,9 @@ public class BrowseDAOPostgres implements BrowseDAO
         // assemble the value clause if we are to have one
         buildWhereClauseFilterValue(queryBuf, params);
 
+        // continue from the last row seen, if we are seeking
+        buildWhereClauseKeyset(queryBuf, params);
+
         // assemble the where clause out of the two possible value clauses
         // and include container support
         buildWhereClauseFullConstraints(queryBuf, params);
@@ -875,6 +970,13 @@ public class BrowseDAOPostgres implements BrowseDAO
                 queryBuf.append(" DESC ");
             }
             queryBuf.append(" NULLS LAST ");
+
+            // break ties on the item id, so a page continues where the last one ended
+            if (!distinct)
+            {
+                queryBuf.append(", ").append(table).append(".item_id");
+                queryBuf.append(isAscending() ? " ASC " : " DESC ");
+            }
         }
     }
 
@@ -890,6 +992,9 @@ public class BrowseDAOPostgres implements BrowseDAO
      */
     private void buildRowLimitAndOffset(StringBuffer queryBuf, List<Serializable> params)
     {
+        // rows before the one sought are not there to skip
+        int skip = isSeeking() ? 0 : offset;
+
         // prepare the LIMIT clause
         if (limit > 0)
         {
@@ -899,11 +1004,11 @@ public class BrowseDAOPostgres implements BrowseDAO
         }
 
         // prepare the OFFSET clause
-        if (offset > 0)
+        if (skip > 0)
         {
             queryBuf.append(" OFFSET ? ");
 
-            params.add(Integer.valueOf(offset));
+            params.add(Integer.valueOf(skip));
         }
     }
 
@@ -1322,6 +1427,65 @@ public class BrowseDAOPostgres implements BrowseDAO
         }
     }
 
+    /**
+     * Get the clause to continue a full browse after a given row.  Will
+     * return something of the form:
+     *
+     * <code>
+     * [order field] >= ? AND ([order field] > ? OR item_id > ?)
+     * </code>
+     *
+     * of which the first part is read from the index on the order field.  The
+     * rows with no sort value come after all the others; they are read with
+     *
+     * <code>
+     * [order field] IS NULL AND item_id > ?
+     * </code>
+     *
+     * (with the comparators reversed for a descending browse).
+     */
+    private void buildWhereClauseKeyset(StringBuffer queryBuf, List<Serializable> params)
+    {
+        if (!isSeeking())
+        {
+            return;
+        }
+
+        String comparator = isAscending() ? ">" : "<";
+        String itemField = table + ".item_id";
+
+        buildWhereClauseOpInsert(queryBuf);
+        queryBuf.append(" ");
+        if (keysetNulls)
+        {
+            queryBuf.append(orderField).append(" IS NULL ");
+        }
+        else if (keysetValue == null)
+        {
+            queryBuf.append(orderField).append(" IS NULL AND ");
+            queryBuf.append(itemField).append(comparator).append("? ");
+            params.add(Integer.valueOf(keysetItemID));
+        }
+        else
+        {
+            queryBuf.append(orderField).append(comparator).append("=? AND (");
+            queryBuf.append(orderField).append(comparator).append("? OR ");
+            queryBuf.append(itemField).append(comparator).append("?) ");
+            params.add(keysetValue);
+            params.add(keysetValue);
+            params.add(Integer.valueOf(keysetItemID));
+        }
+    }
+
+    /**
+     * Whether a full browse is continued after a given row, rather than
+     * from an offset
+     */
+    private boolean isSeeking()
+    {
+        return keysetItemID > -1 && orderField != null && !distinct;
+    }
+
     /**
      * Insert an operator into the where clause, and reset to ' AND '
      */
@@ -150,6 +150,7 @@ public class BrowseEngine
         }
 
         dao.setOffset(scope.getOffset());
+        dao.setKeyset(null, -1);
         dao.setLimit(scope.getResultsPerPage());
 
         // assemble the ORDER BY clause
@@ -272,8 +273,20 @@ public class BrowseEngine
             dao.setOrderField(orderBy);
 
             int offset = scope.getOffset();
+
+            // continue where the last page ended, if we have been told where that was
+            ContinuationToken continuation = null;
+            if (scope.hasContinuation())
+            {
+                continuation = ContinuationToken.decode(scope.getContinuation(), orderBy, scope.isAscending());
+                if (continuation != null)
+                {
+                    offset = continuation.getOffset();
+                }
+            }
+
             String rawFocusValue = null;
-            if (offset < 1 && (scope.hasJumpToItem() || scope.hasJumpToValue() || scope.hasStartsWith()))
+            if (continuation == null && offset < 1 && (scope.hasJumpToItem() || scope.hasJumpToValue() || scope.hasStartsWith()))
             {
                 // We need to convert these to an offset for the actual browse query.
                 // First, get a value that we can look up in the ordering field
@@ -290,6 +303,17 @@ public class BrowseEngine
 
             dao.setOffset(offset);
 
+            // seek to the row after the last one of the previous page, rather
+            // than counting through all the rows before this page
+            if (continuation != null)
+            {
+                dao.setKeyset(continuation.getValue(), continuation.getItemID());
+            }
+            else
+            {
+                dao.setKeyset(null, -1);
+            }
+
             // assemble the LIMIT clause
             dao.setLimit(scope.getResultsPerPage());
 
@@ -316,6 +340,7 @@ public class BrowseEngine
 
                     // And rerun the query
                     dao.setOffset(offset);
+                    dao.setKeyset(null, -1);
                     results = dao.doQuery();
                 }
             }
@@ -332,6 +357,15 @@ public class BrowseEngine
             if (offset + scope.getResultsPerPage() < total)
             {
                 browseInfo.setNextOffset(offset + scope.getResultsPerPage());
+
+                // the next page starts after the last item of this one
+                if (results.size() == scope.getResultsPerPage())
+                {
+                    BrowseItem last = results.get(results.size() - 1);
+                    ContinuationToken next = new ContinuationToken(offset + scope.getResultsPerPage(),
+                            last.getID(), dao.getLastOrderValue());
+                    browseInfo.setNextContinuation(next.encode(orderBy, scope.isAscending()));
+                }
             }
 
             if (offset - scope.getResultsPerPage() > -1)
@@ -750,12 +784,15 @@ public class BrowseEngine
         String orderField = dao.getOrderField();
         int limit = dao.getLimit();
         int offset = dao.getOffset();
+        String keysetValue = dao.getKeysetValue();
+        int keysetItemID = dao.getKeysetItemID();
 
         dao.setJumpToField(null);
         dao.setJumpToValue(null);
         dao.setOrderField(null);
         dao.setLimit(-1);
         dao.setOffset(-1);
+        dao.setKeyset(null, -1);
         
         // perform the query and get the result
         int count = dao.doCountQuery();
@@ -766,6 +803,7 @@ public class BrowseEngine
         dao.setOrderField(orderField);
         dao.setLimit(limit);
         dao.setOffset(offset);
+        dao.setKeyset(keysetValue, keysetItemID);
         dao.setCountValues(null);
 
         log.debug(LogManager.getHeader(context, "get_total_results_return", "return=" + count));
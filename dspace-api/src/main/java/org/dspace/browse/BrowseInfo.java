@@ -90,6 +90,9 @@ public class BrowseInfo
 	/** offset of the item at the top of the previous page */
 	private int prevOffset = -1;
 
+	/** token for continuing to the next page */
+	private String nextContinuation = null;
+
 	/** the value upon which we are focusing */
 	private String focus;
 
@@ -327,6 +330,26 @@ public class BrowseInfo
     	return this.nextOffset;
     }
 
+    /**
+     * @param continuation	the token for continuing to the next page
+     */
+    public void setNextContinuation(String continuation)
+    {
+    	this.nextContinuation = continuation;
+    }
+
+    /**
+     * Get the token for continuing to the next page, for passing to
+     * BrowserScope.setContinuation() along with the next offset.  It is only
+     * given for item browses read from the database.
+     *
+     * @return		the token, or null if there is none
+     */
+    public String getNextContinuation()
+    {
+    	return this.nextContinuation;
+    }
+
    /**
 	 * @return Returns the ascending.
 	 */
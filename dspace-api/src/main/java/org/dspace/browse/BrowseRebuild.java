@@ -0,0 +1,741 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.browse;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.Item;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.sort.SortException;
+import org.dspace.sort.SortOption;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * Rebuilds the browse tables without taking them away in the meantime.
+ * <p>
+ * The new tables are built alongside the old ones, under the same names with
+ * <code>_new</code> appended. The sort and distinct values of the items are
+ * worked out by several threads, each with its own database connection, and
+ * written in JDBC batches. The distinct values are gathered in memory, so
+ * each is looked up and inserted once rather than once per item. The indexes
+ * of the new tables are only created once they are full. Then the old tables
+ * are dropped and the new ones renamed in their place, in a single
+ * transaction where the database allows (PostgreSQL, but not Oracle, where
+ * DDL is committed as it goes). Finally the items changed while the tables
+ * were being built are indexed again, in the usual way.
+ * <p>
+ * The mappings of items to the communities they are in are built in the
+ * same way, but are then copied into communities2item in that transaction
+ * rather than renamed, since foreign keys and views refer to that table.
+ * A rebuild which fails before the swap leaves all the live tables as they
+ * were, and its new tables are dropped by the next.
+ * <p>
+ * Items cannot be deleted while the new tables are being built, as those
+ * refer to them.
+ *
+ * @version $Revision$
+ */
+class BrowseRebuild
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(BrowseRebuild.class);
+
+    /** what the names of the new tables end with */
+    static final String SUFFIX = "_new";
+
+    /** the number of rows written in a batch */
+    private static final int BATCH_SIZE = 500;
+
+    /** the table of the mappings of items to communities */
+    private static final String COMMUNITY_MAP = "communities2item";
+
+    /** the indexer, for working out the values of an item */
+    private final IndexBrowse indexer;
+
+    /** DSpace context */
+    private final Context context;
+
+    /** the DAO for write operations on the database */
+    private final BrowseCreateDAO dao;
+
+    /** the configured browse indices */
+    private final BrowseIndex[] bis;
+
+    /** the outputter */
+    private final BrowseOutput output;
+
+    /** the number of threads working out the values of items */
+    private final int threads;
+
+    /** the distinct values of each metadata index, by its position in bis */
+    private final DistinctValues[] distinct;
+
+    /** the tables of the item indices */
+    private final BrowseIndex[] itemIndices = {
+            BrowseIndex.getItemBrowseIndex(),
+            BrowseIndex.getWithdrawnBrowseIndex(),
+            BrowseIndex.getPrivateBrowseIndex()
+    };
+
+    /** the sort columns of the item tables */
+    private final List<Integer> sortCols = new ArrayList<Integer>();
+
+    /** the parent of each sub-community, as the DAOs find them */
+    private final Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+
+    BrowseRebuild(IndexBrowse indexer, Context context, BrowseCreateDAO dao, BrowseIndex[] bis, BrowseOutput output)
+        throws BrowseException
+    {
+        this.indexer = indexer;
+        this.context = context;
+        this.dao = dao;
+        this.bis = bis;
+        this.output = output;
+        this.threads = Math.max(1, ConfigurationManager.getIntProperty("browse.rebuild.threads",
+                Runtime.getRuntime().availableProcessors()));
+
+        boolean caseInsensitive = ConfigurationManager.getBooleanProperty("webui.browse.metadata.case-insensitive", false);
+        distinct = new DistinctValues[bis.length];
+        for (int i = 0; i < bis.length; i++)
+        {
+            if (bis[i].isMetadataIndex())
+            {
+                distinct[i] = new DistinctValues(caseInsensitive);
+            }
+        }
+
+        try
+        {
+            for (SortOption so : SortOption.getSortOptions())
+            {
+                sortCols.add(Integer.valueOf(so.getNumber()));
+            }
+        }
+        catch (SortException se)
+        {
+            throw new BrowseException("Error in SortOptions", se);
+        }
+    }
+
+    /**
+     * Rebuild the browse tables.
+     *
+     * @return  the number of items indexed
+     * @throws SQLException
+     * @throws BrowseException
+     */
+    int rebuild()
+        throws SQLException, BrowseException
+    {
+        if (dao instanceof SolrBrowseCreateDAO)
+        {
+            throw new BrowseException("Only the database browse tables can be rebuilt in bulk");
+        }
+
+        // items changed from now on may be missed, so are indexed again at the end
+        Timestamp started = new Timestamp(System.currentTimeMillis());
+
+        createTables();
+        loadParents();
+
+        BrowseItem[] items = BrowseDAOFactory.getItemInstance(context).findAll();
+        output.message("Indexing " + items.length + " items with " + threads + " threads");
+        loadItems(items);
+        loadDistinctValues();
+
+        output.message("Creating indices on the new browse tables");
+        createIndices();
+
+        output.message("Replacing the browse tables");
+        swapTables();
+        BrowseCountCache.invalidate();
+
+        int changed = reindexChanged(started);
+        output.message("Items changed during the rebuild indexed again: " + changed);
+
+        return items.length;
+    }
+
+    /**
+     * Create the new tables, dropping any left behind by an earlier rebuild.
+     */
+    private void createTables()
+        throws SQLException, BrowseException
+    {
+        for (String table : getTableNames())
+        {
+            if (dao.testTableExistence(table + SUFFIX))
+            {
+                output.sql(dao.dropIndexAndRelated(table + SUFFIX, true));
+            }
+            dropSequenceIfExists(table + SUFFIX + "_seq");
+        }
+        if (dao.testTableExistence(COMMUNITY_MAP + SUFFIX))
+        {
+            output.sql(dao.dropIndexAndRelated(COMMUNITY_MAP + SUFFIX, true));
+        }
+        dropSequenceIfExists(COMMUNITY_MAP + SUFFIX + "_seq");
+        context.commit();
+
+        output.sql(dao.createSequence(COMMUNITY_MAP + SUFFIX + "_seq", true));
+        String createMap = "CREATE TABLE " + COMMUNITY_MAP + SUFFIX
+                + " (id INTEGER PRIMARY KEY, community_id INTEGER, item_id INTEGER)";
+        DatabaseManager.updateQuery(context, createMap);
+        output.sql(createMap);
+
+        for (BrowseIndex bix : itemIndices)
+        {
+            String table = bix.getTableName() + SUFFIX;
+            output.sql(dao.createSequence(table + "_seq", true));
+            output.sql(dao.createPrimaryTable(table, sortCols, true));
+        }
+
+        for (int i = 0; i < bis.length; i++)
+        {
+            if (bis[i].isMetadataIndex())
+            {
+                String disTable = bis[i].getDistinctTableName() + SUFFIX;
+                String mapTable = bis[i].getMapTableName() + SUFFIX;
+                output.sql(dao.createSequence(disTable + "_seq", true));
+                output.sql(dao.createSequence(mapTable + "_seq", true));
+                output.sql(dao.createDistinctTable(disTable, true));
+                output.sql(dao.createDistinctMap(disTable, mapTable, true));
+            }
+        }
+        context.commit();
+    }
+
+    /**
+     * Drop a sequence, if there is one.  This is tried in a context of its
+     * own, as a failed statement spoils the transaction it is in.
+     *
+     * @param sequence  the name of the sequence
+     */
+    private void dropSequenceIfExists(String sequence)
+    {
+        Context c = null;
+        try
+        {
+            c = new Context();
+            DatabaseManager.updateQuery(c, "DROP SEQUENCE " + sequence);
+            c.complete();
+        }
+        catch (SQLException e)
+        {
+            // there was no such sequence
+        }
+        finally
+        {
+            if (c != null && c.isValid())
+            {
+                c.abort();
+            }
+        }
+    }
+
+    /**
+     * Read the parent of each sub-community, so that the loaders can find all
+     * the communities an item is in without walking up the hierarchy in the
+     * database for each item.
+     */
+    private void loadParents()
+        throws SQLException
+    {
+        TableRowIterator tri = DatabaseManager.query(context,
+                "SELECT parent_comm_id, child_comm_id FROM community2community");
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+                Integer child = Integer.valueOf(row.getIntColumn("child_comm_id"));
+
+                // the first parent found, as getParentCommunityID does
+                if (!parents.containsKey(child))
+                {
+                    parents.put(child, Integer.valueOf(row.getIntColumn("parent_comm_id")));
+                }
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+    }
+
+    /**
+     * Work out the values of all the items, in several threads, writing the
+     * item tables and keeping the distinct values for later.
+     *
+     * @param items     the items
+     */
+    private void loadItems(BrowseItem[] items)
+        throws BrowseException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            AtomicInteger next = new AtomicInteger();
+            List<Future<Object>> loaders = new ArrayList<Future<Object>>();
+            for (int t = 0; t < threads; t++)
+            {
+                loaders.add(pool.submit(new Loader(items, next)));
+            }
+
+            for (Future<Object> loader : loaders)
+            {
+                loader.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BrowseException("Interrupted while indexing items", e);
+        }
+        catch (ExecutionException e)
+        {
+            log.error("caught exception: ", e.getCause());
+            throw new BrowseException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Write the distinct values of each metadata index, and then the
+     * mappings of the items to them.
+     */
+    private void loadDistinctValues()
+        throws SQLException
+    {
+        BrowseDAOUtils utils = BrowseDAOFactory.getUtils(context);
+
+        for (int i = 0; i < bis.length; i++)
+        {
+            if (!bis[i].isMetadataIndex())
+            {
+                continue;
+            }
+
+            String disTable = bis[i].getDistinctTableName() + SUFFIX;
+            String mapTable = bis[i].getMapTableName() + SUFFIX;
+            List<String[]> values = distinct[i].getValues();
+            output.message("Writing " + values.size() + " distinct values for index " + bis[i].getName());
+
+            // the ids of the distinct values are given as they are written
+            int[] ids = new int[values.size()];
+            List<TableRow> rows = new ArrayList<TableRow>();
+            for (int v = 0; v < values.size(); v++)
+            {
+                String[] value = values.get(v);
+                TableRow row = DatabaseManager.row(disTable);
+                if (value[1] != null)
+                {
+                    row.setColumn("authority", utils.truncateValue(value[1], 100));
+                }
+                row.setColumn("value", utils.truncateValue(value[0]));
+                row.setColumn("sort_value", utils.truncateSortValue(value[2]));
+                rows.add(row);
+
+                if (rows.size() == BATCH_SIZE || v == values.size() - 1)
+                {
+                    DatabaseManager.insert(context, rows);
+                    int first = v - rows.size() + 1;
+                    for (int r = 0; r < rows.size(); r++)
+                    {
+                        ids[first + r] = rows.get(r).getIntColumn("id");
+                    }
+                    rows.clear();
+                    context.commit();
+                }
+            }
+
+            List<int[]> mappings = distinct[i].getMappings();
+            for (int m = 0; m < mappings.size(); m++)
+            {
+                TableRow row = DatabaseManager.row(mapTable);
+                row.setColumn("item_id", mappings.get(m)[0]);
+                row.setColumn("distinct_id", ids[mappings.get(m)[1]]);
+                rows.add(row);
+
+                if (rows.size() == BATCH_SIZE || m == mappings.size() - 1)
+                {
+                    DatabaseManager.insert(context, rows);
+                    rows.clear();
+                    context.commit();
+                }
+            }
+
+            // let the memory go
+            distinct[i] = null;
+        }
+    }
+
+    /**
+     * Create the indexes of the new tables, now that they are full.
+     */
+    private void createIndices()
+        throws SQLException, BrowseException
+    {
+        for (BrowseIndex bix : itemIndices)
+        {
+            for (String sql : dao.createDatabaseIndices(bix.getTableName() + SUFFIX, sortCols, false, true))
+            {
+                output.sql(sql);
+            }
+        }
+
+        for (int i = 0; i < bis.length; i++)
+        {
+            if (bis[i].isMetadataIndex())
+            {
+                for (String sql : dao.createMapIndices(bis[i].getDistinctTableName() + SUFFIX,
+                        bis[i].getMapTableName() + SUFFIX, true))
+                {
+                    output.sql(sql);
+                }
+            }
+        }
+        context.commit();
+    }
+
+    /**
+     * Drop the old tables, and rename the new ones in their place.
+     */
+    private void swapTables()
+        throws SQLException, BrowseException
+    {
+        // find out first which tables there are: the drops lock the tables,
+        // and the tests are made through other connections
+        Set<String> existing = new HashSet<String>();
+        for (String table : getTableNames())
+        {
+            if (dao.testTableExistence(table))
+            {
+                existing.add(table);
+            }
+        }
+
+        for (String table : getTableNames())
+        {
+            if (existing.contains(table))
+            {
+                output.sql(dao.dropIndexAndRelated(table, true));
+                output.sql(dao.dropSequence(table + "_seq", true));
+            }
+            output.sql(dao.renameTable(table + SUFFIX, table, true));
+        }
+
+        // replace the contents of the community mappings, keeping the table
+        String next = DatabaseManager.isOracle() ? COMMUNITY_MAP + "_seq.nextval"
+                : "getnextid('" + COMMUNITY_MAP + "')";
+        String[] statements = {
+                "DELETE FROM " + COMMUNITY_MAP,
+                "INSERT INTO " + COMMUNITY_MAP + " (id, community_id, item_id) SELECT " + next
+                        + ", community_id, item_id FROM " + COMMUNITY_MAP + SUFFIX
+        };
+        for (String sql : statements)
+        {
+            DatabaseManager.updateQuery(context, sql);
+            output.sql(sql);
+        }
+        output.sql(dao.dropIndexAndRelated(COMMUNITY_MAP + SUFFIX, true));
+        output.sql(dao.dropSequence(COMMUNITY_MAP + SUFFIX + "_seq", true));
+        context.commit();
+    }
+
+    /**
+     * Index the items changed since a given time again.
+     *
+     * @param since     the time
+     * @return          the number of items
+     */
+    private int reindexChanged(Timestamp since)
+        throws SQLException, BrowseException
+    {
+        List<Integer> changed = new ArrayList<Integer>();
+        TableRowIterator tri = DatabaseManager.query(context,
+                "SELECT item_id FROM item WHERE last_modified >= ?", since);
+        try
+        {
+            while (tri.hasNext())
+            {
+                changed.add(Integer.valueOf(tri.next().getIntColumn("item_id")));
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+
+        for (Integer id : changed)
+        {
+            Item item = Item.find(context, id.intValue());
+            if (item != null)
+            {
+                indexer.indexItem(item);
+            }
+            context.commit();
+            context.clearCache();
+        }
+
+        return changed.size();
+    }
+
+    /**
+     * @return  the names of the tables to rebuild
+     */
+    private List<String> getTableNames()
+    {
+        List<String> tables = new ArrayList<String>();
+        for (BrowseIndex bix : itemIndices)
+        {
+            tables.add(bix.getTableName());
+        }
+
+        for (int i = 0; i < bis.length; i++)
+        {
+            if (bis[i].isMetadataIndex())
+            {
+                tables.add(bis[i].getMapTableName());
+                tables.add(bis[i].getDistinctTableName());
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Works out the values of items, taking the next item to do from a
+     * counter shared with the other loaders, and writes the item tables.
+     */
+    private class Loader implements Callable<Object>
+    {
+        private final BrowseItem[] items;
+
+        private final AtomicInteger next;
+
+        Loader(BrowseItem[] items, AtomicInteger next)
+        {
+            this.items = items;
+            this.next = next;
+        }
+
+        public Object call() throws Exception
+        {
+            Context c = new Context();
+            try
+            {
+                c.turnOffAuthorisationSystem();
+                BrowseDAOUtils utils = BrowseDAOFactory.getUtils(c);
+                List<TableRow> rows = new ArrayList<TableRow>();
+
+                int i;
+                while ((i = next.getAndIncrement()) < items.length)
+                {
+                    // read the item through this thread's own connection
+                    BrowseItem item = new BrowseItem(c, items[i].getID(), items[i].isArchived(),
+                            items[i].isWithdrawn(), items[i].isDiscoverable());
+                    load(c, new IndexBrowse.ItemMetadataProxy(item.getID(), item), utils, rows);
+
+                    if (rows.size() >= BATCH_SIZE)
+                    {
+                        DatabaseManager.insert(c, rows);
+                        rows.clear();
+                        c.commit();
+                        c.clearCache();
+                    }
+
+                    if ((i + 1) % 1000 == 0)
+                    {
+                        output.message("Items indexed: " + (i + 1));
+                    }
+                }
+
+                DatabaseManager.insert(c, rows);
+                c.complete();
+                return null;
+            }
+            finally
+            {
+                if (c.isValid())
+                {
+                    c.abort();
+                }
+            }
+        }
+
+        /**
+         * Work out the values of an item, as IndexBrowse.indexItem does for
+         * a new item.
+         */
+        private void load(Context c, IndexBrowse.ItemMetadataProxy item,
+                BrowseDAOUtils utils, List<TableRow> rows)
+            throws SQLException, BrowseException
+        {
+            BrowseIndex bix = null;
+            if (item.isArchived() && item.isDiscoverable())
+            {
+                bix = BrowseIndex.getItemBrowseIndex();
+                for (Integer community : getCommunityIDs(c, item.getID()))
+                {
+                    TableRow row = DatabaseManager.row(COMMUNITY_MAP + SUFFIX);
+                    row.setColumn("community_id", community.intValue());
+                    row.setColumn("item_id", item.getID());
+                    rows.add(row);
+                }
+            }
+            else if (!item.isDiscoverable())
+            {
+                bix = BrowseIndex.getPrivateBrowseIndex();
+            }
+            else if (item.isWithdrawn())
+            {
+                bix = BrowseIndex.getWithdrawnBrowseIndex();
+            }
+
+            if (bix != null)
+            {
+                TableRow row = DatabaseManager.row(bix.getTableName() + SUFFIX);
+                row.setColumn("item_id", item.getID());
+                for (Map.Entry<Integer, String> sortCol : indexer.getSortValues(item, new HashMap<String, String>()).entrySet())
+                {
+                    row.setColumn("sort_" + sortCol.getKey().toString(), utils.truncateSortValue(sortCol.getValue()));
+                }
+                rows.add(row);
+            }
+
+            // only archived items which are not withdrawn are in the metadata indices
+            if (item.isArchived() && !item.isWithdrawn())
+            {
+                for (int i = 0; i < bis.length; i++)
+                {
+                    if (bis[i].isMetadataIndex())
+                    {
+                        Set<Integer> ordinals = new LinkedHashSet<Integer>();
+                        for (String[] value : indexer.getDistinctValues(item, bis[i]))
+                        {
+                            ordinals.add(Integer.valueOf(distinct[i].getOrdinal(value)));
+                        }
+                        distinct[i].map(item.getID(), ordinals);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Find the communities an item is in, as updateCommunityMappings
+         * does: those of its collections, and all their parents.
+         */
+        private Set<Integer> getCommunityIDs(Context c, int itemID)
+            throws SQLException
+        {
+            Set<Integer> communities = new LinkedHashSet<Integer>();
+            TableRowIterator tri = DatabaseManager.query(c,
+                    "SELECT community_id FROM community2item WHERE item_id = ?", itemID);
+            try
+            {
+                while (tri.hasNext())
+                {
+                    // the check stops a cycle causing an endless loop
+                    Integer community = Integer.valueOf(tri.next().getIntColumn("community_id"));
+                    while (community != null && communities.add(community))
+                    {
+                        community = parents.get(community);
+                    }
+                }
+            }
+            finally
+            {
+                tri.close();
+            }
+            return communities;
+        }
+    }
+
+    /**
+     * The distinct values of a metadata index, numbered in the order they
+     * are found, and the mappings of items to them by those numbers.  A value
+     * is told apart from the others as getDistinctID does: by its authority
+     * key, and by its text, regardless of case if so configured.
+     */
+    private static class DistinctValues
+    {
+        private final boolean caseInsensitive;
+
+        private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+
+        private final List<String[]> values = new ArrayList<String[]>();
+
+        private final List<int[]> mappings = new ArrayList<int[]>();
+
+        DistinctValues(boolean caseInsensitive)
+        {
+            this.caseInsensitive = caseInsensitive;
+        }
+
+        /**
+         * @param value     the value, authority and sort value
+         * @return          the number of the value
+         */
+        synchronized int getOrdinal(String[] value)
+        {
+            String key = (value[1] == null ? "-" : "+" + value[1]) + '\u0000'
+                    + (caseInsensitive ? value[0].toUpperCase() : value[0]);
+            Integer ordinal = ordinals.get(key);
+            if (ordinal == null)
+            {
+                ordinal = Integer.valueOf(values.size());
+                values.add(value);
+                ordinals.put(key, ordinal);
+            }
+            return ordinal.intValue();
+        }
+
+        /**
+         * @param itemID    the item
+         * @param ordinals  the numbers of its values
+         */
+        synchronized void map(int itemID, Set<Integer> ordinals)
+        {
+            for (Integer ordinal : ordinals)
+            {
+                mappings.add(new int[] { itemID, ordinal.intValue() });
+            }
+        }
+
+        synchronized List<String[]> getValues()
+        {
+            return values;
+        }
+
+        synchronized List<int[]> getMappings()
+        {
+            return mappings;
+        }
+    }
+}
@@ -78,6 +78,9 @@ public class BrowserScope
     /** the number of items to offset into the result ie. 0 = 1st record */
     private int offset = 0;
 
+    /** the token for continuing the browse where the last page ended */
+    private String continuation = null;
+
     private String authority = null;
 
     /**
@@ -393,6 +396,35 @@ public class BrowserScope
         this.offset = offset;
     }
 
+    /**
+     * @return the token for continuing the browse, as given by
+     *          BrowseInfo.getNextContinuation()
+     */
+    public String getContinuation()
+    {
+        return continuation;
+    }
+
+    /**
+     * Continue the browse where the previous page ended.  This takes the place
+     * of the offset, and is much cheaper on the later pages of a large browse.
+     * A token which does not match the sort order of the browse is ignored.
+     *
+     * @param continuation  the token, as given by BrowseInfo.getNextContinuation()
+     */
+    public void setContinuation(String continuation)
+    {
+        this.continuation = continuation;
+    }
+
+    /**
+     * @return true if there is a token for continuing the browse
+     */
+    public boolean hasContinuation()
+    {
+        return continuation != null && !"".equals(continuation);
+    }
+
     /**
      * Obtain the sort option
      *
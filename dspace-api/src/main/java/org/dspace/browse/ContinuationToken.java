@@ -0,0 +1,164 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.browse;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Where the next page of an item browse starts: the sort value and item id of
+ * the last row of the previous page, so the browse tables can be read from
+ * there on rather than counted through with an offset, and the offset itself
+ * for reporting the position in the results.
+ * <p>
+ * The token also names the order field and direction it was made for, and is
+ * ignored by a browse which is not sorted the same way. To the user interface
+ * it is an opaque string, safe for use in URLs.
+ *
+ * @version $Revision$
+ */
+final class ContinuationToken
+{
+    private static final String SEPARATOR = "|";
+
+    private final int offset;
+
+    private final int itemID;
+
+    private final String value;
+
+    ContinuationToken(int offset, int itemID, String value)
+    {
+        this.offset = offset;
+        this.itemID = itemID;
+        this.value = value;
+    }
+
+    /**
+     * @return the offset of the first row of the page
+     */
+    int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return the item id of the last row before the page
+     */
+    int getItemID()
+    {
+        return itemID;
+    }
+
+    /**
+     * @return the sort value of the last row before the page, may be null
+     */
+    String getValue()
+    {
+        return value;
+    }
+
+    /**
+     * Encode the token for a browse.
+     *
+     * @param orderField    the order field of the browse
+     * @param ascending     the direction of the browse
+     * @return  the token as a string
+     */
+    String encode(String orderField, boolean ascending)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(orderField).append(SEPARATOR);
+        sb.append(ascending ? "a" : "d").append(SEPARATOR);
+        sb.append(offset).append(SEPARATOR);
+        sb.append(itemID).append(SEPARATOR);
+        if (value != null)
+        {
+            // distinguishes an empty value from no value
+            sb.append("=").append(value);
+        }
+
+        try
+        {
+            String encoded = new String(Base64.encodeBase64(sb.toString().getBytes("UTF-8")), "US-ASCII");
+            return encoded.replace('+', '-').replace('/', '_').replace("=", "");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // Should never happen
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode a token for a browse.
+     *
+     * @param token         the token as a string
+     * @param orderField    the order field of the browse
+     * @param ascending     the direction of the browse
+     * @return  the token, or null if it is malformed or was made for a browse
+     *          sorted another way
+     */
+    static ContinuationToken decode(String token, String orderField, boolean ascending)
+    {
+        if (token == null || "".equals(token))
+        {
+            return null;
+        }
+
+        String decoded;
+        try
+        {
+            StringBuilder sb = new StringBuilder(token.replace('-', '+').replace('_', '/'));
+            while (sb.length() % 4 != 0)
+            {
+                sb.append('=');
+            }
+            decoded = new String(Base64.decodeBase64(sb.toString().getBytes("US-ASCII")), "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // Should never happen
+            throw new IllegalStateException(e);
+        }
+
+        String[] parts = decoded.split("\\" + SEPARATOR, 5);
+        if (parts.length != 5 || !parts[0].equals(orderField)
+                || !parts[1].equals(ascending ? "a" : "d"))
+        {
+            return null;
+        }
+
+        try
+        {
+            int offset = Integer.parseInt(parts[2]);
+            int itemID = Integer.parseInt(parts[3]);
+            if (offset < 0 || itemID < 0)
+            {
+                return null;
+            }
+
+            String value = null;
+            if (parts[4].startsWith("="))
+            {
+                value = parts[4].substring(1);
+            }
+            else if (!"".equals(parts[4]))
+            {
+                return null;
+            }
+
+            return new ContinuationToken(offset, itemID, value);
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+}
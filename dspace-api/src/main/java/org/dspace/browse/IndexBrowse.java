@@ -56,6 +56,9 @@ public class IndexBrowse
 	/** whether to destroy and rebuild the database */
 	private boolean rebuild = false;
 	
+	/** whether to rebuild the database in bulk, alongside the old tables */
+	private boolean bulk = false;
+	
 	/** whether to destroy the database */
 	private boolean delete = false;
 	
@@ -170,6 +173,23 @@ public class IndexBrowse
     	this.rebuild = bool;
     }
     
+	/**
+	 * @return	true if to rebuild the database in bulk, false if not
+	 */
+    public boolean isBulk()
+    {
+    	return bulk;
+    }
+    
+	/**
+	 * @param bool		whether to rebuild the database in bulk, building new
+	 * 					tables alongside the old ones and then replacing them
+	 */
+    public void setBulk(boolean bool)
+    {
+    	this.bulk = bool;
+    }
+    
     /**
      * @return		true if to delete the database, false if not
      */
@@ -405,81 +425,9 @@ public class IndexBrowse
                     // now index the new details - but only if it's archived and not withdrawn
                     if (item.isArchived() && !item.isWithdrawn())
                     {
-                        // get the metadata from the item
-                        for (int mdIdx = 0; mdIdx < bis[i].getMetadataCount(); mdIdx++)
+                        for (String[] dv : getDistinctValues(item, bis[i]))
                         {
-                            String[] md = bis[i].getMdBits(mdIdx);
-                            DCValue[] values = item.getMetadata(md[0], md[1], md[2], Item.ANY);
-
-                            // if we have values to index on, then do so
-                            if (values != null && values.length > 0)
-                            {
-                                int minConfidence = MetadataAuthorityManager.getManager()
-                                        .getMinConfidence(values[0].schema, values[0].element, values[0].qualifier);
-
-                                for (DCValue value : values)
-                                {
-                                    // Ensure that there is a value to index before inserting it
-                                    if (StringUtils.isEmpty(value.value))
-                                    {
-                                        log.error("Null metadata value for item " + item.getID() + ", field: " +
-                                                value.schema + "." +
-                                                value.element +
-                                                (value.qualifier == null ? "" : "." + value.qualifier));
-                                    }
-                                    else
-                                    {
-                                        if (bis[i].isAuthorityIndex() &&
-                                                (value.authority == null || value.confidence < minConfidence))
-                                        {
-                                            // skip to next value in this authority field if value is not authoritative
-                                            log.debug("Skipping non-authoritative value: " + item.getID() + ", field=" + value.schema + "." + value.element + "." + value.qualifier + ", value=" + value.value + ", authority=" + value.authority + ", confidence=" + value.confidence + " (BAD AUTHORITY)");
-                                            continue;
-
-                                        }
-
-                                        // is there any valid (with appropriate confidence) authority key?
-                                        if (value.authority != null
-                                                && value.confidence >= minConfidence)
-                                        {
-                                            boolean isValueInVariants = false;
-
-                                            // Are there variants of this value
-                                            List<String> variants = ChoiceAuthorityManager.getManager()
-                                                    .getVariants(value.schema, value.element, value.qualifier,
-                                                            value.authority, value.language);
-
-                                            // If we have variants, index them
-                                            if (variants != null)
-                                            {
-                                                for (String var : variants)
-                                                {
-                                                    String nVal = OrderFormat.makeSortString(var, value.language, bis[i].getDataType());
-                                                    distIDSet.add(dao.getDistinctID(bis[i].getDistinctTableName(), var, value.authority, nVal));
-                                                    if (var.equals(value.value))
-                                                    {
-                                                        isValueInVariants = true;
-                                                    }
-                                                }
-                                            }
-
-                                            // If we didn't index the value as one of the variants, add it now
-                                            if (!isValueInVariants)
-                                            {
-                                                // get the normalised version of the value
-                                                String nVal = OrderFormat.makeSortString(value.value, value.language, bis[i].getDataType());
-                                                distIDSet.add(dao.getDistinctID(bis[i].getDistinctTableName(), value.value, value.authority, nVal));
-                                            }
-                                        }
-                                        else // put it in the browse index as if it hasn't have an authority key
-                                        {
-                                            // get the normalised version of the value
-                                            String nVal = OrderFormat.makeSortString(value.value, value.language, bis[i].getDataType());
-                                            distIDSet.add(dao.getDistinctID(bis[i].getDistinctTableName(), value.value, null, nVal));
-                                        }
-                                    }
-                                }
-                            }
+                            distIDSet.add(dao.getDistinctID(bis[i].getDistinctTableName(), dv[0], dv[1], dv[2]));
                         }
                     }
 
@@ -515,6 +463,101 @@ public class IndexBrowse
         }
     }
 
+    /**
+     * Get the values of an item for a metadata index, as the value, authority
+     * key (may be null) and sort value of each record of the distinct table
+     * it is to be mapped to
+     *
+     * @param item  the item
+     * @param bi    the metadata index
+     * @return      the values
+     * @throws SQLException
+     */
+    List<String[]> getDistinctValues(ItemMetadataProxy item, BrowseIndex bi)
+        throws SQLException
+    {
+        List<String[]> distinctValues = new ArrayList<String[]>();
+
+        // get the metadata from the item
+        for (int mdIdx = 0; mdIdx < bi.getMetadataCount(); mdIdx++)
+        {
+            String[] md = bi.getMdBits(mdIdx);
+            DCValue[] values = item.getMetadata(md[0], md[1], md[2], Item.ANY);
+
+            // if we have values to index on, then do so
+            if (values != null && values.length > 0)
+            {
+                int minConfidence = MetadataAuthorityManager.getManager()
+                        .getMinConfidence(values[0].schema, values[0].element, values[0].qualifier);
+
+                for (DCValue value : values)
+                {
+                    // Ensure that there is a value to index before inserting it
+                    if (StringUtils.isEmpty(value.value))
+                    {
+                        log.error("Null metadata value for item " + item.getID() + ", field: " +
+                                value.schema + "." +
+                                value.element +
+                                (value.qualifier == null ? "" : "." + value.qualifier));
+                    }
+                    else
+                    {
+                        if (bi.isAuthorityIndex() &&
+                                (value.authority == null || value.confidence < minConfidence))
+                        {
+                            // skip to next value in this authority field if value is not authoritative
+                            log.debug("Skipping non-authoritative value: " + item.getID() + ", field=" + value.schema + "." + value.element + "." + value.qualifier + ", value=" + value.value + ", authority=" + value.authority + ", confidence=" + value.confidence + " (BAD AUTHORITY)");
+                            continue;
+
+                        }
+
+                        // is there any valid (with appropriate confidence) authority key?
+                        if (value.authority != null
+                                && value.confidence >= minConfidence)
+                        {
+                            boolean isValueInVariants = false;
+
+                            // Are there variants of this value
+                            List<String> variants = ChoiceAuthorityManager.getManager()
+                                    .getVariants(value.schema, value.element, value.qualifier,
+                                            value.authority, value.language);
+
+                            // If we have variants, index them
+                            if (variants != null)
+                            {
+                                for (String var : variants)
+                                {
+                                    String nVal = OrderFormat.makeSortString(var, value.language, bi.getDataType());
+                                    distinctValues.add(new String[] { var, value.authority, nVal });
+                                    if (var.equals(value.value))
+                                    {
+                                        isValueInVariants = true;
+                                    }
+                                }
+                            }
+
+                            // If we didn't index the value as one of the variants, add it now
+                            if (!isValueInVariants)
+                            {
+                                // get the normalised version of the value
+                                String nVal = OrderFormat.makeSortString(value.value, value.language, bi.getDataType());
+                                distinctValues.add(new String[] { value.value, value.authority, nVal });
+                            }
+                        }
+                        else // put it in the browse index as if it hasn't have an authority key
+                        {
+                            // get the normalised version of the value
+                            String nVal = OrderFormat.makeSortString(value.value, value.language, bi.getDataType());
+                            distinctValues.add(new String[] { value.value, null, nVal });
+                        }
+                    }
+                }
+            }
+        }
+
+        return distinctValues;
+    }
+
     /**
      * Get the normalised values for each of the sort columns
      * @param item
@@ -523,7 +566,7 @@ public class IndexBrowse
      * @throws BrowseException
      * @throws SQLException
      */
-    private Map<Integer, String> getSortValues(ItemMetadataProxy item, Map itemMDMap)
+    Map<Integer, String> getSortValues(ItemMetadataProxy item, Map itemMDMap)
             throws BrowseException, SQLException
     {
         try
@@ -619,6 +662,8 @@ public class IndexBrowse
         dao.deleteByItemID(BrowseIndex.getPrivateBrowseIndex().getTableName(), itemID);
         dao.deleteCommunityMappings(itemID);
 
+        BrowseCountCache.invalidate();
+
         return true;
 	}
 
@@ -649,6 +694,7 @@ public class IndexBrowse
 
             // these options can be specified only with the -f option
             options.addOption("r", "rebuild", false, "should we rebuild all the indices, which removes old index tables and creates new ones.  For use with -f. Mutually exclusive with -d");
+            options.addOption("b", "bulk", false, "rebuild the indices into new tables using several threads, and replace the old ones only when done, so browsing carries on meanwhile.  For use with -f -r");
             options.addOption("d", "delete", false, "delete all the indices, but don't create new ones.  For use with -f. This is mutually exclusive with -r");
 
             // these options can be specified only with the -t and -f options
@@ -688,6 +734,7 @@ public class IndexBrowse
                 if (line.hasOption('r'))
                 {
                     indexer.setRebuild(true);
+                    indexer.setBulk(line.hasOption("b"));
                 }
                 else if (line.hasOption("d"))
                 {
@@ -1069,6 +1116,20 @@ public class IndexBrowse
 	    	output.message("Browse tables deleted");
 	    	return;
 	    }
+	    else if (rebuild() && isBulk())
+	    {
+	    	output.message("Rebuilding browse tables in bulk");
+	    	
+	    	int count = new BrowseRebuild(this, context, dao, bis, output).rebuild();
+	    	
+	    	context.complete();
+	    	
+	    	long end = new Date().getTime() - localStart.getTime();
+	    	output.message("content indexed (" + Long.toString(end) + " ms)");
+	    	output.message("Items indexed: " + Integer.toString(count));
+	    	output.message("Browse indexing completed");
+	    	return;
+	    }
 	    else if (rebuild())
 	    {
 	    	output.message("Preparing browse tables");
@@ -1195,10 +1256,10 @@ public class IndexBrowse
 		return field;
 	}
 	
-	// private inner class
+	// inner class
 	//	 Hides the Item / BrowseItem in such a way that we can remove
 	//	 the duplication in indexing an item.
-	private static class ItemMetadataProxy
+	static class ItemMetadataProxy
 	{
 	    private Item item;
 	    private BrowseItem browseItem;
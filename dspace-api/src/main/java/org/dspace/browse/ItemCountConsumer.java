@@ -0,0 +1,147 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.browse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.Item;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+
+/**
+ * Consumer which keeps the cached item counts of communities and collections
+ * (see ItemCounter) up to date.  The collections whose items change, as items
+ * are installed, withdrawn, reinstated, moved, mapped, unmapped and deleted,
+ * are counted again; so are the communities containing them, or whose
+ * sub-communities and collections change, from the counts of those.
+ *
+ * Recommended filter:  Community|Collection|Item+Install|Modify|Add|Remove
+ *
+ * @version $Revision$
+ */
+public class ItemCountConsumer implements Consumer
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(ItemCountConsumer.class);
+
+    /** ids of the collections to count again */
+    private Set<Integer> collections = null;
+
+    /** ids of the communities to count again */
+    private Set<Integer> communities = null;
+
+    public void initialize() throws Exception
+    {
+    }
+
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        if (collections == null)
+        {
+            collections = new HashSet<Integer>();
+            communities = new HashSet<Integer>();
+        }
+
+        int st = event.getSubjectType();
+        int et = event.getEventType();
+
+        switch (st)
+        {
+            // installed, withdrawn or reinstated: the collections it is in
+            case Constants.ITEM:
+                if (et == Event.INSTALL || (et == Event.MODIFY
+                        && ("WITHDRAW".equals(event.getDetail()) || "REINSTATE".equals(event.getDetail()))))
+                {
+                    Item item = (Item) event.getSubject(ctx);
+                    if (item != null)
+                    {
+                        for (Collection collection : item.getCollections())
+                        {
+                            collections.add(Integer.valueOf(collection.getID()));
+                        }
+                    }
+                }
+                break;
+
+            // mapped, unmapped, moved or deleted: the collection itself
+            case Constants.COLLECTION:
+                if ((et == Event.ADD || et == Event.REMOVE) && event.getObjectType() == Constants.ITEM)
+                {
+                    collections.add(Integer.valueOf(event.getSubjectID()));
+                }
+                break;
+
+            // sub-community or collection added or removed
+            case Constants.COMMUNITY:
+                if (et == Event.ADD || et == Event.REMOVE)
+                {
+                    communities.add(Integer.valueOf(event.getSubjectID()));
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    public void end(Context ctx) throws Exception
+    {
+        if (collections != null && (!collections.isEmpty() || !communities.isEmpty()))
+        {
+            try
+            {
+                ItemCounter counter = new ItemCounter(ctx);
+
+                List<Collection> cols = new ArrayList<Collection>();
+                for (Integer id : collections)
+                {
+                    Collection collection = Collection.find(ctx, id.intValue());
+                    if (collection != null)
+                    {
+                        cols.add(collection);
+                    }
+                }
+                counter.update(cols.toArray(new Collection[cols.size()]));
+
+                List<Community> comms = new ArrayList<Community>();
+                for (Integer id : communities)
+                {
+                    Community community = Community.find(ctx, id.intValue());
+                    if (community != null)
+                    {
+                        comms.add(community);
+                    }
+                }
+                counter.updateCommunities(comms.toArray(new Community[comms.size()]));
+
+                // the counts were written to the DB, so we have to commit.
+                ctx.getDBConnection().commit();
+            }
+            catch (ItemCountException e)
+            {
+                log.error("caught exception: ", e);
+            }
+        }
+
+        // Reset
+        collections = null;
+        communities = null;
+    }
+
+    public void finish(Context ctx) throws Exception
+    {
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.browse;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.DSpaceObject;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * In-memory copy of the cached item counts of all communities and
+ * collections, read with one query for each table, so that a page showing
+ * the counts of many containers (e.g. the community list) does not query
+ * each of them.
+ * <p>
+ * The snapshot is dropped whenever this JVM updates the counts (see
+ * ItemCountConsumer), and is read again after
+ * <code>webui.strengths.snapshot.ttl</code> seconds to catch updates made by
+ * other processes.
+ *
+ * @version $Revision$
+ */
+final class ItemCountSnapshot
+{
+    /** How long a snapshot is used for, in milliseconds */
+    private static final long TTL = ConfigurationManager.getLongProperty("webui.strengths.snapshot.ttl", 300) * 1000L;
+
+    /** The current snapshot, null if there is none */
+    private static volatile ItemCountSnapshot current = null;
+
+    /** Count by collection id */
+    private final Map<Integer, Integer> collections = new HashMap<Integer, Integer>();
+
+    /** Count by community id */
+    private final Map<Integer, Integer> communities = new HashMap<Integer, Integer>();
+
+    /** When the snapshot was read */
+    private final long read = System.currentTimeMillis();
+
+    private ItemCountSnapshot(Context context) throws SQLException
+    {
+        load(context, "SELECT collection_id AS id, count FROM collection_item_count", collections);
+        load(context, "SELECT community_id AS id, count FROM community_item_count", communities);
+    }
+
+    /**
+     * Get the current snapshot, reading a new one if it has expired.
+     *
+     * @param context   DSpace context
+     * @return  the snapshot
+     * @throws SQLException
+     */
+    static ItemCountSnapshot get(Context context) throws SQLException
+    {
+        ItemCountSnapshot snapshot = current;
+        if (snapshot == null || System.currentTimeMillis() - snapshot.read > TTL)
+        {
+            snapshot = new ItemCountSnapshot(context);
+            current = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drop the current snapshot, after the counts have changed.
+     */
+    static void invalidate()
+    {
+        current = null;
+    }
+
+    /**
+     * Get the count of the items in a container.
+     *
+     * @param dso   a community or collection
+     * @return  the count, 0 if none has been cached
+     * @throws ItemCountException
+     */
+    int getCount(DSpaceObject dso) throws ItemCountException
+    {
+        Integer count;
+        if (dso instanceof Collection)
+        {
+            count = collections.get(Integer.valueOf(dso.getID()));
+        }
+        else if (dso instanceof Community)
+        {
+            count = communities.get(Integer.valueOf(dso.getID()));
+        }
+        else
+        {
+            throw new ItemCountException("We can only count items in Communities or Collections");
+        }
+        return count == null ? 0 : count.intValue();
+    }
+
+    private static void load(Context context, String query, Map<Integer, Integer> counts)
+        throws SQLException
+    {
+        TableRowIterator tri = null;
+        try
+        {
+            tri = DatabaseManager.query(context, query);
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+                counts.put(Integer.valueOf(row.getIntColumn("id")), Integer.valueOf(row.getIntColumn("count")));
+            }
+        }
+        finally
+        {
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+    }
+}
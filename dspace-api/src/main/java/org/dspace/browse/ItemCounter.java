@@ -13,8 +13,13 @@ import org.dspace.content.Collection;
 import org.dspace.core.Context;
 import org.dspace.content.DSpaceObject;
 import org.dspace.core.ConfigurationManager;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
 
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * This class provides a standard interface to all item counting
@@ -28,6 +33,11 @@ import java.sql.SQLException;
  * the data cache is not being used, this class will return direct
  * real time counts of content.
  * 
+ * With an RDBMS DAO, the cached counts can also be kept up to date as
+ * items are installed, withdrawn, reinstated, moved, mapped and deleted,
+ * by the ItemCountConsumer; running this class then repairs any counts
+ * which have gone astray.
+ * 
  * @author Richard Jones
  *
  */
@@ -77,17 +87,82 @@ public class ItemCounter
 	 * over all of the communities and collections in the system and 
 	 * obtaining and caching the item counts for each one.
 	 * 
+	 * The items in all the collections are counted by a single query, so
+	 * the counts are consistent with each other, and the count of each
+	 * community is the sum of those of its collections and
+	 * sub-communities, as Community.countItems() would count it.
+	 * 
 	 * @throws ItemCountException
 	 */
 	public void buildItemCounts()
 		throws ItemCountException
 	{
+		TableRowIterator tri = null;
 		try
 		{
+			Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+			tri = DatabaseManager.query(context,
+					"SELECT collection2item.collection_id, COUNT(*) AS num FROM collection2item, item " +
+					"WHERE collection2item.item_id = item.item_id " +
+					"AND item.in_archive = '1' AND item.withdrawn = '0' " +
+					"GROUP BY collection2item.collection_id");
+			while (tri.hasNext())
+			{
+				TableRow row = tri.next();
+				counts.put(Integer.valueOf(row.getIntColumn("collection_id")), Integer.valueOf((int) row.getLongColumn("num")));
+			}
+			
 			Community[] tlc = Community.findAllTop(context);
 			for (int i = 0; i < tlc.length; i++)
 			{
-				count(tlc[i]);
+				count(tlc[i], counts);
+			}
+			
+			// and forget the counts of deleted containers
+			DatabaseManager.updateQuery(context,
+					"DELETE FROM collection_item_count WHERE collection_id NOT IN (SELECT collection_id FROM collection)");
+			DatabaseManager.updateQuery(context,
+					"DELETE FROM community_item_count WHERE community_id NOT IN (SELECT community_id FROM community)");
+			
+			ItemCountSnapshot.invalidate();
+		}
+		catch (SQLException e)
+		{
+			log.error("caught exception: ", e);
+			throw new ItemCountException(e);
+		}
+		finally
+		{
+			if (tri != null)
+			{
+				tri.close();
+			}
+		}
+	}
+	
+	/**
+	 * Count the items in the given collections again, and work out the
+	 * counts of the communities containing them again (see
+	 * updateCommunities).  Only cached counts are updated, so this does
+	 * nothing with a DAO which does not cache.
+	 * 
+	 * @param collections
+	 * @throws ItemCountException
+	 */
+	public void update(Collection[] collections)
+		throws ItemCountException
+	{
+		if (!isCaching())
+		{
+			return;
+		}
+		
+		try
+		{
+			for (int i = 0; i < collections.length; i++)
+			{
+				dao.collectionCount(collections[i], collections[i].countItems());
+				updateCommunities(collections[i].getCommunities());
 			}
 		}
 		catch (SQLException e)
@@ -97,6 +172,63 @@ public class ItemCounter
 		}
 	}
 	
+	/**
+	 * Work out the counts of the given communities, and of all the
+	 * communities containing them, again from the cached counts of their
+	 * collections and sub-communities.  Only cached counts are updated,
+	 * so this does nothing with a DAO which does not cache.
+	 * 
+	 * @param communities
+	 * @throws ItemCountException
+	 */
+	public void updateCommunities(Community[] communities)
+		throws ItemCountException
+	{
+		if (!isCaching())
+		{
+			return;
+		}
+		
+		try
+		{
+			for (int i = 0; i < communities.length; i++)
+			{
+				// from the bottom up, so each count is of up to date counts
+				for (Community community = communities[i]; community != null;
+						community = community.getParentCommunity())
+				{
+					int count = 0;
+					Collection[] cols = community.getCollections();
+					for (int j = 0; j < cols.length; j++)
+					{
+						count += dao.getCount(cols[j]);
+					}
+					Community[] scs = community.getSubcommunities();
+					for (int j = 0; j < scs.length; j++)
+					{
+						count += dao.getCount(scs[j]);
+					}
+					dao.communityCount(community, count);
+				}
+			}
+			
+			ItemCountSnapshot.invalidate();
+		}
+		catch (SQLException e)
+		{
+			log.error("caught exception: ", e);
+			throw new ItemCountException(e);
+		}
+	}
+	
+	/**
+	 * @return	true if the DAO caches counts
+	 */
+	private boolean isCaching()
+	{
+		return !(dao instanceof ItemCountDAOSolr);
+	}
+	
 	/**
 	 * Get the count of the items in the given container.  If the configuration
 	 * value webui.strengths.cache is equal to 'true' this will return the
@@ -115,7 +247,20 @@ public class ItemCounter
 		
 		if (useCache)
 		{
-			return dao.getCount(dso);
+			if (!isCaching())
+			{
+				return dao.getCount(dso);
+			}
+			
+			try
+			{
+				return ItemCountSnapshot.get(context).getCount(dso);
+			}
+			catch (SQLException e)
+			{
+				log.error("caught exception: ", e);
+				throw new ItemCountException(e);
+			}
 		}
 		
 		// if we make it this far, we need to manually count
@@ -164,30 +309,34 @@ public class ItemCounter
 	 * necessary just to call this method on each top level community
 	 * 
 	 * @param community
+	 * @param counts	the number of items in each collection, by id
+	 * @return			the number of items in the community
 	 * @throws ItemCountException
 	 */
-	private void count(Community community)
+	private int count(Community community, Map<Integer, Integer> counts)
 		throws ItemCountException
 	{
 		try
 		{
-			// first count the community we are in
-			int count = community.countItems();
-			dao.communityCount(community, count);
+			int count = 0;
 			
-			// now get the sub-communities
+			// first get the sub-communities
 			Community[] scs = community.getSubcommunities();
 			for (int i = 0; i < scs.length; i++)
 			{
-				count(scs[i]);
+				count += count(scs[i], counts);
 			}
 			
 			// now get the collections
 			Collection[] cols = community.getCollections();
 			for (int i = 0; i < cols.length; i++)
 			{
-				count(cols[i]);
+				count += count(cols[i], counts);
 			}
+			
+			// then the community we are in
+			dao.communityCount(community, count);
+			return count;
 		}
 		catch (SQLException e)
 		{
@@ -197,23 +346,19 @@ public class ItemCounter
 	}
 	
 	/**
-	 * count and cache the number of items in the given collection
+	 * cache the number of items in the given collection
 	 * 
 	 * @param collection
+	 * @param counts	the number of items in each collection, by id
+	 * @return			the number of items in the collection
 	 * @throws ItemCountException
 	 */
-	private void count(Collection collection)
+	private int count(Collection collection, Map<Integer, Integer> counts)
 		throws ItemCountException
 	{
-		try
-		{
-			int ccount = collection.countItems();
-			dao.collectionCount(collection, ccount);
-		}
-		catch (SQLException e)
-		{
-			log.error("caught exception: ", e);
-			throw new ItemCountException(e);
-		}
+		Integer ccount = counts.get(Integer.valueOf(collection.getID()));
+		int count = ccount == null ? 0 : ccount.intValue();
+		dao.collectionCount(collection, count);
+		return count;
 	}
 }
@@ -414,6 +414,13 @@ public class SolrBrowseCreateDAO implements BrowseCreateDAO,
         return dbCreateDAO.dropSequence(sequence, execute);
     }
 
+    @Override
+    public String renameTable(String table, String newName, boolean execute)
+            throws BrowseException
+    {
+        return INFO_NOSQL_TO_RUN;
+    }
+
     @Override
     public String dropView(String view, boolean execute) throws BrowseException
     {
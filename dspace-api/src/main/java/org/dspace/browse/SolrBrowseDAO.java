@@ -646,6 +646,31 @@ public class SolrBrowseDAO implements BrowseDAO
 
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.dspace.browse.BrowseDAO#setKeyset(java.lang.String, int)
+     */
+    public void setKeyset(String value, int itemID)
+    {
+        // Solr pages by offset only, which is always set as well
+    }
+
+    public String getKeysetValue()
+    {
+        return null;
+    }
+
+    public int getKeysetItemID()
+    {
+        return -1;
+    }
+
+    public String getLastOrderValue()
+    {
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -7,6 +7,7 @@
  */
 package org.dspace.checker;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
@@ -66,4 +67,38 @@ public class BitstreamDAO
 
         return is;
     }
+
+    /**
+     * Retrieves the file holding the bitstream, if it is kept in a local
+     * assetstore.
+     * 
+     * @param id
+     *            the bitstream id.
+     * 
+     * @return the file, or null if it is not a local file
+     * 
+     * @throws IOException
+     *             Rethrown from BitstreamStorageManager
+     * @throws SQLException
+     *             Rethrown from BitstreamStorageManager
+     * 
+     * @see org.dspace.storage.bitstore.BitstreamStorageManager#retrieveFile(Context,
+     *      int)
+     */
+    public File getBitstreamFile(int id) throws IOException, SQLException
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+            return BitstreamStorageManager.retrieveFile(context, id);
+        }
+        finally
+        {
+            if (context != null)
+            {
+                context.abort();
+            }
+        }
+    }
 }
@@ -7,15 +7,25 @@
  */
 package org.dspace.checker;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.DigestInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
+import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Utils;
 
 /**
@@ -25,6 +35,17 @@ import org.dspace.core.Utils;
  * against the last calculated checksum for that bitstream.
  * </p>
  * 
+ * <p>
+ * Bitstreams may be checked by several threads at once
+ * (<code>checker.threads</code>), which is worthwhile when the assetstore
+ * can serve several reads in parallel. Files in a local assetstore are read
+ * through a <code>FileChannel</code> into a direct buffer of
+ * <code>checker.buffer-size</code> bytes. The reads of all threads together
+ * can be limited to <code>checker.throttle.bytes-per-second</code> and
+ * <code>checker.throttle.reads-per-second</code>, so that checking does not
+ * starve other users of the storage.
+ * </p>
+ * 
  * @author Jim Downing
  * @author Grace Carpenter
  * @author Nathan Sarr
@@ -41,8 +62,30 @@ public final class CheckerCommand
     /** Default digest algorithm (MD5). */
     private static final String DEFAULT_DIGEST_ALGORITHM = "MD5";
 
-    /** 4 Meg byte array for reading file. */
-    private int BYTE_ARRAY_SIZE = 4 * 1024;
+    /** Default size of the buffer for reading a file: 256K. */
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /** Size of the buffer for reading a file. */
+    private final int bufferSize;
+
+    /** Read buffer of each checking thread. */
+    private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+    };
+
+    /** Number of bitstreams checked at once. */
+    private int threads = 1;
+
+    /** Limit on the bytes read per second, or null. */
+    private final Throttle bandwidth;
+
+    /** Limit on the reads per second, or null. */
+    private final Throttle reads;
 
     /** BitstreamInfoDAO dependency. */
     private BitstreamInfoDAO bitstreamInfoDAO = null;
@@ -71,6 +114,12 @@ public final class CheckerCommand
     /** Report all processing */
     private boolean reportVerbose = false;
 
+    /** Number of checks to collect before writing them to the history table. */
+    private static final int HISTORY_BATCH_SIZE = 100;
+
+    /** Checks not yet written to the history table. */
+    private List<BitstreamInfo> pendingHistory = new ArrayList<BitstreamInfo>();
+
     /**
      * Default constructor uses DSpace plugin manager to construct dependencies.
      */
@@ -79,6 +128,11 @@ public final class CheckerCommand
         bitstreamInfoDAO = new BitstreamInfoDAO();
         bitstreamDAO = new BitstreamDAO();
         checksumHistoryDAO = new ChecksumHistoryDAO();
+
+        bufferSize = Math.max(4096, ConfigurationManager.getIntProperty("checker.buffer-size", DEFAULT_BUFFER_SIZE));
+        threads = Math.max(1, ConfigurationManager.getIntProperty("checker.threads", 1));
+        bandwidth = Throttle.forRate(ConfigurationManager.getLongProperty("checker.throttle.bytes-per-second", 0));
+        reads = Throttle.forRate(ConfigurationManager.getLongProperty("checker.throttle.reads-per-second", 0));
     }
 
     /**
@@ -111,7 +165,30 @@ public final class CheckerCommand
         // bitstream table - this always done.
         bitstreamInfoDAO.updateMissingBitstreams();
 
-        int id = dispatcher.next();
+        try
+        {
+            if (threads == 1)
+            {
+                checkAll();
+            }
+            else
+            {
+                checkAllInParallel();
+            }
+        }
+        finally
+        {
+            flushHistory();
+        }
+    }
+
+    /**
+     * Check the bitstreams given by the dispatcher, until it has no more.
+     * Called by each checking thread.
+     */
+    private void checkAll()
+    {
+        int id = nextBitstream();
 
         while (id != BitstreamDispatcher.SENTINEL)
         {
@@ -121,10 +198,103 @@ public final class CheckerCommand
             if (reportVerbose
                     || !ChecksumCheckResults.CHECKSUM_MATCH.equals(info.getChecksumCheckResult()))
             {
-                collector.collect(info);
+                synchronized (collector)
+                {
+                    collector.collect(info);
+                }
             }
 
-            id = dispatcher.next();
+            id = nextBitstream();
+        }
+    }
+
+    /**
+     * Check the bitstreams with several threads, and wait for all of them.
+     */
+    private void checkAllInParallel()
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> workers = new ArrayList<Future<?>>(threads);
+            for (int i = 0; i < threads; i++)
+            {
+                workers.add(pool.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        checkAll();
+                    }
+                }));
+            }
+
+            for (Future<?> worker : workers)
+            {
+                worker.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking bitstreams", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the next bitstream from the dispatcher, which is not safe for use
+     * by several threads at once.
+     * 
+     * @return the bitstream id, or BitstreamDispatcher.SENTINEL
+     */
+    private int nextBitstream()
+    {
+        synchronized (dispatcher)
+        {
+            return dispatcher.next();
+        }
+    }
+
+    /**
+     * Queue a check to be written to the checksum history table, writing
+     * the queued checks as one batch once enough have been collected.
+     * 
+     * @param info
+     *            the checked bitstream
+     */
+    private synchronized void addHistory(BitstreamInfo info)
+    {
+        pendingHistory.add(info);
+
+        if (pendingHistory.size() >= HISTORY_BATCH_SIZE)
+        {
+            flushHistory();
+        }
+    }
+
+    /**
+     * Write all queued checks to the checksum history table.
+     */
+    private synchronized void flushHistory()
+    {
+        try
+        {
+            checksumHistoryDAO.insertHistory(pendingHistory);
+        }
+        finally
+        {
+            pendingHistory.clear();
         }
     }
 
@@ -174,37 +344,93 @@ public final class CheckerCommand
     }
 
     /**
-     * Digest the stream and get the checksum value.
+     * Digest a bitstream and get the checksum value. A file in a local
+     * assetstore is read through its channel into the direct buffer of this
+     * thread; anything else through the stream from the assetstore.
      * 
-     * @param stream
-     *            InputStream to digest.
+     * @param id
+     *            the bitstream id
      * @param algorithm
-     *            the algorithm to use when digesting.
-     * @todo Document the algorithm parameter
+     *            the algorithm to use when digesting, e.g. MD5.
      * @return digest
      * 
      * @throws java.security.NoSuchAlgorithmException
      *             if the requested algorithm is not provided by the system
      *             security provider.
      * @throws java.io.IOException
-     *             If an exception arises whilst reading the stream
+     *             If an exception arises whilst reading the bitstream
+     * @throws SQLException
+     *             If the bitstream cannot be located
      */
-    private String digestStream(InputStream stream, String algorithm)
-            throws java.security.NoSuchAlgorithmException, java.io.IOException
+    private String digestBitstream(int id, String algorithm)
+            throws NoSuchAlgorithmException, IOException, SQLException
     {
-        // create the digest stream
-        DigestInputStream dStream = new DigestInputStream(stream, MessageDigest
-                .getInstance(algorithm));
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
 
-        byte[] bytes = new byte[BYTE_ARRAY_SIZE];
+        File file = bitstreamDAO.getBitstreamFile(id);
+        if (file != null)
+        {
+            FileInputStream stream = new FileInputStream(file);
+            try
+            {
+                FileChannel channel = stream.getChannel();
+                ByteBuffer buffer = buffers.get();
+                buffer.clear();
+                while (channel.read(buffer) != -1)
+                {
+                    buffer.flip();
+                    throttle(buffer.remaining());
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        else
+        {
+            InputStream stream = bitstreamDAO.getBitstream(id);
+            if (stream == null)
+            {
+                throw new IOException("Bitstream " + id + " has no file");
+            }
+            try
+            {
+                byte[] bytes = new byte[bufferSize];
+                int bytesRead;
+                while ((bytesRead = stream.read(bytes, 0, bufferSize)) != -1)
+                {
+                    throttle(bytesRead);
+                    digest.update(bytes, 0, bytesRead);
+                }
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
 
-        // make sure all the data is read by the digester
-        int bytesRead = -1;
-        do {
-            bytesRead = dStream.read(bytes, 0, BYTE_ARRAY_SIZE);
-        } while (bytesRead != -1);
+        return Utils.toHex(digest.digest());
+    }
 
-        return Utils.toHex(dStream.getMessageDigest().digest());
+    /**
+     * Wait until the configured limits allow a read of some bytes.
+     * 
+     * @param bytes
+     *            the number of bytes read
+     */
+    private void throttle(int bytes)
+    {
+        if (reads != null)
+        {
+            reads.acquire(1);
+        }
+        if (bandwidth != null)
+        {
+            bandwidth.acquire(bytes);
+        }
     }
 
     /**
@@ -251,7 +477,7 @@ public final class CheckerCommand
         info.setProcessEndDate(new Date());
         info.setToBeProcessed(false);
         bitstreamInfoDAO.update(info);
-        checksumHistoryDAO.insertHistory(info);
+        addHistory(info);
     }
 
     /**
@@ -299,14 +525,11 @@ public final class CheckerCommand
 
         try
         {
-            InputStream bitstream = bitstreamDAO.getBitstream(info
-                    .getBitstreamId());
+            String checksum = digestBitstream(info.getBitstreamId(), info
+                    .getChecksumAlgorithm());
 
             info.setBitstreamFound(true);
 
-            String checksum = digestStream(bitstream, info
-                    .getChecksumAlgorithm());
-
             info.setCalculatedChecksum(checksum);
 
             // compare new checksum to previous checksum
@@ -346,7 +569,7 @@ public final class CheckerCommand
 
             // record new checksum and comparison result in db
             bitstreamInfoDAO.update(info);
-            checksumHistoryDAO.insertHistory(info);
+            addHistory(info);
         }
     }
 
@@ -413,6 +636,28 @@ public final class CheckerCommand
         processStartDate = startDate == null ? null : new Date(startDate.getTime());
     }
 
+    /**
+     * Get the number of bitstreams checked at once.
+     * 
+     * @return the number of checking threads
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Set the number of bitstreams checked at once, overriding
+     * <code>checker.threads</code>.
+     * 
+     * @param threads
+     *            the number of checking threads
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
     /**
      * Determine if any errors are reported
      * 
@@ -0,0 +1,84 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.checker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Limits the rate of something (bytes read, reads) shared by all the checker
+ * threads. Each caller is given the next free slot of time for the amount it
+ * asks for, and sleeps until that slot starts, so the rate holds on average
+ * however many threads there are.
+ * </p>
+ *
+ * @version $Revision$
+ */
+final class Throttle
+{
+    /** Nanoseconds each unit takes at the given rate. */
+    private final double nanosPerUnit;
+
+    /** The time at which the next slot starts. */
+    private long nextFree = System.nanoTime();
+
+    /**
+     * @param perSecond
+     *            the number of units allowed per second
+     */
+    Throttle(long perSecond)
+    {
+        nanosPerUnit = (double) TimeUnit.SECONDS.toNanos(1) / perSecond;
+    }
+
+    /**
+     * Create a throttle for a configured rate.
+     *
+     * @param perSecond
+     *            the number of units allowed per second
+     * @return the throttle, or null if the rate is not positive (unlimited)
+     */
+    static Throttle forRate(long perSecond)
+    {
+        return (perSecond > 0) ? new Throttle(perSecond) : null;
+    }
+
+    /**
+     * Wait until some units may be used. If the thread is interrupted it
+     * returns early, with the interrupt status set.
+     *
+     * @param units
+     *            the number of units
+     */
+    void acquire(long units)
+    {
+        long wait;
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            if (nextFree < now)
+            {
+                nextFree = now;
+            }
+            wait = nextFree - now;
+            nextFree += (long) (units * nanosPerUnit);
+        }
+
+        if (wait > 0)
+        {
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -261,6 +261,12 @@ public class Bitstream extends DSpaceObject
         return bRow.getIntColumn("bitstream_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     public String getHandle()
     {
         // No Handles for bitstreams
@@ -17,6 +17,7 @@ import org.dspace.authorize.AuthorizeManager;
 import org.dspace.core.Context;
 import org.dspace.core.LogManager;
 import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.RowCache;
 import org.dspace.storage.rdbms.TableRow;
 import org.dspace.storage.rdbms.TableRowIterator;
 
@@ -84,24 +85,25 @@ public class BitstreamFormat
         bfRow = row;
         extensions = new ArrayList<String>();
 
-        TableRowIterator tri = DatabaseManager.query(context,
-                "SELECT * FROM fileextension WHERE bitstream_format_id= ? ",
-                 getID());
+        List<TableRow> rows = RowCache.getRelatedRows(context,
+                "bitstreamformatregistry", getID(), "fileextension");
 
-        try
+        if (rows == null)
         {
-            while (tri.hasNext())
-            {
-                extensions.add(tri.next().getStringColumn("extension"));
-            }
+            long stamp = RowCache.getStamp("bitstreamformatregistry", getID());
+            TableRowIterator tri = DatabaseManager.query(context,
+                    "SELECT * FROM fileextension WHERE bitstream_format_id= ? ",
+                     getID());
+
+            // toList() closes the TableRowIterator
+            rows = tri.toList();
+            RowCache.putRelatedRows(context, "bitstreamformatregistry",
+                    getID(), "fileextension", rows, stamp);
         }
-        finally
+
+        for (TableRow r : rows)
         {
-            // close the TableRowIterator to free up resources
-            if (tri != null)
-            {
-                tri.close();
-            }
+            extensions.add(r.getStringColumn("extension"));
         }
 
         // Cache ourselves
@@ -131,8 +133,13 @@ public class BitstreamFormat
             return fromCache;
         }
 
-        TableRow row = DatabaseManager.find(context, "bitstreamformatregistry",
-                id);
+        TableRow row = RowCache.getRow(context, "bitstreamformatregistry", id);
+        if (row == null)
+        {
+            long stamp = RowCache.getStamp("bitstreamformatregistry", id);
+            row = DatabaseManager.find(context, "bitstreamformatregistry", id);
+            RowCache.putRow(context, "bitstreamformatregistry", id, row, stamp);
+        }
 
         if (row == null)
         {
@@ -599,6 +606,9 @@ public class BitstreamFormat
         }
 
         DatabaseManager.update(bfContext, bfRow);
+
+        // Bitstream formats have no events, so drop the shared copy here
+        RowCache.invalidate("bitstreamformatregistry", getID());
     }
 
     /**
@@ -641,6 +651,7 @@ public class BitstreamFormat
 
         // Delete this format from database
         DatabaseManager.delete(bfContext, bfRow);
+        RowCache.invalidate("bitstreamformatregistry", getID());
 
         log.info(LogManager.getHeader(bfContext, "delete_bitstream_format",
                 "bitstream_format_id=" + getID() + ",bitstreams_changed="
@@ -216,6 +216,12 @@ public class Bundle extends DSpaceObject
         return bundleRow.getIntColumn("bundle_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * Get the name of the bundle
      * 
@@ -267,6 +273,7 @@ public class Bundle extends DSpaceObject
     public void unsetPrimaryBitstreamID()
     {
     	bundleRow.setColumnNull("primary_bitstream_id");
+        modified = true;
     }
     
     public String getHandle()
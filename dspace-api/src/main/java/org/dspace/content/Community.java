@@ -24,6 +24,7 @@ import org.dspace.eperson.Group;
 import org.dspace.event.Event;
 import org.dspace.handle.HandleManager;
 import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.RowCache;
 import org.dspace.storage.rdbms.TableRow;
 import org.dspace.storage.rdbms.TableRowIterator;
 
@@ -135,7 +136,13 @@ public class Community extends DSpaceObject
             return fromCache;
         }
 
-        TableRow row = DatabaseManager.find(context, "community", id);
+        TableRow row = RowCache.getRow(context, "community", id);
+        if (row == null)
+        {
+            long stamp = RowCache.getStamp("community", id);
+            row = DatabaseManager.find(context, "community", id);
+            RowCache.putRow(context, "community", id, row, stamp);
+        }
 
         if (row == null)
         {
@@ -363,6 +370,12 @@ public class Community extends DSpaceObject
         return communityRow.getIntColumn("community_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * @see org.dspace.content.DSpaceObject#getHandle()
      */
@@ -783,6 +796,11 @@ public class Community extends DSpaceObject
      */
     public Community[] getAllParents() throws SQLException
     {
+        if (CommunityClosure.isEnabled())
+        {
+            return CommunityClosure.getAllParents(ourContext, getID());
+        }
+
         List<Community> parentList = new ArrayList<Community>();
         Community parent = getParentCommunity();
 
@@ -807,6 +825,11 @@ public class Community extends DSpaceObject
 
     public Collection[] getAllCollections() throws SQLException
     {
+        if (CommunityClosure.isEnabled())
+        {
+            return CommunityClosure.getAllCollections(ourContext, getID());
+        }
+
         List<Collection> collectionList = new ArrayList<Collection>();
         for (Community subcommunity : getSubcommunities())
         {
@@ -906,6 +929,8 @@ public class Community extends DSpaceObject
                 ourContext.addEvent(new Event(Event.ADD, Constants.COMMUNITY, getID(), Constants.COLLECTION, c.getID(), c.getHandle()));
 
                 DatabaseManager.insert(ourContext, mappingRow);
+
+                CommunityClosure.updateCollection(ourContext, c.getID());
             }
         }
         finally
@@ -981,6 +1006,8 @@ public class Community extends DSpaceObject
                 ourContext.addEvent(new Event(Event.ADD, Constants.COMMUNITY, getID(), Constants.COMMUNITY, c.getID(), c.getHandle()));
 
                 DatabaseManager.insert(ourContext, mappingRow);
+
+                CommunityClosure.updateCommunity(ourContext, c.getID());
             }
         }
         finally
@@ -1025,6 +1052,8 @@ public class Community extends DSpaceObject
                 "DELETE FROM community2collection WHERE community_id= ? "+
                 "AND collection_id= ? ", getID(), c.getID());
 
+        CommunityClosure.updateCollection(ourContext, c.getID());
+
         DatabaseManager.setConstraintImmediate(ourContext, "comm2coll_collection_fk");
         
         ourContext.addEvent(new Event(Event.REMOVE, Constants.COMMUNITY, getID(), Constants.COLLECTION, c.getID(), c.getHandle()));
@@ -1062,6 +1091,8 @@ public class Community extends DSpaceObject
                 "DELETE FROM community2community WHERE parent_comm_id= ? " +
                 " AND child_comm_id= ? ", getID(),c.getID());
 
+        CommunityClosure.updateCommunity(ourContext, c.getID());
+
         ourContext.addEvent(new Event(Event.REMOVE, Constants.COMMUNITY, getID(), Constants.COMMUNITY, c.getID(), c.getHandle()));
         
         DatabaseManager.setConstraintImmediate(ourContext, "com2com_child_fk");
@@ -0,0 +1,1015 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * The transitive closure of the community hierarchy (the community2community
+ * and community2collection tables): for each community and collection, all
+ * the communities above it, and for each community, all the communities and
+ * collections below it. Sets of IDs are held as <code>int</code> arrays,
+ * which are never modified once built, so they may be handed out without
+ * copying. Ancestors are in order, the nearest first.
+ * <P>
+ * When <code>community.closure.enabled</code> is set, the closure is also
+ * kept in the community2communitycache and community2collectioncache tables,
+ * which <code>Community</code> brings up to date within the transaction
+ * whenever it adds or removes a sub-community or collection, and which can
+ * be rebuilt by running this class. The ancestors and descendants of an
+ * object are then found with a query or two, rather than one query for each
+ * level of the hierarchy.
+ * <P>
+ * A closure shared by all Contexts is loaded on first use, dropped by
+ * <code>CommunityClosureConsumer</code> whenever the hierarchy changes, and
+ * reloaded every <code>community.closure.reload</code> seconds to pick up
+ * changes made by other processes. A Context with uncommitted changes uses
+ * the tables instead.
+ *
+ * @version $Revision$
+ */
+public final class CommunityClosure
+{
+    private static final Logger log = Logger.getLogger(CommunityClosure.class);
+
+    private static final int[] NONE = new int[0];
+
+    /** The most IDs in one IN list (Oracle allows 1000) */
+    private static final int IN_LIMIT = 500;
+
+    /** The shared closure, or null if not enabled or not yet loaded */
+    private static CommunityClosure shared = null;
+
+    /** When the shared closure was loaded */
+    private static long sharedLoaded = 0;
+
+    /** Direct parents of each community and collection */
+    private final Map<Integer, int[]> communityParents = new HashMap<Integer, int[]>();
+
+    private final Map<Integer, int[]> collectionParents = new HashMap<Integer, int[]>();
+
+    /** Direct sub-communities and collections of each community */
+    private final Map<Integer, int[]> subcommunities = new HashMap<Integer, int[]>();
+
+    private final Map<Integer, int[]> collections = new HashMap<Integer, int[]>();
+
+    /** All ancestors of each community and collection, the nearest first */
+    private final Map<Integer, int[]> communityAncestors = new HashMap<Integer, int[]>();
+
+    private final Map<Integer, int[]> collectionAncestors = new HashMap<Integer, int[]>();
+
+    /** All communities and collections below each community */
+    private final Map<Integer, int[]> descendantCommunities = new HashMap<Integer, int[]>();
+
+    private final Map<Integer, int[]> descendantCollections = new HashMap<Integer, int[]>();
+
+    /** Whether edges have been added since the closure was computed */
+    private boolean dirty = false;
+
+    /**
+     * Construct an empty closure.
+     */
+    CommunityClosure()
+    {
+    }
+
+    /**
+     * Rebuild the closure tables from the hierarchy.
+     *
+     * @param argv
+     *            no arguments are used
+     */
+    public static void main(String[] argv) throws Exception
+    {
+        Context context = new Context();
+        try
+        {
+            context.turnOffAuthorisationSystem();
+            rebuild(context);
+            context.complete();
+        }
+        finally
+        {
+            if (context.isValid())
+            {
+                context.abort();
+            }
+        }
+    }
+
+    /**
+     * @return true if the closure tables are kept and used
+     */
+    static boolean isEnabled()
+    {
+        return ConfigurationManager.getBooleanProperty("community.closure.enabled", false);
+    }
+
+    /**
+     * Load the closure of the community2community and community2collection
+     * tables.
+     *
+     * @param context
+     *            the context to read the tables with
+     * @return the closure
+     * @throws SQLException
+     */
+    static CommunityClosure load(Context context) throws SQLException
+    {
+        CommunityClosure closure = new CommunityClosure();
+
+        TableRowIterator tri = DatabaseManager.queryTable(context, "community2community",
+                "SELECT * FROM community2community");
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+                closure.addSubcommunity(row.getIntColumn("parent_comm_id"), row.getIntColumn("child_comm_id"));
+            }
+        }
+        finally
+        {
+            // close the TableRowIterator to free up resources
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+
+        tri = DatabaseManager.queryTable(context, "community2collection",
+                "SELECT * FROM community2collection");
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+                closure.addCollection(row.getIntColumn("community_id"), row.getIntColumn("collection_id"));
+            }
+        }
+        finally
+        {
+            // close the TableRowIterator to free up resources
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+
+        return closure;
+    }
+
+    /**
+     * Get the closure shared by all Contexts, loading it if necessary.
+     *
+     * @param context
+     *            the current context
+     * @return the shared closure, or null if the context has made changes
+     *         which may not be reflected in it
+     * @throws SQLException
+     */
+    private static CommunityClosure getShared(Context context) throws SQLException
+    {
+        if (context.hasEvents())
+        {
+            return null;
+        }
+
+        long reload = 1000L * ConfigurationManager.getIntProperty("community.closure.reload", 300);
+
+        synchronized (CommunityClosure.class)
+        {
+            if (shared == null || (reload > 0 && System.currentTimeMillis() - sharedLoaded > reload))
+            {
+                shared = load(context);
+                sharedLoaded = System.currentTimeMillis();
+
+                if (log.isDebugEnabled())
+                {
+                    log.debug("Loaded shared community closure of " + shared.subcommunities.size()
+                            + " communities with sub-communities");
+                }
+            }
+
+            return shared;
+        }
+    }
+
+    /**
+     * Drop the shared closure, after the hierarchy has changed.
+     */
+    static void invalidateShared()
+    {
+        synchronized (CommunityClosure.class)
+        {
+            shared = null;
+        }
+    }
+
+    /**
+     * Get all the communities above a community.
+     *
+     * @param context
+     *            the current context
+     * @param communityID
+     *            the community
+     * @return the communities, the nearest first
+     * @throws SQLException
+     */
+    static Community[] getAllParents(Context context, int communityID) throws SQLException
+    {
+        CommunityClosure closure = getShared(context);
+        if (closure != null)
+        {
+            return findCommunities(context, closure.getCommunityAncestors(communityID));
+        }
+
+        return queryCommunities(context,
+                "SELECT community.* FROM community, community2communitycache WHERE "
+                + "community.community_id = community2communitycache.parent_comm_id "
+                + "AND community2communitycache.child_comm_id = ? "
+                + "ORDER BY community2communitycache.depth", communityID);
+    }
+
+    /**
+     * Get all the communities a collection is in, directly or indirectly,
+     * for Collection.getAllCommunities.
+     *
+     * @param context
+     *            the current context
+     * @param collectionID
+     *            the collection
+     * @return the communities, the nearest first
+     * @throws SQLException
+     */
+    static Community[] getCommunities(Context context, int collectionID) throws SQLException
+    {
+        CommunityClosure closure = getShared(context);
+        if (closure != null)
+        {
+            return findCommunities(context, closure.getCollectionAncestors(collectionID));
+        }
+
+        return queryCommunities(context,
+                "SELECT community.* FROM community, community2collectioncache WHERE "
+                + "community.community_id = community2collectioncache.community_id "
+                + "AND community2collectioncache.collection_id = ? "
+                + "ORDER BY community2collectioncache.depth", collectionID);
+    }
+
+    /**
+     * Get all the communities the collections of an item are in, directly or
+     * indirectly, the nearest first (then by ID).
+     *
+     * @param context
+     *            the current context
+     * @param itemID
+     *            the item
+     * @return the communities
+     * @throws SQLException
+     */
+    static Community[] getItemCommunities(Context context, int itemID) throws SQLException
+    {
+        CommunityClosure closure = getShared(context);
+        if (closure != null)
+        {
+            // the depth of each community: that of its nearest collection
+            final Map<Integer, Integer> depths = new HashMap<Integer, Integer>();
+            TableRowIterator tri = DatabaseManager.query(context,
+                    "SELECT collection_id FROM collection2item WHERE item_id = ? ", itemID);
+            try
+            {
+                while (tri.hasNext())
+                {
+                    int[] ancestors = closure.getCollectionAncestors(tri.next().getIntColumn("collection_id"));
+                    for (int i = 0; i < ancestors.length; i++)
+                    {
+                        Integer depth = depths.get(Integer.valueOf(ancestors[i]));
+                        if (depth == null || depth.intValue() > i + 1)
+                        {
+                            depths.put(Integer.valueOf(ancestors[i]), Integer.valueOf(i + 1));
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
+            }
+
+            // in the same order as the query below
+            List<Integer> ids = new ArrayList<Integer>(depths.keySet());
+            Collections.sort(ids, new Comparator<Integer>()
+            {
+                public int compare(Integer a, Integer b)
+                {
+                    int byDepth = depths.get(a).compareTo(depths.get(b));
+                    return (byDepth != 0) ? byDepth : a.compareTo(b);
+                }
+            });
+            return findCommunities(context, toArray(ids));
+        }
+
+        return queryCommunities(context,
+                "SELECT community.* FROM community, "
+                + "(SELECT community2collectioncache.community_id, MIN(community2collectioncache.depth) AS depth "
+                + "FROM community2collectioncache, collection2item "
+                + "WHERE community2collectioncache.collection_id = collection2item.collection_id "
+                + "AND collection2item.item_id = ? "
+                + "GROUP BY community2collectioncache.community_id) nearest "
+                + "WHERE community.community_id = nearest.community_id "
+                + "ORDER BY nearest.depth, community.community_id", itemID);
+    }
+
+    /**
+     * Get all the collections below a community.
+     *
+     * @param context
+     *            the current context
+     * @param communityID
+     *            the community
+     * @return the collections
+     * @throws SQLException
+     */
+    static Collection[] getAllCollections(Context context, int communityID) throws SQLException
+    {
+        CommunityClosure closure = getShared(context);
+        int[] ids;
+        if (closure != null)
+        {
+            ids = closure.getDescendantCollections(communityID);
+        }
+        else
+        {
+            List<Integer> found = new ArrayList<Integer>();
+            TableRowIterator tri = DatabaseManager.query(context,
+                    "SELECT collection_id FROM community2collectioncache WHERE community_id = ? ", communityID);
+            try
+            {
+                while (tri.hasNext())
+                {
+                    found.add(Integer.valueOf(tri.next().getIntColumn("collection_id")));
+                }
+            }
+            finally
+            {
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
+            }
+            ids = toArray(found);
+        }
+
+        Collection[] result = new Collection[ids.length];
+        int count = 0;
+        List<Integer> missing = new ArrayList<Integer>();
+        for (int id : ids)
+        {
+            if (context.fromCache(Collection.class, id) == null)
+            {
+                missing.add(Integer.valueOf(id));
+            }
+        }
+
+        for (int start = 0; start < missing.size(); start += IN_LIMIT)
+        {
+            TableRowIterator tri = DatabaseManager.queryTable(context, "collection",
+                    "SELECT * FROM collection WHERE collection_id IN ("
+                    + join(missing.subList(start, Math.min(start + IN_LIMIT, missing.size()))) + ")");
+            try
+            {
+                while (tri.hasNext())
+                {
+                    // the constructor caches the collection in the context
+                    new Collection(context, tri.next());
+                }
+            }
+            finally
+            {
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
+            }
+        }
+
+        for (int id : ids)
+        {
+            Collection collection = (Collection) context.fromCache(Collection.class, id);
+            if (collection != null)
+            {
+                result[count++] = collection;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Bring the closure tables up to date after a sub-community or collection
+     * of a community below (or at) the given one has been added or removed:
+     * the ancestors of the community, and of all the communities and
+     * collections below it, before or after the change, are written again.
+     * Only the part of the hierarchy below the community and above those
+     * objects is read.
+     *
+     * @param context
+     *            the current context
+     * @param communityID
+     *            the community
+     * @throws SQLException
+     */
+    static void updateCommunity(Context context, int communityID) throws SQLException
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+
+        // below it now, by the hierarchy, or before, by the closure tables
+        Set<Integer> comms = new LinkedHashSet<Integer>();
+        Set<Integer> cols = new LinkedHashSet<Integer>();
+        comms.add(Integer.valueOf(communityID));
+        addBelow(context, communityID, comms, cols);
+        addColumn(context, comms, "child_comm_id",
+                "SELECT child_comm_id FROM community2communitycache WHERE parent_comm_id = ? ", communityID);
+        addColumn(context, cols, "collection_id",
+                "SELECT collection_id FROM community2collectioncache WHERE community_id = ? ", communityID);
+
+        CommunityClosure closure = loadAbove(context, comms, cols);
+        for (Integer id : comms)
+        {
+            closure.writeCommunity(context, id.intValue());
+        }
+        for (Integer id : cols)
+        {
+            closure.writeCollection(context, id.intValue());
+        }
+    }
+
+    /**
+     * Bring the closure tables up to date after a collection has been added
+     * to or removed from a community.
+     *
+     * @param context
+     *            the current context
+     * @param collectionID
+     *            the collection
+     * @throws SQLException
+     */
+    static void updateCollection(Context context, int collectionID) throws SQLException
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+
+        Set<Integer> cols = new LinkedHashSet<Integer>();
+        cols.add(Integer.valueOf(collectionID));
+        loadAbove(context, new LinkedHashSet<Integer>(), cols).writeCollection(context, collectionID);
+    }
+
+    /**
+     * Load the part of the hierarchy above some communities and collections,
+     * one query for each level, which is all that their ancestors depend on.
+     *
+     * @param context
+     *            the current context
+     * @param comms
+     *            the communities
+     * @param cols
+     *            the collections
+     * @return a closure holding the ancestors of the communities and
+     *         collections, but not all their descendants
+     * @throws SQLException
+     */
+    private static CommunityClosure loadAbove(Context context, Set<Integer> comms, Set<Integer> cols)
+        throws SQLException
+    {
+        CommunityClosure closure = new CommunityClosure();
+        Set<Integer> seen = new LinkedHashSet<Integer>(comms);
+        List<Integer> level = new ArrayList<Integer>(comms);
+
+        for (TableRow row : queryIn(context,
+                "SELECT community_id, collection_id FROM community2collection WHERE collection_id", cols))
+        {
+            closure.addCollection(row.getIntColumn("community_id"), row.getIntColumn("collection_id"));
+            if (seen.add(Integer.valueOf(row.getIntColumn("community_id"))))
+            {
+                level.add(Integer.valueOf(row.getIntColumn("community_id")));
+            }
+        }
+
+        while (!level.isEmpty())
+        {
+            List<Integer> next = new ArrayList<Integer>();
+            for (TableRow row : queryIn(context,
+                    "SELECT parent_comm_id, child_comm_id FROM community2community WHERE child_comm_id", level))
+            {
+                closure.addSubcommunity(row.getIntColumn("parent_comm_id"), row.getIntColumn("child_comm_id"));
+                if (seen.add(Integer.valueOf(row.getIntColumn("parent_comm_id"))))
+                {
+                    next.add(Integer.valueOf(row.getIntColumn("parent_comm_id")));
+                }
+            }
+            level = next;
+        }
+
+        return closure;
+    }
+
+    /**
+     * Add the communities and collections below a community in the hierarchy
+     * to sets, one query of each table for each level.
+     */
+    private static void addBelow(Context context, int communityID, Set<Integer> comms, Set<Integer> cols)
+        throws SQLException
+    {
+        List<Integer> level = new ArrayList<Integer>();
+        level.add(Integer.valueOf(communityID));
+
+        while (!level.isEmpty())
+        {
+            for (TableRow row : queryIn(context,
+                    "SELECT collection_id FROM community2collection WHERE community_id", level))
+            {
+                cols.add(Integer.valueOf(row.getIntColumn("collection_id")));
+            }
+
+            List<Integer> next = new ArrayList<Integer>();
+            for (TableRow row : queryIn(context,
+                    "SELECT child_comm_id FROM community2community WHERE parent_comm_id", level))
+            {
+                // the check stops a cycle causing an endless loop
+                if (comms.add(Integer.valueOf(row.getIntColumn("child_comm_id"))))
+                {
+                    next.add(Integer.valueOf(row.getIntColumn("child_comm_id")));
+                }
+            }
+            level = next;
+        }
+    }
+
+    /**
+     * Run a query ending in a column to match against a set of IDs, as IN
+     * lists of at most IN_LIMIT IDs.
+     *
+     * @param context
+     *            the current context
+     * @param query
+     *            the query, up to and including the column to match
+     * @param ids
+     *            the IDs
+     * @return all the rows selected
+     * @throws SQLException
+     */
+    private static List<TableRow> queryIn(Context context, String query, java.util.Collection<Integer> ids)
+        throws SQLException
+    {
+        List<Integer> list = new ArrayList<Integer>(ids);
+        List<TableRow> rows = new ArrayList<TableRow>();
+        for (int start = 0; start < list.size(); start += IN_LIMIT)
+        {
+            TableRowIterator tri = DatabaseManager.query(context, query + " IN ("
+                    + join(list.subList(start, Math.min(start + IN_LIMIT, list.size()))) + ")");
+            try
+            {
+                while (tri.hasNext())
+                {
+                    rows.add(tri.next());
+                }
+            }
+            finally
+            {
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Rebuild the closure tables from the hierarchy.
+     *
+     * @param context
+     *            the current context
+     * @throws SQLException
+     */
+    static void rebuild(Context context) throws SQLException
+    {
+        DatabaseManager.updateQuery(context, "DELETE FROM community2communitycache");
+        DatabaseManager.updateQuery(context, "DELETE FROM community2collectioncache");
+
+        CommunityClosure closure = load(context);
+        for (Integer id : closure.communityParents.keySet())
+        {
+            closure.insertCommunity(context, id.intValue());
+        }
+        for (Integer id : closure.collectionParents.keySet())
+        {
+            closure.insertCollection(context, id.intValue());
+        }
+    }
+
+    /**
+     * Record a sub-community, without updating the closure.
+     */
+    synchronized void addSubcommunity(int parentID, int childID)
+    {
+        subcommunities.put(Integer.valueOf(parentID), with(subcommunities.get(Integer.valueOf(parentID)), childID));
+        communityParents.put(Integer.valueOf(childID), with(communityParents.get(Integer.valueOf(childID)), parentID));
+        dirty = true;
+    }
+
+    /**
+     * Record a collection in a community, without updating the closure.
+     */
+    synchronized void addCollection(int communityID, int collectionID)
+    {
+        collections.put(Integer.valueOf(communityID), with(collections.get(Integer.valueOf(communityID)), collectionID));
+        collectionParents.put(Integer.valueOf(collectionID), with(collectionParents.get(Integer.valueOf(collectionID)), communityID));
+        dirty = true;
+    }
+
+    /**
+     * @param communityID
+     *            a community
+     * @return the IDs of all communities above it, the nearest first. The
+     *         array must not be modified.
+     */
+    synchronized int[] getCommunityAncestors(int communityID)
+    {
+        recomputeIfDirty();
+        return get(communityAncestors, communityID);
+    }
+
+    /**
+     * @param collectionID
+     *            a collection
+     * @return the IDs of all communities it is in, directly or indirectly,
+     *         the nearest first. The array must not be modified.
+     */
+    synchronized int[] getCollectionAncestors(int collectionID)
+    {
+        recomputeIfDirty();
+        return get(collectionAncestors, collectionID);
+    }
+
+    /**
+     * @param communityID
+     *            a community
+     * @return the IDs of all communities below it. The array must not be
+     *         modified.
+     */
+    synchronized int[] getDescendantCommunities(int communityID)
+    {
+        recomputeIfDirty();
+        return get(descendantCommunities, communityID);
+    }
+
+    /**
+     * @param communityID
+     *            a community
+     * @return the IDs of all collections below it, those of its
+     *         sub-communities first. The array must not be modified.
+     */
+    synchronized int[] getDescendantCollections(int communityID)
+    {
+        recomputeIfDirty();
+        return get(descendantCollections, communityID);
+    }
+
+    /**
+     * Recompute the closure of every community and collection, if edges have
+     * been added since it was last computed.
+     */
+    private void recomputeIfDirty()
+    {
+        if (!dirty)
+        {
+            return;
+        }
+
+        communityAncestors.clear();
+        collectionAncestors.clear();
+        descendantCommunities.clear();
+        descendantCollections.clear();
+
+        for (Integer community : communityParents.keySet())
+        {
+            put(communityAncestors, community.intValue(), ancestors(get(communityParents, community.intValue())));
+        }
+        for (Integer collection : collectionParents.keySet())
+        {
+            put(collectionAncestors, collection.intValue(), ancestors(get(collectionParents, collection.intValue())));
+        }
+
+        Set<Integer> parents = new LinkedHashSet<Integer>(subcommunities.keySet());
+        parents.addAll(collections.keySet());
+        for (Integer community : parents)
+        {
+            Set<Integer> comms = new LinkedHashSet<Integer>();
+            Set<Integer> cols = new LinkedHashSet<Integer>();
+            descend(community.intValue(), comms, cols);
+            put(descendantCommunities, community.intValue(), toArray(comms));
+            put(descendantCollections, community.intValue(), toArray(cols));
+        }
+
+        dirty = false;
+    }
+
+    /**
+     * Find all communities above the given ones, level by level, the given
+     * ones first.
+     */
+    private int[] ancestors(int[] parents)
+    {
+        Set<Integer> found = new LinkedHashSet<Integer>();
+        List<Integer> queue = new ArrayList<Integer>();
+        for (int parent : parents)
+        {
+            if (found.add(Integer.valueOf(parent)))
+            {
+                queue.add(Integer.valueOf(parent));
+            }
+        }
+
+        // breadth-first, using the communities found so far as the queue
+        for (int position = 0; position < queue.size(); position++)
+        {
+            for (int parent : get(communityParents, queue.get(position).intValue()))
+            {
+                if (found.add(Integer.valueOf(parent)))
+                {
+                    queue.add(Integer.valueOf(parent));
+                }
+            }
+        }
+        return toArray(found);
+    }
+
+    /**
+     * Find all communities and collections below a community, those of its
+     * sub-communities before its own, as Community.getAllCollections() has
+     * always listed them.
+     */
+    private void descend(int communityID, Set<Integer> comms, Set<Integer> cols)
+    {
+        for (int child : get(subcommunities, communityID))
+        {
+            // the check stops a cycle causing endless recursion
+            if (comms.add(Integer.valueOf(child)))
+            {
+                descend(child, comms, cols);
+            }
+        }
+        for (int collection : get(collections, communityID))
+        {
+            cols.add(Integer.valueOf(collection));
+        }
+    }
+
+    /**
+     * Write the ancestors of a community to community2communitycache.
+     */
+    private void writeCommunity(Context context, int communityID) throws SQLException
+    {
+        DatabaseManager.updateQuery(context,
+                "DELETE FROM community2communitycache WHERE child_comm_id = ? ", communityID);
+        insertCommunity(context, communityID);
+    }
+
+    private void insertCommunity(Context context, int communityID) throws SQLException
+    {
+        int[] ancestors = getCommunityAncestors(communityID);
+        for (int i = 0; i < ancestors.length; i++)
+        {
+            DatabaseManager.updateQuery(context,
+                    "INSERT INTO community2communitycache (parent_comm_id, child_comm_id, depth) VALUES (?, ?, ?)",
+                    ancestors[i], communityID, i + 1);
+        }
+    }
+
+    /**
+     * Write the ancestors of a collection to community2collectioncache.
+     */
+    private void writeCollection(Context context, int collectionID) throws SQLException
+    {
+        DatabaseManager.updateQuery(context,
+                "DELETE FROM community2collectioncache WHERE collection_id = ? ", collectionID);
+        insertCollection(context, collectionID);
+    }
+
+    private void insertCollection(Context context, int collectionID) throws SQLException
+    {
+        int[] ancestors = getCollectionAncestors(collectionID);
+        for (int i = 0; i < ancestors.length; i++)
+        {
+            DatabaseManager.updateQuery(context,
+                    "INSERT INTO community2collectioncache (community_id, collection_id, depth) VALUES (?, ?, ?)",
+                    ancestors[i], collectionID, i + 1);
+        }
+    }
+
+    /**
+     * Add the values of a column of the results of a query to a set.
+     */
+    private static void addColumn(Context context, Set<Integer> ids, String column, String query, int id)
+        throws SQLException
+    {
+        TableRowIterator tri = DatabaseManager.query(context, query, id);
+        try
+        {
+            while (tri.hasNext())
+            {
+                ids.add(Integer.valueOf(tri.next().getIntColumn(column)));
+            }
+        }
+        finally
+        {
+            // close the TableRowIterator to free up resources
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+    }
+
+    /**
+     * Get communities by ID, in the given order, with a query for those not
+     * already cached in the context.
+     */
+    private static Community[] findCommunities(Context context, int[] ids) throws SQLException
+    {
+        List<Integer> missing = new ArrayList<Integer>();
+        for (int id : ids)
+        {
+            if (context.fromCache(Community.class, id) == null)
+            {
+                missing.add(Integer.valueOf(id));
+            }
+        }
+
+        for (int start = 0; start < missing.size(); start += IN_LIMIT)
+        {
+            TableRowIterator tri = DatabaseManager.queryTable(context, "community",
+                    "SELECT * FROM community WHERE community_id IN ("
+                    + join(missing.subList(start, Math.min(start + IN_LIMIT, missing.size()))) + ")");
+            try
+            {
+                while (tri.hasNext())
+                {
+                    // the constructor caches the community in the context
+                    new Community(context, tri.next());
+                }
+            }
+            finally
+            {
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
+            }
+        }
+
+        Community[] result = new Community[ids.length];
+        int count = 0;
+        for (int id : ids)
+        {
+            Community community = (Community) context.fromCache(Community.class, id);
+            if (community != null)
+            {
+                result[count++] = community;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Get the communities selected by a query.
+     */
+    private static Community[] queryCommunities(Context context, String query, int id) throws SQLException
+    {
+        List<Community> communities = new ArrayList<Community>();
+        TableRowIterator tri = DatabaseManager.queryTable(context, "community", query, id);
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+
+                // First check the cache
+                Community fromCache = (Community) context.fromCache(Community.class,
+                        row.getIntColumn("community_id"));
+
+                communities.add(fromCache != null ? fromCache : new Community(context, row));
+            }
+        }
+        finally
+        {
+            // close the TableRowIterator to free up resources
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+        return communities.toArray(new Community[communities.size()]);
+    }
+
+    private static String join(List<Integer> ids)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Integer id : ids)
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(",");
+            }
+            sb.append(id.intValue());
+        }
+        return sb.toString();
+    }
+
+    private static int[] toArray(java.util.Collection<Integer> ids)
+    {
+        int[] result = new int[ids.size()];
+        int i = 0;
+        for (Integer id : ids)
+        {
+            result[i++] = id.intValue();
+        }
+        return result;
+    }
+
+    private static int[] get(Map<Integer, int[]> map, int key)
+    {
+        int[] values = map.get(Integer.valueOf(key));
+        return (values == null) ? NONE : values;
+    }
+
+    private static void put(Map<Integer, int[]> map, int key, int[] values)
+    {
+        if (values.length == 0)
+        {
+            map.remove(Integer.valueOf(key));
+        }
+        else
+        {
+            map.put(Integer.valueOf(key), values);
+        }
+    }
+
+    /**
+     * @return a new array with the value appended, unless already present
+     */
+    private static int[] with(int[] values, int value)
+    {
+        if (values == null)
+        {
+            return new int[] { value };
+        }
+
+        for (int v : values)
+        {
+            if (v == value)
+            {
+                return values;
+            }
+        }
+
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+}
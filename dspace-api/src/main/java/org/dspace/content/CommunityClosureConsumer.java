@@ -0,0 +1,72 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content;
+
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+
+/**
+ * Consumer which drops the shared community closure whenever a
+ * sub-community or collection is added to or removed from a community, or a
+ * community or collection is deleted, so that it is loaded again on next
+ * use. The closure tables themselves are updated within the transaction by
+ * Community.
+ *
+ * Recommended filter:  Community|Collection+Add|Remove|Delete
+ *
+ * @version $Revision$
+ */
+public class CommunityClosureConsumer implements Consumer
+{
+    /** whether the hierarchy has changed */
+    private boolean changed = false;
+
+    public void initialize() throws Exception
+    {
+    }
+
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        int st = event.getSubjectType();
+        int et = event.getEventType();
+
+        if (st == Constants.COMMUNITY)
+        {
+            if ((et == Event.ADD || et == Event.REMOVE)
+                    && (event.getObjectType() == Constants.COMMUNITY || event.getObjectType() == Constants.COLLECTION))
+            {
+                changed = true;
+            }
+            else if (et == Event.DELETE)
+            {
+                changed = true;
+            }
+        }
+        else if (st == Constants.COLLECTION && et == Event.DELETE)
+        {
+            changed = true;
+        }
+    }
+
+    public void end(Context ctx) throws Exception
+    {
+        if (changed)
+        {
+            CommunityClosure.invalidateShared();
+        }
+
+        // Reset
+        changed = false;
+    }
+
+    public void finish(Context ctx) throws Exception
+    {
+    }
+}
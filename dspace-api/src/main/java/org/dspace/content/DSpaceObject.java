@@ -172,6 +172,19 @@ public abstract class DSpaceObject
         return null;
     }
 
+    /**
+     * Return true if this object has changes which have not yet been written
+     * to the database by <code>update()</code>. A size-limited Context object
+     * cache never evicts such objects. By default an object is assumed to be
+     * modified; subclasses which track their changes override this.
+     *
+     * @return true if the object has unsaved changes
+     */
+    public boolean isModified()
+    {
+        return true;
+    }
+
     public abstract void update() throws SQLException, AuthorizeException;
 
     public abstract void updateLastModified();
@@ -0,0 +1,126 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+
+/**
+ * Consumer which counts the changes to communities, collections, items,
+ * bundles and bitstreams in GenerationCounter.  A change to a bundle or
+ * bitstream also counts as a change to the item (or community or collection,
+ * for a logo) it belongs to.
+ *
+ * The generations are only counted in end(), so this consumer should come
+ * after the consumers maintaining the search and browse indices, so that
+ * a page built for a new generation sees them updated.
+ *
+ * Recommended filter:  Community|Collection|Item|Bundle|Bitstream+All
+ *
+ * @version $Revision$
+ */
+public class GenerationConsumer implements Consumer
+{
+    /** ids of the objects changed, by type */
+    private Map<Integer, Set<Integer>> changed = null;
+
+    public void initialize() throws Exception
+    {
+    }
+
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        if (changed == null)
+        {
+            changed = new HashMap<Integer, Set<Integer>>();
+        }
+
+        add(ctx, event.getSubjectType(), event.getSubjectID());
+        add(ctx, event.getObjectType(), event.getObjectID());
+    }
+
+    public void end(Context ctx) throws Exception
+    {
+        if (changed != null)
+        {
+            for (Map.Entry<Integer, Set<Integer>> entry : changed.entrySet())
+            {
+                for (Integer id : entry.getValue())
+                {
+                    GenerationCounter.increment(entry.getKey().intValue(), id.intValue());
+                }
+            }
+            GenerationCounter.increment();
+        }
+
+        // Reset
+        changed = null;
+    }
+
+    public void finish(Context ctx) throws Exception
+    {
+    }
+
+    private void add(Context ctx, int type, int id) throws Exception
+    {
+        switch (type)
+        {
+            case Constants.COMMUNITY:
+            case Constants.COLLECTION:
+            case Constants.ITEM:
+                put(type, id);
+                break;
+
+            case Constants.BUNDLE:
+                put(type, id);
+                Bundle bundle = Bundle.find(ctx, id);
+                if (bundle != null)
+                {
+                    for (Item item : bundle.getItems())
+                    {
+                        put(Constants.ITEM, item.getID());
+                    }
+                }
+                break;
+
+            case Constants.BITSTREAM:
+                put(type, id);
+                Bitstream bitstream = Bitstream.find(ctx, id);
+                if (bitstream != null)
+                {
+                    DSpaceObject parent = bitstream.getParentObject();
+                    if (parent != null)
+                    {
+                        put(parent.getType(), parent.getID());
+                    }
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void put(int type, int id)
+    {
+        Set<Integer> ids = changed.get(Integer.valueOf(type));
+        if (ids == null)
+        {
+            ids = new HashSet<Integer>();
+            changed.put(Integer.valueOf(type), ids);
+        }
+        ids.add(Integer.valueOf(id));
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Constants;
+
+/**
+ * Generation counters for the content of the repository: a repository-wide
+ * generation, and one for each community, collection, item, bundle and
+ * bitstream, which change whenever the content does (see
+ * GenerationConsumer). Comparing generations tells whether anything has
+ * changed much more cheaply than comparing the content itself, e.g. for the
+ * validity of cached pages.
+ * <p>
+ * Generations are drawn from the repository-wide counter, so they only ever
+ * increase. The counter starts from the time, so generations are not reused
+ * after a restart. Only the generations of the most recently changed objects
+ * (<code>generations.size</code>) are held; any other object has the
+ * generation of the last one forgotten, so forgetting one can only make
+ * objects look changed. Changes made by other processes, such as command line tools, are
+ * not counted: to see them, anything comparing generations should also
+ * compare epochs, which change every <code>generations.max-age</code>
+ * seconds.
+ *
+ * @version $Revision$
+ */
+public final class GenerationCounter
+{
+    /** Whether generations are used at all */
+    private static final boolean ENABLED = ConfigurationManager.getBooleanProperty("generations.enabled", false);
+
+    /** The maximum number of object generations held */
+    private static final int SIZE = ConfigurationManager.getIntProperty("generations.size", 100000);
+
+    /** How long an epoch lasts, in milliseconds, 0 for ever */
+    private static final long MAX_AGE = ConfigurationManager.getLongProperty("generations.max-age", 3600) * 1000L;
+
+    /** The repository-wide generation */
+    private static final AtomicLong generation = new AtomicLong(System.currentTimeMillis() * 1000L);
+
+    /** The generation of any object not held */
+    private static long floor = generation.get();
+
+    /** Generation by object, least recently changed first */
+    private static final Map<String, Long> objects = new LinkedHashMap<String, Long>()
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+        {
+            if (size() > SIZE)
+            {
+                floor = eldest.getValue().longValue();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private GenerationCounter()
+    {
+    }
+
+    /**
+     * @return  true if generations are configured to be used; they are only
+     *          kept up to date if GenerationConsumer is too
+     */
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    /**
+     * @return  the repository-wide generation
+     */
+    public static long getGeneration()
+    {
+        return generation.get();
+    }
+
+    /**
+     * Get the generation of an object.
+     *
+     * @param type  the type of the object, as in Constants
+     * @param id    the database id of the object
+     * @return  the generation
+     */
+    public static long getGeneration(int type, int id)
+    {
+        synchronized (objects)
+        {
+            Long objectGeneration = objects.get(key(type, id));
+            return objectGeneration == null ? floor : objectGeneration.longValue();
+        }
+    }
+
+    /**
+     * @return  the current epoch
+     */
+    public static long getEpoch()
+    {
+        return MAX_AGE > 0 ? System.currentTimeMillis() / MAX_AGE : 0;
+    }
+
+    /**
+     * Note that the repository has changed.
+     */
+    public static void increment()
+    {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Note that an object, and so the repository, has changed.
+     *
+     * @param type  the type of the object, as in Constants
+     * @param id    the database id of the object
+     */
+    public static void increment(int type, int id)
+    {
+        synchronized (objects)
+        {
+            String key = key(type, id);
+
+            // re-inserted, to keep the least recently changed first
+            objects.remove(key);
+            objects.put(key, Long.valueOf(generation.incrementAndGet()));
+        }
+    }
+
+    private static String key(int type, int id)
+    {
+        return Constants.typeText[type] + ":" + id;
+    }
+}
@@ -15,6 +15,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -41,6 +43,7 @@ import org.dspace.handle.HandleManager;
 import org.dspace.identifier.IdentifierException;
 import org.dspace.identifier.IdentifierService;
 import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.RowCache;
 import org.dspace.storage.rdbms.TableRow;
 import org.dspace.storage.rdbms.TableRowIterator;
 import org.dspace.utils.DSpace;
@@ -124,13 +127,6 @@ public class Item extends DSpaceObject
         context.cache(this, row.getIntColumn("item_id"));
     }
 
-    private TableRowIterator retrieveMetadata() throws SQLException
-    {
-        return DatabaseManager.queryTable(ourContext, "MetadataValue",
-                "SELECT * FROM MetadataValue WHERE item_id= ? ORDER BY metadata_field_id, place",
-                itemRow.getIntColumn("item_id"));
-    }
-
     /**
      * Get an item from the database. The item, its Dublin Core metadata, and
      * the bundle and bitstream metadata are all loaded into memory.
@@ -152,7 +148,13 @@ public class Item extends DSpaceObject
             return fromCache;
         }
 
-        TableRow row = DatabaseManager.find(context, "item", id);
+        TableRow row = RowCache.getRow(context, "item", id);
+        if (row == null)
+        {
+            long stamp = RowCache.getStamp("item", id);
+            row = DatabaseManager.find(context, "item", id);
+            RowCache.putRow(context, "item", id, row, stamp);
+        }
 
         if (row == null)
         {
@@ -277,6 +279,12 @@ public class Item extends DSpaceObject
         return itemRow.getIntColumn("item_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || dublinCoreChanged;
+    }
+
 
 
 
@@ -1108,6 +1116,11 @@ public class Item extends DSpaceObject
      */
     public Community[] getCommunities() throws SQLException
     {
+        if (CommunityClosure.isEnabled())
+        {
+            return CommunityClosure.getItemCommunities(ourContext, getID());
+        }
+
         List<Community> communities = new ArrayList<Community>();
 
         // Get community table rows
@@ -1644,138 +1657,140 @@ public class Item extends DSpaceObject
                 }
             }
 
-            // Now the precalculations are done, iterate through the existing metadata
-            // looking for matches
-            TableRowIterator tri = retrieveMetadata();
-            if (tri != null)
+            // Now the precalculations are done, compare the in-memory metadata
+            // with the values in the database, so that only the differences
+            // need to be written. They are read again here, in this
+            // transaction: the shared cache, or an earlier read, may be out
+            // of date, and rows missed or long gone would be left behind or
+            // written to no effect
+            List<DCValue> values = getMetadata();
+            StoredValue[] wanted = new StoredValue[values.size()];
+            StoredValue[] written = new StoredValue[values.size()];
+            for (int dcIdx = 0; dcIdx < values.size(); dcIdx++)
             {
-                try
+                wanted[dcIdx] = new StoredValue(-1, dcFields[dcIdx].getFieldID(), placeNum[dcIdx], values.get(dcIdx));
+            }
+
+            // Stored values not yet matched to an in-memory value, by content
+            Map<List<Object>, LinkedList<StoredValue>> unmatched = new HashMap<List<Object>, LinkedList<StoredValue>>();
+            for (StoredValue sv : dublinCore.readStored(getID()))
+            {
+                LinkedList<StoredValue> same = unmatched.get(sv.getContentKey());
+                if (same == null)
                 {
-                    while (tri.hasNext())
-                    {
-                        TableRow tr = tri.next();
-                        // Assume that we will remove this row, unless we get a match
-                        boolean removeRow = true;
+                    same = new LinkedList<StoredValue>();
+                    unmatched.put(sv.getContentKey(), same);
+                }
+                same.add(sv);
+            }
 
-                        // Go through the in-memory metadata, unless we've already decided to keep this row
-                        for (int dcIdx = 0; dcIdx < getMetadata().size() && removeRow; dcIdx++)
+            // Values already in the database at the right place need no writing
+            for (int dcIdx = 0; dcIdx < wanted.length; dcIdx++)
+            {
+                List<StoredValue> same = unmatched.get(wanted[dcIdx].getContentKey());
+                if (same != null)
+                {
+                    for (Iterator<StoredValue> svi = same.iterator(); svi.hasNext();)
+                    {
+                        StoredValue sv = svi.next();
+                        if (sv.place == wanted[dcIdx].place)
                         {
-                            // Only process if this metadata has not already been matched to something in the DB
-                            if (!storedDC[dcIdx])
-                            {
-                                boolean matched = true;
-                                DCValue dcv   = getMetadata().get(dcIdx);
-
-                                // Check the metadata field is the same
-                                if (matched && dcFields[dcIdx].getFieldID() != tr.getIntColumn("metadata_field_id"))
-                                {
-                                    matched = false;
-                                }
-
-                                // Check the place is the same
-                                if (matched && placeNum[dcIdx] != tr.getIntColumn("place"))
-                                {
-                                    matched = false;
-                                }
-
-                                // Check the text is the same
-                                if (matched)
-                                {
-                                    String text = tr.getStringColumn("text_value");
-                                    if (dcv.value == null && text == null)
-                                    {
-                                        matched = true;
-                                    }
-                                    else if (dcv.value != null && dcv.value.equals(text))
-                                    {
-                                        matched = true;
-                                    }
-                                    else
-                                    {
-                                        matched = false;
-                                    }
-                                }
-
-                                // Check the language is the same
-                                if (matched)
-                                {
-                                    String lang = tr.getStringColumn("text_lang");
-                                    if (dcv.language == null && lang == null)
-                                    {
-                                        matched = true;
-                                    }
-                                    else if (dcv.language != null && dcv.language.equals(lang))
-                                    {
-                                        matched = true;
-                                    }
-                                    else
-                                    {
-                                        matched = false;
-                                    }
-                                }
-
-                                // check that authority and confidence match
-                                if (matched)
-                                {
-                                    String auth = tr.getStringColumn("authority");
-                                    int conf = tr.getIntColumn("confidence");
-                                    if (!((dcv.authority == null && auth == null) ||
-                                      (dcv.authority != null && auth != null && dcv.authority.equals(auth))
-                                     && dcv.confidence == conf))
-                                    {
-                                        matched = false;
-                                    }
-                                }
-
-                                // If the db record is identical to the in memory values
-                                if (matched)
-                                {
-                                    // Flag that the metadata is already in the DB
-                                    storedDC[dcIdx] = true;
-
-                                    // Flag that we are not going to remove the row
-                                    removeRow = false;
-                                }
-                            }
+                            written[dcIdx] = sv;
+                            svi.remove();
+                            break;
                         }
+                    }
+                }
+            }
 
-                        // If after processing all the metadata values, we didn't find a match
-                        // delete this row from the DB
-                        if (removeRow)
-                        {
-                            DatabaseManager.delete(ourContext, tr);
-                            dublinCoreChanged = true;
-                            modified = true;
-                        }
+            // Values that have only moved, then values of the same field that
+            // have changed, are written by updating the existing rows
+            List<TableRow> updateRows = new ArrayList<TableRow>();
+            for (int dcIdx = 0; dcIdx < wanted.length; dcIdx++)
+            {
+                List<StoredValue> same = unmatched.get(wanted[dcIdx].getContentKey());
+                if (written[dcIdx] == null && same != null && !same.isEmpty())
+                {
+                    written[dcIdx] = wanted[dcIdx].withValueId(same.remove(0).valueId);
+                    updateRows.add(written[dcIdx].toRow(getID()));
+                }
+            }
+
+            Map<Integer, LinkedList<StoredValue>> unmatchedByField = new HashMap<Integer, LinkedList<StoredValue>>();
+            for (LinkedList<StoredValue> same : unmatched.values())
+            {
+                for (StoredValue sv : same)
+                {
+                    LinkedList<StoredValue> field = unmatchedByField.get(sv.fieldId);
+                    if (field == null)
+                    {
+                        field = new LinkedList<StoredValue>();
+                        unmatchedByField.put(sv.fieldId, field);
                     }
+                    field.add(sv);
                 }
-                finally
+            }
+
+            for (int dcIdx = 0; dcIdx < wanted.length; dcIdx++)
+            {
+                List<StoredValue> field = unmatchedByField.get(wanted[dcIdx].fieldId);
+                if (written[dcIdx] == null && field != null && !field.isEmpty())
                 {
-                    tri.close();
+                    written[dcIdx] = wanted[dcIdx].withValueId(field.remove(0).valueId);
+                    updateRows.add(written[dcIdx].toRow(getID()));
                 }
             }
 
+            // Whatever is left in the database has been removed
+            List<TableRow> deleteRows = new ArrayList<TableRow>();
+            for (LinkedList<StoredValue> field : unmatchedByField.values())
+            {
+                for (StoredValue sv : field)
+                {
+                    deleteRows.add(sv.toRow(getID()));
+                }
+            }
+
+            if (!deleteRows.isEmpty())
+            {
+                DatabaseManager.delete(ourContext, deleteRows);
+                dublinCoreChanged = true;
+                modified = true;
+            }
+
+            if (!updateRows.isEmpty())
+            {
+                DatabaseManager.update(ourContext, updateRows);
+                dublinCoreChanged = true;
+                modified = true;
+            }
+
             // Add missing in-memory DC
-            for (int dcIdx = 0; dcIdx < getMetadata().size(); dcIdx++)
+            TableRow[] insertRows = new TableRow[wanted.length];
+            List<TableRow> newRows = new ArrayList<TableRow>();
+            for (int dcIdx = 0; dcIdx < wanted.length; dcIdx++)
             {
                 // Only write values that are not already in the db
-                if (!storedDC[dcIdx])
+                if (written[dcIdx] == null)
                 {
-                    DCValue dcv = getMetadata().get(dcIdx);
-
-                    // Write DCValue
-                    MetadataValue metadata = new MetadataValue();
-                    metadata.setItemId(getID());
-                    metadata.setFieldId(dcFields[dcIdx].getFieldID());
-                    metadata.setValue(dcv.value);
-                    metadata.setLanguage(dcv.language);
-                    metadata.setPlace(placeNum[dcIdx]);
-                    metadata.setAuthority(dcv.authority);
-                    metadata.setConfidence(dcv.confidence);
-                    metadata.create(ourContext);
-                    dublinCoreChanged = true;
-                    modified = true;
+                    insertRows[dcIdx] = wanted[dcIdx].toRow(getID());
+                    newRows.add(insertRows[dcIdx]);
+                }
+            }
+
+            if (!newRows.isEmpty())
+            {
+                DatabaseManager.insert(ourContext, newRows);
+                for (int dcIdx = 0; dcIdx < wanted.length; dcIdx++)
+                {
+                    if (insertRows[dcIdx] != null)
+                    {
+                        written[dcIdx] = wanted[dcIdx].withValueId(
+                                insertRows[dcIdx].getIntColumn("metadata_value_id"));
+                    }
                 }
+                dublinCoreChanged = true;
+                modified = true;
             }
         }
 
@@ -2767,57 +2782,31 @@ public class Item extends DSpaceObject
             {
                 metadata = new ArrayList<DCValue>();
 
-                // Get Dublin Core metadata
-                TableRowIterator tri = retrieveMetadata(itemId);
+                // Get Dublin Core metadata, from the shared cache if we can
+                List<TableRow> rows = RowCache.getRelatedRows(c, "item", itemId, "metadatavalue");
 
-                if (tri != null)
+                if (rows == null)
                 {
-                    try
+                    long stamp = RowCache.getStamp("item", itemId);
+                    TableRowIterator tri = retrieveMetadata(itemId);
+
+                    if (tri != null)
                     {
-                        while (tri.hasNext())
-                        {
-                            TableRow resultRow = tri.next();
-
-                            // Get the associated metadata field and schema information
-                            int fieldID = resultRow.getIntColumn("metadata_field_id");
-                            MetadataField field = MetadataField.find(c, fieldID);
-
-                            if (field == null)
-                            {
-                                log.error("Loading item - cannot find metadata field " + fieldID);
-                            }
-                            else
-                            {
-                                MetadataSchema schema = MetadataSchema.find(c, field.getSchemaID());
-                                if (schema == null)
-                                {
-                                    log.error("Loading item - cannot find metadata schema " + field.getSchemaID() + ", field " + fieldID);
-                                }
-                                else
-                                {
-                                    // Make a DCValue object
-                                    DCValue dcv = new DCValue();
-                                    dcv.element = field.getElement();
-                                    dcv.qualifier = field.getQualifier();
-                                    dcv.value = resultRow.getStringColumn("text_value");
-                                    dcv.language = resultRow.getStringColumn("text_lang");
-                                    //dcv.namespace = schema.getNamespace();
-                                    dcv.schema = schema.getName();
-                                    dcv.authority = resultRow.getStringColumn("authority");
-                                    dcv.confidence = resultRow.getIntColumn("confidence");
-
-                                    // Add it to the list
-                                    metadata.add(dcv);
-                                }
-                            }
-                        }
+                        // toList() closes the TableRowIterator
+                        rows = tri.toList();
+                        RowCache.putRelatedRows(c, "item", itemId, "metadatavalue", rows, stamp);
                     }
-                    finally
+                }
+
+                if (rows != null)
+                {
+                    for (TableRow resultRow : rows)
                     {
-                        // close the TableRowIterator to free up resources
-                        if (tri != null)
+                        DCValue dcv = toDCValue(c, resultRow, log);
+
+                        if (dcv != null)
                         {
-                            tri.close();
+                            metadata.add(dcv);
                         }
                     }
                 }
@@ -2831,6 +2820,32 @@ public class Item extends DSpaceObject
             metadata = m;
         }
 
+        /**
+         * Read the values in the database, bypassing the shared cache.
+         */
+        List<StoredValue> readStored(int itemId) throws SQLException
+        {
+            List<StoredValue> values = new ArrayList<StoredValue>();
+            TableRowIterator tri = retrieveMetadata(itemId);
+
+            if (tri != null)
+            {
+                try
+                {
+                    while (tri.hasNext())
+                    {
+                        values.add(new StoredValue(tri.next()));
+                    }
+                }
+                finally
+                {
+                    tri.close();
+                }
+            }
+
+            return values;
+        }
+
         TableRowIterator retrieveMetadata(int itemId) throws SQLException
         {
             if (itemId > 0)
@@ -2843,4 +2858,184 @@ public class Item extends DSpaceObject
             return null;
         }
     }
+
+    /**
+     * Convert a row of the MetadataValue table into a DCValue, resolving the
+     * field and schema through their (static) caches.
+     *
+     * @return the value, or null if the field or schema cannot be found
+     */
+    private static DCValue toDCValue(Context c, TableRow resultRow, Logger log) throws SQLException
+    {
+        // Get the associated metadata field and schema information
+        int fieldID = resultRow.getIntColumn("metadata_field_id");
+        MetadataField field = MetadataField.find(c, fieldID);
+
+        if (field == null)
+        {
+            log.error("Loading item - cannot find metadata field " + fieldID);
+            return null;
+        }
+
+        MetadataSchema schema = MetadataSchema.find(c, field.getSchemaID());
+        if (schema == null)
+        {
+            log.error("Loading item - cannot find metadata schema " + field.getSchemaID() + ", field " + fieldID);
+            return null;
+        }
+
+        // Make a DCValue object
+        DCValue dcv = new DCValue();
+        dcv.element = field.getElement();
+        dcv.qualifier = field.getQualifier();
+        dcv.value = resultRow.getStringColumn("text_value");
+        dcv.language = resultRow.getStringColumn("text_lang");
+        //dcv.namespace = schema.getNamespace();
+        dcv.schema = schema.getName();
+        dcv.authority = resultRow.getStringColumn("authority");
+        dcv.confidence = resultRow.getIntColumn("confidence");
+
+        return dcv;
+    }
+
+    /**
+     * Load the Dublin Core metadata of several items with a single query.
+     * Items whose metadata is already in memory are left alone; every other
+     * item gets its metadata cache filled, so that subsequent calls to
+     * <code>getMetadata</code> do not go back to the database.
+     * <P>
+     * Used by {@link ItemIterator} in prefetch mode, to avoid one query per
+     * item when walking large parts of the repository.
+     *
+     * @param context
+     *            DSpace context object
+     * @param items
+     *            the items to load the metadata of
+     * @throws SQLException
+     */
+    static void loadMetadata(Context context, List<Item> items) throws SQLException
+    {
+        Map<Integer, List<DCValue>> pending = new HashMap<Integer, List<DCValue>>();
+        StringBuilder query = new StringBuilder("SELECT * FROM MetadataValue WHERE item_id IN (");
+        List<Object> params = new ArrayList<Object>();
+
+        for (Item item : items)
+        {
+            Integer id = Integer.valueOf(item.getID());
+            if (item.dublinCore.metadata == null && item.getID() > 0 && !pending.containsKey(id))
+            {
+                pending.put(id, new ArrayList<DCValue>());
+                query.append(params.isEmpty() ? "?" : ", ?");
+                params.add(id);
+            }
+        }
+
+        if (pending.isEmpty())
+        {
+            return;
+        }
+
+        query.append(") ORDER BY item_id, metadata_field_id, place");
+
+        TableRowIterator tri = DatabaseManager.queryTable(context, "MetadataValue",
+                query.toString(), params.toArray());
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow resultRow = tri.next();
+                Integer id = Integer.valueOf(resultRow.getIntColumn("item_id"));
+                DCValue dcv = toDCValue(context, resultRow, log);
+
+                if (dcv != null)
+                {
+                    pending.get(id).add(dcv);
+                }
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+
+        for (Item item : items)
+        {
+            List<DCValue> metadata = pending.remove(Integer.valueOf(item.getID()));
+            if (metadata != null)
+            {
+                item.dublinCore.set(metadata);
+            }
+        }
+    }
+
+    /**
+     * A metadata value as read from or written to the MetadataValue table.
+     * Used by <code>update</code> to work out which rows have to be written.
+     */
+    private static class StoredValue
+    {
+        final int valueId;
+        final int fieldId;
+        final int place;
+        final String value;
+        final String language;
+        final String authority;
+        final int confidence;
+
+        StoredValue(TableRow row)
+        {
+            valueId = row.getIntColumn("metadata_value_id");
+            fieldId = row.getIntColumn("metadata_field_id");
+            place = row.getIntColumn("place");
+            value = row.getStringColumn("text_value");
+            language = row.getStringColumn("text_lang");
+            authority = row.getStringColumn("authority");
+            confidence = row.getIntColumn("confidence");
+        }
+
+        StoredValue(int valueId, int fieldId, int place, DCValue dcv)
+        {
+            this(valueId, fieldId, place, dcv.value, dcv.language, dcv.authority, dcv.confidence);
+        }
+
+        private StoredValue(int valueId, int fieldId, int place, String value,
+                String language, String authority, int confidence)
+        {
+            this.valueId = valueId;
+            this.fieldId = fieldId;
+            this.place = place;
+            this.value = value;
+            this.language = language;
+            this.authority = authority;
+            this.confidence = confidence;
+        }
+
+        /** The same value, stored in the row with the given ID */
+        StoredValue withValueId(int id)
+        {
+            return new StoredValue(id, fieldId, place, value, language, authority, confidence);
+        }
+
+        /** Everything but the row ID and the place */
+        List<Object> getContentKey()
+        {
+            return Arrays.<Object>asList(Integer.valueOf(fieldId), value, language,
+                    authority, Integer.valueOf(confidence));
+        }
+
+        /** A MetadataValue row holding this value, to write or delete */
+        TableRow toRow(int itemId) throws SQLException
+        {
+            TableRow row = DatabaseManager.row("MetadataValue");
+            row.setColumn("metadata_value_id", valueId);
+            row.setColumn("item_id", itemId);
+            row.setColumn("metadata_field_id", fieldId);
+            row.setColumn("text_value", value);
+            row.setColumn("text_lang", language);
+            row.setColumn("place", place);
+            row.setColumn("authority", authority);
+            row.setColumn("confidence", confidence);
+            return row;
+        }
+    }
 }
@@ -9,7 +9,9 @@ package org.dspace.content;
 
 import java.sql.SQLException;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.dspace.core.Context;
@@ -43,6 +45,15 @@ public class ItemIterator
 
     /** a real iterator which works over the item ids when present */
     private Iterator<Integer> iditr;
+
+    /** Default number of items read ahead when prefetching is enabled */
+    public static final int DEFAULT_PREFETCH_SIZE = 500;
+
+    /** Number of items to read ahead and load metadata for; 0 disables */
+    private int prefetchSize = 0;
+
+    /** Items already read ahead of the caller in prefetch mode */
+    private LinkedList<Item> prefetched = new LinkedList<Item>();
     
     /**
      * Construct an item iterator using a set of TableRow objects from
@@ -59,6 +70,25 @@ public class ItemIterator
         itemRows = rows;
     }
 
+    /**
+     * Enable (or disable) prefetching. When enabled, the iterator reads the
+     * given number of items ahead and loads their Dublin Core metadata with
+     * a single query, rather than one query per item. This is worthwhile for
+     * processes that walk large numbers of items and read their metadata,
+     * such as index rebuilds.
+     * <P>
+     * Prefetched items are held by the iterator until returned by
+     * <code>next</code>, so callers that decache items after use will keep
+     * at most one window of items in memory.
+     *
+     * @param size
+     *            number of items to read ahead, or 0 to disable
+     */
+    public void setPrefetchSize(int size)
+    {
+        prefetchSize = Math.max(size, 0);
+    }
+
     /**
      * Construct an item iterator using an array list of item ids
      * 
@@ -81,7 +111,11 @@ public class ItemIterator
      */
     public boolean hasNext() throws SQLException
     {
-    	if (iditr != null)
+        if (!prefetched.isEmpty())
+        {
+            return true;
+        }
+    	else if (iditr != null)
     	{
     		return iditr.hasNext();
     	}
@@ -101,7 +135,11 @@ public class ItemIterator
      */
     public Item next() throws SQLException
     {
-    	if (iditr != null)
+        if (prefetchSize > 0)
+        {
+            return nextPrefetched();
+        }
+    	else if (iditr != null)
     	{
     		return nextByID();
     	}
@@ -112,6 +150,48 @@ public class ItemIterator
     	return null;
     }
     
+    /**
+     * Return the next item from the read-ahead window, filling the window
+     * and bulk loading the metadata of its items if it is empty.
+     *
+     * @return	the next item, or null if none
+     * @throws SQLException
+     */
+    private Item nextPrefetched()
+    	throws SQLException
+    {
+        if (prefetched.isEmpty())
+        {
+            List<Item> window = new ArrayList<Item>(prefetchSize);
+            while (window.size() < prefetchSize)
+            {
+                Item item;
+                if (iditr != null && iditr.hasNext())
+                {
+                    item = nextByID();
+                }
+                else if (itemRows != null && itemRows.hasNext())
+                {
+                    item = nextByRow();
+                }
+                else
+                {
+                    break;
+                }
+
+                if (item != null)
+                {
+                    window.add(item);
+                }
+            }
+
+            Item.loadMetadata(ourContext, window);
+            prefetched.addAll(window);
+        }
+
+        return prefetched.isEmpty() ? null : prefetched.removeFirst();
+    }
+
     /**
      * This private method knows how to get the next result out of the 
      * item id iterator
@@ -153,7 +233,11 @@ public class ItemIterator
     public int nextID()
     	throws SQLException
     {
-    	if (iditr != null)
+        if (!prefetched.isEmpty())
+        {
+            return prefetched.removeFirst().getID();
+        }
+    	else if (iditr != null)
     	{
     		return nextByIDID();
     	}
@@ -244,6 +328,8 @@ public class ItemIterator
      */
     public void close()
     {
+        prefetched.clear();
+
         if (itemRows != null)
         {
             itemRows.close();
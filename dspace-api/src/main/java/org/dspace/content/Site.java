@@ -50,6 +50,13 @@ public class Site extends DSpaceObject
         return SITE_ID;
     }
 
+    @Override
+    public boolean isModified()
+    {
+        // Nothing to change
+        return false;
+    }
+
     /**
      * Get the Handle of the object. This may return <code>null</code>
      *
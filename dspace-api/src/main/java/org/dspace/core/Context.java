@@ -12,12 +12,14 @@ import java.sql.SQLException;
 import java.util.*;
 
 import org.apache.log4j.Logger;
+import org.dspace.content.DSpaceObject;
 import org.dspace.eperson.EPerson;
 import org.dspace.eperson.Group;
 import org.dspace.event.Dispatcher;
 import org.dspace.event.Event;
 import org.dspace.event.EventManager;
 import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.StatementCache;
 import org.springframework.util.CollectionUtils;
 
 /**
@@ -47,6 +49,9 @@ public class Context
     /** Database connection */
     private Connection connection;
 
+    /** Prepared statements on the database connection */
+    private StatementCache statementCache;
+
     /** Current user - null means anonymous access */
     private EPerson currentUser;
 
@@ -68,15 +73,39 @@ public class Context
      */
     private Stack<String> authStateClassCallHistory;
 
-    /** Object cache for this context */
-    private Map<String, Object> objectCache;
+    /** Object cache for this context, least recently used first */
+    private LinkedHashMap<String, Object> objectCache;
+
+    /**
+     * Maximum number of objects in the object cache before unmodified objects
+     * are evicted; 0 or less for no limit
+     */
+    private int cacheLimit;
+
+    /** Object cache size at which the next warning is logged */
+    private int cacheWarnSize;
 
     /** Group IDs of special groups user is a member of */
     private List<Integer> specialGroups;
 
+    /** Maximum number of authorization decisions kept */
+    private static final int MAX_AUTHORIZATION_CACHE_SIZE = 10000;
+
+    /** Authorization decisions made in this context */
+    private Map<String, Boolean> authorizationCache;
+
+    /** IDs of all the groups the current user is a member of, if known */
+    private Set<Integer> currentUserGroupIDs;
+
     /** Content events */
     private LinkedList<Event> events = null;
 
+    /** Tables written to since the last commit or abort, in lower case */
+    private Set<String> writtenTables = null;
+
+    /** Stands for any table, when a write could not be traced to one */
+    private static final String ANY_TABLE = "*";
+
     /** Event dispatcher name */
     private String dispName = null;
 
@@ -120,14 +149,20 @@ public class Context
         // Obtain a non-auto-committing connection
         connection = DatabaseManager.getConnection();
         connection.setAutoCommit(false);
+        statementCache = new StatementCache(connection,
+                ConfigurationManager.getIntProperty("db.statementcache.size", 50));
 
         currentUser = null;
         currentLocale = I18nUtil.DEFAULTLOCALE;
         extraLogInfo = "";
         ignoreAuth = false;
 
-        objectCache = new HashMap<String, Object>();
+        objectCache = new LinkedHashMap<String, Object>(16, 0.75f, true);
+        cacheLimit = ConfigurationManager.getIntProperty("context.objectcache.limit", 0);
+        cacheWarnSize = ConfigurationManager.getIntProperty("context.objectcache.warn", 10000);
         specialGroups = new ArrayList<Integer>();
+        authorizationCache = new HashMap<String, Boolean>();
+        currentUserGroupIDs = null;
 
         authStateChangeHistory = new Stack<Boolean>();
         authStateClassCallHistory = new Stack<String>();
@@ -143,6 +178,17 @@ public class Context
         return connection;
     }
 
+    /**
+     * Get the cache of prepared statements on the database connection
+     * associated with the context
+     * 
+     * @return the statement cache
+     */
+    public StatementCache getStatementCache()
+    {
+        return statementCache;
+    }
+
     /**
      * Set the current user. Authentication must have been performed by the
      * caller - this call does not attempt any authentication.
@@ -154,6 +200,7 @@ public class Context
     public void setCurrentUser(EPerson user)
     {
         currentUser = user;
+        clearAuthorizationCache();
     }
 
     /**
@@ -331,6 +378,7 @@ public class Context
         finally
         {
             // Free the connection
+            statementCache.close();
             DatabaseManager.freeConnection(connection);
             connection = null;
             clearCache();
@@ -381,6 +429,8 @@ public class Context
         finally
         {
             events = null;
+            writtenTables = null;
+            clearAuthorizationCache();
             if (dispatcher != null)
             {
                 EventManager.returnDispatcher(dispName, dispatcher);
@@ -442,6 +492,37 @@ public class Context
         return !CollectionUtils.isEmpty(events);
     }
 
+    /**
+     * Note that this context has written to a table, so that the rows of the
+     * table are neither read from nor put in shared caches until the change
+     * is committed or aborted.
+     * 
+     * @param table
+     *            the table, or null if it is not known
+     */
+    public void addWrittenTable(String table)
+    {
+        if (writtenTables == null)
+        {
+            writtenTables = new HashSet<String>();
+        }
+        writtenTables.add((table == null) ? ANY_TABLE : table.toLowerCase());
+    }
+
+    /**
+     * Find out if this context has uncommitted writes to a table.
+     * 
+     * @param table
+     *            the table
+     * @return true if the table, or a table which could not be told, has
+     *         been written to since the last commit or abort
+     */
+    public boolean hasWrittenTable(String table)
+    {
+        return writtenTables != null
+                && (writtenTables.contains(ANY_TABLE) || writtenTables.contains(table.toLowerCase()));
+    }
+
     /**
      * Retrieves the first element in the events list & removes it from the list of events once retrieved
      * @return The first event of the list or <code>null</code> if the list is empty
@@ -483,6 +564,7 @@ public class Context
         {
             try
             {
+                statementCache.close();
                 if (!connection.isClosed())
                 {
                     DatabaseManager.freeConnection(connection);
@@ -494,6 +576,7 @@ public class Context
             }
             connection = null;
             events = null;
+            writtenTables = null;
             clearCache();
         }
     }
@@ -556,9 +639,139 @@ public class Context
         {
             String key = o.getClass().getName() + id;
             objectCache.put(key, o);
+
+            if (cacheLimit > 0 && objectCache.size() > cacheLimit)
+            {
+                evictCached();
+            }
+
+            if (cacheWarnSize > 0 && objectCache.size() >= cacheWarnSize)
+            {
+                log.warn("Context object cache has grown to " + objectCache.size()
+                        + " objects; objects may not be being decached", new Throwable());
+
+                // Warn again each time the cache doubles
+                cacheWarnSize *= 2;
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used objects which have no unsaved changes
+     * until the object cache is within its limit. Objects which are modified,
+     * or which cannot tell, are never evicted, so the cache may stay over the
+     * limit.
+     */
+    private void evictCached()
+    {
+        Iterator<Object> objects = objectCache.values().iterator();
+
+        while (objects.hasNext() && objectCache.size() > cacheLimit)
+        {
+            Object o = objects.next();
+            if (o instanceof DSpaceObject && !((DSpaceObject) o).isModified())
+            {
+                objects.remove();
+            }
         }
     }
 
+    /**
+     * Limit the number of objects in the object cache. When the limit is
+     * exceeded, the least recently used objects with no unsaved changes are
+     * evicted. Long-running tasks which touch many objects can use this
+     * instead of decaching every object themselves. The default is set by
+     * <code>context.objectcache.limit</code>.
+     * 
+     * @param limit
+     *            maximum number of objects; 0 or less for no limit
+     */
+    public void setCacheLimit(int limit)
+    {
+        cacheLimit = limit;
+
+        if (cacheLimit > 0 && objectCache.size() > cacheLimit)
+        {
+            evictCached();
+        }
+    }
+
+    /**
+     * @return the maximum number of objects in the object cache, or 0 or
+     *         less if there is no limit
+     */
+    public int getCacheLimit()
+    {
+        return cacheLimit;
+    }
+
+    /**
+     * Get an authorization decision previously made in this context.
+     * 
+     * @param key
+     *            the key of the decision, identifying the user, object and
+     *            action
+     * @return the decision, or null if it has not been made
+     */
+    public Boolean getCachedAuthorizationResult(String key)
+    {
+        return authorizationCache.get(key);
+    }
+
+    /**
+     * Remember an authorization decision for the rest of this context, or
+     * until the authorization cache is cleared.
+     * 
+     * @param key
+     *            the key of the decision, identifying the user, object and
+     *            action
+     * @param result
+     *            the decision
+     */
+    public void cacheAuthorizationResult(String key, boolean result)
+    {
+        if (authorizationCache.size() >= MAX_AUTHORIZATION_CACHE_SIZE)
+        {
+            authorizationCache.clear();
+        }
+
+        authorizationCache.put(key, Boolean.valueOf(result));
+    }
+
+    /**
+     * Get the IDs of all the groups the current user is a member of, as
+     * remembered by <code>cacheCurrentUserGroupIDs</code>.
+     * 
+     * @return the group IDs, or null if they are not known
+     */
+    public Set<Integer> getCachedCurrentUserGroupIDs()
+    {
+        return currentUserGroupIDs;
+    }
+
+    /**
+     * Remember the IDs of all the groups the current user is a member of,
+     * until the authorization cache is cleared.
+     * 
+     * @param groupIDs
+     *            the group IDs
+     */
+    public void cacheCurrentUserGroupIDs(Set<Integer> groupIDs)
+    {
+        currentUserGroupIDs = Collections.unmodifiableSet(groupIDs);
+    }
+
+    /**
+     * Forget all authorization decisions and group memberships remembered by
+     * this context. This is done whenever the current user, their special
+     * groups, policies or group memberships change, and on commit.
+     */
+    public void clearAuthorizationCache()
+    {
+        authorizationCache.clear();
+        currentUserGroupIDs = null;
+    }
+
     /**
      * Remove an object from the object cache.
      * 
@@ -606,6 +819,7 @@ public class Context
     public void setSpecialGroup(int groupID)
     {
         specialGroups.add(Integer.valueOf(groupID));
+        clearAuthorizationCache();
 
         // System.out.println("Added " + groupID);
     }
@@ -9,6 +9,7 @@ package org.dspace.discovery;
 
 import org.apache.log4j.Logger;
 import org.apache.commons.cli.*;
+import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Context;
 import org.dspace.utils.DSpace;
 
@@ -41,7 +42,7 @@ public class IndexClient {
         Context context = new Context();
         context.setIgnoreAuthorization(true);
 
-        String usage = "org.dspace.discovery.IndexClient [-cbhf[r <item handle>]] or nothing to update/clean an existing index.";
+        String usage = "org.dspace.discovery.IndexClient [-cbhf[r <item handle>][t <threads>]] or nothing to update/clean an existing index.";
         Options options = new Options();
         HelpFormatter formatter = new HelpFormatter();
         CommandLine line = null;
@@ -73,6 +74,14 @@ public class IndexClient {
                                 "if updating existing index, force each handle to be reindexed even if uptodate")
                         .create("f"));
 
+        options
+                .addOption(OptionBuilder
+                        .withArgName("threads")
+                        .hasArg(true)
+                        .withDescription(
+                                "number of threads to index items with (default discovery.index.threads, or 1)")
+                        .create("t"));
+
         options.addOption(OptionBuilder.isRequired(false).withDescription(
                 "print this help message").create("h"));
 
@@ -102,6 +111,17 @@ public class IndexClient {
 
         IndexingService indexer = dspace.getServiceManager().getServiceByName(IndexingService.class.getName(),IndexingService.class);
 
+        int threads = ConfigurationManager.getIntProperty("discovery", "index.threads", 1);
+        if (line.hasOption("t")) {
+            try {
+                threads = Integer.parseInt(line.getOptionValue("t"));
+            } catch (NumberFormatException e) {
+                formatter.printHelp(usage, "Invalid number of threads: " + line.getOptionValue("t"), options, "");
+                System.exit(1);
+            }
+        }
+        long start = System.currentTimeMillis();
+
         if (line.hasOption("r")) {
             log.info("Removing " + line.getOptionValue("r") + " from Index");
             indexer.unIndexContent(context, line.getOptionValue("r"));
@@ -110,16 +130,17 @@ public class IndexClient {
             indexer.cleanIndex(line.hasOption("f"));
         } else if (line.hasOption("b")) {
             log.info("(Re)building index from scratch.");
-            indexer.createIndex(context);
+            indexer.updateIndex(context, true, threads);
         } else if (line.hasOption("o")) {
             log.info("Optimizing search core.");
             indexer.optimize();
         } else {
             log.info("Updating and Cleaning Index");
             indexer.cleanIndex(line.hasOption("f"));
-            indexer.updateIndex(context, line.hasOption("f"));
+            indexer.updateIndex(context, line.hasOption("f"), threads);
         }
 
         log.info("Done with indexing");
+        System.out.println("Done with indexing in " + (System.currentTimeMillis() - start) / 1000 + "s");
 	}
 }
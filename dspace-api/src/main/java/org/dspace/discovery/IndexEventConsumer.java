@@ -43,7 +43,11 @@ public class IndexEventConsumer implements Consumer {
     IndexingService indexer = dspace.getServiceManager().getServiceByName(IndexingService.class.getName(),IndexingService.class);
 
     public void initialize() throws Exception {
-
+        if (IndexingQueue.isEnabled())
+        {
+            // start processing anything left queued, e.g. before a restart
+            IndexingQueue.getInstance(indexer);
+        }
     }
 
     /**
@@ -156,6 +160,28 @@ public class IndexEventConsumer implements Consumer {
      */
     public void end(Context ctx) throws Exception {
 
+        if (objectsToUpdate != null && handlesToDelete != null
+                && IndexingQueue.isEnabled()) {
+
+            // leave the indexing to the background queue
+            Set<String> handlesToUpdate = new HashSet<String>();
+            for (DSpaceObject iu : objectsToUpdate) {
+                String hdl = iu.getHandle();
+                if (hdl != null && !handlesToDelete.contains(hdl)) {
+                    handlesToUpdate.add(hdl);
+                }
+            }
+
+            try {
+                IndexingQueue.getInstance(indexer).enqueue(handlesToUpdate, handlesToDelete);
+                objectsToUpdate = null;
+                handlesToDelete = null;
+            }
+            catch (Exception e) {
+                log.error("Failed while queueing objects for indexing, indexing them now: ", e);
+            }
+        }
+
         if (objectsToUpdate != null && handlesToDelete != null) {
 
             // update the changed Items not deleted because they were on create list
@@ -0,0 +1,416 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.discovery;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.DSpaceObject;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.handle.HandleManager;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * A queue of objects waiting to be indexed or removed from the Discovery
+ * index, used by <code>IndexEventConsumer</code> when
+ * <code>discovery.index.async</code> is true, so that indexing happens in the
+ * background rather than in the request which made the changes.
+ * <P>
+ * The queue is kept in the discovery_queue table, one row per handle, so it
+ * survives a restart and is shared by all DSpace applications using the same
+ * database. Queueing a handle which is already waiting replaces its row, and
+ * a handle is only processed once it has been left alone for
+ * <code>discovery.index.async.delay</code> seconds, so a burst of changes to
+ * one object causes a single reindex.
+ * <P>
+ * Each application polls the table and indexes the handles which are due
+ * with a pool of <code>discovery.index.async.threads</code> worker threads,
+ * each with its own Context, in batches of
+ * <code>discovery.index.async.batch</code> objects. A row is deleted once
+ * its batch has been processed and committed to SOLR, unless it was queued
+ * again in the meantime; if SOLR fails, the batch stays queued for the next
+ * poll. If two applications process the same row, the object is just
+ * indexed twice. When the application stops, <code>shutdown</code> stops
+ * the threads; anything still queued is left in the table for the next
+ * poll.
+ *
+ * @version $Revision$
+ */
+public final class IndexingQueue
+{
+    private static final Logger log = Logger.getLogger(IndexingQueue.class);
+
+    /** The queue of this application, or null if not yet started */
+    private static IndexingQueue instance = null;
+
+    private final IndexingService indexer;
+
+    /** Milliseconds a handle must have been left alone before it is processed */
+    private final long delay;
+
+    private final int batchSize;
+
+    private final int threads;
+
+    private final ScheduledExecutorService poller;
+
+    private final ThreadPoolExecutor workers;
+
+    private IndexingQueue(IndexingService indexer)
+    {
+        this.indexer = indexer;
+        delay = 1000L * Math.max(0, ConfigurationManager.getIntProperty("discovery", "index.async.delay", 5));
+        batchSize = Math.max(1, ConfigurationManager.getIntProperty("discovery", "index.async.batch", 50));
+        threads = Math.max(1, ConfigurationManager.getIntProperty("discovery", "index.async.threads", 2));
+
+        poller = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("discovery-queue"));
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory("discovery-indexer"));
+
+        long interval = Math.max(1000L, delay);
+        poller.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                poll();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if changes are to be indexed in the background
+     */
+    static boolean isEnabled()
+    {
+        return ConfigurationManager.getBooleanProperty("discovery", "index.async", false);
+    }
+
+    /**
+     * Get the queue of this application, starting it if necessary.
+     *
+     * @param indexer
+     *            the indexing service to process the queue with
+     * @return the queue
+     */
+    static synchronized IndexingQueue getInstance(IndexingService indexer)
+    {
+        if (instance == null)
+        {
+            instance = new IndexingQueue(indexer);
+            log.info("Started background Discovery indexing");
+        }
+
+        return instance;
+    }
+
+    /**
+     * Stop the queue of this application, if it was started, letting the
+     * batches in progress finish. To be called when the application stops,
+     * before the database pool it uses is shut down.
+     */
+    public static synchronized void shutdown()
+    {
+        if (instance != null)
+        {
+            instance.stop();
+            instance = null;
+            log.info("Stopped background Discovery indexing");
+        }
+    }
+
+    /**
+     * Stop polling, then stop the workers, waiting a while for each.
+     */
+    private void stop()
+    {
+        poller.shutdown();
+        workers.shutdown();
+        try
+        {
+            if (!poller.awaitTermination(30, TimeUnit.SECONDS))
+            {
+                poller.shutdownNow();
+            }
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS))
+            {
+                workers.shutdownNow();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            poller.shutdownNow();
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue objects to be indexed or removed from the index. The queue is
+     * written with a Context of its own, since it is called while events of
+     * an already committed Context are dispatched.
+     *
+     * @param updates
+     *            handles of objects to index
+     * @param removals
+     *            handles of objects to remove from the index
+     * @throws SQLException
+     */
+    void enqueue(Set<String> updates, Set<String> removals) throws SQLException
+    {
+        if (updates.isEmpty() && removals.isEmpty())
+        {
+            return;
+        }
+
+        Context context = new Context();
+        try
+        {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (String handle : updates)
+            {
+                queue(context, handle, 0, now);
+            }
+            for (String handle : removals)
+            {
+                queue(context, handle, 1, now);
+            }
+
+            context.complete();
+        }
+        finally
+        {
+            if (context.isValid())
+            {
+                context.abort();
+            }
+        }
+    }
+
+    /**
+     * Queue a handle, replacing any row already waiting for it.
+     */
+    private void queue(Context context, String handle, int unindex, Timestamp queued)
+            throws SQLException
+    {
+        int rows = DatabaseManager.updateQuery(context,
+                "UPDATE discovery_queue SET unindex = ?, queued = ? WHERE handle = ?",
+                Integer.valueOf(unindex), queued, handle);
+
+        if (rows == 0)
+        {
+            DatabaseManager.updateQuery(context,
+                    "INSERT INTO discovery_queue (handle, unindex, queued) VALUES (?, ?, ?)",
+                    handle, Integer.valueOf(unindex), queued);
+        }
+    }
+
+    /**
+     * Process the handles which are due, and wait for them to be done, so
+     * the next poll does not pick up rows still being processed.
+     */
+    private void poll()
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+
+            List<TableRow> due = new ArrayList<TableRow>();
+            TableRowIterator tri = DatabaseManager.query(context,
+                    "SELECT handle, unindex, queued FROM discovery_queue WHERE queued <= ? ORDER BY queued",
+                    new Timestamp(System.currentTimeMillis() - delay));
+            try
+            {
+                // leave the rest for the next poll
+                while (tri.hasNext() && due.size() < batchSize * threads * 4)
+                {
+                    due.add(tri.next());
+                }
+            }
+            finally
+            {
+                tri.close();
+            }
+            context.abort();
+            context = null;
+
+            List<List<TableRow>> batches = new ArrayList<List<TableRow>>();
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int start = 0; start < due.size(); start += batchSize)
+            {
+                final List<TableRow> batch = due.subList(start, Math.min(start + batchSize, due.size()));
+                batches.add(batch);
+                results.add(workers.submit(new Callable<Boolean>()
+                {
+                    public Boolean call()
+                    {
+                        return Boolean.valueOf(process(batch));
+                    }
+                }));
+            }
+
+            List<TableRow> done = new ArrayList<TableRow>();
+            for (int i = 0; i < batches.size(); i++)
+            {
+                if (results.get(i).get().booleanValue())
+                {
+                    done.addAll(batches.get(i));
+                }
+            }
+
+            // the rows only go once SOLR has committed what they asked for
+            if (!done.isEmpty())
+            {
+                indexer.commit();
+                dequeue(done);
+                log.debug("Indexed " + done.size() + " queued objects");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            log.error("Failed while indexing queued objects", e.getCause());
+        }
+        catch (Exception e)
+        {
+            log.error("Failed while reading the Discovery indexing queue", e);
+        }
+        finally
+        {
+            if (context != null)
+            {
+                context.abort();
+            }
+        }
+    }
+
+    /**
+     * Index or remove a batch of queued handles, without committing.
+     *
+     * @return true if SOLR took the whole batch
+     */
+    private boolean process(List<TableRow> batch)
+    {
+        Context context = null;
+        try
+        {
+            context = new Context();
+            context.turnOffAuthorisationSystem();
+
+            List<DSpaceObject> objects = new ArrayList<DSpaceObject>();
+            List<String> removals = new ArrayList<String>();
+            for (TableRow row : batch)
+            {
+                String handle = row.getStringColumn("handle");
+                DSpaceObject dso = null;
+                if (row.getIntColumn("unindex") == 0)
+                {
+                    dso = HandleManager.resolveToObject(context, handle);
+                }
+
+                if (dso != null)
+                {
+                    objects.add(dso);
+                }
+                else
+                {
+                    removals.add(handle);
+                }
+            }
+            indexer.unIndexContent(context, removals);
+            indexer.indexContent(context, objects, true);
+
+            return true;
+        }
+        catch (Exception e)
+        {
+            // the rows stay queued, and are retried by the next poll
+            log.error("Failed while indexing queued objects", e);
+            return false;
+        }
+        finally
+        {
+            if (context != null && context.isValid())
+            {
+                context.abort();
+            }
+        }
+    }
+
+    /**
+     * Delete the rows of processed handles, unless they were queued again
+     * while being processed.
+     */
+    private void dequeue(List<TableRow> rows) throws SQLException
+    {
+        Context context = new Context();
+        try
+        {
+            for (TableRow row : rows)
+            {
+                DatabaseManager.updateQuery(context,
+                        "DELETE FROM discovery_queue WHERE handle = ? AND queued = ?",
+                        row.getStringColumn("handle"),
+                        new Timestamp(row.getDateColumn("queued").getTime()));
+            }
+
+            context.complete();
+        }
+        finally
+        {
+            if (context.isValid())
+            {
+                context.abort();
+            }
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so the queue never keeps a command line
+     * tool from exiting; anything it leaves is picked up from the table.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String name;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String name)
+        {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
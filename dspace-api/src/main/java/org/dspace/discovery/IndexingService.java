@@ -12,6 +12,7 @@ import org.dspace.core.Context;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Interface used for indexing dspaceobject into discovery
@@ -30,6 +31,9 @@ public interface IndexingService {
 
     void indexContent(Context context, DSpaceObject dso,
             boolean force, boolean commit) throws SQLException, SearchServiceException;
+
+    void indexContent(Context context, List<DSpaceObject> dsos,
+            boolean force) throws SQLException, SearchServiceException;
     
     void unIndexContent(Context context, DSpaceObject dso)
             throws SQLException, IOException;
@@ -43,6 +47,9 @@ public interface IndexingService {
     void unIndexContent(Context context, String handle, boolean commit)
             throws SQLException, IOException;
 
+    void unIndexContent(Context context, List<String> handles)
+            throws SQLException, SearchServiceException;
+
     void reIndexContent(Context context, DSpaceObject dso)
             throws SQLException, IOException;
 
@@ -52,6 +59,8 @@ public interface IndexingService {
 
     void updateIndex(Context context, boolean force);
 
+    void updateIndex(Context context, boolean force, int threads);
+
     void cleanIndex(boolean force) throws IOException,
             SQLException, SearchServiceException;
 
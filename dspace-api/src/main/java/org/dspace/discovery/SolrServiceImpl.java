@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -33,13 +34,16 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.collections.Transformer;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateFormatUtils;
@@ -90,6 +94,9 @@ import org.dspace.discovery.configuration.DiscoverySortConfiguration;
 import org.dspace.discovery.configuration.DiscoverySortFieldConfiguration;
 import org.dspace.discovery.configuration.HierarchicalSidebarFacetConfiguration;
 import org.dspace.handle.HandleManager;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
 import org.dspace.utils.DSpace;
 import org.springframework.stereotype.Service;
 
@@ -249,6 +256,78 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         }
     }
 
+    /**
+     * Index a number of objects as <code>indexContent(context, dso, force)</code>
+     * does, but send the documents of Items to SOLR in one request. Unlike
+     * that method, it fails if SOLR does not take the Items, so that the
+     * caller can try them again.
+     *
+     * @param context Users Context
+     * @param dsos    DSpace Objects (Items, Collections or Communities)
+     * @param force   Force update even if not stale.
+     * @throws SQLException
+     * @throws SearchServiceException if the Items could not be written to SOLR
+     */
+    public void indexContent(Context context, List<DSpaceObject> dsos,
+                             boolean force) throws SQLException, SearchServiceException {
+
+        List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+        List<String> removals = new ArrayList<String>();
+
+        for (DSpaceObject dso : dsos)
+        {
+            if (dso.getType() != Constants.ITEM)
+            {
+                indexContent(context, dso, force);
+                continue;
+            }
+
+            Item item = (Item) dso;
+            try {
+                if (item.isArchived() || item.isWithdrawn())
+                {
+                    String handle = item.getHandle();
+                    if (handle == null)
+                    {
+                        handle = HandleManager.findHandle(context, item);
+                    }
+
+                    if (force || requiresIndexing(handle, item.getLastModified()))
+                    {
+                        documents.add(buildItemDocument(context, item));
+                    }
+                } else {
+                    // make sure the item is not in the index if it is not in
+                    // archive or withdrawn
+                    removals.add(Constants.ITEM + "-" + item.getID());
+                }
+            } catch (Exception e)
+            {
+                log.error("Error while indexing item " + item.getID() + ": " + e.getMessage(), e);
+            }
+        }
+
+        try {
+            if (getSolr() != null)
+            {
+                // documents replace those with the same search.uniqueid
+                if (!documents.isEmpty())
+                {
+                    getSolr().add(documents);
+                    log.info("Wrote " + documents.size() + " Items to Index");
+                }
+                if (!removals.isEmpty())
+                {
+                    getSolr().deleteById(removals);
+                    log.info("Removed " + removals.size() + " Items from Index");
+                }
+            }
+        } catch (Exception e)
+        {
+            throw new SearchServiceException(e.getMessage(), e);
+        }
+    }
+
     /**
      * unIndex removes an Item, Collection, or Community
      *
@@ -325,6 +404,42 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         }
     }
 
+    /**
+     * Unindex the Documents of a number of handles in one request, without
+     * committing.
+     * @param context the dspace context
+     * @param handles the handles of the objects to be deleted
+     * @throws SQLException
+     * @throws SearchServiceException if the Documents could not be deleted
+     */
+    public void unIndexContent(Context context, List<String> handles)
+            throws SQLException, SearchServiceException {
+
+        if (handles.isEmpty())
+        {
+            return;
+        }
+
+        StringBuilder query = new StringBuilder();
+        for (String handle : handles)
+        {
+            if (query.length() > 0)
+            {
+                query.append(" OR ");
+            }
+            query.append("handle:\"").append(handle).append("\"");
+        }
+
+        try {
+            if(getSolr() != null){
+                getSolr().deleteByQuery(query.toString());
+            }
+        } catch (Exception e)
+        {
+            throw new SearchServiceException(e.getMessage(), e);
+        }
+    }
+
     /**
      * reIndexContent removes something from the index, then re-indexes it
      *
@@ -381,22 +496,26 @@ public class SolrServiceImpl implements SearchService, IndexingService {
      * @param force whether or not to force the reindexing
      */
     public void updateIndex(Context context, boolean force)
+    {
+        updateIndex(context, force,
+                ConfigurationManager.getIntProperty("discovery", "index.threads", 1));
+    }
+
+    /**
+     * Iterates over all Items, Collections and Communities. And updates them in
+     * the index. Items are indexed by a pool of worker threads, each with its
+     * own Context, which send their documents to SOLR in batches of
+     * <code>discovery.index.batch</code> items. Progress is logged, and
+     * printed, every <code>discovery.index.progress</code> seconds.
+     *
+     * @param context the dspace context
+     * @param force whether or not to force the reindexing
+     * @param threads the number of worker threads to index items with
+     */
+    public void updateIndex(Context context, boolean force, int threads)
     {
         try {
-            ItemIterator items = null;
-            try {
-                for (items = Item.findAllUnfiltered(context); items.hasNext();)
-                {
-                    Item item = items.next();
-                    indexContent(context, item, force);
-                    item.decache();
-                }
-            } finally {
-                if (items != null)
-                {
-                    items.close();
-                }
-            }
+            updateItems(context, force, Math.max(1, threads));
 
             Collection[] collections = Collection.findAll(context);
             for (Collection collection : collections)
@@ -424,6 +543,404 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         }
     }
 
+    /**
+     * Index all items, using a pool of worker threads. The calling thread
+     * reads item IDs and hands them out in batches; each worker builds the
+     * documents of a batch with its own Context and adds them to SOLR in one
+     * request.
+     * <p/>
+     * Unless forced, only items which have changed since they were indexed
+     * are handed out. The item table is read in order of item ID, alongside
+     * the item documents of the index (see <code>IndexedItems</code>), so
+     * the two can be compared without a query per item. Documents of items
+     * which are no longer archived or withdrawn, or no longer exist, are
+     * deleted.
+     *
+     * @param context the dspace context
+     * @param force whether or not to force the reindexing
+     * @param threads the number of worker threads
+     */
+    protected void updateItems(Context context, boolean force, int threads)
+            throws SQLException, InterruptedException, IOException, SearchServiceException
+    {
+        if (getSolr() == null)
+        {
+            return;
+        }
+
+        int batchSize = Math.max(1, ConfigurationManager.getIntProperty("discovery", "index.batch", 100));
+        long reportInterval = 1000L * ConfigurationManager.getIntProperty("discovery", "index.progress", 60);
+
+        // a bounded queue keeps the reader from running far ahead of the
+        // workers; when it is full the reader indexes a batch itself
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 2),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        IndexingProgress progress = new IndexingProgress();
+        long lastReport = System.currentTimeMillis();
+
+        IndexedItems indexed = force ? null : new IndexedItems(
+                ConfigurationManager.getIntProperty("discovery", "index.page", 1000));
+        List<String> removals = new ArrayList<String>();
+
+        TableRowIterator tri = null;
+        try
+        {
+            tri = DatabaseManager.query(context,
+                    "SELECT item_id, in_archive, withdrawn, last_modified FROM item ORDER BY item_id");
+
+            List<Integer> batch = new ArrayList<Integer>(batchSize);
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+                int itemID = row.getIntColumn("item_id");
+
+                if (indexed == null || isChanged(row, indexed, removals))
+                {
+                    batch.add(Integer.valueOf(itemID));
+                    if (batch.size() == batchSize)
+                    {
+                        workers.execute(new ItemBatchIndexer(batch, progress));
+                        batch = new ArrayList<Integer>(batchSize);
+                    }
+                }
+                else
+                {
+                    progress.processed.incrementAndGet();
+                }
+
+                if (removals.size() >= batchSize)
+                {
+                    removeItems(removals, progress);
+                }
+
+                if (reportInterval > 0 && System.currentTimeMillis() - lastReport > reportInterval)
+                {
+                    reportProgress(progress);
+                    lastReport = System.currentTimeMillis();
+                }
+            }
+            if (!batch.isEmpty())
+            {
+                workers.execute(new ItemBatchIndexer(batch, progress));
+            }
+
+            // anything left in the index is an item which no longer exists
+            while (indexed != null && indexed.hasNext())
+            {
+                removals.add(Constants.ITEM + "-" + indexed.peekID());
+                indexed.next();
+            }
+            removeItems(removals, progress);
+        }
+        finally
+        {
+            if (tri != null)
+            {
+                tri.close();
+            }
+
+            workers.shutdown();
+            while (!workers.awaitTermination(Math.max(reportInterval, 1000L), TimeUnit.MILLISECONDS))
+            {
+                if (reportInterval > 0)
+                {
+                    reportProgress(progress);
+                }
+            }
+        }
+
+        reportProgress(progress);
+    }
+
+    /**
+     * Compare an item row with its document in the index, if any. The index
+     * is advanced past the item, and the documents of items which no longer
+     * exist, or of the item if it should no longer be in the index, are added
+     * to the removals.
+     *
+     * @param row the item row
+     * @param indexed the item documents of the index, in order of item ID
+     * @param removals unique IDs of documents to delete
+     * @return true if the item must be (re)indexed
+     */
+    private boolean isChanged(TableRow row, IndexedItems indexed, List<String> removals)
+            throws SearchServiceException
+    {
+        int itemID = row.getIntColumn("item_id");
+
+        while (indexed.hasNext() && indexed.peekID() < itemID)
+        {
+            removals.add(Constants.ITEM + "-" + indexed.peekID());
+            indexed.next();
+        }
+
+        boolean inIndex = false;
+        Date lastIndexed = null;
+        if (indexed.hasNext() && indexed.peekID() == itemID)
+        {
+            inIndex = true;
+            lastIndexed = indexed.next();
+        }
+
+        if (row.getBooleanColumn("in_archive") || row.getBooleanColumn("withdrawn"))
+        {
+            Date lastModified = row.getDateColumn("last_modified");
+            return !inIndex || lastIndexed == null
+                    || (lastModified != null && lastIndexed.before(lastModified));
+        }
+
+        // make sure the item is not in the index if it is not in archive or
+        // withdrawn
+        if (inIndex)
+        {
+            removals.add(Constants.ITEM + "-" + itemID);
+        }
+        return false;
+    }
+
+    /**
+     * Delete documents from the index in one request.
+     *
+     * @param uniqueIDs unique IDs of the documents, cleared afterwards
+     * @param progress the progress of the index update
+     */
+    private void removeItems(List<String> uniqueIDs, IndexingProgress progress)
+            throws IOException, SearchServiceException
+    {
+        if (uniqueIDs.isEmpty())
+        {
+            return;
+        }
+
+        try {
+            getSolr().deleteById(uniqueIDs);
+        } catch (SolrServerException e)
+        {
+            throw new SearchServiceException(e.getMessage(), e);
+        }
+        progress.removed.addAndGet(uniqueIDs.size());
+        uniqueIDs.clear();
+    }
+
+    /**
+     * The item documents of the index, in ascending order of item ID, with
+     * the time each was indexed. Documents are fetched a page at a time,
+     * each page starting after the last ID of the previous one, so the cost
+     * of a page does not grow with the size of the index.
+     */
+    private class IndexedItems
+    {
+        private final int pageSize;
+
+        private int[] ids = new int[0];
+
+        private Date[] lastIndexed = new Date[0];
+
+        private int position = 0;
+
+        private int lastID = -1;
+
+        private boolean exhausted = false;
+
+        IndexedItems(int pageSize)
+        {
+            this.pageSize = Math.max(1, pageSize);
+        }
+
+        boolean hasNext() throws SearchServiceException
+        {
+            if (position == ids.length && !exhausted)
+            {
+                fetch();
+            }
+            return position < ids.length;
+        }
+
+        /**
+         * @return the ID of the next item, if <code>hasNext()</code>
+         */
+        int peekID()
+        {
+            return ids[position];
+        }
+
+        /**
+         * Advance past the next item.
+         *
+         * @return the time it was indexed, or null if not known
+         */
+        Date next()
+        {
+            return lastIndexed[position++];
+        }
+
+        private void fetch() throws SearchServiceException
+        {
+            SolrQuery query = new SolrQuery();
+            query.setQuery("search.resourcetype:" + Constants.ITEM);
+            query.addFilterQuery("search.resourceid:[" + (lastID + 1) + " TO *]");
+            query.setFields("search.resourceid", LAST_INDEXED_FIELD);
+            query.setSortField("search.resourceid", SolrQuery.ORDER.asc);
+            query.setRows(pageSize);
+
+            SolrDocumentList docs;
+            try {
+                docs = getSolr().query(query).getResults();
+            } catch (SolrServerException e)
+            {
+                throw new SearchServiceException(e.getMessage(), e);
+            }
+
+            ids = new int[docs.size()];
+            lastIndexed = new Date[docs.size()];
+            position = 0;
+            for (int i = 0; i < docs.size(); i++)
+            {
+                SolrDocument doc = docs.get(i);
+                ids[i] = ((Number) doc.getFirstValue("search.resourceid")).intValue();
+                Object value = doc.getFirstValue(LAST_INDEXED_FIELD);
+                lastIndexed[i] = (value instanceof Date) ? (Date) value : null;
+            }
+
+            if (ids.length < pageSize)
+            {
+                exhausted = true;
+            }
+            if (ids.length > 0)
+            {
+                lastID = ids[ids.length - 1];
+            }
+        }
+    }
+
+    /**
+     * Log and print the progress of an index update.
+     *
+     * @param progress the progress so far
+     */
+    protected void reportProgress(IndexingProgress progress)
+    {
+        String message = "Discovery index update: " + progress;
+        log.info(message);
+        System.out.println(message);
+    }
+
+    /**
+     * Counts of the items handled by an index update, shared by its workers.
+     */
+    protected static class IndexingProgress
+    {
+        private final long start = System.currentTimeMillis();
+
+        private final AtomicLong processed = new AtomicLong();
+
+        private final AtomicLong indexed = new AtomicLong();
+
+        private final AtomicLong removed = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        @Override
+        public String toString()
+        {
+            long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+            return processed.get() + " items processed (" + indexed.get() + " indexed, "
+                    + removed.get() + " removed, " + failed.get() + " failed) in "
+                    + seconds + "s, " + (processed.get() / seconds) + " items/s";
+        }
+    }
+
+    /**
+     * Indexes a batch of items with a Context of its own, and sends the
+     * documents to SOLR together. The items have already been found to need
+     * indexing, so each is rebuilt.
+     */
+    private class ItemBatchIndexer implements Runnable
+    {
+        private final List<Integer> itemIDs;
+
+        private final IndexingProgress progress;
+
+        ItemBatchIndexer(List<Integer> itemIDs, IndexingProgress progress)
+        {
+            this.itemIDs = itemIDs;
+            this.progress = progress;
+        }
+
+        public void run()
+        {
+            Context context = null;
+            ItemIterator items = null;
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            List<String> removals = new ArrayList<String>();
+            // the items of the batch already counted, as failed or indexed
+            int counted = 0;
+
+            try {
+                context = new Context();
+                context.turnOffAuthorisationSystem();
+
+                // every item will be rebuilt, so load metadata in bulk
+                items = new ItemIterator(context, itemIDs);
+                items.setPrefetchSize(itemIDs.size());
+
+                while (items.hasNext())
+                {
+                    Item item = items.next();
+                    try {
+                        if (item.isArchived() || item.isWithdrawn())
+                        {
+                            documents.add(buildItemDocument(context, item));
+                        }
+                        else
+                        {
+                            // make sure the item is not in the index if it is
+                            // not in archive or withdrawn
+                            removals.add(Constants.ITEM + "-" + item.getID());
+                        }
+                    } catch (Exception e)
+                    {
+                        progress.failed.incrementAndGet();
+                        counted++;
+                        log.error("Error while indexing item " + item.getID() + ": " + e.getMessage(), e);
+                    }
+                    progress.processed.incrementAndGet();
+                    item.decache();
+                }
+
+                // documents replace those with the same search.uniqueid
+                if (!documents.isEmpty())
+                {
+                    getSolr().add(documents);
+                    progress.indexed.addAndGet(documents.size());
+                    counted += documents.size();
+                }
+                if (!removals.isEmpty())
+                {
+                    getSolr().deleteById(removals);
+                    progress.removed.addAndGet(removals.size());
+                }
+            } catch (Exception e)
+            {
+                // the rest of the batch, whether or not it was reached
+                progress.failed.addAndGet(itemIDs.size() - counted);
+                log.error("Error while indexing items " + itemIDs.get(0) + " to "
+                        + itemIDs.get(itemIDs.size() - 1) + ": " + e.getMessage(), e);
+            } finally {
+                if (items != null)
+                {
+                    items.close();
+                }
+                if (context != null)
+                {
+                    context.abort();
+                }
+            }
+        }
+    }
+
     /**
      * Iterates over all documents in the Lucene index and verifies they are in
      * database, if not, they are removed.
@@ -449,47 +966,137 @@ public class SolrServiceImpl implements SearchService, IndexingService {
             {
                 getSolr().deleteByQuery("search.resourcetype:[2 TO 4]");
             } else {
-                SolrQuery query = new SolrQuery();
-                query.setQuery("search.resourcetype:[2 TO 4]");
-                QueryResponse rsp = getSolr().query(query);
-                SolrDocumentList docs = rsp.getResults();
+                removeOrphans(context);
+            }
+        } catch(Exception e)
+        {
 
-                Iterator iter = docs.iterator();
-                while (iter.hasNext())
-                {
+            throw new SearchServiceException(e.getMessage(), e);
+        } finally
+        {
+            context.abort();
+        }
+
+
+
+
+    }
+
+    /**
+     * Delete the documents of Items, Collections and Communities whose handle
+     * no longer belongs to the object they were built from. The index is read
+     * a page at a time in order of handle and unique id, each page starting
+     * after the last document of the previous one, so every document is
+     * visited however large the index is, even where several share a handle.
+     * The handles of a page are looked up with one query, and its orphans
+     * deleted with one request.
+     *
+     * @param context the dspace context
+     * @throws SQLException sql exception
+     * @throws SolrServerException if something went wrong with the solr server
+     * @throws IOException io exception
+     */
+    protected void removeOrphans(Context context)
+            throws SQLException, SolrServerException, IOException
+    {
+        // pages are also the size of the IN list, which some databases limit
+        int pageSize = Math.max(1, Math.min(1000,
+                ConfigurationManager.getIntProperty("discovery", "index.page", 1000)));
+        String lastHandle = null;
+        String lastUniqueID = null;
+        long checked = 0;
+        long deleted = 0;
 
-                 SolrDocument doc = (SolrDocument) iter.next();
+        while (true)
+        {
+            SolrQuery query = new SolrQuery();
+            query.setQuery("search.resourcetype:[2 TO 4]");
+            if (lastHandle == null)
+            {
+                query.addFilterQuery("handle:[* TO *]");
+            }
+            else
+            {
+                String handle = ClientUtils.escapeQueryChars(lastHandle);
+                query.addFilterQuery("handle:{" + handle + " TO *] OR (handle:" + handle
+                        + " AND search.uniqueid:{" + ClientUtils.escapeQueryChars(lastUniqueID) + " TO *])");
+            }
+            query.setFields("handle", "search.uniqueid");
+            query.setSortField("handle", SolrQuery.ORDER.asc);
+            query.addSortField("search.uniqueid", SolrQuery.ORDER.asc);
+            query.setRows(pageSize);
 
-                String handle = (String) doc.getFieldValue("handle");
+            SolrDocumentList docs = getSolr().query(query).getResults();
+            if (docs.isEmpty())
+            {
+                break;
+            }
 
-                DSpaceObject o = HandleManager.resolveToObject(context, handle);
+            // the unique id each handle should be indexed under
+            Map<String, String> uniqueIDs = new HashMap<String, String>();
+            StringBuilder sql = new StringBuilder("SELECT handle, resource_type_id, resource_id "
+                    + "FROM handle WHERE resource_id IS NOT NULL AND handle IN (");
+            Object[] parameters = new Object[docs.size()];
+            for (int i = 0; i < docs.size(); i++)
+            {
+                sql.append((i == 0) ? "?" : ", ?");
+                parameters[i] = docs.get(i).getFirstValue("handle");
+            }
+            sql.append(")");
 
-                if (o == null)
+            TableRowIterator tri = DatabaseManager.query(context, sql.toString(), parameters);
+            try
+            {
+                while (tri.hasNext())
                 {
-                    log.info("Deleting: " + handle);
-                    /*
-                          * Use IndexWriter to delete, its easier to manage
-                          * write.lock
-                          */
-                    unIndexContent(context, handle);
-                } else {
-                    context.removeCached(o, o.getID());
-                    log.debug("Keeping: " + handle);
+                    TableRow row = tri.next();
+                    uniqueIDs.put(row.getStringColumn("handle"),
+                            row.getIntColumn("resource_type_id") + "-" + row.getIntColumn("resource_id"));
                 }
             }
+            finally
+            {
+                tri.close();
             }
-        } catch(Exception e)
-        {
 
-            throw new SearchServiceException(e.getMessage(), e);
-        } finally
-        {
-            context.abort();
-        }
+            List<String> orphans = new ArrayList<String>();
+            for (SolrDocument doc : docs)
+            {
+                String handle = (String) doc.getFirstValue("handle");
+                String uniqueID = (String) doc.getFirstValue("search.uniqueid");
 
+                if (uniqueID.equals(uniqueIDs.get(handle)))
+                {
+                    log.debug("Keeping: " + handle);
+                }
+                else
+                {
+                    log.info("Deleting: " + handle);
+                    orphans.add(uniqueID);
+                }
+            }
 
+            if (!orphans.isEmpty())
+            {
+                getSolr().deleteById(orphans);
+            }
 
+            checked += docs.size();
+            deleted += orphans.size();
+            lastHandle = (String) docs.get(docs.size() - 1).getFirstValue("handle");
+            lastUniqueID = (String) docs.get(docs.size() - 1).getFirstValue("search.uniqueid");
 
+            if (docs.size() < pageSize)
+            {
+                break;
+            }
+        }
+
+        if (deleted > 0)
+        {
+            getSolr().commit();
+        }
+        log.info("Cleaned index: checked " + checked + " documents, deleted " + deleted);
     }
 
     /**
@@ -819,6 +1426,30 @@ public class SolrServiceImpl implements SearchService, IndexingService {
      */
     protected void buildDocument(Context context, Item item)
             throws SQLException, IOException {
+        SolrInputDocument doc = buildItemDocument(context, item);
+
+        // write the index and close the inputstreamreaders
+        try {
+            writeDocument(doc);
+            log.info("Wrote Item: " + doc.getFieldValue("handle") + " to Index");
+        } catch (RuntimeException e)
+        {
+            log.error("Error while writing item to discovery index: " + doc.getFieldValue("handle") + " message:"+ e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Build a Lucene document for a DSpace Item, without writing it to the
+     * index.
+     *
+     * @param context Users Context
+     * @param item    The DSpace Item to be indexed
+     * @return the document
+     * @throws SQLException
+     * @throws IOException
+     */
+    protected SolrInputDocument buildItemDocument(Context context, Item item)
+            throws SQLException, IOException {
         String handle = item.getHandle();
 
         if (handle == null)
@@ -1300,7 +1931,16 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         log.debug("  Added Grouping");
 
 
-        Vector<InputStreamReader> readers = new Vector<InputStreamReader>();
+        // the full text is limited to a number of characters per item, and
+        // only a bounded part of it is stored for highlighting
+        int fulltextLimit = ConfigurationManager.getIntProperty("discovery", "index.fulltext.max-chars", 10000000);
+        int fulltextRemaining = (fulltextLimit > 0) ? fulltextLimit : Integer.MAX_VALUE;
+        int highlightRemaining = 0;
+        if (hitHighlightingFields.contains("*") || hitHighlightingFields.contains("fulltext"))
+        {
+            highlightRemaining = ConfigurationManager.getIntProperty("discovery", "index.fulltext.highlight.max-chars", 100000);
+        }
+        boolean truncated = false;
 
         try {
             // now get full text of any bitstreams in the TEXT bundle
@@ -1317,18 +1957,39 @@ public class SolrServiceImpl implements SearchService, IndexingService {
 
                     for (Bitstream myBitstream : myBitstreams)
                     {
+                        if (fulltextRemaining <= 0)
+                        {
+                            truncated = true;
+                            break;
+                        }
+
+                        InputStreamReader is = null;
                         try {
-                            InputStreamReader is = new InputStreamReader(
-                                    myBitstream.retrieve()); // get input
-                            readers.add(is);
+                            is = new InputStreamReader(myBitstream.retrieve()); // get input
+
+                            // read the text in one pass, without a second
+                            // copy in memory, and close it straight away
+                            StringBuilder text = new StringBuilder((int) Math.max(16,
+                                    Math.min(fulltextRemaining, myBitstream.getSize())));
+                            if (!readText(is, text, fulltextRemaining))
+                            {
+                                truncated = true;
+                            }
+                            is.close();
+                            is = null;
+                            fulltextRemaining -= text.length();
 
                             // Add each InputStream to the Indexed Document
-                            String value = IOUtils.toString(is);
+                            String value = text.toString();
+                            text = null;
                             doc.addField("fulltext", value);
 
-                            if(hitHighlightingFields.contains("*") || hitHighlightingFields.contains("fulltext"))
+                            if (highlightRemaining > 0)
                             {
-                                doc.addField("fulltext_hl", value);
+                                String highlight = (value.length() > highlightRemaining)
+                                        ? value.substring(0, highlightRemaining) : value;
+                                doc.addField("fulltext_hl", highlight);
+                                highlightRemaining -= highlight.length();
                             }
 
                             log.debug("  Added BitStream: "
@@ -1341,6 +2002,11 @@ public class SolrServiceImpl implements SearchService, IndexingService {
                             // this will never happen, but compiler is now
                             // happy.
                             log.trace(e.getMessage(), e);
+                        } finally {
+                            if (is != null)
+                            {
+                                is.close();
+                            }
                         }
                     }
                 }
@@ -1349,15 +2015,13 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         {
             log.error(e.getMessage(), e);
         }
-        finally {
-            Iterator<InputStreamReader> itr = readers.iterator();
-            while (itr.hasNext()) {
-                InputStreamReader reader = itr.next();
-                if (reader != null) {
-                    reader.close();
-                }
-            }
-            log.debug("closed " + readers.size() + " readers");
+
+        if (truncated)
+        {
+            // mark the document, so searches know the text is incomplete
+            doc.addField("fulltext.truncated", "true");
+            log.info("Full text of Item: " + handle + " truncated to "
+                    + fulltextLimit + " characters");
         }
 
         //Do any additional indexing, depends on the plugins
@@ -1367,14 +2031,33 @@ public class SolrServiceImpl implements SearchService, IndexingService {
             solrServiceIndexPlugin.additionalIndex(context, item, doc);
         }
 
-        // write the index and close the inputstreamreaders
-        try {
-            writeDocument(doc);
-            log.info("Wrote Item: " + handle + " to Index");
-        } catch (RuntimeException e)
+        return doc;
+    }
+
+    /**
+     * Read text into a buffer, up to a number of characters.
+     *
+     * @param reader the text to read
+     * @param text the buffer to append the text to
+     * @param limit the maximum length of the buffer
+     * @return true if all of the text was read, false if it was truncated
+     * @throws IOException
+     */
+    protected static boolean readText(Reader reader, StringBuilder text, int limit)
+            throws IOException
+    {
+        char[] buffer = new char[8192];
+        while (text.length() < limit)
         {
-            log.error("Error while writing item to discovery index: " + handle + " message:"+ e.getMessage(), e);
+            int read = reader.read(buffer, 0, Math.min(buffer.length, limit - text.length()));
+            if (read == -1)
+            {
+                return true;
+            }
+            text.append(buffer, 0, read);
         }
+
+        return reader.read() == -1;
     }
 
     /**
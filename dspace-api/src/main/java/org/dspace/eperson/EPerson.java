@@ -74,6 +74,9 @@ public class EPerson extends DSpaceObject
     /** Flag set when metadata is modified, for events */
     private boolean modifiedMetadata;
 
+    /** Flag set when data is modified which fires no event when updated */
+    private boolean modifiedQuietly;
+
     /**
      * Construct an EPerson
      * 
@@ -91,6 +94,7 @@ public class EPerson extends DSpaceObject
         context.cache(this, row.getIntColumn("eperson_id"));
         modified = false;
         modifiedMetadata = false;
+        modifiedQuietly = false;
         clearDetails();
     }
 
@@ -610,6 +614,12 @@ public class EPerson extends DSpaceObject
     {
         return myRow.getIntColumn("eperson_id");
     }
+
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata || modifiedQuietly;
+    }
     
     /**
      * Get the e-person's language
@@ -632,6 +642,7 @@ public class EPerson extends DSpaceObject
      public void setLanguage(String language)
      {
          myRow.setColumn("language", language);
+         modifiedQuietly = true;
      }
   
 
@@ -972,6 +983,7 @@ public class EPerson extends DSpaceObject
     public void setLastActive(Date when)
     {
         myRow.setColumn("last_active", when);
+        modifiedQuietly = true;
     }
 
     /**
@@ -999,6 +1011,7 @@ public class EPerson extends DSpaceObject
         }
 
         DatabaseManager.update(myContext, myRow);
+        modifiedQuietly = false;
 
         log.info(LogManager.getHeader(myContext, "update_eperson",
                 "eperson_id=" + getID()));
@@ -9,11 +9,9 @@ package org.dspace.eperson;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -223,6 +221,12 @@ public class Group extends DSpaceObject
         return myRow.getIntColumn("eperson_group_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modifiedMetadata || epeopleChanged || groupsChanged;
+    }
+
     /**
      * get name of group
      * 
@@ -374,9 +378,16 @@ public class Group extends DSpaceObject
             return true;
         }
 
-        EPerson currentuser = c.getCurrentUser();
+        // Use the snapshot of the current user's groups, if there is one
+        Set<Integer> groupIDs = c.getCachedCurrentUserGroupIDs();
 
-        return epersonInGroup(c, groupid, currentuser);
+        if (groupIDs == null)
+        {
+            groupIDs = allMemberGroupIDs(c, c.getCurrentUser());
+            c.cacheCurrentUserGroupIDs(groupIDs);
+        }
+
+        return groupIDs.contains(Integer.valueOf(groupid));
     }
 
     /**
@@ -462,6 +473,21 @@ public class Group extends DSpaceObject
 
         // all the users are members of the anonymous group 
         groupIDs.add(Integer.valueOf(0));
+
+        // if the shared group closure is enabled, use it to find the parents
+        GroupClosure closure = GroupClosure.getShared(c);
+        if (closure != null)
+        {
+            for (Integer groupID : new ArrayList<Integer>(groupIDs))
+            {
+                for (int parentID : closure.getAncestors(groupID.intValue()))
+                {
+                    groupIDs.add(Integer.valueOf(parentID));
+                }
+            }
+
+            return groupIDs;
+        }
         
         // now we have all owning groups, also grab all parents of owning groups
         // yes, I know this could have been done as one big query and a union,
@@ -567,29 +593,41 @@ public class Group extends DSpaceObject
         Set<Integer> epeopleIDs = new HashSet<Integer>();
         
         // Get all groups which are a member of this group
-        TableRowIterator tri = DatabaseManager.queryTable(c, "group2groupcache",
-                "SELECT * FROM group2groupcache WHERE parent_id= ? ",
-                g.getID());
-        
         Set<Integer> groupIDs = new HashSet<Integer>();
+        TableRowIterator tri;
 
-        try
+        GroupClosure closure = GroupClosure.getShared(c);
+        if (closure != null)
         {
-            while (tri.hasNext())
+            for (int childID : closure.getDescendants(g.getID()))
             {
-                TableRow row = tri.next();
-
-                int childID = row.getIntColumn("child_id");
-
                 groupIDs.add(Integer.valueOf(childID));
             }
         }
-        finally
+        else
         {
-            // close the TableRowIterator to free up resources
-            if (tri != null)
+            tri = DatabaseManager.queryTable(c, "group2groupcache",
+                    "SELECT * FROM group2groupcache WHERE parent_id= ? ",
+                    g.getID());
+
+            try
             {
-                tri.close();
+                while (tri.hasNext())
+                {
+                    TableRow row = tri.next();
+
+                    int childID = row.getIntColumn("child_id");
+
+                    groupIDs.add(Integer.valueOf(childID));
+                }
+            }
+            finally
+            {
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
             }
         }
 
@@ -655,14 +693,6 @@ public class Group extends DSpaceObject
         return epeopleIDs;
     }
 
-    private static boolean epersonInGroup(Context c, int groupID, EPerson e)
-            throws SQLException
-    {
-        Set<Integer> groupIDs = Group.allMemberGroupIDs(c, e);
-
-        return groupIDs.contains(Integer.valueOf(groupID));
-    }
-
     /**
      * find the group by its ID
      * 
@@ -1004,6 +1034,10 @@ public class Group extends DSpaceObject
                 "DELETE FROM EPersonGroup2EPerson WHERE eperson_group_id= ? ",
                 getID());
 
+        // note the groups we were a member of, whose cache entries may
+        // have gone through us
+        Set<Integer> parentIDs = cachedParentIDs(myContext, getID());
+
         // remove any group2groupcache entries
         DatabaseManager.updateQuery(myContext,
                 "DELETE FROM group2groupcache WHERE parent_id= ? OR child_id= ? ",
@@ -1014,6 +1048,11 @@ public class Group extends DSpaceObject
                 "DELETE FROM group2group WHERE parent_id= ? OR child_id= ? ",
                 getID(),getID());
 
+        if (!parentIDs.isEmpty())
+        {
+            updateGroupCache(myContext, parentIDs);
+        }
+
         // don't forget the new table
         deleteEpersonGroup2WorkspaceItem();
 
@@ -1022,6 +1061,9 @@ public class Group extends DSpaceObject
 
         epeople.clear();
 
+        // memberships and policies have changed
+        myContext.clearAuthorizationCache();
+
         log.info(LogManager.getHeader(myContext, "delete_group", "group_id="
                 + getID()));
     }
@@ -1113,6 +1155,7 @@ public class Group extends DSpaceObject
                     getID());
 
             // Add new mappings
+            List<TableRow> mappingRows = new ArrayList<TableRow>();
             Iterator<EPerson> i = epeople.iterator();
 
             while (i.hasNext())
@@ -1122,8 +1165,9 @@ public class Group extends DSpaceObject
                 TableRow mappingRow = DatabaseManager.row("epersongroup2eperson");
                 mappingRow.setColumn("eperson_id", e.getID());
                 mappingRow.setColumn("eperson_group_id", getID());
-                DatabaseManager.insert(myContext, mappingRow);
+                mappingRows.add(mappingRow);
             }
+            DatabaseManager.insert(myContext, mappingRows);
 
             epeopleChanged = false;
         }
@@ -1137,6 +1181,7 @@ public class Group extends DSpaceObject
                     getID());
 
             // Add new mappings
+            List<TableRow> mappingRows = new ArrayList<TableRow>();
             Iterator<Group> i = groups.iterator();
 
             while (i.hasNext())
@@ -1146,15 +1191,22 @@ public class Group extends DSpaceObject
                 TableRow mappingRow = DatabaseManager.row("group2group");
                 mappingRow.setColumn("parent_id", getID());
                 mappingRow.setColumn("child_id", g.getID());
-                DatabaseManager.insert(myContext, mappingRow);
+                mappingRows.add(mappingRow);
             }
+            DatabaseManager.insert(myContext, mappingRows);
 
-            // groups changed, now change group cache
-            rethinkGroupCache();
+            // groups changed, now change the group cache entries of this
+            // group and the groups it is a member of
+            Set<Integer> changedIDs = cachedParentIDs(myContext, getID());
+            changedIDs.add(Integer.valueOf(getID()));
+            updateGroupCache(myContext, changedIDs);
 
             groupsChanged = false;
         }
 
+        // Memberships may have changed
+        myContext.clearAuthorizationCache();
+
         log.info(LogManager.getHeader(myContext, "update_group", "group_id="
                 + getID()));
     }
@@ -1209,126 +1261,113 @@ public class Group extends DSpaceObject
     }
 
     /**
-     * Regenerate the group cache AKA the group2groupcache table in the database -
-     * meant to be called when a group is added or removed from another group
-     * 
+     * Bring the group cache AKA the group2groupcache table up to date after
+     * the member groups of some groups have changed. The member groups of
+     * the given groups are worked out from the part of group2group below
+     * them, and only the cache entries which differ are deleted or inserted.
+     *
+     * @param context
+     *            DSpace context
+     * @param groupIDs
+     *            the groups whose (direct or indirect) member groups may have
+     *            changed
      */
-    private void rethinkGroupCache() throws SQLException
+    private static void updateGroupCache(Context context, Set<Integer> groupIDs)
+            throws SQLException
     {
-        // read in the group2group table
-        TableRowIterator tri = DatabaseManager.queryTable(myContext, "group2group",
-                "SELECT * FROM group2group");
+        GroupClosure closure = GroupClosure.loadBelow(context, groupIDs);
 
-        Map<Integer,Set<Integer>> parents = new HashMap<Integer,Set<Integer>>();
+        List<TableRow> staleRows = new ArrayList<TableRow>();
+        List<TableRow> newRows = new ArrayList<TableRow>();
 
-        try
+        for (Integer groupID : groupIDs)
         {
-            while (tri.hasNext())
+            Set<Integer> childIDs = new HashSet<Integer>();
+            for (int childID : closure.getDescendants(groupID.intValue()))
             {
-                TableRow row = (TableRow) tri.next();
+                childIDs.add(Integer.valueOf(childID));
+            }
 
-                Integer parentID = Integer.valueOf(row.getIntColumn("parent_id"));
-                Integer childID = Integer.valueOf(row.getIntColumn("child_id"));
+            // compare with the entries already in the cache
+            TableRowIterator tri = DatabaseManager.queryTable(context, "group2groupcache",
+                    "SELECT * FROM group2groupcache WHERE parent_id= ? ",
+                    groupID.intValue());
 
-                // if parent doesn't have an entry, create one
-                if (!parents.containsKey(parentID))
+            try
+            {
+                while (tri.hasNext())
                 {
-                    Set<Integer> children = new HashSet<Integer>();
+                    TableRow row = tri.next();
 
-                    // add child id to the list
-                    children.add(childID);
-                    parents.put(parentID, children);
-                }
-                else
-                {
-                    // parent has an entry, now add the child to the parent's record
-                    // of children
-                    Set<Integer> children =  parents.get(parentID);
-                    children.add(childID);
+                    // already cached entries are removed from childIDs, so
+                    // any duplicates are stale too
+                    if (!childIDs.remove(Integer.valueOf(row.getIntColumn("child_id"))))
+                    {
+                        staleRows.add(row);
+                    }
                 }
             }
-        }
-        finally
-        {
-            // close the TableRowIterator to free up resources
-            if (tri != null)
+            finally
             {
-                tri.close();
+                // close the TableRowIterator to free up resources
+                if (tri != null)
+                {
+                    tri.close();
+                }
             }
-        }
-
-        // now parents is a hash of all of the IDs of groups that are parents
-        // and each hash entry is a hash of all of the IDs of children of those
-        // parent groups
-        // so now to establish all parent,child relationships we can iterate
-        // through the parents hash
-        for (Map.Entry<Integer, Set<Integer>> parent : parents.entrySet())
-        {
-            Set<Integer> myChildren = getChildren(parents, parent.getKey());
-            parent.getValue().addAll(myChildren);
-        }
 
-        // empty out group2groupcache table
-        DatabaseManager.updateQuery(myContext,
-                "DELETE FROM group2groupcache WHERE id >= 0");
-
-        // write out new one
-        for (Map.Entry<Integer, Set<Integer>> parent : parents.entrySet())
-        {
-            int parentID = parent.getKey().intValue();
-
-            for (Integer child : parent.getValue())
+            for (Integer childID : childIDs)
             {
                 TableRow row = DatabaseManager.row("group2groupcache");
 
-                row.setColumn("parent_id", parentID);
-                row.setColumn("child_id", child);
+                row.setColumn("parent_id", groupID.intValue());
+                row.setColumn("child_id", childID.intValue());
 
-                DatabaseManager.insert(myContext, row);
+                newRows.add(row);
             }
         }
+
+        DatabaseManager.delete(context, staleRows);
+        DatabaseManager.insert(context, newRows);
     }
 
     /**
-     * Used recursively to generate a map of ALL of the children of the given
-     * parent
-     * 
-     * @param parents
-     *            Map of parent,child relationships
-     * @param parent
-     *            the parent you're interested in
-     * @return Map whose keys are all of the children of a parent
+     * Get the IDs of all groups a group is directly or indirectly a member
+     * of, according to the group cache.
+     *
+     * @param context
+     *            DSpace context
+     * @param groupID
+     *            the group
+     * @return the parent group IDs
      */
-    private Set<Integer> getChildren(Map<Integer,Set<Integer>> parents, Integer parent)
+    private static Set<Integer> cachedParentIDs(Context context, int groupID)
+            throws SQLException
     {
-        Set<Integer> myChildren = new HashSet<Integer>();
+        Set<Integer> parentIDs = new HashSet<Integer>();
 
-        // degenerate case, this parent has no children
-        if (!parents.containsKey(parent))
+        TableRowIterator tri = DatabaseManager.queryTable(context, "group2groupcache",
+                "SELECT * FROM group2groupcache WHERE child_id= ? ", groupID);
+
+        try
         {
-            return myChildren;
+            while (tri.hasNext())
+            {
+                parentIDs.add(Integer.valueOf(tri.next().getIntColumn("parent_id")));
+            }
         }
-
-        // got this far, so we must have children
-        Set<Integer> children =  parents.get(parent);
-
-        // now iterate over all of the children
-        Iterator<Integer> i = children.iterator();
-
-        while (i.hasNext())
+        finally
         {
-            Integer childID = i.next();
-
-            // add this child's ID to our return set
-            myChildren.add(childID);
-
-            // and now its children
-            myChildren.addAll(getChildren(parents, childID));
+            // close the TableRowIterator to free up resources
+            if (tri != null)
+            {
+                tri.close();
+            }
         }
 
-        return myChildren;
+        return parentIDs;
     }
-    
+
     public DSpaceObject getParentObject() throws SQLException
     {
         // could a collection/community administrator manage related groups?
@@ -0,0 +1,517 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.eperson;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * The transitive closure of group-in-group memberships (the group2group
+ * table): for each group, all the groups it is directly or indirectly a
+ * member of, and all the groups which are directly or indirectly members of
+ * it. Sets of group IDs are held as sorted <code>int</code> arrays, which are
+ * never modified once built, so they may be handed out without copying.
+ * <P>
+ * Adding or removing a membership only recomputes the closure of the groups
+ * it affects: the ancestors of the child group and its descendants, and the
+ * descendants of the parent group and its ancestors.
+ * <P>
+ * The part of the closure below the groups whose memberships changed is
+ * used by <code>Group</code> to maintain the group2groupcache table. A closure shared by all Contexts can also be enabled with
+ * <code>eperson.groupclosure.enabled</code>, in which case group lookups are
+ * answered from memory rather than from group2groupcache. The shared closure
+ * is loaded on first use, kept up to date by <code>GroupClosureConsumer</code>,
+ * and reloaded every <code>eperson.groupclosure.reload</code> seconds to pick
+ * up changes made by other processes.
+ *
+ * @version $Revision$
+ */
+final class GroupClosure
+{
+    private static final Logger log = Logger.getLogger(GroupClosure.class);
+
+    private static final int[] NONE = new int[0];
+
+    /** The most IDs in one IN list (Oracle allows 1000) */
+    private static final int IN_LIMIT = 500;
+
+    /** The shared closure, or null if not enabled or not yet loaded */
+    private static GroupClosure shared = null;
+
+    /** When the shared closure was loaded */
+    private static long sharedLoaded = 0;
+
+    /** Direct parents and children of each group */
+    private final Map<Integer, int[]> parents = new HashMap<Integer, int[]>();
+
+    private final Map<Integer, int[]> children = new HashMap<Integer, int[]>();
+
+    /** All ancestors and descendants of each group */
+    private final Map<Integer, int[]> ancestors = new HashMap<Integer, int[]>();
+
+    private final Map<Integer, int[]> descendants = new HashMap<Integer, int[]>();
+
+    /**
+     * Construct an empty closure.
+     */
+    GroupClosure()
+    {
+    }
+
+    /**
+     * Load the closure of the group2group table.
+     *
+     * @param context
+     *            the context to read the table with
+     * @return the closure
+     * @throws SQLException
+     */
+    static GroupClosure load(Context context) throws SQLException
+    {
+        GroupClosure closure = new GroupClosure();
+
+        TableRowIterator tri = DatabaseManager.queryTable(context, "group2group",
+                "SELECT * FROM group2group");
+
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+
+                closure.addEdge(row.getIntColumn("parent_id"), row.getIntColumn("child_id"));
+            }
+        }
+        finally
+        {
+            // close the TableRowIterator to free up resources
+            if (tri != null)
+            {
+                tri.close();
+            }
+        }
+
+        closure.recomputeAll();
+
+        return closure;
+    }
+
+    /**
+     * Load the part of the closure below some groups: their member groups,
+     * and those of the groups below them, read from the group2group table a
+     * level at a time. The descendants of the groups reached are complete;
+     * their ancestors are not.
+     *
+     * @param context
+     *            the context to read the table with
+     * @param groupIDs
+     *            the groups to start from
+     * @return the partial closure
+     * @throws SQLException
+     */
+    static GroupClosure loadBelow(Context context, Set<Integer> groupIDs) throws SQLException
+    {
+        GroupClosure closure = new GroupClosure();
+
+        Set<Integer> seen = new HashSet<Integer>(groupIDs);
+        List<Integer> level = new ArrayList<Integer>(groupIDs);
+        while (!level.isEmpty())
+        {
+            List<Integer> next = new ArrayList<Integer>();
+            for (int start = 0; start < level.size(); start += IN_LIMIT)
+            {
+                StringBuilder ids = new StringBuilder();
+                for (Integer groupID : level.subList(start, Math.min(start + IN_LIMIT, level.size())))
+                {
+                    ids.append((ids.length() == 0) ? "" : ", ").append(groupID.intValue());
+                }
+
+                TableRowIterator tri = DatabaseManager.queryTable(context, "group2group",
+                        "SELECT * FROM group2group WHERE parent_id IN (" + ids + ")");
+
+                try
+                {
+                    while (tri.hasNext())
+                    {
+                        TableRow row = tri.next();
+                        int childID = row.getIntColumn("child_id");
+
+                        closure.addEdge(row.getIntColumn("parent_id"), childID);
+                        if (seen.add(Integer.valueOf(childID)))
+                        {
+                            next.add(Integer.valueOf(childID));
+                        }
+                    }
+                }
+                finally
+                {
+                    // close the TableRowIterator to free up resources
+                    if (tri != null)
+                    {
+                        tri.close();
+                    }
+                }
+            }
+            level = next;
+        }
+
+        closure.recomputeAll();
+
+        return closure;
+    }
+
+    /**
+     * Get the closure shared by all Contexts, loading it if necessary.
+     *
+     * @param context
+     *            the current context
+     * @return the shared closure, or null if it is not enabled, or the
+     *         context has made changes which may not be reflected in it
+     * @throws SQLException
+     */
+    static GroupClosure getShared(Context context) throws SQLException
+    {
+        if (context.hasEvents()
+                || !ConfigurationManager.getBooleanProperty("eperson.groupclosure.enabled", false))
+        {
+            return null;
+        }
+
+        long reload = 1000L * ConfigurationManager.getIntProperty("eperson.groupclosure.reload", 300);
+
+        synchronized (GroupClosure.class)
+        {
+            if (shared == null || (reload > 0 && System.currentTimeMillis() - sharedLoaded > reload))
+            {
+                shared = load(context);
+                sharedLoaded = System.currentTimeMillis();
+
+                if (log.isDebugEnabled())
+                {
+                    log.debug("Loaded shared group closure of " + shared.parents.size() + " groups");
+                }
+            }
+
+            return shared;
+        }
+    }
+
+    /**
+     * Apply a change in membership to the shared closure, if it is loaded.
+     *
+     * @param parentID
+     *            the parent group
+     * @param childID
+     *            the child group
+     * @param member
+     *            true if the child was added to the parent, false if removed
+     */
+    static void updateShared(int parentID, int childID, boolean member)
+    {
+        GroupClosure closure;
+        synchronized (GroupClosure.class)
+        {
+            closure = shared;
+        }
+
+        if (closure != null)
+        {
+            if (member)
+            {
+                closure.add(parentID, childID);
+            }
+            else
+            {
+                closure.remove(parentID, childID);
+            }
+        }
+    }
+
+    /**
+     * Remove a deleted group from the shared closure, if it is loaded.
+     *
+     * @param groupID
+     *            the deleted group
+     */
+    static void removeShared(int groupID)
+    {
+        GroupClosure closure;
+        synchronized (GroupClosure.class)
+        {
+            closure = shared;
+        }
+
+        if (closure != null)
+        {
+            closure.removeGroup(groupID);
+        }
+    }
+
+    /**
+     * Add a group to another group.
+     *
+     * @param parentID
+     *            the parent group
+     * @param childID
+     *            the group which becomes a member of the parent
+     */
+    synchronized void add(int parentID, int childID)
+    {
+        if (addEdge(parentID, childID))
+        {
+            recompute(parentID, childID);
+        }
+    }
+
+    /**
+     * Remove a group from another group.
+     *
+     * @param parentID
+     *            the parent group
+     * @param childID
+     *            the group which is no longer a member of the parent
+     */
+    synchronized void remove(int parentID, int childID)
+    {
+        Integer parent = Integer.valueOf(parentID);
+        Integer child = Integer.valueOf(childID);
+
+        if (contains(children.get(parent), childID))
+        {
+            children.put(parent, without(children.get(parent), childID));
+            parents.put(child, without(parents.get(child), parentID));
+            recompute(parentID, childID);
+        }
+    }
+
+    /**
+     * Remove a group and all its memberships.
+     *
+     * @param groupID
+     *            the group
+     */
+    synchronized void removeGroup(int groupID)
+    {
+        Integer group = Integer.valueOf(groupID);
+
+        for (int parentID : get(parents, groupID))
+        {
+            remove(parentID, groupID);
+        }
+        for (int childID : get(children, groupID))
+        {
+            remove(groupID, childID);
+        }
+
+        parents.remove(group);
+        children.remove(group);
+        ancestors.remove(group);
+        descendants.remove(group);
+    }
+
+    /**
+     * @param groupID
+     *            a group
+     * @return the IDs of all groups the group is directly or indirectly a
+     *         member of, in ascending order. The array must not be modified.
+     */
+    synchronized int[] getAncestors(int groupID)
+    {
+        return get(ancestors, groupID);
+    }
+
+    /**
+     * @param groupID
+     *            a group
+     * @return the IDs of all groups which are directly or indirectly members
+     *         of the group, in ascending order. The array must not be
+     *         modified.
+     */
+    synchronized int[] getDescendants(int groupID)
+    {
+        return get(descendants, groupID);
+    }
+
+    /**
+     * Record a direct membership, without updating the closure.
+     *
+     * @return true if the membership was not already recorded
+     */
+    private boolean addEdge(int parentID, int childID)
+    {
+        Integer parent = Integer.valueOf(parentID);
+        Integer child = Integer.valueOf(childID);
+
+        if (contains(children.get(parent), childID))
+        {
+            return false;
+        }
+
+        children.put(parent, with(children.get(parent), childID));
+        parents.put(child, with(parents.get(child), parentID));
+        return true;
+    }
+
+    /**
+     * Recompute the closure of every group.
+     */
+    private void recomputeAll()
+    {
+        for (Integer group : parents.keySet())
+        {
+            ancestors.put(group, reachable(parents, group.intValue()));
+        }
+        for (Integer group : children.keySet())
+        {
+            descendants.put(group, reachable(children, group.intValue()));
+        }
+    }
+
+    /**
+     * Recompute the closure of the groups affected by a change in the
+     * membership of one group in another: the ancestors of the child and of
+     * all its descendants, and the descendants of the parent and of all its
+     * ancestors.
+     */
+    private void recompute(int parentID, int childID)
+    {
+        int[] below = with(get(descendants, childID), childID);
+        for (int group : below)
+        {
+            put(ancestors, group, reachable(parents, group));
+        }
+
+        int[] above = with(get(ancestors, parentID), parentID);
+        for (int group : above)
+        {
+            put(descendants, group, reachable(children, group));
+        }
+    }
+
+    /**
+     * Find all groups reachable from a group by following direct
+     * memberships, not including the group itself unless there is a cycle.
+     */
+    private static int[] reachable(Map<Integer, int[]> edges, int start)
+    {
+        Set<Integer> seen = new HashSet<Integer>();
+        int[] found = new int[8];
+        int count = 0;
+
+        // breadth-first, using the groups found so far as the queue
+        int[] next = get(edges, start);
+        int position = 0;
+        while (true)
+        {
+            for (int group : next)
+            {
+                if (seen.add(Integer.valueOf(group)))
+                {
+                    found = append(found, count++, group);
+                }
+            }
+
+            if (position == count)
+            {
+                break;
+            }
+            next = get(edges, found[position++]);
+        }
+
+        int[] result = Arrays.copyOf(found, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static int[] append(int[] values, int count, int value)
+    {
+        if (count == values.length)
+        {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count] = value;
+        return values;
+    }
+
+    private static int[] get(Map<Integer, int[]> map, int key)
+    {
+        int[] values = map.get(Integer.valueOf(key));
+        return (values == null) ? NONE : values;
+    }
+
+    private static void put(Map<Integer, int[]> map, int key, int[] values)
+    {
+        if (values.length == 0)
+        {
+            map.remove(Integer.valueOf(key));
+        }
+        else
+        {
+            map.put(Integer.valueOf(key), values);
+        }
+    }
+
+    private static boolean contains(int[] values, int value)
+    {
+        return values != null && Arrays.binarySearch(values, value) >= 0;
+    }
+
+    /**
+     * @return a new sorted array with the value added
+     */
+    private static int[] with(int[] values, int value)
+    {
+        if (values == null)
+        {
+            return new int[] { value };
+        }
+
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0)
+        {
+            return values;
+        }
+
+        index = -(index + 1);
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    /**
+     * @return a new sorted array with the value removed
+     */
+    private static int[] without(int[] values, int value)
+    {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0)
+        {
+            return values;
+        }
+
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.eperson;
+
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+
+/**
+ * Consumer which applies changes in group-in-group membership to the shared
+ * group closure, if it is enabled. Events are dispatched after the
+ * transaction is committed, so other Contexts never see uncommitted
+ * memberships.
+ *
+ * Recommended filter:  Group+Add|Remove|Delete
+ *
+ * @version $Revision$
+ */
+public class GroupClosureConsumer implements Consumer
+{
+    public void initialize() throws Exception
+    {
+    }
+
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        if (event.getSubjectType() != Constants.GROUP)
+        {
+            return;
+        }
+
+        switch (event.getEventType())
+        {
+            case Event.ADD:
+                if (event.getObjectType() == Constants.GROUP)
+                {
+                    GroupClosure.updateShared(event.getSubjectID(), event.getObjectID(), true);
+                }
+                break;
+
+            case Event.REMOVE:
+                if (event.getObjectType() == Constants.GROUP)
+                {
+                    GroupClosure.updateShared(event.getSubjectID(), event.getObjectID(), false);
+                }
+                break;
+
+            case Event.DELETE:
+                GroupClosure.removeShared(event.getSubjectID());
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    public void end(Context ctx) throws Exception
+    {
+    }
+
+    public void finish(Context ctx) throws Exception
+    {
+    }
+}
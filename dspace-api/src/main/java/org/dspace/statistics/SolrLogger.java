@@ -212,21 +212,14 @@ public class SolrLogger
 
         try
         {
-            SolrInputDocument doc1 = getCommonSolrDoc(dspaceObject, request, currentUser);
-            if (doc1 == null) return;
-            if(dspaceObject instanceof Bitstream)
-            {
-                Bitstream bit = (Bitstream) dspaceObject;
-                Bundle[] bundles = bit.getBundles();
-                for (Bundle bundle : bundles) {
-                    doc1.addField("bundleName", bundle.getName());
-                }
-            }
+            PendingEvent event = createEvent(dspaceObject, request, currentUser);
+            if (event == null) return;
+            event.bundleNames = true;
 
-            doc1.addField("statistics_type", StatisticsType.VIEW.text());
+            event.doc.addField("statistics_type", StatisticsType.VIEW.text());
 
 
-            solr.add(doc1);
+            post(event, dspaceObject);
             //commits are executed automatically using the solr autocommit
 //            solr.commit(false, false);
 
@@ -248,21 +241,15 @@ public class SolrLogger
 		}
 
 		try {
-			SolrInputDocument doc1 = getCommonSolrDoc(dspaceObject, ip, userAgent, xforwarderfor,
+			PendingEvent event = createEvent(dspaceObject, ip, userAgent, xforwarderfor,
 					currentUser);
-			if (doc1 == null)
+			if (event == null)
 				return;
-			if (dspaceObject instanceof Bitstream) {
-				Bitstream bit = (Bitstream) dspaceObject;
-				Bundle[] bundles = bit.getBundles();
-				for (Bundle bundle : bundles) {
-					doc1.addField("bundleName", bundle.getName());
-				}
-			}
+			event.bundleNames = true;
 
-			doc1.addField("statistics_type", StatisticsType.VIEW.text());
+			event.doc.addField("statistics_type", StatisticsType.VIEW.text());
 
-			solr.add(doc1);
+			post(event, dspaceObject);
 			// commits are executed automatically using the solr autocommit
 			// solr.commit(false, false);
 
@@ -272,6 +259,40 @@ public class SolrLogger
 			log.error(e.getMessage(), e);
 		}
 	}
+
+    /**
+     * Store a usage event into Solr: in the background, if
+     * <code>solr-statistics.async</code> is enabled, or else straight away.
+     *
+     * @param event the event, as recorded on the request thread.
+     * @param dspaceObject the object used, if any.
+     */
+    private static void post(PendingEvent event, DSpaceObject dspaceObject)
+            throws SQLException, SolrServerException, IOException
+    {
+        if (SolrLoggerQueue.isEnabled())
+        {
+            SolrLoggerQueue.getInstance().offer(event);
+        }
+        else
+        {
+            enrich(event, dspaceObject);
+            solr.add(event.doc);
+        }
+    }
+
+    /**
+     * Store documents built in the background into Solr, in one request.
+     *
+     * @param docs the documents.
+     */
+    static void add(List<SolrInputDocument> docs) throws SolrServerException, IOException
+    {
+        if (solr != null && !docs.isEmpty())
+        {
+            solr.add(docs);
+        }
+    }
     
 
     /**
@@ -284,6 +305,26 @@ public class SolrLogger
      * @throws SQLException in case of a database exception
      */
     private static SolrInputDocument getCommonSolrDoc(DSpaceObject dspaceObject, HttpServletRequest request, EPerson currentUser) throws SQLException {
+        PendingEvent event = createEvent(dspaceObject, request, currentUser);
+        if (event == null)
+        {
+            return null;
+        }
+
+        enrich(event, dspaceObject);
+        return event.doc;
+    }
+
+    /**
+     * Record the information about a usage event which is at hand on the
+     * request thread. The rest is added by <code>enrich</code>.
+     *
+     * @param dspaceObject the object used.
+     * @param request the current request context.
+     * @param currentUser the current session's user.
+     * @return the event, or null if it is not to be logged
+     */
+    private static PendingEvent createEvent(DSpaceObject dspaceObject, HttpServletRequest request, EPerson currentUser) {
         boolean isSpiderBot = request != null && SpiderDetector.isSpider(request);
         if(isSpiderBot &&
                 !ConfigurationManager.getBooleanProperty("usage-statistics", "logBots", true))
@@ -291,7 +332,8 @@ public class SolrLogger
             return null;
         }
 
-        SolrInputDocument doc1 = new SolrInputDocument();
+        PendingEvent event = new PendingEvent();
+        event.isBot = isSpiderBot;
         // Save our basic info that we already have
 
         if(request != null){
@@ -310,73 +352,22 @@ public class SolrLogger
                 }
             }
 
-            doc1.addField("ip", ip);
+            event.doc.addField("ip", ip);
+            event.ip = ip;
 
             //Also store the referrer
             if(request.getHeader("referer") != null){
-                doc1.addField("referrer", request.getHeader("referer"));
-            }
-
-            try
-            {
-                String dns = DnsLookup.reverseDns(ip);
-                doc1.addField("dns", dns.toLowerCase());
-            }
-            catch (Exception e)
-            {
-                log.error("Failed DNS Lookup for IP:" + ip);
-                log.debug(e.getMessage(),e);
+                event.doc.addField("referrer", request.getHeader("referer"));
             }
 
-            // Save the location information if valid, save the event without
-            // location information if not valid
-            if(locationService != null)
-            {
-                Location location = locationService.getLocation(ip);
-                if (location != null
-                        && !("--".equals(location.countryCode)
-                        && location.latitude == -180 && location.longitude == -180))
-                {
-                    try
-                    {
-                        doc1.addField("continent", LocationUtils
-                                .getContinentCode(location.countryCode));
-                    }
-                    catch (Exception e)
-                    {
-                        System.out
-                                .println("COUNTRY ERROR: " + location.countryCode);
-                    }
-                    doc1.addField("countryCode", location.countryCode);
-                    doc1.addField("city", location.city);
-                    doc1.addField("latitude", location.latitude);
-                    doc1.addField("longitude", location.longitude);
-                    doc1.addField("isBot",isSpiderBot);
-
-                    if(request.getHeader("User-Agent") != null)
-                    {
-                        doc1.addField("userAgent", request.getHeader("User-Agent"));
-                    }
-                }
-            }
-        }
-
-        if(dspaceObject != null){
-            doc1.addField("id", dspaceObject.getID());
-            doc1.addField("type", dspaceObject.getType());
-            storeParents(doc1, dspaceObject);
-        }
-        // Save the current time
-        doc1.addField("time", DateFormatUtils.format(new Date(), DATE_FORMAT_8601));
-        if (currentUser != null)
-        {
-            doc1.addField("epersonid", currentUser.getID());
+            event.userAgent = request.getHeader("User-Agent");
         }
 
-        return doc1;
+        recordObject(event, dspaceObject, currentUser);
+        return event;
     }
 
-    private static SolrInputDocument getCommonSolrDoc(DSpaceObject dspaceObject, String ip, String userAgent, String xforwarderfor, EPerson currentUser) throws SQLException {
+    private static PendingEvent createEvent(DSpaceObject dspaceObject, String ip, String userAgent, String xforwarderfor, EPerson currentUser) {
         boolean isSpiderBot = SpiderDetector.isSpider(ip);
         if(isSpiderBot &&
                 !ConfigurationManager.getBooleanProperty("usage-statistics", "logBots", true))
@@ -384,7 +375,8 @@ public class SolrLogger
             return null;
         }
 
-        SolrInputDocument doc1 = new SolrInputDocument();
+        PendingEvent event = new PendingEvent();
+        event.isBot = isSpiderBot;
         // Save our basic info that we already have
 
 
@@ -400,11 +392,52 @@ public class SolrLogger
                     }
                 }
 
-            doc1.addField("ip", ip);
+            event.doc.addField("ip", ip);
+            event.ip = ip;
+            event.userAgent = userAgent;
+        }
+
+        recordObject(event, dspaceObject, currentUser);
+        return event;
+    }
 
+    /**
+     * Record the object used, the current time and the current user.
+     */
+    private static void recordObject(PendingEvent event, DSpaceObject dspaceObject, EPerson currentUser)
+    {
+        if(dspaceObject != null){
+            event.doc.addField("id", dspaceObject.getID());
+            event.doc.addField("type", dspaceObject.getType());
+            event.type = dspaceObject.getType();
+            event.id = dspaceObject.getID();
+        }
+        // Save the current time
+        event.doc.addField("time", DateFormatUtils.format(new Date(), DATE_FORMAT_8601));
+        if (currentUser != null)
+        {
+            event.doc.addField("epersonid", currentUser.getID());
+        }
+    }
+
+    /**
+     * Add the information about a usage event which may be slow to get: the
+     * host name and location of the IP address, and the parents of the
+     * object used.
+     *
+     * @param event the event, as recorded on the request thread.
+     * @param dspaceObject the object used, if any.
+     * @throws SQLException in case of a database exception
+     */
+    static void enrich(PendingEvent event, DSpaceObject dspaceObject) throws SQLException {
+        SolrInputDocument doc1 = event.doc;
+        String ip = event.ip;
+
+        if (ip != null)
+        {
             try
             {
-                String dns = DnsLookup.reverseDns(ip);
+                String dns = DnsLookup.reverseDnsCached(ip);
                 doc1.addField("dns", dns.toLowerCase());
             }
             catch (Exception e)
@@ -436,29 +469,52 @@ public class SolrLogger
                     doc1.addField("city", location.city);
                     doc1.addField("latitude", location.latitude);
                     doc1.addField("longitude", location.longitude);
-                    doc1.addField("isBot",isSpiderBot);
+                    doc1.addField("isBot", event.isBot);
 
-                    if(userAgent != null)
+                    if(event.userAgent != null)
                     {
-                        doc1.addField("userAgent", userAgent);
+                        doc1.addField("userAgent", event.userAgent);
                     }
                 }
             }
         }
 
         if(dspaceObject != null){
-            doc1.addField("id", dspaceObject.getID());
-            doc1.addField("type", dspaceObject.getType());
             storeParents(doc1, dspaceObject);
+
+            if(event.bundleNames && dspaceObject instanceof Bitstream)
+            {
+                Bitstream bit = (Bitstream) dspaceObject;
+                Bundle[] bundles = bit.getBundles();
+                for (Bundle bundle : bundles) {
+                    doc1.addField("bundleName", bundle.getName());
+                }
+            }
         }
-        // Save the current time
-        doc1.addField("time", DateFormatUtils.format(new Date(), DATE_FORMAT_8601));
-        if (currentUser != null)
-        {
-            doc1.addField("epersonid", currentUser.getID());
-        }
+    }
 
-        return doc1;
+    /**
+     * A usage event as recorded on the request thread: the fields which are
+     * at hand, and what <code>enrich</code> needs to add the rest.
+     */
+    static class PendingEvent
+    {
+        final SolrInputDocument doc = new SolrInputDocument();
+
+        /** The IP address to look up, if any */
+        String ip = null;
+
+        String userAgent = null;
+
+        boolean isBot = false;
+
+        /** Type and ID of the object used, or -1 if none */
+        int type = -1;
+
+        int id = -1;
+
+        /** Whether to store the bundles of a bitstream */
+        boolean bundleNames = false;
     }
 
     
@@ -466,8 +522,9 @@ public class SolrLogger
                                  List<String> queries, int rpp, String sortBy, String order, int page, DSpaceObject scope) {
         try
         {
-            SolrInputDocument solrDoc = getCommonSolrDoc(resultObject, request, currentUser);
-            if (solrDoc == null) return;
+            PendingEvent event = createEvent(resultObject, request, currentUser);
+            if (event == null) return;
+            SolrInputDocument solrDoc = event.doc;
 
             for (String query : queries) {
                 solrDoc.addField("query", query);
@@ -500,7 +557,7 @@ public class SolrLogger
                 solrDoc.addField("page", page);
             }
 
-            solr.add(solrDoc);
+            post(event, resultObject);
         }
         catch (RuntimeException re)
         {
@@ -581,22 +638,20 @@ public class SolrLogger
     {
         if (dso instanceof Community)
         {
-            Community comm = (Community) dso;
-            while (comm != null && comm.getParentCommunity() != null)
+            Community[] parents = ((Community) dso).getAllParents();
+            for (int i = 0; i < parents.length; i++)
             {
-                comm = comm.getParentCommunity();
-                doc1.addField("owningComm", comm.getID());
+                doc1.addField("owningComm", parents[i].getID());
             }
         }
         else if (dso instanceof Collection)
         {
+            // every community above the collection, each once
             Collection coll = (Collection) dso;
-            Community[] communities = coll.getCommunities();
+            Community[] communities = coll.getAllCommunities();
             for (int i = 0; i < communities.length; i++)
             {
-                Community community = communities[i];
-                doc1.addField("owningComm", community.getID());
-                storeParents(doc1, community);
+                doc1.addField("owningComm", communities[i].getID());
             }
         }
         else if (dso instanceof Item)
@@ -0,0 +1,318 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+import org.apache.solr.common.SolrInputDocument;
+import org.dspace.content.DSpaceObject;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+
+/**
+ * A bounded buffer of usage events waiting to be stored in Solr, used by
+ * <code>SolrLogger</code> when <code>solr-statistics.async</code> is true, so
+ * that the request which caused an event never waits for DNS, GeoIP, the
+ * database or Solr.
+ * <P>
+ * The request thread only adds the event to the buffer, without locking.
+ * If the buffer already holds <code>solr-statistics.async.queue-size</code>
+ * events, e.g. because Solr is down or slow, the event is dropped and
+ * counted rather than holding up the request. A background thread takes the
+ * events off a batch at a time, adds the host name, location and parents
+ * with a Context of its own, and stores the batch in one request to Solr.
+ * Events still buffered when the web application is stopped (see
+ * <code>shutdown</code>), or when the JVM of a command line tool exits, are
+ * stored first.
+ *
+ * @version $Revision$
+ */
+public final class SolrLoggerQueue implements Runnable
+{
+    private static final Logger log = Logger.getLogger(SolrLoggerQueue.class);
+
+    /** How long the background thread sleeps when there are no events */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** The queue of this application, or null if not yet started */
+    private static SolrLoggerQueue instance = null;
+
+    private final ConcurrentLinkedQueue<SolrLogger.PendingEvent> events
+            = new ConcurrentLinkedQueue<SolrLogger.PendingEvent>();
+
+    /** Number of events in the buffer, which the queue itself does not track cheaply */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final AtomicLong stored = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    /** Whether the background thread is to carry on */
+    private volatile boolean running = true;
+
+    private final Thread worker;
+
+    /** Stores what is left if the JVM exits without shutdown() being called */
+    private final Thread hook;
+
+    private SolrLoggerQueue()
+    {
+        capacity = Math.max(1, ConfigurationManager.getIntProperty("solr-statistics", "async.queue-size", 10000));
+        batchSize = Math.max(1, ConfigurationManager.getIntProperty("solr-statistics", "async.batch", 100));
+
+        worker = new Thread(this, "solr-statistics-logger");
+        worker.setDaemon(true);
+        worker.start();
+
+        hook = new Thread("solr-statistics-flush")
+        {
+            @Override
+            public void run()
+            {
+                flush();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * @return true if usage events are to be stored in the background
+     */
+    static boolean isEnabled()
+    {
+        return ConfigurationManager.getBooleanProperty("solr-statistics", "async", false);
+    }
+
+    /**
+     * Get the queue of this application, starting it if necessary.
+     *
+     * @return the queue
+     */
+    static synchronized SolrLoggerQueue getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new SolrLoggerQueue();
+            log.info("Started background usage event logging");
+        }
+
+        return instance;
+    }
+
+    /**
+     * Stop the queue of this application, if it was started: store the
+     * events still buffered and stop the background thread. To be called
+     * when the application stops, before the database pool and the Solr
+     * server it uses are shut down.
+     */
+    public static synchronized void shutdown()
+    {
+        if (instance != null)
+        {
+            instance.stop();
+            instance = null;
+            log.info("Stopped background usage event logging");
+        }
+    }
+
+    /**
+     * Add an event to the buffer, unless it is full. Never blocks.
+     *
+     * @param event
+     *            the event
+     * @return true if the event was added, false if it was dropped
+     */
+    boolean offer(SolrLogger.PendingEvent event)
+    {
+        if (size.incrementAndGet() > capacity)
+        {
+            size.decrementAndGet();
+            long count = dropped.incrementAndGet();
+            if (count % 1000 == 1)
+            {
+                log.warn("Usage event buffer is full, " + count + " events dropped so far");
+            }
+            return false;
+        }
+
+        events.offer(event);
+        return true;
+    }
+
+    /**
+     * @return the number of events waiting to be stored
+     */
+    int getQueued()
+    {
+        return size.get();
+    }
+
+    /**
+     * @return the number of events stored since startup
+     */
+    long getStored()
+    {
+        return stored.get();
+    }
+
+    /**
+     * @return the number of events dropped because the buffer was full
+     */
+    long getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of events which could not be stored
+     */
+    long getFailed()
+    {
+        return failed.get();
+    }
+
+    public void run()
+    {
+        while (running)
+        {
+            try
+            {
+                if (!processBatch())
+                {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+            catch (Throwable t)
+            {
+                // carry on with the next batch, but do not spin on an error
+                log.error("Unexpected error while storing usage events", t);
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Stop the background thread, then store what is left in the buffer.
+     */
+    private void stop()
+    {
+        running = false;
+        LockSupport.unpark(worker);
+        try
+        {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        try
+        {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        }
+        catch (IllegalStateException e)
+        {
+            // the JVM is already shutting down
+        }
+
+        flush();
+    }
+
+    /**
+     * Store whatever is left in the buffer.
+     */
+    private void flush()
+    {
+        while (processBatch())
+        {
+            // keep going until the buffer is empty
+        }
+
+        log.info("Usage events: " + stored.get() + " stored, " + dropped.get()
+                + " dropped, " + failed.get() + " failed");
+    }
+
+    /**
+     * Take a batch of events off the buffer, complete them and store them.
+     *
+     * @return false if the buffer was empty
+     */
+    private synchronized boolean processBatch()
+    {
+        List<SolrLogger.PendingEvent> batch = new ArrayList<SolrLogger.PendingEvent>(batchSize);
+        SolrLogger.PendingEvent event;
+        while (batch.size() < batchSize && (event = events.poll()) != null)
+        {
+            size.decrementAndGet();
+            batch.add(event);
+        }
+
+        if (batch.isEmpty())
+        {
+            return false;
+        }
+
+        List<SolrInputDocument> docs = new ArrayList<SolrInputDocument>(batch.size());
+        Context context = null;
+        try
+        {
+            context = new Context();
+
+            for (SolrLogger.PendingEvent pending : batch)
+            {
+                try
+                {
+                    DSpaceObject dso = null;
+                    if (pending.type >= 0)
+                    {
+                        dso = DSpaceObject.find(context, pending.type, pending.id);
+                    }
+
+                    SolrLogger.enrich(pending, dso);
+                    docs.add(pending.doc);
+                }
+                catch (Exception e)
+                {
+                    failed.incrementAndGet();
+                    log.error("Failed to complete usage event: " + e.getMessage(), e);
+                }
+            }
+
+            SolrLogger.add(docs);
+            stored.addAndGet(docs.size());
+        }
+        catch (Exception e)
+        {
+            failed.addAndGet(docs.size());
+            log.error("Failed to store " + docs.size() + " usage events: " + e.getMessage(), e);
+        }
+        finally
+        {
+            if (context != null)
+            {
+                context.abort();
+            }
+        }
+
+        return true;
+    }
+}
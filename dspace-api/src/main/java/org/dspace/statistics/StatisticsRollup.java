@@ -0,0 +1,575 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics;
+
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.log4j.Logger;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.TableRow;
+import org.dspace.storage.rdbms.TableRowIterator;
+
+/**
+ * Daily view counters per object, rolled up from the statistics core into
+ * the statistics_rollup table, so that the statistics pages of an object
+ * need a few indexed SQL queries rather than several facet queries over
+ * every usage event.
+ * <P>
+ * There is one row per object, day, country and city, with the number of
+ * views; rows of bitstreams also hold the owning item. Monthly and yearly
+ * figures are summed from the days. The same filters apply as to live
+ * queries (view events only, <code>query.filter.isBot</code>,
+ * <code>query.filter.spiderIp</code> and <code>query.filter.bundles</code>),
+ * but when the rollup is run, not when it is read.
+ * <P>
+ * The rollup is brought up to date by <code>stats-util -a</code>, which
+ * recomputes the last day rolled up (which may have been incomplete) and
+ * every day since, up to today. It should be scheduled as often as the
+ * statistics pages need to be current. After spiders have been marked or
+ * deleted, <code>stats-util -A</code> rebuilds it from scratch. Statistics
+ * pages only read the rollup when <code>solr-statistics.rollup</code> is
+ * true.
+ *
+ * @version $Revision$
+ */
+public class StatisticsRollup
+{
+    private static final Logger log = Logger.getLogger(StatisticsRollup.class);
+
+    /** Only view events are counted, including old ones without a type */
+    private static final String VIEWS_FILTER = "-(statistics_type:[* TO *] AND -statistics_type:"
+            + SolrLogger.StatisticsType.VIEW.text() + ")";
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    /** Default prevents instantiation */
+    private StatisticsRollup()
+    {
+    }
+
+    /**
+     * @return true if statistics pages are to be read from the rollup
+     */
+    public static boolean isEnabled()
+    {
+        return ConfigurationManager.getBooleanProperty("solr-statistics", "rollup", false);
+    }
+
+    /**
+     * Bring the rollup up to date with the statistics core.
+     *
+     * @param context
+     *            DSpace context, committed after each day
+     * @param rebuild
+     *            true to throw the rollup away and start from the first event
+     * @throws SQLException
+     * @throws SolrServerException
+     */
+    public static void update(Context context, boolean rebuild)
+            throws SQLException, SolrServerException
+    {
+        if (rebuild)
+        {
+            DatabaseManager.updateQuery(context, "DELETE FROM statistics_rollup");
+            context.commit();
+        }
+
+        String from = null;
+        if (!rebuild)
+        {
+            TableRow last = DatabaseManager.querySingle(context,
+                    "SELECT MAX(day) AS day FROM statistics_rollup");
+            if (last != null && !last.isColumnNull("day"))
+            {
+                from = toDay(last.getDateColumn("day"));
+            }
+        }
+        if (from == null)
+        {
+            from = getFirstDay();
+            if (from == null)
+            {
+                log.info("No usage events to roll up");
+                return;
+            }
+        }
+
+        String today = formatDay(new Date());
+        for (String day = from; day.compareTo(today) <= 0; day = nextDay(day))
+        {
+            int rows = rollupDay(context, day);
+            context.commit();
+            log.info("Rolled up " + day + " into " + rows + " rows");
+        }
+    }
+
+    /**
+     * Count the views of one day, replacing any rows the day already has.
+     *
+     * @return the number of rows written
+     */
+    private static int rollupDay(Context context, String day)
+            throws SQLException, SolrServerException
+    {
+        int pageSize = Math.max(1, ConfigurationManager.getIntProperty("solr-statistics", "rollup.page", 1000));
+        String range = "time:[" + day + "T00:00:00Z TO " + nextDay(day) + "T00:00:00Z}";
+
+        // sum up the day, a page at a time in uid order
+        Map<String, Counter> counters = new HashMap<String, Counter>();
+        String lastUid = null;
+        while (true)
+        {
+            String filter = range + " AND " + VIEWS_FILTER;
+            if (lastUid != null)
+            {
+                filter += " AND uid:{" + ClientUtils.escapeQueryChars(lastUid) + " TO *]";
+            }
+
+            QueryResponse response = SolrLogger.query("*:*", filter, null, pageSize, -1,
+                    null, null, null, null, "uid", true);
+            if (response == null)
+            {
+                throw new SolrServerException("The statistics core is not available");
+            }
+
+            SolrDocumentList docs = response.getResults();
+            for (SolrDocument doc : docs)
+            {
+                count(counters, doc);
+                lastUid = (String) doc.getFieldValue("uid");
+            }
+
+            if (docs.size() < pageSize)
+            {
+                break;
+            }
+        }
+
+        java.sql.Date date = java.sql.Date.valueOf(day);
+        DatabaseManager.updateQuery(context, "DELETE FROM statistics_rollup WHERE day = ?", date);
+        for (Counter counter : counters.values())
+        {
+            insert(context, date, counter);
+        }
+
+        return counters.size();
+    }
+
+    private static void count(Map<String, Counter> counters, SolrDocument doc)
+    {
+        Object type = doc.getFieldValue("type");
+        Object id = doc.getFieldValue("id");
+        if (!(type instanceof Number) || !(id instanceof Number))
+        {
+            return;
+        }
+
+        Counter counter = new Counter();
+        counter.type = ((Number) type).intValue();
+        counter.id = ((Number) id).intValue();
+        if (counter.type == Constants.BITSTREAM)
+        {
+            Collection<Object> items = doc.getFieldValues("owningItem");
+            if (items != null && !items.isEmpty() && items.iterator().next() instanceof Number)
+            {
+                counter.owningItem = ((Number) items.iterator().next()).intValue();
+            }
+        }
+        counter.countryCode = (String) doc.getFieldValue("countryCode");
+        counter.city = (String) doc.getFieldValue("city");
+
+        String key = counter.type + "\n" + counter.id + "\n" + counter.owningItem
+                + "\n" + counter.countryCode + "\n" + counter.city;
+        Counter existing = counters.get(key);
+        if (existing == null)
+        {
+            counters.put(key, counter);
+            existing = counter;
+        }
+        existing.views++;
+    }
+
+    private static void insert(Context context, java.sql.Date day, Counter counter)
+            throws SQLException
+    {
+        // the null values have to be written into the statement
+        List<Object> parameters = new ArrayList<Object>();
+        StringBuilder values = new StringBuilder("?, ?, ?, ?");
+        parameters.add(Integer.valueOf(counter.type));
+        parameters.add(Integer.valueOf(counter.id));
+        parameters.add(day);
+        parameters.add(Integer.valueOf(counter.views));
+
+        values.append(counter.owningItem < 0 ? ", NULL" : ", ?");
+        if (counter.owningItem >= 0)
+        {
+            parameters.add(Integer.valueOf(counter.owningItem));
+        }
+        values.append(counter.countryCode == null ? ", NULL" : ", ?");
+        if (counter.countryCode != null)
+        {
+            parameters.add(counter.countryCode);
+        }
+        values.append(counter.city == null ? ", NULL" : ", ?");
+        if (counter.city != null)
+        {
+            parameters.add(counter.city);
+        }
+
+        DatabaseManager.updateQuery(context,
+                "INSERT INTO statistics_rollup (resource_type_id, resource_id, day, views, owning_item, country_code, city) "
+                        + "VALUES (" + values + ")", parameters.toArray());
+    }
+
+    /**
+     * @return the day of the first usage event, or null if there are none
+     */
+    private static String getFirstDay() throws SolrServerException
+    {
+        QueryResponse response = SolrLogger.query("*:*", VIEWS_FILTER, null, 1, -1,
+                null, null, null, null, "time", true);
+        if (response == null || response.getResults().isEmpty())
+        {
+            return null;
+        }
+
+        Object time = response.getResults().get(0).getFieldValue("time");
+        return (time instanceof Date) ? formatDay((Date) time) : null;
+    }
+
+    /**
+     * Get the total views of an object.
+     *
+     * @param context
+     *            DSpace context
+     * @param type
+     *            type of the object
+     * @param id
+     *            ID of the object
+     * @return the number of views
+     * @throws SQLException
+     */
+    public static long getTotal(Context context, int type, int id) throws SQLException
+    {
+        TableRow row = DatabaseManager.querySingle(context,
+                "SELECT SUM(views) AS views FROM statistics_rollup WHERE resource_type_id = ? AND resource_id = ?",
+                Integer.valueOf(type), Integer.valueOf(id));
+
+        return (row == null || row.isColumnNull("views")) ? 0 : row.getLongColumn("views");
+    }
+
+    /**
+     * Get the most viewed objects of a type, by ID, as
+     * <code>SolrLogger.queryFacetField</code> on the id field would.
+     *
+     * @param context
+     *            DSpace context
+     * @param type
+     *            type of the objects
+     * @param owningItem
+     *            only count bitstreams of this item, or -1 for all objects
+     * @param max
+     *            maximum number of objects, or -1 for all
+     * @return the objects with their views, most viewed first
+     * @throws SQLException
+     */
+    public static ObjectCount[] getTopObjects(Context context, int type, int owningItem, int max)
+            throws SQLException
+    {
+        if (owningItem < 0)
+        {
+            return getTop(context, "resource_id",
+                    "resource_type_id = ?", max, Integer.valueOf(type));
+        }
+
+        return getTop(context, "resource_id",
+                "resource_type_id = ? AND owning_item = ?", max,
+                Integer.valueOf(type), Integer.valueOf(owningItem));
+    }
+
+    /**
+     * Get the most frequent values of a field (countryCode or city) in the
+     * views of an object, as <code>SolrLogger.queryFacetField</code> would.
+     *
+     * @param context
+     *            DSpace context
+     * @param type
+     *            type of the object
+     * @param id
+     *            ID of the object, or -1 for all objects
+     * @param field
+     *            countryCode or city
+     * @param max
+     *            maximum number of values, or -1 for all
+     * @return the values with their views, most frequent first, or null if
+     *         the field is not rolled up
+     * @throws SQLException
+     */
+    public static ObjectCount[] getTopValues(Context context, int type, int id, String field, int max)
+            throws SQLException
+    {
+        String column;
+        if ("countryCode".equals(field))
+        {
+            column = "country_code";
+        }
+        else if ("city".equals(field))
+        {
+            column = "city";
+        }
+        else
+        {
+            return null;
+        }
+
+        if (id < 0)
+        {
+            return getTop(context, column,
+                    column + " IS NOT NULL AND resource_type_id = ?", max, Integer.valueOf(type));
+        }
+
+        return getTop(context, column,
+                column + " IS NOT NULL AND resource_type_id = ? AND resource_id = ?", max,
+                Integer.valueOf(type), Integer.valueOf(id));
+    }
+
+    private static ObjectCount[] getTop(Context context, String column, String where, int max,
+            Object... parameters) throws SQLException
+    {
+        List<ObjectCount> result = new ArrayList<ObjectCount>();
+        TableRowIterator tri = DatabaseManager.query(context,
+                "SELECT " + column + " AS label, SUM(views) AS views FROM statistics_rollup WHERE "
+                        + where + " GROUP BY " + column + " ORDER BY SUM(views) DESC, " + column,
+                parameters);
+        try
+        {
+            while (tri.hasNext() && (max < 0 || result.size() < max))
+            {
+                TableRow row = tri.next();
+                ObjectCount count = new ObjectCount();
+                if ("resource_id".equals(column))
+                {
+                    count.setValue(String.valueOf(row.getIntColumn("label")));
+                }
+                else
+                {
+                    count.setValue(row.getStringColumn("label"));
+                }
+                count.setCount(row.getLongColumn("views"));
+                result.add(count);
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+
+        return result.toArray(new ObjectCount[result.size()]);
+    }
+
+    /**
+     * Get the views of an object per day, month or year, as
+     * <code>SolrLogger.queryFacetDate</code> would.
+     *
+     * @param context
+     *            DSpace context
+     * @param type
+     *            type of the object
+     * @param id
+     *            ID of the object
+     * @param dateType
+     *            DAY, MONTH or YEAR
+     * @param start
+     *            first period, relative to the current one (e.g. -6)
+     * @param end
+     *            period after the last, relative to the current one (e.g. +1)
+     * @param showTotal
+     *            true to add the total of all periods
+     * @return the periods with their views, oldest first, or null if the
+     *         periods cannot be read from the rollup
+     * @throws SQLException
+     */
+    public static ObjectCount[] getPeriods(Context context, int type, int id, String dateType,
+            String start, String end, boolean showTotal) throws SQLException
+    {
+        int field;
+        String labelFormat;
+        if ("DAY".equals(dateType))
+        {
+            field = Calendar.DATE;
+            labelFormat = "dd-MM-yyyy";
+        }
+        else if ("MONTH".equals(dateType))
+        {
+            field = Calendar.MONTH;
+            labelFormat = "MMMM yyyy";
+        }
+        else if ("YEAR".equals(dateType))
+        {
+            field = Calendar.YEAR;
+            labelFormat = "yyyy";
+        }
+        else
+        {
+            return null;
+        }
+
+        int first;
+        int last;
+        try
+        {
+            first = Integer.parseInt(start.startsWith("+") ? start.substring(1) : start);
+            last = Integer.parseInt(end.startsWith("+") ? end.substring(1) : end);
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+
+        // the periods, in UTC as in Solr, from the start of the current one
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (field != Calendar.DATE)
+        {
+            calendar.set(Calendar.DATE, 1);
+        }
+        if (field == Calendar.YEAR)
+        {
+            calendar.set(Calendar.MONTH, Calendar.JANUARY);
+        }
+        calendar.add(field, first);
+
+        SimpleDateFormat label = new SimpleDateFormat(labelFormat);
+        label.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        List<String> bounds = new ArrayList<String>();
+        List<ObjectCount> result = new ArrayList<ObjectCount>();
+        for (int period = first; period < last; period++)
+        {
+            bounds.add(formatDay(calendar.getTime()));
+            ObjectCount count = new ObjectCount();
+            count.setValue(label.format(calendar.getTime()));
+            result.add(count);
+            calendar.add(field, 1);
+        }
+        bounds.add(formatDay(calendar.getTime()));
+
+        if (result.isEmpty())
+        {
+            return new ObjectCount[0];
+        }
+
+        long total = 0;
+        TableRowIterator tri = DatabaseManager.query(context,
+                "SELECT day, SUM(views) AS views FROM statistics_rollup "
+                        + "WHERE resource_type_id = ? AND resource_id = ? AND day >= ? AND day < ? GROUP BY day",
+                Integer.valueOf(type), Integer.valueOf(id),
+                java.sql.Date.valueOf(bounds.get(0)), java.sql.Date.valueOf(bounds.get(bounds.size() - 1)));
+        try
+        {
+            while (tri.hasNext())
+            {
+                TableRow row = tri.next();
+                String day = toDay(row.getDateColumn("day"));
+                long views = row.getLongColumn("views");
+
+                int period = 0;
+                while (period + 1 < result.size() && bounds.get(period + 1).compareTo(day) <= 0)
+                {
+                    period++;
+                }
+                ObjectCount count = result.get(period);
+                count.setCount(count.getCount() + views);
+                total += views;
+            }
+        }
+        finally
+        {
+            tri.close();
+        }
+
+        if (showTotal)
+        {
+            ObjectCount count = new ObjectCount();
+            count.setValue("total");
+            count.setCount(total);
+            result.add(count);
+        }
+
+        return result.toArray(new ObjectCount[result.size()]);
+    }
+
+    private static String formatDay(Date date)
+    {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    private static String nextDay(String day)
+    {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try
+        {
+            return format.format(new Date(format.parse(day).getTime() + DAY));
+        }
+        catch (ParseException e)
+        {
+            throw new IllegalArgumentException("Not a day: " + day);
+        }
+    }
+
+    /**
+     * @return the day of a DATE column, which the database returns at
+     *         midnight in the local time zone
+     */
+    private static String toDay(Date date)
+    {
+        return new SimpleDateFormat("yyyy-MM-dd").format(date);
+    }
+
+    /**
+     * The views of one object from one place on the day being rolled up.
+     */
+    private static class Counter
+    {
+        int type;
+
+        int id;
+
+        int owningItem = -1;
+
+        String countryCode;
+
+        String city;
+
+        int views;
+    }
+}
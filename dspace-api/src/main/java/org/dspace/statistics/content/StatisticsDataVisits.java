@@ -12,6 +12,7 @@ import org.dspace.content.*;
 import org.dspace.statistics.Dataset;
 import org.dspace.statistics.ObjectCount;
 import org.dspace.statistics.SolrLogger;
+import org.dspace.statistics.StatisticsRollup;
 import org.dspace.statistics.content.filter.StatisticsFilter;
 import org.dspace.statistics.content.filter.StatisticsSolrDateFilter;
 import org.dspace.statistics.util.LocationUtils;
@@ -44,6 +45,11 @@ import java.io.UnsupportedEncodingException;
  *  <li>{@link #createDataset(Context)} will run the query and return a result matrix.
  *      Subsequent calls skip the query and return the same matrix.</li>
  * </ol>
+ * <p>
+ * If <code>solr-statistics.rollup</code> is true, the views of a single
+ * object, its bitstreams, its countries and cities, and the most viewed
+ * objects are read from the {@link StatisticsRollup} rather than counted
+ * by Solr, as long as no other filters have been added.
  *
  * @author kevinvandevelde at atmire.com
  * Date: 23-feb-2009
@@ -54,6 +60,9 @@ public class StatisticsDataVisits extends StatisticsData
     /** Current DSpaceObject for which to generate the statistics. */
     private DSpaceObject currentDso;
 
+    /** Whether the values of the dataset being created may be read from the rollup. */
+    private boolean useRollup;
+
     /** Construct a completely uninitialized query. */
     public StatisticsDataVisits()
     {
@@ -98,6 +107,10 @@ public class StatisticsDataVisits extends StatisticsData
             processAxis(dataSet, datasetQueries);
         }
 
+        // The rollup holds no other filters, nor the combinations of two axes
+        useRollup = StatisticsRollup.isEnabled() && getFilters().isEmpty()
+                && datasetQueries.size() == 1;
+
         // Now lets determine our values.
         // First check if we have a date facet & if so find it.
         DatasetTimeGenerator dateFacet = null;
@@ -184,7 +197,7 @@ public class StatisticsDataVisits extends StatisticsData
                     String query = dataSetQuery.getQueries().get(0).getQuery();
                     if(dataSetQuery.getMax() == -1){
                         // We are asking from our current query all the visits faceted by date
-                        ObjectCount[] results = SolrLogger.queryFacetDate(query, filterQuery, dataSetQuery.getMax(), dateFacet.getDateType(), dateFacet.getStartDate(), dateFacet.getEndDate(), showTotal);
+                        ObjectCount[] results = queryFacetDate(dataSetQuery.getQueries().get(0), dataSetQuery.getQueries().get(0).getDsoId(), query, filterQuery, dataSetQuery.getMax(), dateFacet, showTotal, context);
                         dataset = new Dataset(1, results.length);
                         // Now that we have our results put em in a matrix
                         for(int j = 0; j < results.length; j++){
@@ -197,11 +210,20 @@ public class StatisticsDataVisits extends StatisticsData
                         dataset.setRowLabelAttr(0, getAttributes(dataSetQuery.getName(), dataSetQuery, context));
                     }else{
                         // We need to get the max objects and the next part of the query on them (next part beeing the datasettimequery
-                        ObjectCount[] maxObjectCounts = SolrLogger.queryFacetField(query, filterQuery, dataSetQuery.getFacetField(), dataSetQuery.getMax(), false, null);
+                        // Only look up the object itself in the rollup, since a top list from it would ignore the dates
+                        ObjectCount[] maxObjectCounts;
+                        if("id".equals(dataSetQuery.getFacetField()) && dataSetQuery.getQueries().get(0).getDsoId() != -1)
+                        {
+                            maxObjectCounts = queryFacetField(dataSetQuery, query, filterQuery, context);
+                        }
+                        else
+                        {
+                            maxObjectCounts = SolrLogger.queryFacetField(query, filterQuery, dataSetQuery.getFacetField(), dataSetQuery.getMax(), false, null);
+                        }
                         for (int j = 0; j < maxObjectCounts.length; j++) {
                             ObjectCount firstCount = maxObjectCounts[j];
                             String newQuery = dataSetQuery.getFacetField() + ": " + ClientUtils.escapeQueryChars(firstCount.getValue()) + " AND " + query;
-                            ObjectCount[] maxDateFacetCounts = SolrLogger.queryFacetDate(newQuery, filterQuery, dataSetQuery.getMax(), dateFacet.getDateType(), dateFacet.getStartDate(), dateFacet.getEndDate(), showTotal);
+                            ObjectCount[] maxDateFacetCounts = queryFacetDate(dataSetQuery.getQueries().get(0), "id".equals(dataSetQuery.getFacetField()) ? toId(firstCount.getValue()) : -1, newQuery, filterQuery, dataSetQuery.getMax(), dateFacet, showTotal, context);
 
 
                             // Make sure we have a dataSet
@@ -249,7 +271,7 @@ public class StatisticsDataVisits extends StatisticsData
 
             ObjectCount[] topCounts1 = null;
 //            if(firsDataset.getQueries().size() == 1){
-            topCounts1 = queryFacetField(firsDataset, firsDataset.getQueries().get(0).getQuery(), filterQuery);
+            topCounts1 = queryFacetField(firsDataset, firsDataset.getQueries().get(0).getQuery(), filterQuery, context);
 //            }else{
 //                TODO: do this
 //            }
@@ -257,7 +279,7 @@ public class StatisticsDataVisits extends StatisticsData
             if(datasetQueries.size() == 2){
                 DatasetQuery secondDataSet = datasetQueries.get(1);
                 // Now do the second one
-                ObjectCount[] topCounts2 = queryFacetField(secondDataSet, secondDataSet.getQueries().get(0).getQuery(), filterQuery);
+                ObjectCount[] topCounts2 = queryFacetField(secondDataSet, secondDataSet.getQueries().get(0).getQuery(), filterQuery, context);
                 // Now that have results for both of them lets do x.y queries
                 List<String> facetQueries = new ArrayList<String>();
                 for (ObjectCount count2 : topCounts2) {
@@ -640,14 +662,116 @@ public class StatisticsDataVisits extends StatisticsData
 
 
     private ObjectCount[] queryFacetField(DatasetQuery dataset, String query,
-            String filterQuery) throws SolrServerException
+            String filterQuery, Context context) throws SolrServerException, SQLException
     {
         String facetType = dataset.getFacetField() == null ? "id" : dataset
                 .getFacetField();
+
+        if (useRollup && dataset.getQueries().size() == 1)
+        {
+            ObjectCount[] result = queryRollup(dataset.getQueries().get(0), facetType,
+                    dataset.getMax(), context);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+
         return SolrLogger.queryFacetField(query, filterQuery, facetType,
                 dataset.getMax(), false, null);
     }
 
+    /**
+     * Read the values of a facet from the rollup.
+     *
+     * @return the values, or null if the query cannot be answered from the rollup
+     */
+    private ObjectCount[] queryRollup(Query query, String facetType, int max,
+            Context context) throws SQLException
+    {
+        if (query.getDsoType() == -1)
+        {
+            return null;
+        }
+        // Solr's default facet.limit
+        if (max == -1)
+        {
+            max = 100;
+        }
+
+        if (!"id".equals(facetType))
+        {
+            if (query.getDsoId() == -1 || query.owningDso != null)
+            {
+                return null;
+            }
+            return StatisticsRollup.getTopValues(context, query.getDsoType(),
+                    query.getDsoId(), facetType, max);
+        }
+
+        if (query.getDsoId() != -1)
+        {
+            // the object itself
+            long total = StatisticsRollup.getTotal(context, query.getDsoType(), query.getDsoId());
+            if (total == 0)
+            {
+                return new ObjectCount[0];
+            }
+            ObjectCount count = new ObjectCount();
+            count.setValue(String.valueOf(query.getDsoId()));
+            count.setCount(total);
+            return new ObjectCount[] { count };
+        }
+
+        if (query.owningDso == null)
+        {
+            return StatisticsRollup.getTopObjects(context, query.getDsoType(), -1, max);
+        }
+
+        if (query.owningDso.getType() == Constants.ITEM && query.getDsoType() == Constants.BITSTREAM)
+        {
+            return StatisticsRollup.getTopObjects(context, Constants.BITSTREAM,
+                    query.owningDso.getID(), max);
+        }
+
+        // owning collections and communities are not rolled up
+        return null;
+    }
+
+    /**
+     * Count the views of an object per period, from the rollup if possible.
+     */
+    private ObjectCount[] queryFacetDate(Query query, int dsoId, String solrQuery,
+            String filterQuery, int max, DatasetTimeGenerator dateFacet, boolean showTotal,
+            Context context) throws SolrServerException, SQLException
+    {
+        if (useRollup && dsoId != -1 && query.getDsoType() != -1
+                && dateFacet.getStartDate() != null && dateFacet.getEndDate() != null)
+        {
+            ObjectCount[] result = StatisticsRollup.getPeriods(context, query.getDsoType(), dsoId,
+                    dateFacet.getDateType(), dateFacet.getStartDate(), dateFacet.getEndDate(), showTotal);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+
+        return SolrLogger.queryFacetDate(solrQuery, filterQuery, max, dateFacet.getDateType(),
+                dateFacet.getStartDate(), dateFacet.getEndDate(), showTotal);
+    }
+
+    private static int toId(String value)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
     public static class DatasetQuery {
         private String name;
         private int max;
@@ -11,6 +11,8 @@ import org.dspace.core.ConfigurationManager;
 import org.xbill.DNS.*;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * XBill DNS resolver to retrieve hostnames for client IP addresses.
@@ -21,6 +23,65 @@ import java.io.IOException;
  */
 public class DnsLookup {
 
+    /** Reverse lookups already done, least recently used first */
+    private static final Map<String, CachedName> reverseCache
+            = new LinkedHashMap<String, CachedName>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedName> eldest)
+        {
+            return size() > ConfigurationManager.getIntProperty("usage-statistics", "resolver.cache.size", 10000);
+        }
+    };
+
+    /**
+     * Resolve an IP address to a host name, reusing the result of an earlier
+     * lookup of the same address if it is less than
+     * <code>usage-statistics.resolver.cache.ttl</code> seconds old. Failed
+     * lookups are remembered too, so an unresponsive name server only delays
+     * the first lookup of an address.
+     *
+     * @param hostIp dotted decimal IPv4 address.
+     * @return name if resolved, or the address.
+     * @throws IOException from infrastructure, now or in the cached lookup.
+     */
+    public static String reverseDnsCached(String hostIp) throws IOException {
+        long ttl = 1000L * ConfigurationManager.getIntProperty("usage-statistics", "resolver.cache.ttl", 3600);
+        if (ttl <= 0)
+        {
+            return reverseDns(hostIp);
+        }
+
+        CachedName cached;
+        synchronized (reverseCache)
+        {
+            cached = reverseCache.get(hostIp);
+        }
+
+        if (cached == null || System.currentTimeMillis() - cached.resolved > ttl)
+        {
+            try
+            {
+                cached = new CachedName(reverseDns(hostIp), null);
+            }
+            catch (IOException e)
+            {
+                cached = new CachedName(null, e);
+            }
+
+            synchronized (reverseCache)
+            {
+                reverseCache.put(hostIp, cached);
+            }
+        }
+
+        if (cached.failure != null)
+        {
+            throw cached.failure;
+        }
+        return cached.name;
+    }
+
     /**
      * Resolve an IP address to a host name.
      *
@@ -93,4 +154,22 @@ public class DnsLookup {
 
         return resolution;
     }
+
+    /**
+     * The result of a reverse lookup, and when it was done.
+     */
+    private static class CachedName
+    {
+        private final String name;
+
+        private final IOException failure;
+
+        private final long resolved = System.currentTimeMillis();
+
+        CachedName(String name, IOException failure)
+        {
+            this.name = name;
+            this.failure = failure;
+        }
+    }
 }
@@ -7,53 +7,76 @@
  */
 package org.dspace.statistics.util;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 /**
- * A Spare v4 IPTable implementation that uses nested HashMaps
- * to optimize IP address matching over ranges of IP addresses.
+ * A table of IPv4 and IPv6 address ranges, held as binary radix tries over
+ * the bits of the addresses, so that looking up an address takes at most one
+ * step per bit and allocates nothing (for IPv4).
+ * <p>
+ * Ranges may be given as a full address, the first three places of an IPv4
+ * address (a.b.c, meaning a.b.c.0/24), a CIDR block (a.b.c.d/n or an IPv6
+ * address/n) or an IPv4 range (a.b.c.d-e.f.g.h).
  *
  * @author mdiggory at atmire.com
  */
 public class IPTable {
 
-    /* A lookup tree for IP addresses and SubnetRanges */
-    private Map<String, Map<String, Map<String, Set<String>>>> map =
-            new HashMap<String, Map<String, Map<String, Set<String>>>>();
+    /* Lookup tries for IPv4 and IPv6 addresses */
+    private final Trie ipv4 = new Trie();
+
+    private final Trie ipv6 = new Trie();
 
     /**
-     * Can be full v4 IP, subnet or range string
+     * Can be full v4 IP, subnet, CIDR block or range string, or a full IPv6
+     * address or CIDR block
      *
      * @param ip
      */
     public void add(String ip) throws IPFormatException {
 
-        String[] start;
-
-        String[] end;
+        ip = ip.trim();
 
         String[] range = ip.split("-");
 
         if (range.length >= 2) {
 
-            start = range[0].trim().split("/")[0].split("\\.");
-            end = range[1].trim().split("/")[0].split("\\.");
+            long start = parseIPv4(range[0].trim().split("/")[0]);
+            long end = parseIPv4(range[1].trim().split("/")[0]);
 
-            if (start.length != 4 || end.length != 4)
+            if (start < 0 || end < 0)
             {
                 throw new IPFormatException(ip + " - Ranges need to be full IPv4 Addresses");
             }
 
-            if (!(start[0].equals(end[0]) && start[1].equals(end[1]) && start[2].equals(end[2]))) {
-                throw new IPFormatException(ip + " - Ranges can only be across the last subnet x.y.z.0 - x.y.z.254");
+            addRange(start, end);
+
+        } else if (ip.indexOf(':') >= 0) {
+
+            String[] block = ip.split("/");
+            int[] address = parseIPv6(block[0]);
+
+            if (address == null)
+            {
+                throw new IPFormatException(ip + " - not a valid IPv6 address");
             }
 
+            ipv6.add(address, (block.length > 1) ? prefixLength(ip, block[1], 128) : 128);
+
+        } else if (ip.indexOf('/') >= 0) {
+
+            String[] block = ip.split("/");
+            long address = parseIPv4(block[0]);
+
+            if (address < 0)
+            {
+                throw new IPFormatException(ip + " - CIDR blocks need a full IPv4 Address");
+            }
+
+            ipv4.add(new int[] { (int) address }, prefixLength(ip, block[1], 32));
+
         } else {
-            //need to ignore CIDR notation for the moment.
-            //ip = ip.split("\\/")[0];
 
             String[] subnets = ip.split("\\.");
 
@@ -62,126 +85,417 @@ public class IPTable {
 
             }
 
-            start = subnets;
-            end = subnets;
-        }
+            long address = parseIPv4((subnets.length == 3) ? ip + ".0" : ip);
+
+            if (address < 0)
+            {
+                throw new IPFormatException(ip + " - not a valid IPv4 address");
+            }
 
-        if (start.length >= 3) {
+            ipv4.add(new int[] { (int) address }, (subnets.length == 3) ? 24 : 32);
+        }
+    }
 
+    /** Check whether a given address is contained in this netblock.
+     *
+     * @param ip the address to be tested
+     * @return true if {@code ip} is within this table's limits
+     * @throws IPFormatException
+     */
+    public boolean contains(String ip) throws IPFormatException {
 
-            Map<String, Map<String, Set<String>>> first = map.get(start[0]);
+        if (ip.indexOf(':') >= 0)
+        {
+            int[] address = parseIPv6(ip);
 
-            if (first == null) {
-                first = new HashMap<String, Map<String, Set<String>>>();
-                map.put(start[0], first);
+            if (address == null)
+            {
+                throw new IPFormatException("needs to be a single IP address");
             }
 
-            Map<String, Set<String>> second = first.get(start[1]);
+            // an IPv4 address mapped to IPv6, ::ffff:a.b.c.d
+            if (address[0] == 0 && address[1] == 0 && address[2] == 0xffff)
+            {
+                return ipv4.contains(address[3]) || ipv6.contains(address);
+            }
 
+            return ipv6.contains(address);
+        }
 
-            if (second == null) {
-                second = new HashMap<String, Set<String>>();
-                first.put(start[1], second);
-            }
+        long address = parseIPv4(ip);
 
-            Set<String> third = second.get(start[2]);
+        if (address < 0)
+        {
+            throw new IPFormatException("needs to be a single IP address");
+        }
 
-            if (third == null) {
-                third = new HashSet<String>();
-                second.put(start[2], third);
-            }
+        return ipv4.contains((int) address);
 
-            //now populate fourth place (* or value 0-254);
+    }
 
-            if (start.length == 3) {
-                third.add("*");
-            }
+    /** Convert to a Set of the IPv4 addresses, and a.b.c subnets, in the table.
+     * @return this table's content as a Set
+     */
+    public Set<String> toSet() {
+        final HashSet<String> set = new HashSet<String>();
 
-            if (third.contains("*")) {
-                return;
+        ipv4.visit(new int[1], 0, 0, new Visitor()
+        {
+            public void visit(int[] prefix, int length)
+            {
+                long first = prefix[0] & 0xffffffffL;
+                long last = first | (0xffffffffL >>> length);
+
+                if (length > 24)
+                {
+                    for (long address = first; address <= last; address++)
+                    {
+                        set.add(toString(address, 4));
+                    }
+                }
+                else
+                {
+                    for (long subnet = first; subnet <= last; subnet += 256)
+                    {
+                        set.add(toString(subnet, 3));
+                    }
+                }
             }
 
-            if (start.length >= 4) {
-                int s = Integer.valueOf(start[3]);
-                int e = Integer.valueOf(end[3]);
-                for (int i = s; i <= e; i++) {
-                    third.add(String.valueOf(i));
+            private String toString(long address, int places)
+            {
+                StringBuilder text = new StringBuilder();
+                for (int place = 0; place < places; place++)
+                {
+                    if (place > 0)
+                    {
+                        text.append('.');
+                    }
+                    text.append((address >>> (24 - 8 * place)) & 0xff);
                 }
+                return text.toString();
             }
-        }
+        });
+
+        return set;
     }
 
-    /** Check whether a given address is contained in this netblock.
-     * 
-     * @param ip the address to be tested
-     * @return true if {@code ip} is within this table's limits
-     * @throws IPFormatException
+    /**
+     * Add every address from start to end, as the fewest CIDR blocks.
      */
-    public boolean contains(String ip) throws IPFormatException {
+    private void addRange(long start, long end) throws IPFormatException
+    {
+        if (start > end)
+        {
+            throw new IPFormatException("Range ends before it starts");
+        }
 
-        String[] subnets = ip.split("\\.");
+        while (start <= end)
+        {
+            // the largest block which starts here and does not pass the end
+            int bits = (start == 0) ? 32 : Math.min(32, Long.numberOfTrailingZeros(start));
+            while ((1L << bits) > end - start + 1)
+            {
+                bits--;
+            }
 
-        if (subnets.length != 4)
+            ipv4.add(new int[] { (int) start }, 32 - bits);
+            start += 1L << bits;
+        }
+    }
+
+    private static int prefixLength(String ip, String length, int max) throws IPFormatException
+    {
+        try
         {
-            throw new IPFormatException("needs to be a single IP address");
+            int bits = Integer.parseInt(length.trim());
+            if (bits >= 0 && bits <= max)
+            {
+                return bits;
+            }
         }
+        catch (NumberFormatException e)
+        {
+            // reported below
+        }
+
+        throw new IPFormatException(ip + " - invalid prefix length");
+    }
+
+    /**
+     * Parse a dotted decimal IPv4 address, without allocating.
+     *
+     * @param ip the address
+     * @return the address as an unsigned 32 bit value, or -1 if not valid
+     */
+    static long parseIPv4(CharSequence ip)
+    {
+        return parseIPv4(ip, 0, ip.length());
+    }
 
-        Map<String, Map<String, Set<String>>> first = map.get(subnets[0]);
+    private static long parseIPv4(CharSequence ip, int start, int end)
+    {
+        long address = 0;
+        int places = 0;
+        int value = -1;
 
-        if (first == null)
+        for (int i = start; i <= end; i++)
         {
-            return false;
+            char c = (i < end) ? ip.charAt(i) : '.';
+
+            if (c >= '0' && c <= '9')
+            {
+                value = (value < 0) ? c - '0' : value * 10 + (c - '0');
+                if (value > 255)
+                {
+                    return -1;
+                }
+            }
+            else if (c == '.' && value >= 0 && places < 4)
+            {
+                address = (address << 8) | value;
+                places++;
+                value = -1;
+            }
+            else
+            {
+                return -1;
+            }
         }
 
-        Map<String, Set<String>> second = first.get(subnets[1]);
+        return (places == 4) ? address : -1;
+    }
 
-        if (second == null)
+    /**
+     * Parse an IPv6 address, possibly with :: and a trailing dotted IPv4
+     * address.
+     *
+     * @param ip the address
+     * @return the address as four 32 bit values, or null if not valid
+     */
+    static int[] parseIPv6(String ip)
+    {
+        // drop any zone, as in fe80::1%eth0
+        int zone = ip.indexOf('%');
+        int end = (zone >= 0) ? zone : ip.length();
+
+        int[] groups = new int[8];
+        int count = 0;
+        int gap = -1;
+        int i = 0;
+
+        if (ip.startsWith("::"))
         {
-            return false;
+            gap = 0;
+            i = 2;
         }
 
-        Set<String> third = second.get(subnets[2]);
+        while (i < end)
+        {
+            int next = ip.indexOf(':', i);
+            if (next < 0 || next > end)
+            {
+                next = end;
+            }
 
-        if (third == null)
+            if (next == end && ip.lastIndexOf('.', end - 1) >= i)
+            {
+                // trailing IPv4 address
+                long ipv4 = parseIPv4(ip, i, end);
+                if (ipv4 < 0 || count > 6)
+                {
+                    return null;
+                }
+                groups[count++] = (int) (ipv4 >>> 16);
+                groups[count++] = (int) (ipv4 & 0xffff);
+                i = end;
+                break;
+            }
+
+            if (next == i || next - i > 4 || count == 8)
+            {
+                return null;
+            }
+
+            int group = 0;
+            for (int j = i; j < next; j++)
+            {
+                int digit = Character.digit(ip.charAt(j), 16);
+                if (digit < 0)
+                {
+                    return null;
+                }
+                group = (group << 4) | digit;
+            }
+            groups[count++] = group;
+
+            i = next + 1;
+            if (next < end && i < end && ip.charAt(i) == ':')
+            {
+                if (gap >= 0)
+                {
+                    return null;
+                }
+                gap = count;
+                i++;
+            }
+            else if (next < end && i == end)
+            {
+                // trailing single colon
+                return null;
+            }
+        }
+
+        if (gap >= 0)
+        {
+            if (count == 8)
+            {
+                return null;
+            }
+            int missing = 8 - count;
+            System.arraycopy(groups, gap, groups, gap + missing, count - gap);
+            for (int j = gap; j < gap + missing; j++)
+            {
+                groups[j] = 0;
+            }
+        }
+        else if (count != 8)
         {
-            return false;
+            return null;
         }
 
-        return third.contains(subnets[3]) || third.contains("*");
+        int[] address = new int[4];
+        for (int j = 0; j < 4; j++)
+        {
+            address[j] = (groups[2 * j] << 16) | groups[2 * j + 1];
+        }
+        return address;
+    }
 
+    /**
+     * Callback for the prefixes held in a trie.
+     */
+    private interface Visitor
+    {
+        void visit(int[] prefix, int length);
     }
 
-    /** Convert to a Set.
-     * @return this table's content as a Set
+    /**
+     * A binary trie of address prefixes. Node 0 is the root; the children of
+     * node n are at child[2n] (next bit 0) and child[2n + 1] (next bit 1), or
+     * 0 if there is none. A node is terminal if a prefix ends there, in which
+     * case every address below it is in the table.
      */
-    public Set<String> toSet() {
-        HashSet<String> set = new HashSet<String>();
-
-        for (Map.Entry<String, Map<String, Map<String, Set<String>>>> first : map.entrySet()) {
-            String firstString = first.getKey();
-            Map<String, Map<String, Set<String>>> secondMap = first.getValue();
-
-            for (Map.Entry<String, Map<String, Set<String>>> second : secondMap.entrySet()) {
-                String secondString = second.getKey();
-                Map<String, Set<String>> thirdMap = second.getValue();
-
-                for (Map.Entry<String, Set<String>> third : thirdMap.entrySet()) {
-                    String thirdString = third.getKey();
-                    Set<String> fourthSet = third.getValue();
-
-                    if (fourthSet.contains("*")) {
-                        set.add(firstString + "." + secondString + "." + thirdString);
-                    } else {
-                        for (String fourth : fourthSet) {
-                            set.add(firstString + "." + secondString + "." + thirdString + "." + fourth);
-                        }
-                    }
+    private static final class Trie
+    {
+        private int[] child = new int[64];
 
+        private boolean[] terminal = new boolean[32];
+
+        private int size = 1;
+
+        synchronized void add(int[] address, int length)
+        {
+            int node = 0;
+            for (int i = 0; i < length; i++)
+            {
+                if (terminal[node])
+                {
+                    // already covered by a shorter prefix
+                    return;
+                }
+
+                int slot = 2 * node + bit(address, i);
+                if (child[slot] == 0)
+                {
+                    int created = newNode();
+                    child[slot] = created;
                 }
+                node = child[slot];
             }
+            terminal[node] = true;
         }
 
-        return set;
+        boolean contains(int address)
+        {
+            int node = 0;
+            for (int i = 0; i < 32; i++)
+            {
+                if (terminal[node])
+                {
+                    return true;
+                }
+                node = child[2 * node + ((address >>> (31 - i)) & 1)];
+                if (node == 0)
+                {
+                    return false;
+                }
+            }
+            return terminal[node];
+        }
+
+        boolean contains(int[] address)
+        {
+            int bits = 32 * address.length;
+            int node = 0;
+            for (int i = 0; i < bits; i++)
+            {
+                if (terminal[node])
+                {
+                    return true;
+                }
+                node = child[2 * node + bit(address, i)];
+                if (node == 0)
+                {
+                    return false;
+                }
+            }
+            return terminal[node];
+        }
+
+        /**
+         * Visit every prefix in the trie below a node.
+         */
+        void visit(int[] prefix, int node, int length, Visitor visitor)
+        {
+            if (terminal[node])
+            {
+                visitor.visit(prefix, length);
+                return;
+            }
+
+            for (int bit = 0; bit < 2; bit++)
+            {
+                int next = child[2 * node + bit];
+                if (next != 0)
+                {
+                    int word = length / 32;
+                    int mask = 1 << (31 - length % 32);
+                    prefix[word] = (bit == 1) ? (prefix[word] | mask) : (prefix[word] & ~mask);
+                    visit(prefix, next, length + 1, visitor);
+                    prefix[word] &= ~mask;
+                }
+            }
+        }
+
+        private int newNode()
+        {
+            if (size == terminal.length)
+            {
+                int[] newChild = new int[child.length * 2];
+                System.arraycopy(child, 0, newChild, 0, child.length);
+                boolean[] newTerminal = new boolean[terminal.length * 2];
+                System.arraycopy(terminal, 0, newTerminal, 0, terminal.length);
+                child = newChild;
+                terminal = newTerminal;
+            }
+            return size++;
+        }
+
+        private static int bit(int[] address, int index)
+        {
+            return (address[index / 32] >>> (31 - index % 32)) & 1;
+        }
     }
 
 
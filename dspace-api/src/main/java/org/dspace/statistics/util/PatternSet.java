@@ -0,0 +1,277 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A set of regular expressions, compiled to find quickly whether any of them
+ * matches part of a string, as <code>Pattern.matcher(s).find()</code> would.
+ * <p>
+ * Most spider patterns are plain strings, perhaps with some punctuation
+ * escaped. Those are matched together by an Aho-Corasick automaton, which
+ * looks at each character of the string once however many patterns there
+ * are, and allocates nothing. Only the remaining, real regular expressions
+ * are tried one by one.
+ *
+ * @version $Revision$
+ */
+public class PatternSet
+{
+    /** Characters with a special meaning in a regular expression */
+    private static final String METACHARACTERS = ".[]{}()*+?^$|";
+
+    /** Transitions of each state, sorted by character: edges firstEdge[s] to firstEdge[s + 1] - 1 */
+    private final int[] firstEdge;
+
+    private final char[] edgeChar;
+
+    private final int[] edgeTarget;
+
+    /** The state to fall back to when a state has no transition for a character */
+    private final int[] failure;
+
+    /** Whether a pattern has been matched on reaching a state */
+    private final boolean[] matched;
+
+    /** Patterns which are not plain strings */
+    private final List<Pattern> expressions = new ArrayList<Pattern>();
+
+    private final int size;
+
+    /**
+     * Compile a set of regular expressions.
+     *
+     * @param patterns the regular expressions
+     */
+    public PatternSet(Collection<String> patterns)
+    {
+        // build the trie of the plain strings
+        List<Map<Character, Integer>> transitions = new ArrayList<Map<Character, Integer>>();
+        List<Boolean> terminal = new ArrayList<Boolean>();
+        transitions.add(new HashMap<Character, Integer>());
+        terminal.add(Boolean.FALSE);
+
+        for (String pattern : patterns)
+        {
+            String literal = toLiteral(pattern);
+            if (literal == null)
+            {
+                expressions.add(Pattern.compile(pattern));
+                continue;
+            }
+
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++)
+            {
+                Character c = Character.valueOf(literal.charAt(i));
+                Integer next = transitions.get(state).get(c);
+                if (next == null)
+                {
+                    next = Integer.valueOf(transitions.size());
+                    transitions.add(new HashMap<Character, Integer>());
+                    terminal.add(Boolean.FALSE);
+                    transitions.get(state).put(c, next);
+                }
+                state = next.intValue();
+            }
+            terminal.set(state, Boolean.TRUE);
+        }
+        size = patterns.size();
+
+        // flatten the transitions into sorted arrays
+        int states = transitions.size();
+        firstEdge = new int[states + 1];
+        int edges = 0;
+        for (int s = 0; s < states; s++)
+        {
+            firstEdge[s] = edges;
+            edges += transitions.get(s).size();
+        }
+        firstEdge[states] = edges;
+
+        edgeChar = new char[edges];
+        edgeTarget = new int[edges];
+        for (int s = 0; s < states; s++)
+        {
+            Character[] chars = transitions.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(chars);
+            for (int i = 0; i < chars.length; i++)
+            {
+                edgeChar[firstEdge[s] + i] = chars[i].charValue();
+                edgeTarget[firstEdge[s] + i] = transitions.get(s).get(chars[i]).intValue();
+            }
+        }
+
+        // breadth first, find where each state falls back to: the longest
+        // proper suffix of its string which is also in the trie
+        failure = new int[states];
+        matched = new boolean[states];
+        matched[0] = terminal.get(0).booleanValue();
+
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int e = firstEdge[0]; e < firstEdge[1]; e++)
+        {
+            int child = edgeTarget[e];
+            failure[child] = 0;
+            matched[child] = terminal.get(child).booleanValue();
+            queue.add(Integer.valueOf(child));
+        }
+
+        while (!queue.isEmpty())
+        {
+            int state = queue.removeFirst().intValue();
+            for (int e = firstEdge[state]; e < firstEdge[state + 1]; e++)
+            {
+                int child = edgeTarget[e];
+                char c = edgeChar[e];
+
+                int fallback = failure[state];
+                int next = transition(fallback, c);
+                while (next < 0 && fallback != 0)
+                {
+                    fallback = failure[fallback];
+                    next = transition(fallback, c);
+                }
+
+                failure[child] = (next < 0) ? 0 : next;
+                matched[child] = terminal.get(child).booleanValue() || matched[failure[child]];
+                queue.add(Integer.valueOf(child));
+            }
+        }
+    }
+
+    /**
+     * @return true if there are no patterns
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of patterns
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Find whether any pattern matches part of a string.
+     *
+     * @param text the string
+     * @return true if a pattern matches
+     */
+    public boolean find(CharSequence text)
+    {
+        if (matched[0])
+        {
+            // an empty pattern matches anything
+            return true;
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            int next = transition(state, c);
+            while (next < 0 && state != 0)
+            {
+                state = failure[state];
+                next = transition(state, c);
+            }
+            state = (next < 0) ? 0 : next;
+
+            if (matched[state])
+            {
+                return true;
+            }
+        }
+
+        for (Pattern expression : expressions)
+        {
+            if (expression.matcher(text).find())
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the state reached from a state with a character, or -1 if
+     *         there is no such transition
+     */
+    private int transition(int state, char c)
+    {
+        int low = firstEdge[state];
+        int high = firstEdge[state + 1] - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            char m = edgeChar[middle];
+            if (m < c)
+            {
+                low = middle + 1;
+            }
+            else if (m > c)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return edgeTarget[middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the plain string a regular expression matches, if it only matches
+     * one: one without metacharacters, other than escaped punctuation.
+     *
+     * @param regex the regular expression
+     * @return the string, or null if the expression is not a plain string
+     */
+    static String toLiteral(String regex)
+    {
+        StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++)
+        {
+            char c = regex.charAt(i);
+            if (c == '\\')
+            {
+                // \s, \d, \Q, \1 etc. are not plain characters
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+                {
+                    return null;
+                }
+                literal.append(regex.charAt(++i));
+            }
+            else if (METACHARACTERS.indexOf(c) >= 0)
+            {
+                return null;
+            }
+            else
+            {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+}
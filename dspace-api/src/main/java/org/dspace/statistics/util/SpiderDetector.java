@@ -11,11 +11,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletRequest;
 import org.dspace.core.ConfigurationManager;
 import org.slf4j.Logger;
@@ -25,6 +22,10 @@ import org.slf4j.LoggerFactory;
  * SpiderDetector is used to find IP's that are spiders...
  * In future someone may add Host Domains
  * to the detection criteria here.
+ * <p>
+ * The spider addresses are held in an {@link IPTable}, and the agent and
+ * domain name patterns in {@link PatternSet}s, all loaded once and then
+ * only read, so checking a request takes no lock.
  *
  * @author kevinvandevelde at atmire.com
  * @author ben at atmire.com
@@ -37,15 +38,15 @@ public class SpiderDetector {
     private static Boolean useProxies;
 
     /**
-     * Sparse HashTable structure to hold IP address ranges.
+     * Trie structure to hold IP address ranges.
      */
-    private static IPTable table = null;
+    private static volatile IPTable table = null;
 
-    /** Collection of regular expressions to match known spiders' agents. */
-    private static List<Pattern> agents = new ArrayList<Pattern>();
+    /** Regular expressions to match known spiders' agents. */
+    private static volatile PatternSet agents = null;
 
-    /** Collection of regular expressions to match known spiders' domain names. */
-    private static List<Pattern> domains = new ArrayList<Pattern>();
+    /** Regular expressions to match known spiders' domain names. */
+    private static volatile PatternSet domains = null;
 
     /**
      * Utility method which reads lines from a file & returns them in a Set.
@@ -90,55 +91,95 @@ public class SpiderDetector {
      */
     public static Set<String> getSpiderIpAddresses() {
 
-        loadSpiderIpAddresses();
-        return table.toSet();
+        return getTable().toSet();
+    }
+
+    /*
+     *  Get the table, loading it on first use.  Once loaded it is only read,
+     *  so only the first use takes the lock.
+     */
+
+    private static IPTable getTable() {
+
+        IPTable loaded = table;
+        if (loaded == null) {
+            synchronized (SpiderDetector.class) {
+                loaded = table;
+                if (loaded == null) {
+                    loaded = loadTable();
+                    table = loaded;
+                }
+            }
+        }
+
+        return loaded;
     }
 
     /*
      *  private loader to populate the table from files.
      */
 
-    private static void loadSpiderIpAddresses() {
-
-        if (table == null) {
-            table = new IPTable();
-
-            String filePath = ConfigurationManager.getProperty("dspace.dir");
-
-            try {
-                File spidersDir = new File(filePath, "config/spiders");
-
-                if (spidersDir.exists() && spidersDir.isDirectory()) {
-                    for (File file : spidersDir.listFiles()) {
-                        if (file.isFile())
-                        {
-                            for (String ip : readPatterns(file)) {
-                                log.debug("Loading {}", ip);
-                                if (!Character.isDigit(ip.charAt(0)))
-                                {
-                                    try {
-                                        ip = DnsLookup.forward(ip);
-                                        log.debug("Resolved to {}", ip);
-                                    } catch (IOException e) {
-                                        log.warn("Not loading {}:  {}", ip, e.getMessage());
-                                        continue;
-                                    }
+    private static IPTable loadTable() {
+
+        IPTable loaded = new IPTable();
+
+        String filePath = ConfigurationManager.getProperty("dspace.dir");
+
+        try {
+            File spidersDir = new File(filePath, "config/spiders");
+
+            if (spidersDir.exists() && spidersDir.isDirectory()) {
+                for (File file : spidersDir.listFiles()) {
+                    if (file.isFile())
+                    {
+                        for (String ip : readPatterns(file)) {
+                            log.debug("Loading {}", ip);
+                            if (!Character.isDigit(ip.charAt(0)) && ip.indexOf(':') < 0)
+                            {
+                                try {
+                                    ip = DnsLookup.forward(ip);
+                                    log.debug("Resolved to {}", ip);
+                                } catch (IOException e) {
+                                    log.warn("Not loading {}:  {}", ip, e.getMessage());
+                                    continue;
                                 }
-                                table.add(ip);
                             }
-                            log.info("Loaded Spider IP file: " + file);
+                            try {
+                                loaded.add(ip);
+                            } catch (IPTable.IPFormatException e) {
+                                log.warn("Not loading {}:  {}", ip, e.getMessage());
+                            }
                         }
+                        log.info("Loaded Spider IP file: " + file);
                     }
-                } else {
-                    log.info("No spider file loaded");
                 }
+            } else {
+                log.info("No spider file loaded");
             }
-            catch (Exception e) {
-                log.error("Error Loading Spiders:" + e.getMessage(), e);
-            }
+        }
+        catch (Exception e) {
+            log.error("Error Loading Spiders:" + e.getMessage(), e);
+        }
+
+        return loaded;
+    }
 
+    private static PatternSet getAgents()
+    {
+        if (agents == null)
+        {
+            agents = loadPatterns("agents");
         }
+        return agents;
+    }
 
+    private static PatternSet getDomains()
+    {
+        if (domains == null)
+        {
+            domains = loadPatterns("domains");
+        }
+        return domains;
     }
 
     /**
@@ -147,11 +188,11 @@ public class SpiderDetector {
      * @param directory simple directory name (e.g. "agents").
      *      "${dspace.dir}/config/spiders" will be prepended to yield the path to
      *      the directory of pattern files.
-     * @param patternList patterns read from the files in {@code directory} will
-     *      be added to this List.
+     * @return the patterns read from the files in {@code directory}.
      */
-    private static void loadPatterns(String directory, List<Pattern> patternList)
+    private static PatternSet loadPatterns(String directory)
     {
+        Set<String> patternList = new HashSet<String>();
         String dspaceHome = ConfigurationManager.getProperty("dspace.dir");
         File spidersDir = new File(dspaceHome, "config/spiders");
         File patternsDir = new File(spidersDir, directory);
@@ -169,10 +210,7 @@ public class SpiderDetector {
                             file.getPath(), ex.getMessage());
                     continue;
                 }
-                for (String pattern : patterns)
-                {
-                    patternList.add(Pattern.compile(pattern));
-                }
+                patternList.addAll(patterns);
                 log.info("Loaded pattern file:  {}", file.getPath());
             }
         }
@@ -180,13 +218,12 @@ public class SpiderDetector {
         {
             log.info("No patterns loaded from {}", patternsDir.getPath());
         }
+
+        return new PatternSet(patternList);
     }
 
     /**
      * Static Service Method for testing spiders against existing spider files.
-     * <p>
-     * In future spiders HashSet may be optimized as byte offset array to
-     * improve performance and memory footprint further.
      *
      * @param clientIP address of the client.
      * @param proxyIPs comma-list of X-Forwarded-For addresses, or null.
@@ -198,25 +235,16 @@ public class SpiderDetector {
             String hostname, String agent)
     {
         // See if any agent patterns match
-        if (null != agent)
+        if (null != agent && getAgents().find(agent))
         {
-            if (agents.isEmpty())
-                loadPatterns("agents", agents);
-
-            for (Pattern candidate : agents)
-            {
-                if (candidate.matcher(agent).find())
-                {
-                    return true;
-                }
-            }
+            return true;
         }
 
         // No.  See if any IP addresses match
         if (isUseProxies() && proxyIPs != null) {
             /* This header is a comma delimited list */
             for (String xfip : proxyIPs.split(",")) {
-                if (isSpider(xfip))
+                if (isSpider(xfip.trim()))
                 {
                     return true;
                 }
@@ -227,20 +255,9 @@ public class SpiderDetector {
             return true;
 
         // No.  See if any DNS names match
-        if (null != hostname)
+        if (null != hostname && getDomains().find(hostname))
         {
-            if (domains.isEmpty())
-            {
-                loadPatterns("domains", domains);
-            }
-
-            for (Pattern candidate : domains)
-            {
-                if (candidate.matcher(hostname).find())
-                {
-                    return true;
-                }
-            }
+            return true;
         }
 
         // Not a known spider.
@@ -249,6 +266,8 @@ public class SpiderDetector {
 
     /**
      * Static Service Method for testing spiders against existing spider files.
+     * The host name of the client, which may need a DNS lookup, is only
+     * asked for if there are domain name patterns.
      *
      * @param request
      * @return true|false if the request was detected to be from a spider.
@@ -257,7 +276,7 @@ public class SpiderDetector {
     {
         return isSpider(request.getRemoteAddr(),
                 request.getHeader("X-Forwarded-For"),
-                request.getRemoteHost(),
+                getDomains().isEmpty() ? null : request.getRemoteHost(),
                 request.getHeader("User-Agent"));
     }
 
@@ -269,12 +288,8 @@ public class SpiderDetector {
      */
     public static boolean isSpider(String ip) {
 
-        if (table == null) {
-            SpiderDetector.loadSpiderIpAddresses();
-        }
-
         try {
-            if (table.contains(ip)) {
+            if (getTable().contains(ip)) {
                 return true;
             }
         } catch (Exception e) {
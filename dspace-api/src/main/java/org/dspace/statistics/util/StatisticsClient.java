@@ -11,7 +11,9 @@ import org.apache.commons.cli.*;
 import org.apache.log4j.Logger;
 import org.apache.tools.ant.taskdefs.Get;
 import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
 import org.dspace.statistics.SolrLogger;
+import org.dspace.statistics.StatisticsRollup;
 
 import java.io.*;
 import java.net.URL;
@@ -62,6 +64,8 @@ public class StatisticsClient
         options.addOption("b", "reindex-bitstreams", false, "Reindex the bitstreams to ensure we have the bundle name");
         options.addOption("r", "remove-deleted-bitstreams", false, "While indexing the bundle names remove the statistics about deleted bitstreams");
         options.addOption("s", "shard-solr-index", false, "Split the data from the main Solr core into separate Solr cores per year");
+        options.addOption("a", "update-rollup", false, "Bring the daily view counters used by the statistics pages up to date");
+        options.addOption("A", "rebuild-rollup", false, "Rebuild the daily view counters from scratch, e.g. after removing spiders");
         options.addOption("h", "help", false, "help");
 
 		CommandLine line = parser.parse(options, args);
@@ -100,6 +104,22 @@ public class StatisticsClient
         {
             SolrLogger.shardSolrIndex();
         }
+        else if(line.hasOption('a') || line.hasOption('A'))
+        {
+            Context context = new Context();
+            try
+            {
+                StatisticsRollup.update(context, line.hasOption('A'));
+                context.complete();
+            }
+            finally
+            {
+                if (context.isValid())
+                {
+                    context.abort();
+                }
+            }
+        }
         else
         {
             printHelp(options, 0);
@@ -59,6 +59,15 @@ import edu.sdsc.grid.io.srb.SRBFileSystem;
  * It would be worth re-considering a Listener pattern if another package needs to 
  * be notified of BitstreamStorageManager actions.</p> 
  *
+ * <p>If <code>assetstore.dedup</code> is true and the incoming asset store is
+ * a local one, new bitstreams are stored by content: the internal_id is the
+ * hex digest of the bits (<code>assetstore.dedup.algorithm</code>, SHA-256 by
+ * default), so a file which is already stored is not stored again, but shared
+ * by all the bitstreams with the same internal_id, like the bitstreams of
+ * versions of an item. The number of such rows in the bitstream table is the
+ * reference count of the file, and <code>cleanup</code> only deletes the file
+ * along with the last of them.</p>
+ *
  * @author Peter Breton, Robert Tansley, David Little, Nathan Sarr
  * @version $Revision$
  */
@@ -89,6 +98,9 @@ public class BitstreamStorageManager
     /** The asset store to use for new bitstreams */
     private static int incoming;
 
+    /** Default algorithm of the internal_id of bitstreams stored by content */
+    private static final String DEFAULT_DEDUP_ALGORITHM = "SHA-256";
+
     // These settings control the way an identifier is hashed into
     // directory and file names
     //
@@ -314,7 +326,26 @@ public class BitstreamStorageManager
             log.warn("Caught NoSuchAlgorithmException", nsae);
         }
 
-        Utils.bufferedCopy(dis, fos);
+        // and, if storing by content, one that works out the internal_id
+        InputStream source = (dis != null) ? dis : is;
+        DigestInputStream contentDigest = null;
+
+        if (isStoredByContent())
+        {
+            String algorithm = ConfigurationManager.getProperty("assetstore.dedup.algorithm");
+            try
+            {
+                contentDigest = new DigestInputStream(source, MessageDigest
+                        .getInstance(algorithm != null ? algorithm : DEFAULT_DEDUP_ALGORITHM));
+                source = contentDigest;
+            }
+            catch (NoSuchAlgorithmException nsae)
+            {
+                log.error("Not storing by content: unknown assetstore.dedup.algorithm " + algorithm);
+            }
+        }
+
+        Utils.bufferedCopy(source, fos);
         fos.close();
         is.close();
 
@@ -326,6 +357,12 @@ public class BitstreamStorageManager
                     .digest()));
             bitstream.setColumn("checksum_algorithm", "MD5");
         }
+
+        if (contentDigest != null)
+        {
+            file = storeByContent(bitstream, file, Utils.toHex(contentDigest
+                    .getMessageDigest().digest()));
+        }
         
         bitstream.setColumn("deleted", false);
         DatabaseManager.update(context, bitstream);
@@ -341,6 +378,92 @@ public class BitstreamStorageManager
         return bitstreamId;
     }
 
+    /**
+     * Move a newly stored file to the path given by its content, or drop it
+     * if a file with the same content is there already.
+     * 
+     * @param bitstream
+     *            the (still deleted) bitstream row of the new file
+     * @param stored
+     *            the new file
+     * @param digest
+     *            the hex digest of the file, its new internal_id
+     * @return the file the bitstream now refers to
+     */
+    private static GeneralFile storeByContent(TableRow bitstream, GeneralFile stored,
+            String digest) throws SQLException, IOException
+    {
+        bitstream.setColumn("internal_id", digest);
+        GeneralFile shared = getFile(bitstream);
+        File sharedFile = new File(shared.getAbsolutePath());
+
+        // Keep cleanup from deleting an existing copy: it skips recent files,
+        // and only deletes a file nothing else refers to, as far as it can
+        // see, so the reference is committed before the copy is relied on
+        sharedFile.setLastModified(System.currentTimeMillis());
+
+        Context tempContext = new Context();
+        try
+        {
+            DatabaseManager.updateQuery(tempContext,
+                    "UPDATE Bitstream SET internal_id = ? WHERE bitstream_id = ?",
+                    digest, bitstream.getIntColumn("bitstream_id"));
+            tempContext.complete();
+        }
+        finally
+        {
+            if (tempContext.isValid())
+            {
+                tempContext.abort();
+            }
+        }
+
+        File storedFile = new File(stored.getAbsolutePath());
+        if (!sharedFile.exists())
+        {
+            File parent = sharedFile.getParentFile();
+            if (!parent.exists())
+            {
+                parent.mkdirs();
+            }
+
+            // Another store of the same content may have won the race, or
+            // cleanup removed the empty directory meanwhile: try once more
+            if (!storedFile.renameTo(sharedFile) && !sharedFile.exists())
+            {
+                parent.mkdirs();
+                if (!storedFile.renameTo(sharedFile) && !sharedFile.exists())
+                {
+                    throw new IOException("Could not move " + storedFile + " to " + sharedFile);
+                }
+            }
+        }
+        else if (log.isDebugEnabled())
+        {
+            log.debug("Bitstream " + bitstream.getIntColumn("bitstream_id")
+                    + " shares file " + sharedFile);
+        }
+
+        if (storedFile.exists() && storedFile.delete())
+        {
+            deleteParents(stored);
+        }
+
+        return shared;
+    }
+
+    /**
+     * Whether new bitstreams are stored by content, which is only done in
+     * local asset stores.
+     * 
+     * @return true if new bitstreams are stored by content
+     */
+    private static boolean isStoredByContent()
+    {
+        return ConfigurationManager.getBooleanProperty("assetstore.dedup", false)
+                && assetStores[incoming] instanceof LocalFile;
+    }
+
 	/**
 	 * Register a bitstream already in storage.
 	 *
@@ -525,6 +648,44 @@ public class BitstreamStorageManager
 		return (file != null) ? FileFactory.newFileInputStream(file) : null;
     }
 
+    /**
+     * Get the file holding the bits for the bitstream with ID, if it is kept
+     * in a local file system assetstore. This lets callers read parts of the
+     * bitstream directly, e.g. with a <code>FileChannel</code>, rather than
+     * reading through the stream returned by <code>retrieve</code>.
+     * 
+     * @param context
+     *            The current context
+     * @param id
+     *            The ID of the bitstream
+     * @exception IOException
+     *                If a problem occurs while determining the file
+     * @exception SQLException
+     *                If a problem occurs accessing the RDBMS
+     * 
+     * @return The file, or null if the bitstream does not exist or is not
+     *         stored in a local assetstore
+     */
+    public static File retrieveFile(Context context, int id)
+            throws SQLException, IOException
+    {
+        TableRow bitstream = DatabaseManager.find(context, "bitstream", id);
+
+        if (bitstream == null)
+        {
+            return null;
+        }
+
+        GeneralFile file = getFile(bitstream);
+
+        if (file instanceof LocalFile && file.exists())
+        {
+            return new File(file.getAbsolutePath());
+        }
+
+        return null;
+    }
+
     /**
      * <p>
      * Remove a bitstream from the asset store. This method does not delete any
@@ -638,11 +799,12 @@ public class BitstreamStorageManager
 				}
 
 
-                // Since versioning allows for multiple bitstreams, check if the internal identifier isn't used on another place
-                TableRow duplicateBitRow = DatabaseManager.querySingleTable(context, "Bitstream", "SELECT * FROM Bitstream WHERE internal_id = ? AND bitstream_id <> ?", row.getStringColumn("internal_id"), bid);
-                if(duplicateBitRow == null)
+                // Since versioning and storing by content allow for multiple bitstreams, check if the internal identifier isn't used on another place
+                TableRow duplicateBitRow = findOtherReference(context, row.getStringColumn("internal_id"), bid);
+                // A file stored by content is touched when it is about to be shared again
+                if(duplicateBitRow == null && !isRecent(file))
                 {
-                    boolean success = file.delete();
+                    boolean success = deleteUnreferenced(context, file, row.getStringColumn("internal_id"), bid);
 
                     String message = ("Deleted bitstream " + bid + " (file "
                                 + file.getAbsolutePath() + ") with result "
@@ -727,6 +889,90 @@ public class BitstreamStorageManager
     // Internal methods
     ////////////////////////////////////////
 
+    /**
+     * Find a bitstream other than the given one which refers to a file.
+     *
+     * @param context
+     *            The current context
+     * @param internalId
+     *            The internal id of the file
+     * @param bid
+     *            The bitstream to ignore
+     * @return a bitstream row, or null if there is none
+     */
+    private static TableRow findOtherReference(Context context, String internalId, int bid)
+            throws SQLException
+    {
+        return DatabaseManager.querySingleTable(context, "Bitstream",
+                "SELECT * FROM Bitstream WHERE internal_id = ? AND bitstream_id <> ?", internalId, bid);
+    }
+
+    /**
+     * Delete a file which no other bitstream refers to. A local file may be
+     * about to be shared by a store of the same content (see storeByContent),
+     * possibly in another process, so it is first renamed out of the way and
+     * the references checked again: a store commits its reference before it
+     * looks for the file, so one which found the file before it was renamed
+     * is seen, and the file is put back. One which looks later stores its own
+     * copy.
+     * <P>
+     * The references are checked again in the transaction which deletes the
+     * bitstream rows, so no reference committed before the check is missed.
+     * One window is accepted: if cleanup dies between renaming the file and
+     * putting it back, a store which found the file in that moment refers to
+     * a file left under its <code>.deleting</code> name. Renaming it back by
+     * hand recovers it; an error is logged if it cannot be put back.
+     *
+     * @param context
+     *            The current context
+     * @param file
+     *            The file to delete
+     * @param internalId
+     *            The internal id of the file
+     * @param bid
+     *            The bitstream being cleaned up
+     * @return true if the file was deleted
+     */
+    private static boolean deleteUnreferenced(Context context, GeneralFile file, String internalId, int bid)
+            throws SQLException
+    {
+        if (!(file instanceof LocalFile))
+        {
+            return file.delete();
+        }
+
+        File target = new File(file.getAbsolutePath());
+        File doomed = new File(target.getPath() + ".deleting");
+        if (!target.renameTo(doomed))
+        {
+            return false;
+        }
+
+        if (findOtherReference(context, internalId, bid) == null && !isRecent(new LocalFile(doomed.getPath())))
+        {
+            return doomed.delete();
+        }
+
+        // now shared: put it back, unless the store has put its own copy there
+        if (target.exists())
+        {
+            doomed.delete();
+        }
+        else if (!doomed.renameTo(target))
+        {
+            // the store may have put its copy there in the meantime
+            if (target.exists())
+            {
+                doomed.delete();
+            }
+            else
+            {
+                log.error("Could not restore " + target + " from " + doomed + ", which is shared again");
+            }
+        }
+        return false;
+    }
+
     /**
      * Return true if this file is too recent to be deleted, false otherwise.
      * 
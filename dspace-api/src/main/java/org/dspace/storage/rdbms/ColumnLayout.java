@@ -0,0 +1,127 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.rdbms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The columns of a table or result set, in order, with an index for looking
+ * up a column's position by name. Layouts are immutable and shared by all the
+ * <code>TableRow</code>s with the same columns, so that each row only needs
+ * to hold an array of values.
+ *
+ * @version $Revision$
+ */
+final class ColumnLayout
+{
+    /** Maximum number of distinct layouts kept for sharing */
+    private static final int MAX_SHARED_LAYOUTS = 1000;
+
+    /** Shared layouts, keyed by the column names they were created from */
+    private static final Map<List<String>, ColumnLayout> layouts = new ConcurrentHashMap<List<String>, ColumnLayout>();
+
+    /** Canonicalized column names, in order */
+    private final List<String> names;
+
+    /** Canonicalized column name to position */
+    private final Map<String, Integer> indexes;
+
+    private ColumnLayout(List<String> columns)
+    {
+        List<String> canonicalized = new ArrayList<String>(columns.size());
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+
+        for (String column : columns)
+        {
+            String name = ColumnInfo.canonicalize(column);
+            if (!positions.containsKey(name))
+            {
+                positions.put(name, Integer.valueOf(canonicalized.size()));
+                canonicalized.add(name);
+            }
+        }
+
+        this.names = Collections.unmodifiableList(canonicalized);
+        this.indexes = Collections.unmodifiableMap(positions);
+    }
+
+    /**
+     * Get the layout for a list of column names. Columns are canonicalized,
+     * and a name appearing more than once is only included once.
+     *
+     * @param columns
+     *            The column names
+     * @return The (possibly shared) layout
+     */
+    static ColumnLayout forColumns(List<String> columns)
+    {
+        ColumnLayout layout = layouts.get(columns);
+
+        if (layout == null)
+        {
+            layout = new ColumnLayout(columns);
+
+            if (layouts.size() < MAX_SHARED_LAYOUTS)
+            {
+                layouts.put(new ArrayList<String>(columns), layout);
+            }
+        }
+
+        return layout;
+    }
+
+    /**
+     * @return The number of columns
+     */
+    int size()
+    {
+        return names.size();
+    }
+
+    /**
+     * @return The canonicalized column names, in order
+     */
+    List<String> getNames()
+    {
+        return names;
+    }
+
+    /**
+     * @param index
+     *            The position of the column
+     * @return The canonicalized name of the column
+     */
+    String getName(int index)
+    {
+        return names.get(index);
+    }
+
+    /**
+     * Return the position of a column.
+     *
+     * @param column
+     *            The column name (case-insensitive)
+     * @return The position, or -1 if there is no such column
+     */
+    int indexOf(String column)
+    {
+        Integer index = indexes.get(column);
+
+        if (index == null)
+        {
+            index = indexes.get(ColumnInfo.canonicalize(column));
+        }
+
+        return (index == null) ? -1 : index.intValue();
+    }
+}
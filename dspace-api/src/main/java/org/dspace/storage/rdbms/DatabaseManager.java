@@ -21,13 +21,18 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.naming.InitialContext;
@@ -54,7 +59,19 @@ public class DatabaseManager
     /** True if initialization has been done */
     private static boolean initialized = false;
 
-    private static Map<String, String> insertSQL = new HashMap<String, String>();
+    private static Map<String, String> insertSQL = new ConcurrentHashMap<String, String>();
+
+    private static Map<String, String> insertAllSQL = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Generated UPDATE SQL. The key is the table name followed by the set of
+     * changed columns (as indexes into the table's column information).
+     */
+    private static Map<String, UpdateSQL> updateSQL = new ConcurrentHashMap<String, UpdateSQL>();
+
+    /** Hits and misses of the generated SQL caches */
+    private static final AtomicLong sqlCacheHits = new AtomicLong();
+    private static final AtomicLong sqlCacheMisses = new AtomicLong();
 
     private static boolean isOracle = false;
     private static boolean isPostgres = false;
@@ -92,11 +109,15 @@ public class DatabaseManager
      */
     private static final Pattern DB_SAFE_NAME = Pattern.compile("^[a-zA-Z_1-9.]+$");
 
+    /** The table written by an INSERT, UPDATE or DELETE statement */
+    private static final Pattern WRITTEN_TABLE = Pattern.compile(
+            "^\\s*(?:insert\\s+into|update|delete\\s+from)\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
     /**
      * A map of database column information. The key is the table name, a
      * String; the value is an array of ColumnInfo objects.
      */
-    private static Map<String, Map<String, ColumnInfo>> info = new HashMap<String, Map<String, ColumnInfo>>();
+    private static Map<String, Map<String, ColumnInfo>> info = new ConcurrentHashMap<String, Map<String, ColumnInfo>>();
 
     /**
      * Protected Constructor to prevent instantiation except by derived classes.
@@ -213,28 +234,20 @@ public class DatabaseManager
             log.debug(sb.toString());
         }
         
-        PreparedStatement statement = context.getDBConnection().prepareStatement(query);
+        StatementCache cache = context.getStatementCache();
+        PreparedStatement statement = cache.prepare(query);
         try
         {
             loadParameters(statement, parameters);
 
             TableRowIterator retTRI = new TableRowIterator(statement.executeQuery(), canonicalize(table));
 
-            retTRI.setStatement(statement);
+            retTRI.setStatement(statement, cache, query);
             return retTRI;
         }
         catch (SQLException sqle)
         {
-            if (statement != null)
-            {
-                try
-                {
-                    statement.close();
-                }
-                catch (SQLException s)
-                {
-                }
-            }
+            cache.discard(statement);
 
             throw sqle;
         }
@@ -272,28 +285,20 @@ public class DatabaseManager
             log.debug("Running query \"" + query + "\"  with parameters: " + sb.toString());
         }
 
-        PreparedStatement statement = context.getDBConnection().prepareStatement(query);
+        StatementCache cache = context.getStatementCache();
+        PreparedStatement statement = cache.prepare(query);
         try
         {
             loadParameters(statement,parameters);
 
             TableRowIterator retTRI = new TableRowIterator(statement.executeQuery());
 
-            retTRI.setStatement(statement);
+            retTRI.setStatement(statement, cache, query);
             return retTRI;
         }
         catch (SQLException sqle)
         {
-            if (statement != null)
-            {
-                try
-                {
-                    statement.close();
-                }
-                catch (SQLException s)
-                {
-                }
-            }
+            cache.discard(statement);
 
             throw sqle;
         }
@@ -393,7 +398,6 @@ public class DatabaseManager
      */
     public static int updateQuery(Context context, String query, Object... parameters) throws SQLException
     {
-        PreparedStatement statement = null;
 
         if (log.isDebugEnabled())
         {
@@ -409,25 +413,24 @@ public class DatabaseManager
             log.debug(sb.toString());
         }
 
+        Matcher written = WRITTEN_TABLE.matcher(query);
+        context.addWrittenTable(written.find() ? written.group(1) : null);
+
+        StatementCache cache = context.getStatementCache();
+        PreparedStatement statement = cache.prepare(query);
         try
-        {        	
-        	statement = context.getDBConnection().prepareStatement(query);
+        {
         	loadParameters(statement, parameters);
-        	
-        	return statement.executeUpdate();
+
+        	int count = statement.executeUpdate();
+        	cache.release(query, statement);
+        	return count;
         }
-        finally
+        catch (SQLException sqle)
         {
-            if (statement != null)
-            {
-                try
-                {
-                    statement.close();
-                }
-                catch (SQLException sqle)
-                {
-                }
-            }
+            cache.discard(statement);
+
+            throw sqle;
         }
     }
 
@@ -665,6 +668,8 @@ public class DatabaseManager
      */
     public static void insert(Context context, TableRow row) throws SQLException
     {
+        context.addWrittenTable(row.getTable());
+
         int newID;
         if (isPostgres)
         {
@@ -678,6 +683,38 @@ public class DatabaseManager
         row.setColumn(getPrimaryKeyColumn(row), newID);
     }
 
+    /**
+     * Insert several table rows into the RDBMS, as JDBC batches (one per
+     * table). The new primary keys for the rows of each table are fetched
+     * from its sequence with a single query.
+     *
+     * @param context
+     *            Current DSpace context
+     * @param rows
+     *            The rows to insert
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    public static void insert(Context context, List<TableRow> rows) throws SQLException
+    {
+        for (Map.Entry<String, List<TableRow>> batch : groupByTable(rows).entrySet())
+        {
+            String table = batch.getKey();
+            List<TableRow> tableRows = batch.getValue();
+            String primaryKey = getPrimaryKeyColumn(table);
+            context.addWrittenTable(table);
+
+            int[] ids = getNextIDs(context, table, tableRows.size());
+            for (int i = 0; i < ids.length; i++)
+            {
+                tableRows.get(i).setColumn(primaryKey, ids[i]);
+            }
+
+            executeBatch(context.getDBConnection(), getInsertSQL(table),
+                    getColumnInfo(table), tableRows);
+        }
+    }
+
     /**
      * Update changes to the RDBMS. Note that if the update fails, the values in
      * the row will NOT be reverted.
@@ -692,40 +729,156 @@ public class DatabaseManager
      */
     public static int update(Context context, TableRow row) throws SQLException
     {
-        String table = row.getTable();
+        List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
+        String sql = getUpdateSQL(row, columns);
 
-        StringBuilder sql = new StringBuilder().append("update ").append(table)
-                .append(" set ");
+        // Only execute the update if there is anything to update
+        if (sql != null)
+        {
+            context.addWrittenTable(row.getTable());
+            return executeUpdate(context, sql, columns, row);
+        }
 
-        List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
-        ColumnInfo pk = getPrimaryKeyColumnInfo(table);
+        return 1;
+    }
+
+    /**
+     * Update changes to several rows in the RDBMS, as JDBC batches. Rows of
+     * the same table with the same changed columns share a single statement.
+     * Note that if the update fails, the values in the rows will NOT be
+     * reverted.
+     *
+     * @param context
+     *            Current DSpace context
+     * @param rows
+     *            The rows to update
+     * @return The number of rows affected
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    public static int update(Context context, List<TableRow> rows) throws SQLException
+    {
+        Map<String, List<ColumnInfo>> statements = new LinkedHashMap<String, List<ColumnInfo>>();
+        Map<String, List<TableRow>> batches = new HashMap<String, List<TableRow>>();
+
+        for (TableRow row : rows)
+        {
+            List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
+            String sql = getUpdateSQL(row, columns);
+
+            // Only update the rows that have anything to update
+            if (sql != null)
+            {
+                if (!statements.containsKey(sql))
+                {
+                    statements.put(sql, columns);
+                    batches.put(sql, new ArrayList<TableRow>());
+                    context.addWrittenTable(row.getTable());
+                }
+                batches.get(sql).add(row);
+            }
+        }
+
+        int count = 0;
+        for (Map.Entry<String, List<ColumnInfo>> statement : statements.entrySet())
+        {
+            count += executeBatch(context.getDBConnection(), statement.getKey(),
+                    statement.getValue(), batches.get(statement.getKey()));
+        }
+
+        return count;
+    }
+
+    /**
+     * Generate (or get from the cache) the SQL to update the changed columns
+     * of a row, and collect the columns to bind (the changed columns,
+     * followed by the primary key).
+     *
+     * @param row
+     *            The row to update
+     * @param columns
+     *            List to which the columns to bind are added
+     * @return The SQL, or null if no column has changed
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    private static String getUpdateSQL(TableRow row, List<ColumnInfo> columns) throws SQLException
+    {
+        String table = row.getTable();
         Collection<ColumnInfo> info = getColumnInfo(table);
 
-        String separator = "";
+        // Only update the columns that have changed
+        BitSet changed = new BitSet(info.size());
+        int index = 0;
         for (ColumnInfo col : info)
         {
-            // Only update this column if it has changed
-            if (!col.isPrimaryKey())
+            if (!col.isPrimaryKey() && row.hasColumnChanged(col.getName()))
+            {
+                changed.set(index);
+            }
+            index++;
+        }
+
+        if (changed.isEmpty())
+        {
+            return null;
+        }
+
+        String key = table + changed;
+        UpdateSQL update = updateSQL.get(key);
+        if (update != null)
+        {
+            sqlCacheHits.incrementAndGet();
+        }
+        else
+        {
+            sqlCacheMisses.incrementAndGet();
+
+            StringBuilder sql = new StringBuilder().append("update ").append(table)
+                    .append(" set ");
+            List<ColumnInfo> params = new ArrayList<ColumnInfo>();
+
+            String separator = "";
+            index = 0;
+            for (ColumnInfo col : info)
             {
-                if (row.hasColumnChanged(col.getName()))
+                if (changed.get(index))
                 {
                     sql.append(separator).append(col.getName()).append(" = ?");
-                    columns.add(col);
+                    params.add(col);
                     separator = ", ";
                 }
+                index++;
             }
-        }
 
-        // Only execute the update if there is anything to update
-        if (columns.size() > 0)
-        {
+            ColumnInfo pk = getPrimaryKeyColumnInfo(table);
             sql.append(" where ").append(pk.getName()).append(" = ?");
-            columns.add(pk);
+            params.add(pk);
 
-            return executeUpdate(context.getDBConnection(), sql.toString(), columns, row);
+            update = new UpdateSQL(sql.toString(), params);
+            updateSQL.put(key, update);
         }
 
-        return 1;
+        columns.addAll(update.columns);
+        return update.sql;
+    }
+
+    /**
+     * @return the number of times generated INSERT/UPDATE SQL was found in
+     *         the cache since startup
+     */
+    public static long getSQLCacheHits()
+    {
+        return sqlCacheHits.get();
+    }
+
+    /**
+     * @return the number of times INSERT/UPDATE SQL had to be generated
+     *         since startup
+     */
+    public static long getSQLCacheMisses()
+    {
+        return sqlCacheMisses.get();
     }
 
     /**
@@ -756,6 +909,44 @@ public class DatabaseManager
         return delete(context, row.getTable(), row.getIntColumn(pk));
     }
 
+    /**
+     * Delete several rows from the RDBMS via their primary keys, as JDBC
+     * batches (one per table).
+     *
+     * @param context
+     *            Current DSpace context
+     * @param rows
+     *            The rows to delete
+     * @return The number of rows affected
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    public static int delete(Context context, List<TableRow> rows) throws SQLException
+    {
+        Map<String, List<TableRow>> batches = groupByTable(rows);
+
+        for (TableRow row : rows)
+        {
+            if (row.isColumnNull(getPrimaryKeyColumn(row)))
+            {
+                throw new IllegalArgumentException("Primary key value is null");
+            }
+        }
+
+        int count = 0;
+        for (Map.Entry<String, List<TableRow>> batch : batches.entrySet())
+        {
+            ColumnInfo pk = getPrimaryKeyColumnInfo(batch.getKey());
+            context.addWrittenTable(batch.getKey());
+            String sql = "delete from " + canonicalize(batch.getKey()) + " where " + pk.getName() + " = ? ";
+
+            count += executeBatch(context.getDBConnection(), sql,
+                    Collections.singletonList(pk), batch.getValue());
+        }
+
+        return count;
+    }
+
     /**
      * Return metadata about a table.
      * 
@@ -1075,26 +1266,86 @@ public class DatabaseManager
     static TableRow process(ResultSet results, String table, List<String> pColumnNames) throws SQLException
     {
         ResultSetMetaData meta = results.getMetaData();
-        int columns = meta.getColumnCount() + 1;
 
         // If we haven't been passed the column names try to generate them from the metadata / table
         List<String> columnNames = pColumnNames != null ? pColumnNames :
                                         ((table == null) ? getColumnNames(meta) : getColumnNames(table));
 
-        TableRow row = new TableRow(canonicalize(table), columnNames);
+        ColumnLayout layout = ColumnLayout.forColumns(columnNames);
+        return process(results, table, layout, getColumnPositions(meta, layout));
+    }
+
+    /**
+     * Return the position in a column layout of each column of a ResultSet.
+     *
+     * @param meta
+     *            The ResultSetMetaData
+     * @param layout
+     *            The column layout
+     * @return The position in the layout of each column of the ResultSet, in
+     *         order
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    static int[] getColumnPositions(ResultSetMetaData meta, ColumnLayout layout) throws SQLException
+    {
+        int[] positions = new int[meta.getColumnCount()];
+
+        for (int i = 0; i < positions.length; i++)
+        {
+            String name = meta.getColumnName(i + 1);
+            positions[i] = layout.indexOf(name);
+
+            if (positions[i] < 0)
+            {
+                throw new IllegalArgumentException("No such column '" + ColumnInfo.canonicalize(name) + "'");
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Convert the current row in a ResultSet into a TableRow object, using a
+     * column layout and positions computed once for the whole ResultSet.
+     *
+     * @param results
+     *            A ResultSet to process
+     * @param table
+     *            The name of the table
+     * @param layout
+     *            The column layout of the rows
+     * @param positions
+     *            The position in the layout of each column of the ResultSet
+     * @return A TableRow object with the data from the ResultSet
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    static TableRow process(ResultSet results, String table, ColumnLayout layout, int[] positions) throws SQLException
+    {
+        ResultSetMetaData meta = results.getMetaData();
+        TableRow row = new TableRow(canonicalize(table), layout);
 
         // Process the columns in order
         // (This ensures maximum backwards compatibility with
         // old JDBC drivers)
-        for (int i = 1; i < columns; i++)
+        for (int i = 1; i <= positions.length; i++)
         {
-            String name = meta.getColumnName(i);
             int jdbctype = meta.getColumnType(i);
+            Object value = null;
 
             switch (jdbctype)
             {
                 case Types.BIT:
-                    row.setColumn(name, results.getBoolean(i));
+                    if (isOracle)
+                    {
+                        // if oracle, use 1 or 0 for true/false
+                        value = Integer.valueOf(results.getBoolean(i) ? 1 : 0);
+                    }
+                    else
+                    {
+                        value = Boolean.valueOf(results.getBoolean(i));
+                    }
                     break;
 
                 case Types.INTEGER:
@@ -1104,32 +1355,32 @@ public class DatabaseManager
                         long longValue = results.getLong(i);
                         if (longValue <= (long)Integer.MAX_VALUE)
                         {
-                            row.setColumn(name, (int) longValue);
+                            value = Integer.valueOf((int) longValue);
                         }
                         else
                         {
-                            row.setColumn(name, longValue);
+                            value = Long.valueOf(longValue);
                         }
                     }
                     else
                     {
-                        row.setColumn(name, results.getInt(i));
+                        value = Integer.valueOf(results.getInt(i));
                     }
                     break;
 
                 case Types.DECIMAL:
                 case Types.BIGINT:
-                    row.setColumn(name, results.getLong(i));
+                    value = Long.valueOf(results.getLong(i));
                     break;
 
                 case Types.DOUBLE:
-                    row.setColumn(name, results.getDouble(i));
+                    value = Double.valueOf(results.getDouble(i));
                     break;
 
                 case Types.CLOB:
                     if (isOracle)
                     {
-                        row.setColumn(name, results.getString(i));
+                        value = results.getString(i);
                     }
                     else
                     {
@@ -1144,12 +1395,11 @@ public class DatabaseManager
 
                         if (bytes != null)
                         {
-                            String mystring = new String(results.getBytes(i), "UTF-8");
-                            row.setColumn(name, mystring);
+                            value = new String(bytes, "UTF-8");
                         }
                         else
                         {
-                            row.setColumn(name, results.getString(i));
+                            value = results.getString(i);
                         }
                     }
                     catch (UnsupportedEncodingException e)
@@ -1159,15 +1409,15 @@ public class DatabaseManager
                     break;
 
                 case Types.DATE:
-                    row.setColumn(name, results.getDate(i));
+                    value = results.getDate(i);
                     break;
 
                 case Types.TIME:
-                    row.setColumn(name, results.getTime(i));
+                    value = results.getTime(i);
                     break;
 
                 case Types.TIMESTAMP:
-                    row.setColumn(name, results.getTimestamp(i));
+                    value = results.getTimestamp(i);
                     break;
 
                 default:
@@ -1177,8 +1427,10 @@ public class DatabaseManager
             // Determines if the last column was null, and sets the tablerow accordingly
             if (results.wasNull())
             {
-                row.setColumnNull(name);
+                value = null;
             }
+
+            row.load(positions[i - 1], value);
         }
 
         // Now that we've prepped the TableRow, reset the flags so that we can detect which columns have changed
@@ -1253,62 +1505,88 @@ public class DatabaseManager
      * Execute SQL as a PreparedStatement on Connection. Bind parameters in
      * columns to the values in the table row before executing.
      * 
-     * @param connection
-     *            The SQL connection
+     * @param context
+     *            Current DSpace context
      * @param sql
      *            The query to execute
      * @param columns
      *            The columns to bind
      * @param row
      *            The row
-     * @return The number of rows affected by the query.
      * @exception SQLException
      *                If a database error occurs
      */
-    private static void execute(Connection connection, String sql, Collection<ColumnInfo> columns, TableRow row) throws SQLException
+    private static void execute(Context context, String sql, Collection<ColumnInfo> columns, TableRow row) throws SQLException
     {
-        PreparedStatement statement = null;
+        executeUpdate(context, sql, columns, row);
+    }
 
+    private static int executeUpdate(Context context, String sql, Collection<ColumnInfo> columns, TableRow row) throws SQLException
+    {
         if (log.isDebugEnabled())
         {
             log.debug("Running query \"" + sql + "\"");
         }
 
+        StatementCache cache = context.getStatementCache();
+        PreparedStatement statement = cache.prepare(sql);
         try
         {
-            statement = connection.prepareStatement(sql);
         	loadParameters(statement, columns, row);
-            statement.execute();
+
+            int count = statement.executeUpdate();
+            cache.release(sql, statement);
+            return count;
         }
-        finally
+        catch (SQLException sqle)
         {
-            if (statement != null)
-            {
-                try
-                {
-                    statement.close();
-                }
-                catch (SQLException sqle)
-                {
-                }
-            }
+            cache.discard(statement);
+
+            throw sqle;
         }
     }
 
-    private static int executeUpdate(Connection connection, String sql, Collection<ColumnInfo> columns, TableRow row) throws SQLException
+    /**
+     * Execute SQL as a batch of PreparedStatements on Connection, binding the
+     * parameters in columns to the values of each of the rows in turn.
+     *
+     * @param connection
+     *            The SQL connection
+     * @param sql
+     *            The query to execute
+     * @param columns
+     *            The columns to bind
+     * @param rows
+     *            The rows
+     * @return The number of rows affected by the batch.
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    private static int executeBatch(Connection connection, String sql, Collection<ColumnInfo> columns, List<TableRow> rows) throws SQLException
     {
         PreparedStatement statement = null;
 
         if (log.isDebugEnabled())
         {
-            log.debug("Running query \"" + sql + "\"");
+            log.debug("Running batch query \"" + sql + "\" for " + rows.size() + " rows");
         }
 
         try
         {
             statement = connection.prepareStatement(sql);
-        	loadParameters(statement, columns, row);
-            return statement.executeUpdate();
+            for (TableRow row : rows)
+            {
+                loadParameters(statement, columns, row);
+                statement.addBatch();
+            }
+
+            int count = 0;
+            for (int result : statement.executeBatch())
+            {
+                // Drivers may not report counts for batched statements
+                count += (result == Statement.SUCCESS_NO_INFO) ? 1 : Math.max(result, 0);
+            }
+            return count;
         }
         finally
         {
@@ -1691,6 +1969,8 @@ public class DatabaseManager
         boolean foundPrimaryKey = false;
         if (sql == null)
         {
+            sqlCacheMisses.incrementAndGet();
+
             // Generate SQL and filter parameter columns
             StringBuilder insertBuilder = new StringBuilder("INSERT INTO ").append(table).append(" ( ");
             StringBuilder valuesBuilder = new StringBuilder(") VALUES ( ");
@@ -1725,6 +2005,8 @@ public class DatabaseManager
         }
         else
         {
+            sqlCacheHits.incrementAndGet();
+
             // Already have SQL, just filter parameter columns
             for (ColumnInfo col : info)
             {
@@ -1739,21 +2021,23 @@ public class DatabaseManager
             }            
         }
 
-        PreparedStatement statement = null;
-
         if (log.isDebugEnabled())
         {
             log.debug("Running query \"" + sql + "\"");
         }
 
+        StatementCache cache = context.getStatementCache();
+        PreparedStatement statement = cache.prepare(sql);
         ResultSet rs = null;
+        boolean reusable = false;
         try
         {
-            statement = context.getDBConnection().prepareStatement(sql);
         	loadParameters(statement, params, row);
             rs = statement.executeQuery();
             rs.next();
-            return rs.getInt(1);
+            int id = rs.getInt(1);
+            reusable = true;
+            return id;
         }
         finally
         {
@@ -1768,15 +2052,13 @@ public class DatabaseManager
                 }
             }
 
-            if (statement != null)
+            if (reusable)
             {
-                try
-                {
-                    statement.close();
-                }
-                catch (SQLException sqle)
-                {
-                }
+                cache.release(sql, statement);
+            }
+            else
+            {
+                cache.discard(statement);
             }
         }
     }
@@ -1832,11 +2114,32 @@ public class DatabaseManager
 
         // Set the ID in the table row object
         row.setColumn(getPrimaryKeyColumn(table), newID);
-        Collection<ColumnInfo> info = getColumnInfo(table);
 
-        String sql = insertSQL.get(table);
-        if (sql == null)
+        execute(context, getInsertSQL(table), getColumnInfo(table), row);
+        return newID;
+    }
+
+    /**
+     * Generate (or get from the cache) the SQL to insert a row into a table,
+     * binding every column including the primary key.
+     *
+     * @param table
+     *            The name of the table
+     * @return The SQL
+     * @throws SQLException
+     */
+    private static String getInsertSQL(String table) throws SQLException
+    {
+        String sql = insertAllSQL.get(table);
+        if (sql != null)
         {
+            sqlCacheHits.incrementAndGet();
+        }
+        else
+        {
+            sqlCacheMisses.incrementAndGet();
+
+            Collection<ColumnInfo> info = getColumnInfo(table);
             StringBuilder sqlBuilder = new StringBuilder().append("INSERT INTO ").append(table).append(" ( ");
 
             boolean firstColumn = true;
@@ -1873,11 +2176,100 @@ public class DatabaseManager
             // Watch the syntax
             sqlBuilder.append(")");
             sql = sqlBuilder.toString();
-            insertSQL.put(table, sql);
+            insertAllSQL.put(table, sql);
         }
 
-        execute(context.getDBConnection(), sql, info, row);
-        return newID;
+        return sql;
+    }
+
+    /**
+     * Get a number of new IDs (primary keys) for a table from its sequence,
+     * in a single query.
+     *
+     * @param context
+     *            Current DSpace context
+     * @param table
+     *            The name of the table
+     * @param count
+     *            The number of IDs required
+     * @return The new IDs
+     * @throws SQLException
+     */
+    private static int[] getNextIDs(Context context, String table, int count) throws SQLException
+    {
+        int[] ids = new int[count];
+        int found = 0;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+
+        try
+        {
+            if (isOracle)
+            {
+                statement = context.getDBConnection().prepareStatement("SELECT " + table + "_seq" + ".nextval FROM dual CONNECT BY level <= ?");
+                loadParameters(statement, new Object[] { Integer.valueOf(count) });
+            }
+            else
+            {
+                statement = context.getDBConnection().prepareStatement("SELECT getnextid(?) AS result FROM generate_series(1, ?)");
+                loadParameters(statement, new Object[] { table, Integer.valueOf(count) });
+            }
+
+            rs = statement.executeQuery();
+            while (found < count && rs.next())
+            {
+                ids[found++] = rs.getInt(1);
+            }
+        }
+        finally
+        {
+            if (rs != null)
+            {
+                try { rs.close(); } catch (SQLException sqle) { }
+            }
+
+            if (statement != null)
+            {
+                try { statement.close(); } catch (SQLException sqle) { }
+            }
+        }
+
+        if (found < count)
+        {
+            throw new SQLException("Unable to retrieve sequence IDs");
+        }
+
+        return ids;
+    }
+
+    /**
+     * Group rows by the table they belong to, keeping their order.
+     *
+     * @param rows
+     *            The rows
+     * @return The rows of each table
+     */
+    private static Map<String, List<TableRow>> groupByTable(List<TableRow> rows)
+    {
+        Map<String, List<TableRow>> tables = new LinkedHashMap<String, List<TableRow>>();
+
+        for (TableRow row : rows)
+        {
+            if (null == row.getTable())
+            {
+                throw new IllegalArgumentException("Row not associated with a table");
+            }
+
+            List<TableRow> tableRows = tables.get(row.getTable());
+            if (tableRows == null)
+            {
+                tableRows = new ArrayList<TableRow>();
+                tables.put(row.getTable(), tableRows);
+            }
+            tableRows.add(row);
+        }
+
+        return tables;
     }
 
     /**
@@ -1958,4 +2350,19 @@ public class DatabaseManager
         }
     }
 
+    /**
+     * Generated UPDATE SQL together with the columns it binds.
+     */
+    private static final class UpdateSQL
+    {
+        private final String sql;
+
+        private final List<ColumnInfo> columns;
+
+        UpdateSQL(String sql, List<ColumnInfo> columns)
+        {
+            this.sql = sql;
+            this.columns = Collections.unmodifiableList(columns);
+        }
+    }
 }
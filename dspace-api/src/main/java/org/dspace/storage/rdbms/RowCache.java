@@ -0,0 +1,375 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.rdbms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.log4j.Logger;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+import org.dspace.services.CachingService;
+import org.dspace.services.model.Cache;
+import org.dspace.services.model.CacheConfig;
+import org.dspace.services.model.CacheConfig.CacheScope;
+import org.dspace.utils.DSpace;
+
+/**
+ * A cache of database rows shared by all Contexts, for read-mostly objects
+ * such as communities, collections and bitstream formats. Unlike the
+ * per-Context object cache, the cache lives across requests, so it holds
+ * rows rather than DSpace objects (which belong to a Context); objects are
+ * rebuilt from a private copy of the cached row.
+ * <P>
+ * The cache is off unless <code>db.rowcache.enabled</code> is true. It is
+ * stored in the <code>CachingService</code> cache named after this class,
+ * which bounds its size and the time to live of its entries. Rows must be
+ * invalidated when they change, by <code>RowCacheConsumer</code> for content
+ * events, or by calling <code>invalidate</code> directly.
+ * <P>
+ * A Context which has made changes (i.e. has events waiting to be dispatched,
+ * or has written to the table through <code>DatabaseManager</code>, even
+ * with a raw <code>updateQuery</code>) neither reads from nor adds to the
+ * cache, since it may see uncommitted rows which other Contexts must not.
+ * <P>
+ * A row read before another Context commits a change to it must not be cached
+ * after the change has been invalidated. Callers therefore take a stamp with
+ * <code>getStamp</code> before reading from the database and pass it to
+ * <code>putRow</code> or <code>putRelatedRows</code>, which cache nothing if
+ * the row has been invalidated since. Changes made by other processes (e.g.
+ * command line tools) are not invalidated, and are only seen once the entry
+ * expires.
+ *
+ * @version $Revision$
+ */
+public class RowCache
+{
+    private static final Logger log = Logger.getLogger(RowCache.class);
+
+    /** Name of the cache in the caching service */
+    public static final String CACHE_NAME = RowCache.class.getName();
+
+    private static final AtomicLong hits = new AtomicLong();
+
+    private static final AtomicLong misses = new AtomicLong();
+
+    /** Tables of related rows cached so far, for invalidation */
+    private static final Set<String> relatedTables = new CopyOnWriteArraySet<String>();
+
+    /** Number of invalidation stamps; rows share stamps by hash */
+    private static final int STAMPS = 1024;
+
+    /**
+     * Invalidation stamps, incremented whenever a row sharing the stamp is
+     * invalidated. Sharing a stamp can only cause a row not to be cached.
+     */
+    private static final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+
+    /** The cache, or null if not enabled or not yet looked up */
+    private static volatile Cache cache = null;
+
+    private static volatile boolean initialized = false;
+
+    /** Prevent instantiation */
+    private RowCache()
+    {
+    }
+
+    /**
+     * @return true if the shared row cache is enabled
+     */
+    public static boolean isEnabled()
+    {
+        return getCache() != null;
+    }
+
+    /**
+     * Get a copy of a cached row.
+     *
+     * @param context
+     *            the current context
+     * @param table
+     *            the table of the row
+     * @param id
+     *            the primary key of the row
+     * @return a private copy of the row, or null if it is not cached
+     */
+    public static TableRow getRow(Context context, String table, int id)
+    {
+        Cache c = getCache();
+        if (c == null || isChanging(context, table))
+        {
+            return null;
+        }
+
+        TableRow row = (TableRow) c.get(key(table, id));
+        if (row == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return row.copy();
+    }
+
+    /**
+     * Get the invalidation stamp of a row, to be taken before the row (or
+     * rows related to it) are read from the database and passed to putRow or
+     * putRelatedRows.
+     *
+     * @param table
+     *            the table of the row
+     * @param id
+     *            the primary key of the row
+     * @return the stamp
+     */
+    public static long getStamp(String table, int id)
+    {
+        return stamps.get(stamp(key(table, id)));
+    }
+
+    /**
+     * Cache a copy of a row, as just read from the database, unless it has
+     * been invalidated since it was read.
+     *
+     * @param context
+     *            the context the row was read with
+     * @param table
+     *            the table of the row
+     * @param id
+     *            the primary key of the row
+     * @param row
+     *            the row
+     * @param stamp
+     *            the stamp of the row, from getStamp, taken before it was
+     *            read
+     */
+    public static void putRow(Context context, String table, int id, TableRow row, long stamp)
+    {
+        Cache c = getCache();
+        if (c != null && row != null && !isChanging(context, table))
+        {
+            String key = key(table, id);
+            put(c, key, key, row.copy(), stamp);
+        }
+    }
+
+    /**
+     * Get the cached rows of another table which belong to a row, e.g. the
+     * metadata values of an item. The rows are shared and must not be
+     * modified.
+     *
+     * @param context
+     *            the current context
+     * @param table
+     *            the table of the owning row
+     * @param id
+     *            the primary key of the owning row
+     * @param relatedTable
+     *            the table of the related rows
+     * @return the rows, or null if they are not cached
+     */
+    @SuppressWarnings("unchecked")
+    public static List<TableRow> getRelatedRows(Context context, String table, int id, String relatedTable)
+    {
+        Cache c = getCache();
+        if (c == null || isChanging(context, table) || isChanging(context, relatedTable))
+        {
+            return null;
+        }
+
+        List<TableRow> rows = (List<TableRow>) c.get(key(table, id) + ":" + relatedTable);
+        if (rows == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return rows;
+    }
+
+    /**
+     * Cache the rows of another table which belong to a row, as just read
+     * from the database, unless the owning row has been invalidated since
+     * they were read. The rows must not be modified afterwards.
+     *
+     * @param context
+     *            the context the rows were read with
+     * @param table
+     *            the table of the owning row
+     * @param id
+     *            the primary key of the owning row
+     * @param relatedTable
+     *            the table of the related rows
+     * @param rows
+     *            the rows
+     * @param stamp
+     *            the stamp of the owning row, from getStamp, taken before the
+     *            rows were read
+     */
+    public static void putRelatedRows(Context context, String table, int id, String relatedTable,
+            List<TableRow> rows, long stamp)
+    {
+        Cache c = getCache();
+        if (c != null && rows != null && !isChanging(context, table)
+                && !isChanging(context, relatedTable))
+        {
+            relatedTables.add(relatedTable);
+            String key = key(table, id);
+            put(c, key, key + ":" + relatedTable,
+                    Collections.unmodifiableList(new ArrayList<TableRow>(rows)), stamp);
+        }
+    }
+
+    /**
+     * Remove a row, and any rows cached as related to it, from the cache.
+     *
+     * @param table
+     *            the table of the row
+     * @param id
+     *            the primary key of the row
+     */
+    public static void invalidate(String table, int id)
+    {
+        Cache c = getCache();
+        if (c != null)
+        {
+            String key = key(table, id);
+
+            // stamp first, so that a row read before this is not cached after it
+            stamps.incrementAndGet(stamp(key));
+            c.remove(key);
+            for (String relatedTable : relatedTables)
+            {
+                c.remove(key + ":" + relatedTable);
+            }
+        }
+    }
+
+    /**
+     * Remove everything from the cache.
+     */
+    public static void invalidateAll()
+    {
+        Cache c = getCache();
+        if (c != null)
+        {
+            for (int i = 0; i < STAMPS; i++)
+            {
+                stamps.incrementAndGet(i);
+            }
+            c.clear();
+        }
+    }
+
+    /**
+     * @return the number of lookups answered from the cache since startup
+     */
+    public static long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups not answered from the cache since startup
+     */
+    public static long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache since startup,
+     *         or 0 if there have been none
+     */
+    public static double getHitRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return true if the context may see uncommitted changes to the table
+     */
+    private static boolean isChanging(Context context, String table)
+    {
+        return context.hasEvents() || context.hasWrittenTable(table);
+    }
+
+    private static String key(String table, int id)
+    {
+        return table.toLowerCase() + ":" + id;
+    }
+
+    /**
+     * @return the index of the stamp of the row with the given key
+     */
+    private static int stamp(String key)
+    {
+        return (key.hashCode() & Integer.MAX_VALUE) % STAMPS;
+    }
+
+    /**
+     * Cache a value unless the stamp of its row has changed since the value
+     * was read from the database.
+     */
+    private static void put(Cache c, String rowKey, String key, Object value, long stamp)
+    {
+        int index = stamp(rowKey);
+
+        if (stamps.get(index) != stamp)
+        {
+            return;
+        }
+
+        c.put(key, value);
+
+        // an invalidation between the check and the put may have missed the
+        // value just put, so check again and take it back out if so
+        if (stamps.get(index) != stamp)
+        {
+            c.remove(key);
+        }
+    }
+
+    private static Cache getCache()
+    {
+        if (!initialized)
+        {
+            synchronized (RowCache.class)
+            {
+                if (!initialized)
+                {
+                    if (ConfigurationManager.getBooleanProperty("db.rowcache.enabled", false))
+                    {
+                        try
+                        {
+                            CachingService caching = new DSpace().getSingletonService(CachingService.class);
+                            cache = caching.getCache(CACHE_NAME, new CacheConfig(CacheScope.INSTANCE));
+                        }
+                        catch (RuntimeException e)
+                        {
+                            log.warn("Shared row cache is enabled but the caching service is not available", e);
+                        }
+                    }
+                    initialized = true;
+                }
+            }
+        }
+
+        return cache;
+    }
+}
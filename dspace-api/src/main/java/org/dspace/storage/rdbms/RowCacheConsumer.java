@@ -0,0 +1,68 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.rdbms;
+
+import org.apache.log4j.Logger;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+
+/**
+ * Consumer which removes changed communities, collections and items from
+ * the shared row cache. Events are dispatched after the transaction is
+ * committed, so a row cannot be re-cached with its old values afterwards.
+ *
+ * Recommended filter:  Community|Collection|Item+All
+ *
+ * @version $Revision$
+ */
+public class RowCacheConsumer implements Consumer
+{
+    /** log4j logger */
+    private static Logger log = Logger.getLogger(RowCacheConsumer.class);
+
+    public void initialize() throws Exception
+    {
+    }
+
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        invalidate(event.getSubjectType(), event.getSubjectID());
+        invalidate(event.getObjectType(), event.getObjectID());
+    }
+
+    public void end(Context ctx) throws Exception
+    {
+        if (log.isDebugEnabled())
+        {
+            log.debug("Shared row cache: hits=" + RowCache.getHits()
+                    + ", misses=" + RowCache.getMisses()
+                    + ", hit rate=" + RowCache.getHitRate());
+        }
+    }
+
+    public void finish(Context ctx) throws Exception
+    {
+    }
+
+    private void invalidate(int type, int id)
+    {
+        switch (type)
+        {
+            case Constants.COMMUNITY:
+            case Constants.COLLECTION:
+            case Constants.ITEM:
+                RowCache.invalidate(Constants.typeText[type], id);
+                break;
+
+            default:
+                break;
+        }
+    }
+}
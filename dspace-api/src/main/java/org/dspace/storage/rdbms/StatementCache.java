@@ -0,0 +1,212 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.rdbms;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An LRU cache of prepared statements on a single database connection, keyed
+ * by SQL text. Statements are checked out with <code>prepare</code> and
+ * handed back with <code>release</code>; while checked out a statement is not
+ * in the cache, so nested queries with the same SQL get a statement of their
+ * own rather than closing each other's results.
+ * <P>
+ * The cache is owned by a <code>Context</code>, and must be closed before its
+ * connection is freed.
+ *
+ * @version $Revision$
+ */
+public class StatementCache
+{
+    private static final Logger log = Logger.getLogger(StatementCache.class);
+
+    /** Hits and misses across all statement caches */
+    private static final AtomicLong totalHits = new AtomicLong();
+
+    private static final AtomicLong totalMisses = new AtomicLong();
+
+    /** The connection the statements are prepared on */
+    private final Connection connection;
+
+    /** Maximum number of idle statements kept */
+    private final int capacity;
+
+    /** Idle statements, least recently used first */
+    private final Map<String, PreparedStatement> statements;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Construct a statement cache for a connection.
+     *
+     * @param connection
+     *            the connection to prepare statements on
+     * @param capacity
+     *            maximum number of idle statements to keep; 0 or less
+     *            disables caching
+     */
+    public StatementCache(Connection connection, int capacity)
+    {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+    }
+
+    /**
+     * Get a prepared statement for the given SQL, reusing an idle one if
+     * there is one. The statement should be handed back with
+     * <code>release</code> once its results have been read.
+     *
+     * @param sql
+     *            the SQL text
+     * @return a prepared statement
+     * @throws SQLException
+     *             if the statement could not be prepared
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException
+    {
+        PreparedStatement statement = statements.remove(sql);
+
+        if (statement != null)
+        {
+            hits++;
+            totalHits.incrementAndGet();
+            return statement;
+        }
+
+        misses++;
+        totalMisses.incrementAndGet();
+        return connection.prepareStatement(sql);
+    }
+
+    /**
+     * Hand a statement obtained from <code>prepare</code> back to the cache.
+     * If the cache is closed or disabled, or already holds a statement for
+     * the same SQL, the statement is closed instead. The least recently used
+     * statement is closed if the cache grows beyond its capacity.
+     *
+     * @param sql
+     *            the SQL text the statement was prepared with
+     * @param statement
+     *            the statement
+     */
+    public synchronized void release(String sql, PreparedStatement statement)
+    {
+        if (closed || capacity <= 0 || statements.containsKey(sql))
+        {
+            close(statement);
+            return;
+        }
+
+        try
+        {
+            statement.clearParameters();
+        }
+        catch (SQLException sqle)
+        {
+            close(statement);
+            return;
+        }
+
+        statements.put(sql, statement);
+
+        if (statements.size() > capacity)
+        {
+            Iterator<PreparedStatement> eldest = statements.values().iterator();
+            close(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Discard a statement obtained from <code>prepare</code> which may be in
+     * an unusable state, e.g. after an error.
+     *
+     * @param statement
+     *            the statement
+     */
+    public void discard(PreparedStatement statement)
+    {
+        close(statement);
+    }
+
+    /**
+     * Close all idle statements. Statements released afterwards are closed
+     * immediately.
+     */
+    public synchronized void close()
+    {
+        for (PreparedStatement statement : statements.values())
+        {
+            close(statement);
+        }
+
+        statements.clear();
+        closed = true;
+
+        if (log.isDebugEnabled())
+        {
+            log.debug("Statement cache closed: hits=" + hits + ", misses=" + misses);
+        }
+    }
+
+    /**
+     * @return the number of statements reused by this cache
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of statements prepared by this cache
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return the number of statements reused by all caches since startup
+     */
+    public static long getTotalHits()
+    {
+        return totalHits.get();
+    }
+
+    /**
+     * @return the number of statements prepared by all caches since startup
+     */
+    public static long getTotalMisses()
+    {
+        return totalMisses.get();
+    }
+
+    private static void close(PreparedStatement statement)
+    {
+        try
+        {
+            statement.close();
+        }
+        catch (SQLException sqle)
+        {
+        }
+    }
+}
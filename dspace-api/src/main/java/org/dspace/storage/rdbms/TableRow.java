@@ -7,10 +7,9 @@
  */
 package org.dspace.storage.rdbms;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Represents a database row.
@@ -26,14 +25,18 @@ public class TableRow
     /** The name of the database table containing this row */
     private String table;
 
+    /** The columns of this row, shared with other rows of the same shape */
+    private final ColumnLayout layout;
+
     /**
-     * A map of column names to column values. The key of the map is a String,
-     * the column name; the value is an Object, either an Integer, Boolean,
-     * Date, or String. If the value is NULL_OBJECT, then the column was NULL.
+     * The column values, in the order of the layout. Each value is an Object,
+     * either an Integer, Boolean, Date, or String. If the value is
+     * NULL_OBJECT, then the column was NULL.
      */
-    private Map<String, Object> data = new HashMap<String, Object>();
+    private final Object[] data;
 
-    private Map<String, Boolean> changed = new HashMap<String, Boolean>();
+    /** The positions of the columns which have been changed */
+    private final BitSet changed;
 
     /**
      * Constructor
@@ -47,15 +50,28 @@ public class TableRow
      *            IllegalArgumentException to be thrown.
      */
     public TableRow(String table, List<String> columns)
+    {
+        this(table, ColumnLayout.forColumns(columns));
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param table
+     *            The name of the database table containing this row.
+     * @param layout
+     *            The columns of the row. All columns are initially NULL, and
+     *            flagged as changed.
+     */
+    TableRow(String table, ColumnLayout layout)
     {
         this.table = table;
+        this.layout = layout;
+        this.data = new Object[layout.size()];
+        this.changed = new BitSet(layout.size());
 
-        for (String column : columns)
-        {
-            String canonicalized = ColumnInfo.canonicalize(column);
-            data.put(canonicalized, NULL_OBJECT);
-            changed.put(canonicalized, Boolean.TRUE);
-        }
+        Arrays.fill(data, NULL_OBJECT);
+        changed.set(0, layout.size());
     }
 
     /**
@@ -82,14 +98,7 @@ public class TableRow
      */
     public boolean hasColumn(String column)
     {
-        try
-        {
-            return canonicalizeAndCheck(column) != null;
-        }
-        catch (IllegalArgumentException e)
-        {
-            return false;
-        }
+        return layout.indexOf(column) >= 0;
     }
 
     /**
@@ -101,12 +110,8 @@ public class TableRow
      */
     public boolean hasColumnChanged(String column)
     {
-        return hasColumnChangedCanonicalized(ColumnInfo.canonicalize(column));
-    }
-
-    boolean hasColumnChangedCanonicalized(String column)
-    {
-        return changed.get(column) == Boolean.TRUE;
+        int index = layout.indexOf(column);
+        return index >= 0 && changed.get(index);
     }
 
     /**
@@ -118,12 +123,7 @@ public class TableRow
      */
     public boolean isColumnNull(String column)
     {
-        return isColumnNullCanonicalized(canonicalizeAndCheck(column));
-    }
-
-    boolean isColumnNullCanonicalized(String column)
-    {
-        return data.get(column) == NULL_OBJECT;
+        return data[indexOf(column)] == NULL_OBJECT;
     }
 
     /**
@@ -139,19 +139,12 @@ public class TableRow
      */
     public int getIntColumn(String column)
     {
-        String canonicalized = canonicalizeAndCheck(column);
-        if (isColumnNullCanonicalized(canonicalized))
+        Object value = data[indexOf(column)];
+        if (value == NULL_OBJECT)
         {
             return -1;
         }
 
-        Object value = data.get(canonicalized);
-
-        if (value == null)
-        {
-            throw new IllegalArgumentException("Column " + column + " not present");
-        }
-
         if (!(value instanceof Integer))
         {
             throw new IllegalArgumentException("Value for " + column + " is not an integer");
@@ -172,19 +165,12 @@ public class TableRow
      */
     public long getLongColumn(String column)
     {
-        String canonicalized = canonicalizeAndCheck(column);
-        if (isColumnNullCanonicalized(canonicalized))
+        Object value = data[indexOf(column)];
+        if (value == NULL_OBJECT)
         {
             return -1;
         }
 
-        Object value = data.get(canonicalized);
-
-        if (value == null)
-        {
-            throw new IllegalArgumentException("Column " + column + " not present");
-        }
-
         // If the value is an integer, it can be represented without error as a long
         // So, allow the return of a long. (This is needed for Oracle support).
         if ((value instanceof Integer))
@@ -212,18 +198,12 @@ public class TableRow
      */
     public double getDoubleColumn(String column)
     {
-        String canonicalized = canonicalizeAndCheck(column);
-        if (isColumnNullCanonicalized(canonicalized))
+        Object value = data[indexOf(column)];
+        if (value == NULL_OBJECT)
         {
             return -1;
         }
 
-        Object value = data.get(canonicalized);
-
-        if (value == null)
-        {
-            throw new IllegalArgumentException("Column " + column + " not present");
-        }
         
         if (!(value instanceof Double))
         {
@@ -246,19 +226,12 @@ public class TableRow
      */
     public String getStringColumn(String column)
     {
-        String canonicalized = canonicalizeAndCheck(column);
-        if (isColumnNullCanonicalized(canonicalized))
+        Object value = data[indexOf(column)];
+        if (value == NULL_OBJECT)
         {
             return null;
         }
 
-        Object value = data.get(canonicalized);
-
-        if (value == null)
-        {
-            throw new IllegalArgumentException("Column " + column + " not present");
-        }
-
         if (!(value instanceof String))
         {
             throw new IllegalArgumentException("Value is not an string");
@@ -280,20 +253,13 @@ public class TableRow
      */
     public boolean getBooleanColumn(String column)
     {
-        String canonicalized = canonicalizeAndCheck(column);
-        if (isColumnNullCanonicalized(canonicalized))
+        Object value = data[indexOf(column)];
+        if (value == NULL_OBJECT)
         {
             return false;
         }
 
-        Object value = data.get(canonicalized);
-
         // make sure that we tolerate integers or booleans
-        if (value == null)
-        {
-            throw new IllegalArgumentException("Column " + column + " not present");
-        }
-
         if ((value instanceof Boolean))
         {
             return ((Boolean) value).booleanValue();
@@ -328,19 +294,12 @@ public class TableRow
      */
     public java.util.Date getDateColumn(String column)
     {
-        String canonicalized = canonicalizeAndCheck(column);
-        if (isColumnNullCanonicalized(canonicalized))
+        Object value = data[indexOf(column)];
+        if (value == NULL_OBJECT)
         {
             return null;
         }
 
-        Object value = data.get(canonicalized);
-
-        if (value == null)
-        {
-            throw new IllegalArgumentException("Column " + column + " not present");
-        }
-
         if (!(value instanceof java.util.Date))
         {
             throw new IllegalArgumentException("Value is not a Date");
@@ -359,12 +318,7 @@ public class TableRow
      */
     public void setColumnNull(String column)
     {
-        String canonicalized = canonicalizeAndCheck(column);
-        if (data.get(canonicalized) != NULL_OBJECT)
-        {
-            data.put(canonicalized, NULL_OBJECT);
-            changed.put(canonicalized, Boolean.TRUE);
-        }
+        set(indexOf(column), NULL_OBJECT);
     }
     /**
      * Set column to the boolean b.
@@ -378,26 +332,16 @@ public class TableRow
      */
     public void setColumn(String column, boolean b)
     {
-        String canonicalized = canonicalizeAndCheck(column);
+        int index = indexOf(column);
         if (DatabaseManager.isOracle())
         {
             // if oracle, use 1 or 0 for true/false
-            Integer value = b ? Integer.valueOf(1) : Integer.valueOf(0);
-            if (!value.equals(data.get(canonicalized)))
-            {
-                data.put(canonicalized, value);
-                changed.put(canonicalized, Boolean.TRUE);
-            }
+            set(index, b ? Integer.valueOf(1) : Integer.valueOf(0));
         }
         else
         {
             // default to postgres true/false
-            Boolean value = b ? Boolean.TRUE : Boolean.FALSE;
-            if (!value.equals(data.get(canonicalized)))
-            {
-                data.put(canonicalized, value);
-                changed.put(canonicalized, Boolean.TRUE);
-            }
+            set(index, b ? Boolean.TRUE : Boolean.FALSE);
         }
     }
 
@@ -413,13 +357,9 @@ public class TableRow
      */
     public void setColumn(String column, String s)
     {
-        String canonicalized = canonicalizeAndCheck(column);
+        int index = indexOf(column);
         Object value = (s == null) ? NULL_OBJECT : s;
-        if (!value.equals(data.get(canonicalized)))
-        {
-            data.put(canonicalized, value);
-            changed.put(canonicalized, Boolean.TRUE);
-        }
+        set(index, value);
     }
 
     /**
@@ -434,13 +374,9 @@ public class TableRow
      */
     public void setColumn(String column, int i)
     {
-        String canonicalized = canonicalizeAndCheck(column);
+        int index = indexOf(column);
         Integer value = Integer.valueOf(i);
-        if (!value.equals(data.get(canonicalized)))
-        {
-            data.put(canonicalized, value);
-            changed.put(canonicalized, Boolean.TRUE);
-        }
+        set(index, value);
     }
 
     /**
@@ -455,13 +391,9 @@ public class TableRow
      */
     public void setColumn(String column, long l)
     {
-        String canonicalized = canonicalizeAndCheck(column);
+        int index = indexOf(column);
         Long value = Long.valueOf(l);
-        if (!value.equals(data.get(canonicalized)))
-        {
-            data.put(canonicalized, value);
-            changed.put(canonicalized, Boolean.TRUE);
-        }
+        set(index, value);
     }
 
     /**
@@ -476,13 +408,9 @@ public class TableRow
      */
     public void setColumn(String column, double d)
     {
-        String canonicalized = canonicalizeAndCheck(column);
+        int index = indexOf(column);
         Double value = new Double(d);
-        if (!value.equals(data.get(canonicalized)))
-        {
-            data.put(canonicalized, value);
-            changed.put(canonicalized, Boolean.TRUE);
-        }
+        set(index, value);
     }
 
     /**
@@ -498,19 +426,30 @@ public class TableRow
      */
     public void setColumn(String column, java.util.Date d)
     {
-        String canonicalized = canonicalizeAndCheck(column);
+        int index = indexOf(column);
         Object value = (d == null) ? NULL_OBJECT : d;
-        if (!value.equals(data.get(canonicalized)))
-        {
-            data.put(canonicalized, value);
-            changed.put(canonicalized, Boolean.TRUE);
-        }
+        set(index, value);
     }
 
     ////////////////////////////////////////
     // Utility methods
     ////////////////////////////////////////
 
+    /**
+     * Return a copy of this row, with the same values and the same columns
+     * flagged as changed. Changes to the copy do not affect this row.
+     * 
+     * @return a copy of this row
+     */
+    public TableRow copy()
+    {
+        TableRow copy = new TableRow(table, layout);
+        System.arraycopy(data, 0, copy.data, 0, data.length);
+        copy.changed.clear();
+        copy.changed.or(changed);
+        return copy;
+    }
+
     /**
      * Return a String representation of this object.
      * 
@@ -532,11 +471,10 @@ public class TableRow
     	
     	result.append(NEWLINE);
 
-        for (Iterator iterator = data.keySet().iterator(); iterator.hasNext();)
+        for (int i = 0; i < data.length; i++)
         {
-            String column = (String) iterator.next();
-            result.append("\t").append(column).append(" = ").append(
-                    isColumnNull(column) ? "NULL" : data.get(column)).append(
+            result.append("\t").append(layout.getName(i)).append(" = ").append(
+                    (data[i] == NULL_OBJECT) ? "NULL" : data[i]).append(
                     NEWLINE);
         }
 
@@ -550,7 +488,14 @@ public class TableRow
      */
     public int hashCode()
     {
-        return toString().hashCode();
+        // Independent of column order, to be consistent with equals
+        int hash = 0;
+        for (int i = 0; i < data.length; i++)
+        {
+            hash += layout.getName(i).hashCode() ^ data[i].hashCode();
+        }
+
+        return hash;
     }
 
     /**
@@ -566,23 +511,62 @@ public class TableRow
             return false;
         }
 
-        return data.equals(((TableRow) obj).data);
+        TableRow other = (TableRow) obj;
+        if (layout == other.layout)
+        {
+            return Arrays.equals(data, other.data);
+        }
+
+        // Rows with the same columns in a different order are still equal
+        if (data.length != other.data.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < data.length; i++)
+        {
+            int index = other.layout.indexOf(layout.getName(i));
+            if (index < 0 || !data[i].equals(other.data[index]))
+            {
+                return false;
+            }
+        }
+
+        return true;
     }
 
-    private String canonicalizeAndCheck(String column)
+    private int indexOf(String column)
     {
-        if (data.containsKey(column))
+        int index = layout.indexOf(column);
+        if (index < 0)
         {
-            return column;
+            throw new IllegalArgumentException("No such column '" + ColumnInfo.canonicalize(column) + "'");
         }
 
-        String canonicalized = ColumnInfo.canonicalize(column);
-        if (data.containsKey(canonicalized))
+        return index;
+    }
+
+    /**
+     * Set the value of the column at a position, flagging it as changed if
+     * the value is different.
+     */
+    private void set(int index, Object value)
+    {
+        if (!value.equals(data[index]))
         {
-            return canonicalized;
+            data[index] = value;
+            changed.set(index);
         }
+    }
 
-        throw new IllegalArgumentException("No such column '" + canonicalized + "'");
+    /**
+     * package private method to load the value of the column at a position,
+     * as read from a resultset, without flagging it as changed. A null value
+     * is loaded as an SQL NULL.
+     */
+    void load(int index, Object value)
+    {
+        data[index] = (value == null) ? NULL_OBJECT : value;
     }
 
     /**
@@ -594,9 +578,6 @@ public class TableRow
      */
     void resetChanged()
     {
-        for (String column : changed.keySet())
-        {
-            changed.put(column, Boolean.FALSE);
-        }
+        changed.clear();
     }
 }
@@ -9,6 +9,7 @@ package org.dspace.storage.rdbms;
 
 import org.apache.log4j.Logger;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -35,6 +36,16 @@ public class TableRowIterator
      */
     private Statement statemt = null;
 
+    /**
+     * Cache the statement is handed back to when we are finished, if any
+     */
+    private StatementCache statementCache = null;
+
+    /**
+     * SQL text the cached statement was prepared with
+     */
+    private String sql = null;
+
     /**
      * The name of the RDBMS table
      */
@@ -55,6 +66,14 @@ public class TableRowIterator
      */
     List<String> columnNames = null;
 
+    /**
+     * Column layout shared by the rows of the results, and the position in
+     * the layout of each column of the results
+     */
+    private ColumnLayout layout = null;
+
+    private int[] positions = null;
+
     /**
      * Constructor
      * 
@@ -126,6 +145,25 @@ public class TableRowIterator
         statemt = st;
     }
 
+    /**
+     * Save a statement obtained from a statement cache. When we are finished
+     * the statement is handed back to the cache rather than closed.
+     * 
+     * @param st -
+     *            The statement used to do the query that created this
+     *            TableRowIterator
+     * @param cache -
+     *            The cache the statement was obtained from
+     * @param query -
+     *            The SQL text the statement was prepared with
+     */
+    void setStatement(PreparedStatement st, StatementCache cache, String query)
+    {
+        statemt = st;
+        statementCache = cache;
+        sql = query;
+    }
+
     /**
      * Advance to the next row and return it. Returns null if there are no more
      * rows.
@@ -148,7 +186,18 @@ public class TableRowIterator
 
         hasAdvanced = false;
 
-        return DatabaseManager.process(results, table, columnNames);
+        if (columnNames == null)
+        {
+            return DatabaseManager.process(results, table, columnNames);
+        }
+
+        if (layout == null)
+        {
+            layout = ColumnLayout.forColumns(columnNames);
+            positions = DatabaseManager.getColumnPositions(results.getMetaData(), layout);
+        }
+
+        return DatabaseManager.process(results, table, layout, positions);
     }
 
     /**
@@ -235,7 +284,15 @@ public class TableRowIterator
         {
             if (statemt != null)
             {
-                statemt.close();
+                if (statementCache != null)
+                {
+                    statementCache.release(sql, (PreparedStatement) statemt);
+                    statementCache = null;
+                }
+                else
+                {
+                    statemt.close();
+                }
                 statemt = null;
             }
         }
@@ -244,5 +301,7 @@ public class TableRowIterator
         }
 
         columnNames = null;
+        layout = null;
+        positions = null;
     }
 }
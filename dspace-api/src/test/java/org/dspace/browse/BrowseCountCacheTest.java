@@ -0,0 +1,81 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.browse;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the cache of browse result counts.
+ */
+public class BrowseCountCacheTest
+{
+    private static final String QUERY = "SELECT COUNT(*) FROM bi_2_dis WHERE sort_value = ?";
+
+    @Before
+    public void setUp()
+    {
+        // the cache is disabled by a size of 0, and then nothing is kept
+        Assume.assumeTrue(BrowseCountCache.SIZE > 0);
+        BrowseCountCache.invalidate();
+    }
+
+    @After
+    public void tearDown()
+    {
+        BrowseCountCache.invalidate();
+    }
+
+    /**
+     * Test that a count is found under its query and parameters only.
+     */
+    @Test
+    public void testPutGet()
+    {
+        assertEquals(-1, BrowseCountCache.get(QUERY, new Object[] { "smith" }));
+
+        BrowseCountCache.put(QUERY, new Object[] { "smith" }, 42);
+        assertEquals(42, BrowseCountCache.get(QUERY, new Object[] { "smith" }));
+        assertEquals(-1, BrowseCountCache.get(QUERY, new Object[] { "jones" }));
+        assertEquals(-1, BrowseCountCache.get(QUERY, null));
+
+        BrowseCountCache.put(QUERY, new Object[] { "smith" }, 43);
+        assertEquals(43, BrowseCountCache.get(QUERY, new Object[] { "smith" }));
+    }
+
+    /**
+     * Test that invalidating drops every count.
+     */
+    @Test
+    public void testInvalidate()
+    {
+        BrowseCountCache.put(QUERY, new Object[] { "smith" }, 42);
+        BrowseCountCache.put(QUERY, new Object[] { "jones" }, 7);
+
+        BrowseCountCache.invalidate();
+        assertEquals(-1, BrowseCountCache.get(QUERY, new Object[] { "smith" }));
+        assertEquals(-1, BrowseCountCache.get(QUERY, new Object[] { "jones" }));
+    }
+
+    /**
+     * Test that a count is used until it is older than the time to live,
+     * and then dropped.
+     */
+    @Test
+    public void testExpiry()
+    {
+        long now = System.currentTimeMillis();
+        BrowseCountCache.put(QUERY, new Object[] { "smith" }, 42);
+
+        assertEquals(42, BrowseCountCache.get(QUERY, new Object[] { "smith" }, now + BrowseCountCache.TTL - 1000));
+        assertEquals(-1, BrowseCountCache.get(QUERY, new Object[] { "smith" }, now + BrowseCountCache.TTL + 1000));
+
+        // an expired count is removed, not just skipped
+        assertEquals(-1, BrowseCountCache.get(QUERY, new Object[] { "smith" }, now));
+    }
+}
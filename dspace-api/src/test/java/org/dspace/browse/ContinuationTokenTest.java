@@ -0,0 +1,122 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.browse;
+
+import java.io.UnsupportedEncodingException;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the continuation tokens of item browses.
+ */
+public class ContinuationTokenTest
+{
+    private static final String FIELD = "sort_1";
+
+    /**
+     * Test that a token decodes to what it was made from.
+     */
+    @Test
+    public void testRoundTrip()
+    {
+        String token = new ContinuationToken(40, 123, "smith, john").encode(FIELD, true);
+        ContinuationToken decoded = ContinuationToken.decode(token, FIELD, true);
+        assertNotNull(decoded);
+        assertEquals(40, decoded.getOffset());
+        assertEquals(123, decoded.getItemID());
+        assertEquals("smith, john", decoded.getValue());
+
+        decoded = ContinuationToken.decode(new ContinuationToken(20, 7, "a|b=c").encode(FIELD, false), FIELD, false);
+        assertNotNull(decoded);
+        assertEquals("a|b=c", decoded.getValue());
+    }
+
+    /**
+     * Test that a missing value and an empty value are told apart.
+     */
+    @Test
+    public void testNullAndEmptyValue()
+    {
+        ContinuationToken decoded = ContinuationToken.decode(new ContinuationToken(20, 5, null).encode(FIELD, true), FIELD, true);
+        assertNotNull(decoded);
+        assertNull(decoded.getValue());
+
+        decoded = ContinuationToken.decode(new ContinuationToken(20, 5, "").encode(FIELD, true), FIELD, true);
+        assertNotNull(decoded);
+        assertEquals("", decoded.getValue());
+    }
+
+    /**
+     * Test that a token is safe for use in URLs.
+     */
+    @Test
+    public void testUrlSafe()
+    {
+        String token = new ContinuationToken(1000, 99999, "été >>> ???").encode(FIELD, true);
+        assertTrue(token, token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    /**
+     * Test that a token made for a browse sorted another way is ignored.
+     */
+    @Test
+    public void testOtherOrder()
+    {
+        String token = new ContinuationToken(40, 123, "x").encode(FIELD, true);
+        assertNull(ContinuationToken.decode(token, "sort_2", true));
+        assertNull(ContinuationToken.decode(token, FIELD, false));
+    }
+
+    /**
+     * Test that altered tokens are rejected.
+     */
+    @Test
+    public void testTampered()
+    {
+        assertNull(ContinuationToken.decode(raw("sort_1|a|-20|123|=x"), FIELD, true));
+        assertNull(ContinuationToken.decode(raw("sort_1|a|20|-1|=x"), FIELD, true));
+        assertNull(ContinuationToken.decode(raw("sort_1|a|twenty|123|=x"), FIELD, true));
+        assertNull(ContinuationToken.decode(raw("sort_1|a|20|123|x"), FIELD, true));
+        assertNull(ContinuationToken.decode(raw("sort_1|a|20|123"), FIELD, true));
+        assertNull(ContinuationToken.decode(raw("sort_1|x|20|123|=x"), FIELD, true));
+
+        ContinuationToken decoded = ContinuationToken.decode(raw("sort_1|a|20|123|=x"), FIELD, true);
+        assertNotNull(decoded);
+        assertEquals(20, decoded.getOffset());
+    }
+
+    /**
+     * Test that empty and malformed tokens are rejected.
+     */
+    @Test
+    public void testInvalid()
+    {
+        assertNull(ContinuationToken.decode(null, FIELD, true));
+        assertNull(ContinuationToken.decode("", FIELD, true));
+        assertNull(ContinuationToken.decode("not a token", FIELD, true));
+        assertNull(ContinuationToken.decode("!!!!", FIELD, true));
+    }
+
+    /**
+     * Encode a token body the way tokens are encoded, without checking it.
+     */
+    private static String raw(String body)
+    {
+        try
+        {
+            String encoded = new String(Base64.encodeBase64(body.getBytes("UTF-8")), "US-ASCII");
+            return encoded.replace('+', '-').replace('/', '_').replace("=", "");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
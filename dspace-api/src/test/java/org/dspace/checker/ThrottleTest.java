@@ -0,0 +1,124 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.checker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the checker rate limit.
+ */
+public class ThrottleTest
+{
+    /**
+     * Test that a rate which is not positive means no limit.
+     */
+    @Test
+    public void testForRate()
+    {
+        assertNull(Throttle.forRate(0));
+        assertNull(Throttle.forRate(-1));
+        assertNotNull(Throttle.forRate(1));
+    }
+
+    /**
+     * Test that units are handed out no faster than the rate, and that the
+     * first request is not delayed.
+     */
+    @Test
+    public void testRate() throws Exception
+    {
+        Throttle throttle = new Throttle(100);
+
+        long start = System.nanoTime();
+        throttle.acquire(1);
+        assertTrue(elapsedMillis(start) < 50);
+
+        // 1 unit already taken, 20 more at 100 a second take 200ms
+        for (int i = 0; i < 20; i++)
+        {
+            throttle.acquire(1);
+        }
+        assertTrue(elapsedMillis(start) >= 190);
+    }
+
+    /**
+     * Test that a large request holds back the one after it.
+     */
+    @Test
+    public void testLargeRequest() throws Exception
+    {
+        Throttle throttle = new Throttle(1000);
+
+        long start = System.nanoTime();
+        throttle.acquire(300);
+        throttle.acquire(1);
+        assertTrue(elapsedMillis(start) >= 290);
+    }
+
+    /**
+     * Test that the rate holds across threads sharing the throttle.
+     */
+    @Test
+    public void testSharedBetweenThreads() throws Exception
+    {
+        final Throttle throttle = new Throttle(100);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 5; j++)
+                    {
+                        throttle.acquire(1);
+                    }
+                }
+            };
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        // 20 units at 100 a second, the first of them free
+        assertTrue(elapsedMillis(start) >= 180);
+    }
+
+    /**
+     * Test that an interrupted wait returns early with the interrupt status
+     * set.
+     */
+    @Test
+    public void testInterrupt() throws Exception
+    {
+        Throttle throttle = new Throttle(1);
+        throttle.acquire(60);
+
+        Thread.currentThread().interrupt();
+        long start = System.nanoTime();
+        throttle.acquire(1);
+        assertTrue(Thread.interrupted());
+        assertTrue(elapsedMillis(start) < 1000);
+    }
+
+    private static long elapsedMillis(long start)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the in-memory community closure.
+ */
+public class CommunityClosureTest
+{
+    private CommunityClosure closure;
+
+    @Before
+    public void setUp()
+    {
+        // community 1 contains 2 and 3, 2 contains 4; collection 10 is in 1,
+        // 11 in 2, 12 in 4, and 13 is mapped into both 3 and 4
+        closure = new CommunityClosure();
+        closure.addSubcommunity(1, 2);
+        closure.addSubcommunity(1, 3);
+        closure.addSubcommunity(2, 4);
+        closure.addCollection(1, 10);
+        closure.addCollection(2, 11);
+        closure.addCollection(4, 12);
+        closure.addCollection(3, 13);
+        closure.addCollection(4, 13);
+    }
+
+    /**
+     * Test that ancestors are found, the nearest first.
+     */
+    @Test
+    public void testAncestors()
+    {
+        assertArrayEquals(new int[] { 2, 1 }, closure.getCommunityAncestors(4));
+        assertArrayEquals(new int[] { 1 }, closure.getCommunityAncestors(3));
+        assertArrayEquals(new int[0], closure.getCommunityAncestors(1));
+        assertArrayEquals(new int[] { 2, 1 }, closure.getCollectionAncestors(11));
+        assertArrayEquals(new int[] { 3, 4, 1, 2 }, closure.getCollectionAncestors(13));
+        assertArrayEquals(new int[0], closure.getCollectionAncestors(99));
+    }
+
+    /**
+     * Test that descendants are found, the collections of sub-communities
+     * first and each only once.
+     */
+    @Test
+    public void testDescendants()
+    {
+        assertArrayEquals(new int[] { 2, 4, 3 }, closure.getDescendantCommunities(1));
+        assertArrayEquals(new int[] { 12, 13, 11, 10 }, closure.getDescendantCollections(1));
+        assertArrayEquals(new int[] { 12, 13 }, closure.getDescendantCollections(4));
+        assertArrayEquals(new int[0], closure.getDescendantCommunities(4));
+        assertArrayEquals(new int[] { 13 }, closure.getDescendantCollections(3));
+    }
+
+    /**
+     * Test that edges added after the closure was computed are included,
+     * and that adding an edge twice changes nothing.
+     */
+    @Test
+    public void testAddAfterUse()
+    {
+        assertArrayEquals(new int[] { 13 }, closure.getDescendantCollections(3));
+
+        closure.addSubcommunity(3, 5);
+        closure.addCollection(5, 14);
+        closure.addCollection(5, 14);
+
+        assertArrayEquals(new int[] { 5 }, closure.getDescendantCommunities(3));
+        assertArrayEquals(new int[] { 14, 13 }, closure.getDescendantCollections(3));
+        assertArrayEquals(new int[] { 5, 3, 1 }, closure.getCollectionAncestors(14));
+    }
+
+    /**
+     * Test that a cycle in the hierarchy does not stop the closure being
+     * computed.
+     */
+    @Test
+    public void testCycle()
+    {
+        closure.addSubcommunity(4, 1);
+
+        assertArrayEquals(new int[] { 2, 1, 4 }, closure.getCommunityAncestors(4));
+        assertEquals(4, closure.getDescendantCommunities(1).length);
+    }
+}
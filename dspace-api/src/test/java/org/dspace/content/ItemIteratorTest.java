@@ -146,6 +146,33 @@ public class ItemIteratorTest extends AbstractUnitTest
         }
     }
 
+    /**
+     * Test of next method, of class ItemIterator, with prefetching enabled.
+     */
+    @Test
+    public void testNextPrefetch() throws Exception
+    {
+        iitnone.setPrefetchSize(ItemIterator.DEFAULT_PREFETCH_SIZE);
+        assertThat("testNextPrefetch iitnone 0", iitnone.next(), nullValue());
+
+        iitr.setPrefetchSize(ItemIterator.DEFAULT_PREFETCH_SIZE);
+        for(int i = 0; i < numitems; i++)
+        {
+            assertTrue("testNextPrefetch iitr hasNext "+i, iitr.hasNext());
+            Item item = iitr.next();
+            assertThat("testNextPrefetch iitr "+i, item, notNullValue());
+            assertThat("testNextPrefetch iitr metadata "+i, item.getMetadata("dc", Item.ANY, Item.ANY, Item.ANY), notNullValue());
+        }
+
+        iitid.setPrefetchSize(1);
+        for(int i = 0; i < numitems; i++)
+        {
+            assertThat("testNextPrefetch iitid "+i, iitid.next(), notNullValue());
+        }
+        assertFalse("testNextPrefetch iitid end", iitid.hasNext());
+        assertThat("testNextPrefetch iitid null", iitid.next(), nullValue());
+    }
+
     /**
      * Test of nextID method, of class ItemIterator.
      */
@@ -0,0 +1,88 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.eperson;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the in-memory group closure.
+ */
+public class GroupClosureTest
+{
+    private GroupClosure closure;
+
+    @Before
+    public void setUp()
+    {
+        // 1 contains 2, 2 contains 3 and 4, 5 contains 4
+        closure = new GroupClosure();
+        closure.add(1, 2);
+        closure.add(2, 3);
+        closure.add(2, 4);
+        closure.add(5, 4);
+    }
+
+    /**
+     * Test that indirect memberships are found in both directions.
+     */
+    @Test
+    public void testAdd()
+    {
+        assertArrayEquals(new int[] { 2, 3, 4 }, closure.getDescendants(1));
+        assertArrayEquals(new int[] { 3, 4 }, closure.getDescendants(2));
+        assertArrayEquals(new int[] { 1, 2, 5 }, closure.getAncestors(4));
+        assertArrayEquals(new int[] { 1, 2 }, closure.getAncestors(3));
+        assertArrayEquals(new int[0], closure.getAncestors(1));
+        assertArrayEquals(new int[0], closure.getDescendants(3));
+    }
+
+    /**
+     * Test that removing a membership only removes the memberships which
+     * went through it.
+     */
+    @Test
+    public void testRemove()
+    {
+        closure.remove(1, 2);
+
+        assertArrayEquals(new int[0], closure.getDescendants(1));
+        assertArrayEquals(new int[] { 2, 5 }, closure.getAncestors(4));
+        assertArrayEquals(new int[] { 2 }, closure.getAncestors(3));
+
+        // removing an unknown membership changes nothing
+        closure.remove(5, 3);
+        assertArrayEquals(new int[] { 4 }, closure.getDescendants(5));
+    }
+
+    /**
+     * Test that deleting a group removes it and everything reached through it.
+     */
+    @Test
+    public void testRemoveGroup()
+    {
+        closure.removeGroup(2);
+
+        assertArrayEquals(new int[0], closure.getDescendants(1));
+        assertArrayEquals(new int[] { 5 }, closure.getAncestors(4));
+        assertArrayEquals(new int[0], closure.getAncestors(3));
+        assertArrayEquals(new int[0], closure.getAncestors(2));
+    }
+
+    /**
+     * Test that a cycle does not cause endless recursion.
+     */
+    @Test
+    public void testCycle()
+    {
+        closure.add(3, 1);
+
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, closure.getDescendants(1));
+        assertArrayEquals(new int[] { 1, 2, 3 }, closure.getAncestors(3));
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the IP address table.
+ */
+public class IPTableTest
+{
+    private IPTable table;
+
+    @Before
+    public void setUp() throws IPTable.IPFormatException
+    {
+        table = new IPTable();
+        table.add("10.1.2");
+        table.add("192.168.5.7");
+        table.add("172.16.0.0/12");
+        table.add("1.2.3.250-1.2.4.1");
+        table.add("2001:db8::/32");
+    }
+
+    /**
+     * Test subnets, single addresses, CIDR blocks and ranges.
+     */
+    @Test
+    public void testContainsIPv4() throws IPTable.IPFormatException
+    {
+        assertTrue(table.contains("10.1.2.0"));
+        assertTrue(table.contains("10.1.2.255"));
+        assertFalse(table.contains("10.1.3.1"));
+
+        assertTrue(table.contains("192.168.5.7"));
+        assertFalse(table.contains("192.168.5.8"));
+
+        assertTrue(table.contains("172.16.0.1"));
+        assertTrue(table.contains("172.31.255.255"));
+        assertFalse(table.contains("172.32.0.0"));
+
+        assertTrue(table.contains("1.2.3.250"));
+        assertTrue(table.contains("1.2.4.1"));
+        assertFalse(table.contains("1.2.3.249"));
+        assertFalse(table.contains("1.2.4.2"));
+    }
+
+    /**
+     * Test IPv6 blocks and IPv4 addresses mapped to IPv6.
+     */
+    @Test
+    public void testContainsIPv6() throws IPTable.IPFormatException
+    {
+        assertTrue(table.contains("2001:db8::1"));
+        assertTrue(table.contains("2001:0db8:ffff:0:0:0:0:1"));
+        assertFalse(table.contains("2001:db9::1"));
+        assertTrue(table.contains("::ffff:192.168.5.7"));
+        assertFalse(table.contains("::ffff:192.168.5.8"));
+    }
+
+    /**
+     * Test that malformed addresses are rejected.
+     */
+    @Test
+    public void testInvalid()
+    {
+        String[] invalid = { "10.1", "256.1.1.1", "1.2.3.4/33", "1.2.3.9-1.2.3.1", "2001:db8:::1" };
+        for (String ip : invalid)
+        {
+            try
+            {
+                new IPTable().add(ip);
+                fail(ip + " was accepted");
+            }
+            catch (IPTable.IPFormatException e)
+            {
+                // expected
+            }
+        }
+
+        try
+        {
+            table.contains("not an address");
+            fail("'not an address' was accepted");
+        }
+        catch (IPTable.IPFormatException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test the listing of the IPv4 content.
+     */
+    @Test
+    public void testToSet()
+    {
+        Set<String> set = table.toSet();
+        assertTrue(set.contains("10.1.2"));
+        assertTrue(set.contains("192.168.5.7"));
+        assertTrue(set.contains("1.2.3.250"));
+        assertTrue(set.contains("1.2.4.0"));
+        assertTrue(set.contains("172.20.7"));
+        assertFalse(set.contains("10.1.3"));
+    }
+}
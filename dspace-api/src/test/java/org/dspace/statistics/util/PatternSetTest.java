@@ -0,0 +1,74 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the compiled pattern set.
+ */
+public class PatternSetTest
+{
+    /**
+     * Test plain strings, including overlapping ones.
+     */
+    @Test
+    public void testLiterals()
+    {
+        PatternSet set = new PatternSet(Arrays.asList("bot", "crawler", "rawl", "spider\\.example"));
+
+        assertTrue(set.find("Googlebot/2.1"));
+        assertTrue(set.find("a crawler"));
+        assertTrue(set.find("crawx rawl"));
+        assertTrue(set.find("spider.example.com"));
+        assertFalse(set.find("spiderXexample.com"));
+        assertFalse(set.find("Mozilla/5.0 Firefox"));
+        assertFalse(set.find("bo"));
+    }
+
+    /**
+     * Test that real regular expressions are still honoured.
+     */
+    @Test
+    public void testExpressions()
+    {
+        PatternSet set = new PatternSet(Arrays.asList("^Java/1\\.[0-9]", "msnbot"));
+
+        assertTrue(set.find("Java/1.6.0"));
+        assertFalse(set.find("MyJava/1.6.0"));
+        assertTrue(set.find("msnbot-media"));
+    }
+
+    /**
+     * Test that an empty set matches nothing.
+     */
+    @Test
+    public void testEmpty()
+    {
+        PatternSet set = new PatternSet(Collections.<String>emptyList());
+
+        assertTrue(set.isEmpty());
+        assertFalse(set.find("anything"));
+    }
+
+    /**
+     * Test which patterns are taken for plain strings.
+     */
+    @Test
+    public void testToLiteral()
+    {
+        assertEquals("spider.example", PatternSet.toLiteral("spider\\.example"));
+        assertEquals("bot", PatternSet.toLiteral("bot"));
+        assertNull(PatternSet.toLiteral("bot.*"));
+        assertNull(PatternSet.toLiteral("\\sbot"));
+    }
+}
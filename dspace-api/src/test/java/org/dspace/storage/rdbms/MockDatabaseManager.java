@@ -830,6 +830,69 @@ public class MockDatabaseManager
         return delete(context, row.getTable(), row.getIntColumn(pk));
     }
 
+    /**
+     * Insert several table rows into the RDBMS, one row at a time.
+     *
+     * @param context
+     *            Current DSpace context
+     * @param rows
+     *            The rows to insert
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    @Mock
+    public static void insert(Context context, List<TableRow> rows) throws SQLException
+    {
+        for (TableRow row : rows)
+        {
+            insert(context, row);
+        }
+    }
+
+    /**
+     * Update changes to several rows in the RDBMS, one row at a time.
+     *
+     * @param context
+     *            Current DSpace context
+     * @param rows
+     *            The rows to update
+     * @return The number of rows affected
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    @Mock
+    public static int update(Context context, List<TableRow> rows) throws SQLException
+    {
+        int count = 0;
+        for (TableRow row : rows)
+        {
+            count += update(context, row);
+        }
+        return count;
+    }
+
+    /**
+     * Delete several rows from the RDBMS, one row at a time.
+     *
+     * @param context
+     *            Current DSpace context
+     * @param rows
+     *            The rows to delete
+     * @return The number of rows affected
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    @Mock
+    public static int delete(Context context, List<TableRow> rows) throws SQLException
+    {
+        int count = 0;
+        for (TableRow row : rows)
+        {
+            count += delete(context, row);
+        }
+        return count;
+    }
+
     /**
      * Return metadata about a table.
      *
@@ -1267,6 +1330,28 @@ public class MockDatabaseManager
         return row;
     }
 
+    /**
+     * Convert the current row in a ResultSet into a TableRow object, using a
+     * column layout and positions computed once for the whole ResultSet.
+     *
+     * @param results
+     *            A ResultSet to process
+     * @param table
+     *            The name of the table
+     * @param layout
+     *            The column layout of the rows
+     * @param positions
+     *            The position in the layout of each column of the ResultSet
+     * @return A TableRow object with the data from the ResultSet
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    @Mock
+    static TableRow process(ResultSet results, String table, ColumnLayout layout, int[] positions) throws SQLException
+    {
+        return process(results, table, layout.getNames());
+    }
+
     /**
      * Return the name of the primary key column. We assume there's only one
      * primary key per table; if there are more, only the first one will be
@@ -91,6 +91,7 @@ public abstract class AbstractBrowserServlet extends DSpaceServlet
             String authority = request.getParameter("authority");
             int focus = UIUtil.getIntParameter(request, "focus");
             int offset = UIUtil.getIntParameter(request, "offset");
+            String after = request.getParameter("after");
             int resultsperpage = UIUtil.getIntParameter(request, "rpp");
             int sortBy = UIUtil.getIntParameter(request, "sort_by");
             int etAl = UIUtil.getIntParameter(request, "etal");
@@ -261,6 +262,7 @@ public abstract class AbstractBrowserServlet extends DSpaceServlet
             scope.setJumpToValueLang(valueFocusLang);
             scope.setStartsWith(startsWith);
             scope.setOffset(offset);
+            scope.setContinuation(after);
             scope.setResultsPerPage(resultsperpage);
             scope.setSortBy(sortBy);
             scope.setBrowseLevel(level);
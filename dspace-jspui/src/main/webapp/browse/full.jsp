@@ -130,6 +130,10 @@
 	if (bi.hasNextPage())
     {
         next = next + "&amp;offset=" + bi.getNextOffset();
+        if (bi.getNextContinuation() != null)
+        {
+            next = next + "&amp;after=" + URLEncoder.encode(bi.getNextContinuation(), "UTF-8");
+        }
     }
 	
 	if (bi.hasPrevPage())
@@ -496,6 +496,7 @@ public class XOAI
                 iterator = new ItemIterator(_context, DatabaseManager.query(_context, query, new java.sql.Date(last.getTime())));
             }
             
+            iterator.setPrefetchSize(ItemIterator.DEFAULT_PREFETCH_SIZE);
             while (iterator.hasNext()) {
                 Item item = iterator.next();
                 if (_verbose) System.out.println("Compiling item with handle: "+ item.getHandle());
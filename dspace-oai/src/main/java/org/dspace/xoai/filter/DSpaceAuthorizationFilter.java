@@ -10,13 +10,13 @@ package org.dspace.xoai.filter;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
-import org.dspace.authorize.AuthorizeException;
 import org.dspace.authorize.AuthorizeManager;
-import org.dspace.content.Bundle;
+import org.dspace.content.DSpaceObject;
 import org.dspace.content.Item;
 import org.dspace.core.Constants;
 import org.dspace.core.Context;
@@ -54,15 +54,24 @@ public class DSpaceAuthorizationFilter extends DSpaceFilter
             String handle = DSpaceItem.parseHandle(item.getIdentifier());
             if (handle == null) return false;
             Item dsitem = (Item) HandleManager.resolveToObject(ctx, handle);
-            AuthorizeManager.authorizeAction(ctx, dsitem, Constants.READ);
-            for (Bundle b : dsitem.getBundles())
-                AuthorizeManager.authorizeAction(ctx, b, Constants.READ);
+            if (dsitem == null) return false;
+
+            // check the item and all its bundles at once
+            List<DSpaceObject> objects = new ArrayList<DSpaceObject>();
+            objects.add(dsitem);
+            objects.addAll(Arrays.asList(dsitem.getBundles()));
+            boolean[] authorized = AuthorizeManager.authorizeActionBoolean(ctx, objects, Constants.READ);
+            for (int i = 0; i < authorized.length; i++)
+            {
+                if (!authorized[i])
+                {
+                    log.debug("Read access denied to " + objects.get(i).getTypeText() + " "
+                            + objects.get(i).getID() + " of item " + handle);
+                    return false;
+                }
+            }
             return true;
         }
-        catch (AuthorizeException ex)
-        {
-            log.debug(ex.getMessage());
-        }
         catch (SQLException ex)
         {
             log.error(ex.getMessage());
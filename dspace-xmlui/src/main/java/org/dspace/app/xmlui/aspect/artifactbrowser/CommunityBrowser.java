@@ -127,34 +127,43 @@ public class CommunityBrowser extends AbstractDSpaceTransformer implements Cache
 	        try {
 	            DSpaceValidity validity = new DSpaceValidity();
 	            
-	            TreeNode root = buildTree(Community.findAllTop(context));
+	            // The generation changes with any community, collection or item, so
+	            // the tree need not be built to tell whether the list has changed
+	            if (DSpaceValidity.useGenerations())
+	            {
+	                validity.addGeneration();
+	            }
+	            else
+	            {
+	                TreeNode root = buildTree(Community.findAllTop(context));
 	            
-	            Stack<TreeNode> stack = new Stack<TreeNode>();
-	            stack.push(root);
+	                Stack<TreeNode> stack = new Stack<TreeNode>();
+	                stack.push(root);
 	            
-	            while (!stack.empty())
-	            {
-	                TreeNode node = stack.pop();
+	                while (!stack.empty())
+	                {
+	                    TreeNode node = stack.pop();
 	                
-	                validity.add(node.getDSO());
+	                    validity.add(node.getDSO());
 	                
-	                // If we are configured to use collection strengths (i.e. item counts) then include that number in the validity.
-	                boolean showCount = ConfigurationManager.getBooleanProperty("webui.strengths.show");
-	                if (showCount)
-	        		{
-	                    try
-	                    {	//try to determine Collection size (i.e. # of items)
+	                    // If we are configured to use collection strengths (i.e. item counts) then include that number in the validity.
+	                    boolean showCount = ConfigurationManager.getBooleanProperty("webui.strengths.show");
+	                    if (showCount)
+	            		{
+	                        try
+	                        {	//try to determine Collection size (i.e. # of items)
 	                    	
-	                    	int size = new ItemCounter(context).getCount(node.getDSO());
-	                    	validity.add("size:"+size);
-	                    }
-	                    catch(ItemCountException e) { /* ignore */ }
-	        		}
+	                        	int size = new ItemCounter(context).getCount(node.getDSO());
+	                        	validity.add("size:"+size);
+	                        }
+	                        catch(ItemCountException e) { /* ignore */ }
+	            		}
 	                
 	                
-	                for (TreeNode child : node.getChildren())
-	                {
-	                    stack.push(child);
+	                    for (TreeNode child : node.getChildren())
+	                    {
+	                        stack.push(child);
+	                    }
 	                }
 	            }
 	            
@@ -625,6 +625,10 @@ public class ConfigurableBrowse extends AbstractDSpaceTransformer implements
         if (info.hasNextPage())
         {
             parameters.put(BrowseParams.OFFSET, encodeForURL(String.valueOf(info.getNextOffset())));
+            if (info.getNextContinuation() != null)
+            {
+                parameters.put(BrowseParams.CONTINUATION, encodeForURL(info.getNextContinuation()));
+            }
         }
 
         return super.generateURL(BROWSE_URL_BASE, parameters);
@@ -730,6 +734,7 @@ public class ConfigurableBrowse extends AbstractDSpaceTransformer implements
             params.scope.setOrder(request.getParameter(BrowseParams.ORDER));
             int offset = RequestUtils.getIntParameter(request, BrowseParams.OFFSET);
             params.scope.setOffset(offset > 0 ? offset : 0);
+            params.scope.setContinuation(request.getParameter(BrowseParams.CONTINUATION));
             params.scope.setResultsPerPage(RequestUtils.getIntParameter(request, BrowseParams.RESULTS_PER_PAGE));
             params.scope.setStartsWith(decodeFromURL(request.getParameter(BrowseParams.STARTS_WITH)));
             String filterValue = request.getParameter(BrowseParams.FILTER_VALUE[0]);
@@ -1002,6 +1007,8 @@ class BrowseParams
 
     static final String OFFSET = "offset";
 
+    static final String CONTINUATION = "after";
+
     static final String RESULTS_PER_PAGE = "rpp";
 
     static final String SORT_BY = "sort_by";
@@ -1082,6 +1089,7 @@ class BrowseParams
             key += "-" + scope.getSortBy();
             key += "-" + scope.getSortOption().getNumber();
             key += "-" + scope.getOffset();
+            key += "-" + scope.getContinuation();
             key += "-" + scope.getJumpToItem();
             key += "-" + scope.getFilterValue();
             key += "-" + scope.getFilterValueLang();
@@ -155,6 +155,26 @@ public abstract class AbstractSearch extends AbstractDSpaceTransformer implement
                 DSpaceObject scope = getScope();
                 validity.add(scope);
 
+                if (DSpaceValidity.useGenerations())
+                {
+                    // The results change only with the content, so the search
+                    // need not be done: add what it depends on beyond the key
+                    String[] fqs = getFilterQueries();
+                    if (fqs != null)
+                    {
+                        for (String fq : fqs)
+                        {
+                            validity.add("fq:" + fq);
+                        }
+                    }
+                    validity.addCurrentUser(context);
+                    validity.addGeneration();
+
+                    this.validity = validity.complete();
+                    logSearch();
+                    return this.validity;
+                }
+
                 performSearch(scope);
 
                 List<DSpaceObject> results = this.queryResults.getDspaceObjects();
@@ -1068,8 +1088,17 @@ public abstract class AbstractSearch extends AbstractDSpaceTransformer implement
             // Ignore, as we are only trying to get the scope to add detail to the log message
         }
 
+        // The search is not done when the page is served from the cache
+        String query = "";
+        try {
+            query = (queryArgs != null) ? queryArgs.getQuery() : getQuery();
+        }
+        catch (UIException uie) {
+            // Ignore, as we are only trying to add detail to the log message
+        }
+
         log.info(LogManager.getHeader(context, "search", logInfo + "query=\""
-                + (queryArgs == null ? "" : queryArgs.getQuery()) + "\",results=(" + countCommunities + ","
+                + query + "\",results=(" + countCommunities + ","
                 + countCollections + "," + countItems + ")"));
     }
 }
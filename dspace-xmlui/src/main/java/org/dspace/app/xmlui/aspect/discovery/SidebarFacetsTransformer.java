@@ -115,6 +115,24 @@ public class SidebarFacetsTransformer extends AbstractDSpaceTransformer implemen
                 DSpaceObject dso = HandleUtil.obtainHandle(objectModel);
                 DSpaceValidity val = new DSpaceValidity();
 
+                if (DSpaceValidity.useGenerations())
+                {
+                    // The facets change only with the content, so the search
+                    // need not be done: add what it depends on instead
+                    Request request = ObjectModelHelper.getRequest(objectModel);
+                    val.add(getScope());
+                    val.add("query:" + request.getParameter("query"));
+                    for (String filterQuery : DiscoveryUIUtils.getFilterQueries(request, context))
+                    {
+                        val.add("fq:" + filterQuery);
+                    }
+                    val.addCurrentUser(context);
+                    val.addGeneration();
+
+                    this.validity = val.complete();
+                    return this.validity;
+                }
+
                 // Retrieve any facet results to add to the validity key
                 performSearch();
 
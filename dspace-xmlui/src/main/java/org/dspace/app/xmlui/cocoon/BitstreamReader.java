@@ -7,12 +7,22 @@
  */
 package org.dspace.app.xmlui.cocoon;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import javax.mail.internet.MimeUtility;
 import javax.servlet.http.HttpServletResponse;
@@ -26,9 +36,7 @@ import org.apache.cocoon.environment.Request;
 import org.apache.cocoon.environment.Response;
 import org.apache.cocoon.environment.SourceResolver;
 import org.apache.cocoon.environment.http.HttpEnvironment;
-import org.apache.cocoon.environment.http.HttpResponse;
 import org.apache.cocoon.reading.AbstractReader;
-import org.apache.cocoon.util.ByteRange;
 import org.apache.commons.lang.StringUtils;
 import org.dspace.app.xmlui.utils.AuthenticationUtil;
 import org.dspace.app.xmlui.utils.ContextUtil;
@@ -43,6 +51,7 @@ import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Constants;
 import org.dspace.core.Context;
 import org.dspace.handle.HandleManager;
+import org.dspace.storage.bitstore.BitstreamStorageManager;
 import org.dspace.usage.UsageEvent;
 import org.dspace.utils.DSpace;
 import org.xml.sax.SAXException;
@@ -130,6 +139,12 @@ public class BitstreamReader extends AbstractReader implements Recyclable
      */
     protected static final int expires = 60 * 60 * 1000;
 
+    /**
+     * The most byte ranges served in one response. A request for more
+     * (after overlapping ranges are merged) gets the whole bitstream.
+     */
+    protected static final int MAX_RANGES = 50;
+
     /** The Cocoon response */
     protected Response response;
 
@@ -151,6 +166,24 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     /** True if bitstream is readable by anonymous users */
     protected boolean isAnonymouslyReadable;
 
+    /** The bitstream's file, if it is in a local assetstore */
+    protected File bitstreamFile;
+
+    /** The bitstream's entity tag, made from its checksum */
+    protected String bitstreamETag;
+
+    /**
+     * The byte ranges requested, as inclusive {start, end} pairs in
+     * ascending order, or null to send the whole bitstream
+     */
+    protected List<long[]> byteRanges;
+
+    /** True if none of the byte ranges requested could be satisfied */
+    protected boolean rangeNotSatisfiable;
+
+    /** Separator of the parts of a multiple range response */
+    protected String boundary;
+
     /** Item containing the Bitstream */
     private Item item = null;
 
@@ -354,6 +387,14 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                 // In case there is no bitstream name...
                 bitstreamName = "bitstream";
             }
+
+            // Work out which part of the bitstream was asked for
+            if (bitstream.getChecksum() != null)
+            {
+                this.bitstreamETag = "\"" + bitstream.getChecksum() + "\"";
+            }
+            this.bitstreamFile = BitstreamStorageManager.retrieveFile(context, bitstream.getID());
+            setupRanges();
             
             // Log that the bitstream has been viewed, this is non-cached and the complexity
             // of adding it to the sitemap for every possible bitstream uri is not very tractable
@@ -547,9 +588,6 @@ public class BitstreamReader extends AbstractReader implements Recyclable
             throw new ProcessingException(e);
         }
 
-        byte[] buffer = new byte[BUFFER_SIZE];
-        int length = -1;
-
         // Only encourage caching if this is not a restricted resource, i.e.
         // if it is accessed anonymously or is readable by Anonymous:
         if (isAnonymouslyReadable)
@@ -582,87 +620,95 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                 response.setHeader("Content-Disposition", "attachment;filename=" + '"' + name + '"');
         }
 
-        ByteRange byteRange = null;
-
-        // Turn off partial downloads, they cause problems
-        // and are only rarely used. Specifically some windows pdf
-        // viewers are incapable of handling this request. You can
-        // uncomment the following lines to turn this feature back on.
-
-//        response.setHeader("Accept-Ranges", "bytes");
-//        String ranges = request.getHeader("Range");
-//        if (ranges != null)
-//        {
-//            try
-//            {
-//                ranges = ranges.substring(ranges.indexOf('=') + 1);
-//                byteRange = new ByteRange(ranges);
-//            }
-//            catch (NumberFormatException e)
-//            {
-//                byteRange = null;
-//                if (response instanceof HttpResponse)
-//                {
-//                    // Respond with status 416 (Request range not
-//                    // satisfiable)
-//                    response.setStatus(416);
-//                }
-//            }
-//        }
+        if (ConfigurationManager.getBooleanProperty("xmlui.bitstream.accept-ranges", true))
+        {
+            response.setHeader("Accept-Ranges", "bytes");
+        }
+        if (bitstreamETag != null)
+        {
+            response.setHeader("ETag", bitstreamETag);
+        }
 
+        FileChannel channel = null;
         try
         {
-            if (byteRange != null)
+            if (rangeNotSatisfiable)
             {
-                String entityLength;
-                String entityRange;
-                if (this.bitstreamSize != -1)
-                {
-                    entityLength = "" + this.bitstreamSize;
-                    entityRange = byteRange.intersection(
-                            new ByteRange(0, this.bitstreamSize)).toString();
-                }
-                else
-                {
-                    entityLength = "*";
-                    entityRange = byteRange.toString();
-                }
+                // Respond with status 416 (Request range not satisfiable)
+                response.setStatus(416);
+                response.setHeader("Content-Range", "bytes */" + this.bitstreamSize);
+                return;
+            }
+
+            // Read ranges straight from the file if it is local, rather
+            // than reading through everything before them
+            if (bitstreamFile != null)
+            {
+                channel = new FileInputStream(bitstreamFile).getChannel();
+            }
+            WritableByteChannel target = Channels.newChannel(out);
+            long[] position = { 0 };
+
+            if (byteRanges == null)
+            {
+                response.setHeader("Content-Length", String.valueOf(this.bitstreamSize));
 
-                response.setHeader("Content-Range", entityRange + "/" + entityLength);
-                if (response instanceof HttpResponse)
+                if (channel != null)
                 {
-                    // Response with status 206 (Partial content)
-                    response.setStatus(206);
+                    writeRange(channel, target, 0, channel.size() - 1);
                 }
-
-                int pos = 0;
-                int posEnd;
-                while ((length = this.bitstreamInputStream.read(buffer)) > -1)
+                else
                 {
-                    posEnd = pos + length - 1;
-                    ByteRange intersection = byteRange.intersection(new ByteRange(pos, posEnd));
-                    if (intersection != null)
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int length = -1;
+                    while ((length = this.bitstreamInputStream.read(buffer)) > -1)
                     {
-                        out.write(buffer, (int) intersection.getStart() - pos, (int) intersection.length());
+                        out.write(buffer, 0, length);
                     }
-                    pos += length;
                 }
             }
+            else if (byteRanges.size() == 1)
+            {
+                long[] range = byteRanges.get(0);
+
+                // Respond with status 206 (Partial content)
+                response.setStatus(206);
+                response.setHeader("Content-Range", contentRange(range));
+                response.setHeader("Content-Length", String.valueOf(range[1] - range[0] + 1));
+
+                writeRange(channel, target, position, range);
+            }
             else
             {
-                response.setHeader("Content-Length", String.valueOf(this.bitstreamSize));
+                // Several ranges, sent as a multipart/byteranges body
+                response.setStatus(206);
+
+                long contentLength = 0;
+                for (long[] range : byteRanges)
+                {
+                    contentLength += partHeader(range).length() + range[1] - range[0] + 1;
+                }
+                contentLength += partTrailer().length();
+                response.setHeader("Content-Length", String.valueOf(contentLength));
 
-                while ((length = this.bitstreamInputStream.read(buffer)) > -1)
+                for (long[] range : byteRanges)
                 {
-                    out.write(buffer, 0, length);
+                    out.write(partHeader(range).getBytes("US-ASCII"));
+                    writeRange(channel, target, position, range);
                 }
-                out.flush();
+                out.write(partTrailer().getBytes("US-ASCII"));
             }
+            out.flush();
         }
         finally
         {
             try
             {
+                if (channel != null)
+                {
+                    channel.close();
+                }
+
                 // Close the bitstream input stream so that we don't leak a file descriptor
                 this.bitstreamInputStream.close();
                 
@@ -679,11 +725,258 @@ public class BitstreamReader extends AbstractReader implements Recyclable
 
     }
 
+    /**
+     * Work out which byte ranges of the bitstream to send, from the Range
+     * and If-Range request headers. A Range header which cannot be parsed,
+     * or an If-Range header which does not match the bitstream, means the
+     * whole bitstream is sent.
+     */
+    private void setupRanges()
+    {
+        this.byteRanges = null;
+        this.rangeNotSatisfiable = false;
+        this.boundary = null;
+
+        String header = request.getHeader("Range");
+        if (header == null
+                || !ConfigurationManager.getBooleanProperty("xmlui.bitstream.accept-ranges", true)
+                || !isIfRangeMatched())
+        {
+            return;
+        }
+
+        List<long[]> ranges = parseRanges(header, this.bitstreamSize);
+        if (ranges == null || ranges.size() > MAX_RANGES)
+        {
+            return;
+        }
+
+        if (ranges.isEmpty())
+        {
+            this.rangeNotSatisfiable = true;
+        }
+        else
+        {
+            this.byteRanges = ranges;
+            if (ranges.size() > 1)
+            {
+                this.boundary = UUID.randomUUID().toString().replace("-", "");
+            }
+        }
+    }
+
+    /**
+     * Check the If-Range request header, if any: ranges are only sent if it
+     * holds the bitstream's entity tag, or a date no earlier than the item's
+     * last modification.
+     */
+    private boolean isIfRangeMatched()
+    {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null)
+        {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+        {
+            // weak entity tags never match
+            return ifRange.equals(bitstreamETag);
+        }
+
+        try
+        {
+            long date = request.getDateHeader("If-Range");
+            return item != null && date != -1
+                    && item.getLastModified().getTime() / 1000 <= date / 1000;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Parse the value of a Range header.
+     *
+     * @param header The value of the header, e.g. "bytes=0-499,-500"
+     * @param size The size of the bitstream
+     * @return the satisfiable ranges as inclusive {start, end} pairs in
+     *         ascending order, with overlapping or adjacent ranges merged;
+     *         an empty list if none are satisfiable; or null if the header
+     *         is not a valid byte range request
+     */
+    protected static List<long[]> parseRanges(String header, long size)
+    {
+        if (header == null || size <= 0 || !header.startsWith("bytes="))
+        {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<long[]>();
+        for (String spec : header.substring("bytes=".length()).split(","))
+        {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0)
+            {
+                return null;
+            }
+
+            try
+            {
+                long start;
+                long end;
+                if (dash == 0)
+                {
+                    // the last n bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0)
+                    {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                }
+                else
+                {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    end = (dash == spec.length() - 1) ? Long.MAX_VALUE
+                            : Long.parseLong(spec.substring(dash + 1));
+                    if (end < start)
+                    {
+                        return null;
+                    }
+                    if (start >= size)
+                    {
+                        continue;
+                    }
+                    end = Math.min(end, size - 1);
+                }
+                ranges.add(new long[] { start, end });
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+
+        Collections.sort(ranges, new Comparator<long[]>()
+        {
+            public int compare(long[] a, long[] b)
+            {
+                return (a[0] < b[0]) ? -1 : ((a[0] == b[0]) ? 0 : 1);
+            }
+        });
+
+        List<long[]> merged = new ArrayList<long[]>();
+        for (long[] range : ranges)
+        {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1)
+            {
+                last[1] = Math.max(last[1], range[1]);
+            }
+            else
+            {
+                merged.add(range);
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Write one byte range of the bitstream to the response, from the local
+     * file if there is one, otherwise by skipping forward through the input
+     * stream. Ranges must be written in ascending order.
+     *
+     * @param channel The bitstream's file, or null
+     * @param target The response
+     * @param position The position reached in the input stream so far
+     * @param range The inclusive {start, end} of the range
+     */
+    private void writeRange(FileChannel channel, WritableByteChannel target,
+            long[] position, long[] range) throws IOException
+    {
+        if (channel != null)
+        {
+            writeRange(channel, target, range[0], range[1]);
+            return;
+        }
+
+        long skip = range[0] - position[0];
+        while (skip > 0)
+        {
+            long skipped = this.bitstreamInputStream.skip(skip);
+            if (skipped <= 0)
+            {
+                throw new IOException("Unexpected end of bitstream");
+            }
+            skip -= skipped;
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = range[1] - range[0] + 1;
+        while (remaining > 0)
+        {
+            int length = this.bitstreamInputStream.read(buffer, 0,
+                    (int) Math.min(buffer.length, remaining));
+            if (length < 0)
+            {
+                throw new IOException("Unexpected end of bitstream");
+            }
+            out.write(buffer, 0, length);
+            remaining -= length;
+        }
+        position[0] = range[1] + 1;
+    }
+
+    /**
+     * Transfer the inclusive range start to end of a file to the response.
+     */
+    private void writeRange(FileChannel channel, WritableByteChannel target,
+            long start, long end) throws IOException
+    {
+        long transferred = start;
+        while (transferred <= end)
+        {
+            long count = channel.transferTo(transferred, end - transferred + 1, target);
+            if (count <= 0)
+            {
+                throw new IOException("Unexpected end of bitstream");
+            }
+            transferred += count;
+        }
+    }
+
+    private String contentRange(long[] range)
+    {
+        return "bytes " + range[0] + "-" + range[1] + "/" + this.bitstreamSize;
+    }
+
+    private String partHeader(long[] range)
+    {
+        return "\r\n--" + boundary + "\r\n"
+                + "Content-Type: " + this.bitstreamMimeType + "\r\n"
+                + "Content-Range: " + contentRange(range) + "\r\n\r\n";
+    }
+
+    private String partTrailer()
+    {
+        return "\r\n--" + boundary + "--\r\n";
+    }
+
     /**
      * Returns the mime-type of the bitstream.
      */
     public String getMimeType()
     {
+        if (this.boundary != null)
+        {
+            return "multipart/byteranges; boundary=" + this.boundary;
+        }
         return this.bitstreamMimeType;
     }
     
@@ -696,6 +989,11 @@ public class BitstreamReader extends AbstractReader implements Recyclable
         this.bitstreamInputStream = null;
         this.bitstreamSize = 0;
         this.bitstreamMimeType = null;
+        this.bitstreamFile = null;
+        this.bitstreamETag = null;
+        this.byteRanges = null;
+        this.rangeNotSatisfiable = false;
+        this.boundary = null;
     }
 
 
@@ -9,6 +9,7 @@ package org.dspace.app.xmlui.utils;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.TreeSet;
 
 import org.apache.cocoon.util.HashUtil;
 import org.apache.excalibur.source.SourceValidity;
@@ -19,7 +20,10 @@ import org.dspace.content.Collection;
 import org.dspace.content.Community;
 import org.dspace.content.DCValue;
 import org.dspace.content.DSpaceObject;
+import org.dspace.content.GenerationCounter;
 import org.dspace.content.Item;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
 import org.dspace.eperson.EPerson;
 import org.dspace.eperson.Group;
 
@@ -40,6 +44,11 @@ import org.dspace.eperson.Group;
  * serialize all those objects to a string, take a hash of the string and compare
  * the hash of the string for any updates.
  * 
+ * When generations are enabled (see GenerationCounter), communities,
+ * collections, items, bundles and bitstreams are added by their generation
+ * rather than their content, and components which would otherwise have to
+ * redo their work to build the validity may add the repository-wide
+ * generation instead (see useGenerations()).
  * 
  * @author Scott Phillips
  */
@@ -64,6 +73,9 @@ public class DSpaceValidity implements SourceValidity
     /** The length of time that a cache is assumed to be valid */
     protected long assumedValidityDelay = 0;
 
+    /** Whether any generation has been added to the validityKey */
+    protected boolean generations = false;
+
     /**
      * Create a new DSpace validity object. 
      * 
@@ -92,6 +104,12 @@ public class DSpaceValidity implements SourceValidity
      */
     public DSpaceValidity complete() 
     {    
+        // Generations are not counted across processes, so expire with the epoch
+        if (generations)
+        {
+            validityKey.append("Epoch:").append(GenerationCounter.getEpoch());
+        }
+
         this.completed = true;
         this.hash = HashUtil.hash(validityKey);
         this.validityKey = null;
@@ -233,6 +251,14 @@ public class DSpaceValidity implements SourceValidity
         {
           this.validityKey.append("null");  
         }
+        else if (useGenerations() && isCounted(dso.getType()))
+        {
+            // The generation changes whenever the object or anything it contains does
+            generations = true;
+            validityKey.append(Constants.typeText[dso.getType()]).append(":");
+            validityKey.append(dso.getID()).append(":");
+            validityKey.append(GenerationCounter.getGeneration(dso.getType(), dso.getID()));
+        }
         else if (dso instanceof Community)
         {
             Community community = (Community) dso;
@@ -381,6 +407,66 @@ public class DSpaceValidity implements SourceValidity
         validityKey.append("String:");
         validityKey.append(nonDSpaceObject);
     }
+
+    /**
+     * Add the repository-wide generation to the validity, which changes
+     * whenever any community, collection, item, bundle or bitstream does. A
+     * component whose output depends on many objects, e.g. on the results of a
+     * search, may add this instead of the objects when useGenerations() is
+     * true, along with everything else the output depends on: the request
+     * parameters not in its key, and the current user (see
+     * addCurrentUser(Context)).
+     */
+    public void addGeneration()
+    {
+        generations = true;
+        validityKey.append("Generation:");
+        validityKey.append(GenerationCounter.getGeneration());
+    }
+
+    /**
+     * Add the current user of a context to the validity, for a component whose
+     * output depends on what the user is authorized to see. Besides the user,
+     * this adds every group the user is a member of, directly, through other
+     * groups, or as a special group of the context (e.g. by IP address), so
+     * anonymous users with different special groups, and users whose
+     * memberships change, do not share a validity.
+     *
+     * @param context
+     *          The DSpace context.
+     */
+    public void addCurrentUser(Context context) throws SQLException
+    {
+        EPerson user = context.getCurrentUser();
+        validityKey.append("User:");
+        validityKey.append(user == null ? "anonymous" : String.valueOf(user.getID()));
+
+        // sorted, so that the same groups always give the same key
+        validityKey.append("Groups:");
+        for (Integer groupID : new TreeSet<Integer>(Group.allMemberGroupIDs(context, user)))
+        {
+            validityKey.append(groupID).append(',');
+        }
+    }
+
+    /**
+     * @return true if objects are added to validities by their generation,
+     *          and components may use addGeneration().
+     */
+    public static boolean useGenerations()
+    {
+        return GenerationCounter.isEnabled();
+    }
+
+    /**
+     * @return true if the generations of objects of the type are counted
+     */
+    private static boolean isCounted(int type)
+    {
+        return type == Constants.COMMUNITY || type == Constants.COLLECTION
+                || type == Constants.ITEM || type == Constants.BUNDLE
+                || type == Constants.BITSTREAM;
+    }
     
     
     
@@ -0,0 +1,6 @@
+-------------------------------------------------------
+-- Index on Bitstream.internal_id: when assetstore.dedup is enabled, several
+-- bitstreams share a file, and cleanup counts the bitstreams which still
+-- refer to a file before deleting it
+-------------------------------------------------------
+CREATE INDEX bitstream_internal_id_idx ON Bitstream(internal_id);
@@ -0,0 +1,26 @@
+-------------------------------------------------------
+-- Community2CommunityCache and Community2CollectionCache tables: the
+-- transitive closure of community2community and community2collection,
+-- i.e. every community above each community and collection, when
+-- community.closure.enabled is set.  depth is 1 for the nearest ancestors.
+-- Fill them with [dspace]/bin/dspace community-closure
+-------------------------------------------------------
+CREATE TABLE Community2CommunityCache
+(
+  parent_comm_id  INTEGER,
+  child_comm_id   INTEGER,
+  depth           INTEGER
+);
+
+CREATE INDEX comm2commcache_parent_idx ON Community2CommunityCache(parent_comm_id);
+CREATE INDEX comm2commcache_child_idx ON Community2CommunityCache(child_comm_id);
+
+CREATE TABLE Community2CollectionCache
+(
+  community_id   INTEGER,
+  collection_id  INTEGER,
+  depth          INTEGER
+);
+
+CREATE INDEX comm2collcache_comm_idx ON Community2CollectionCache(community_id);
+CREATE INDEX comm2collcache_coll_idx ON Community2CollectionCache(collection_id);
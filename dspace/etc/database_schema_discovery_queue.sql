@@ -0,0 +1,14 @@
+-------------------------------------------------------
+-- Discovery_Queue table: handles waiting to be indexed (unindex = 0) or
+-- removed from the Discovery index (unindex = 1) when
+-- discovery.index.async is enabled
+-------------------------------------------------------
+CREATE TABLE Discovery_Queue
+(
+  handle   VARCHAR(256) PRIMARY KEY,
+  unindex  INTEGER,
+  queued   TIMESTAMP
+);
+
+-- Index by time queued, for finding the handles which are due
+CREATE INDEX discovery_queue_queued_idx ON Discovery_Queue(queued);
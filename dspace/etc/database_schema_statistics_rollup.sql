@@ -0,0 +1,25 @@
+-------------------------------------------------------
+-- Statistics_Rollup table: views per object, day, country and city,
+-- rolled up from the statistics core by "stats-util -a" and read by the
+-- statistics pages when solr-statistics.rollup is enabled
+-------------------------------------------------------
+CREATE TABLE Statistics_Rollup
+(
+  resource_type_id  INTEGER NOT NULL,
+  resource_id       INTEGER NOT NULL,
+  day               DATE NOT NULL,
+  views             INTEGER NOT NULL,
+  -- the item a bitstream was viewed in
+  owning_item       INTEGER,
+  country_code      VARCHAR(16),
+  city              VARCHAR(256)
+);
+
+-- Index by object, for the statistics of an object
+CREATE INDEX statistics_rollup_dso_idx ON Statistics_Rollup(resource_type_id, resource_id, day);
+
+-- Index by owning item, for the bitstreams of an item
+CREATE INDEX statistics_rollup_owner_idx ON Statistics_Rollup(owning_item);
+
+-- Index by day, for replacing a day
+CREATE INDEX statistics_rollup_day_idx ON Statistics_Rollup(day);
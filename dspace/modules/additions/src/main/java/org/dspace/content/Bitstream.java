@@ -266,6 +266,12 @@ public class Bitstream extends DSpaceObject
         return bRow.getIntColumn("bitstream_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     public String getHandle()
     {
         // No Handles for bitstreams
@@ -777,6 +783,7 @@ public class Bitstream extends DSpaceObject
     public void setMetadata(String field, String value)
     {
         bRow.setColumn(field, value);
+        modified = true;
     }
 
     /**
@@ -793,6 +800,7 @@ public class Bitstream extends DSpaceObject
     public void setMetadata(String field, int value)
     {
         bRow.setColumn(field, value);
+        modified = true;
     }
 
     
@@ -22,6 +22,7 @@ import org.dspace.eperson.Group;
 import org.dspace.event.Event;
 import org.dspace.handle.HandleManager;
 import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.RowCache;
 import org.dspace.storage.rdbms.TableRow;
 import org.dspace.storage.rdbms.TableRowIterator;
 import org.dspace.workflow.WorkflowItem;
@@ -35,8 +36,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.Set;
 
 /**
  * Class representing a collection.
@@ -176,7 +179,13 @@ public class Collection extends DSpaceObject
             return fromCache;
         }
 
-        TableRow row = DatabaseManager.find(context, "collection", id);
+        TableRow row = RowCache.getRow(context, "collection", id);
+        if (row == null)
+        {
+            long stamp = RowCache.getStamp("collection", id);
+            row = DatabaseManager.find(context, "collection", id);
+            RowCache.putRow(context, "collection", id, row, stamp);
+        }
 
         if (row == null)
         {
@@ -458,6 +467,12 @@ public class Collection extends DSpaceObject
         return collectionRow.getIntColumn("collection_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * @see org.dspace.content.DSpaceObject#getHandle()
      */
@@ -1353,6 +1368,35 @@ public class Collection extends DSpaceObject
         return communityArray;
     }
 
+    /**
+     * Get every community this collection is in, directly or through its
+     * parent communities, each once, the nearest first when the community
+     * closure is enabled.
+     *
+     * @return array of <code>Community</code> objects
+     * @throws SQLException
+     */
+    public Community[] getAllCommunities() throws SQLException
+    {
+        if (CommunityClosure.isEnabled())
+        {
+            return CommunityClosure.getCommunities(ourContext, getID());
+        }
+
+        // getCommunities() lists a community once for each path to it
+        Set<Integer> seen = new HashSet<Integer>();
+        List<Community> communities = new ArrayList<Community>();
+        for (Community community : getCommunities())
+        {
+            if (seen.add(community.getID()))
+            {
+                communities.add(community);
+            }
+        }
+
+        return communities.toArray(new Community[communities.size()]);
+    }
+
     /**
      * Get the communities this collection appears in.  Gets only
      * the immediate parent communities, not all ancestors, which is
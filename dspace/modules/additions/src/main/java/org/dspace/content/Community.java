@@ -35,6 +35,7 @@ import org.dspace.eperson.Group;
 import org.dspace.event.Event;
 import org.dspace.handle.HandleManager;
 import org.dspace.storage.rdbms.DatabaseManager;
+import org.dspace.storage.rdbms.RowCache;
 import org.dspace.storage.rdbms.TableRow;
 import org.dspace.storage.rdbms.TableRowIterator;
 
@@ -142,7 +143,13 @@ public class Community extends DSpaceObject
             return fromCache;
         }
 
-        TableRow row = DatabaseManager.find(context, "community", id);
+        TableRow row = RowCache.getRow(context, "community", id);
+        if (row == null)
+        {
+            long stamp = RowCache.getStamp("community", id);
+            row = DatabaseManager.find(context, "community", id);
+            RowCache.putRow(context, "community", id, row, stamp);
+        }
 
         if (row == null)
         {
@@ -422,6 +429,12 @@ public class Community extends DSpaceObject
         return communityRow.getIntColumn("community_id");
     }
 
+    @Override
+    public boolean isModified()
+    {
+        return modified || modifiedMetadata;
+    }
+
     /**
      * @see org.dspace.content.DSpaceObject#getHandle()
      */
@@ -925,6 +938,11 @@ public class Community extends DSpaceObject
      */
     public Community[] getAllParents() throws SQLException
     {
+        if (CommunityClosure.isEnabled())
+        {
+            return CommunityClosure.getAllParents(ourContext, getID());
+        }
+
         List<Community> parentList = new ArrayList<Community>();
         Community parent = getParentCommunity();
 
@@ -949,6 +967,11 @@ public class Community extends DSpaceObject
 
     public Collection[] getAllCollections() throws SQLException
     {
+        if (CommunityClosure.isEnabled())
+        {
+            return CommunityClosure.getAllCollections(ourContext, getID());
+        }
+
         List<Collection> collectionList = new ArrayList<Collection>();
         for (Community subcommunity : getSubcommunities())
         {
@@ -1071,6 +1094,8 @@ public class Community extends DSpaceObject
                                         .getHandle()));
 
                 DatabaseManager.insert(ourContext, mappingRow);
+
+                CommunityClosure.updateCollection(ourContext, c.getID());
             }
         }
         finally
@@ -1190,6 +1215,8 @@ public class Community extends DSpaceObject
                                         .getHandle()));
 
                 DatabaseManager.insert(ourContext, mappingRow);
+
+                CommunityClosure.updateCommunity(ourContext, c.getID());
             }
         }
         finally
@@ -1249,6 +1276,8 @@ public class Community extends DSpaceObject
                 "DELETE FROM community2collection WHERE community_id= ? "
                         + "AND collection_id= ? ", getID(), c.getID());
 
+        CommunityClosure.updateCollection(ourContext, c.getID());
+
         DatabaseManager.setConstraintImmediate(ourContext,
                 "comm2coll_collection_fk");
 
@@ -1329,6 +1358,8 @@ public class Community extends DSpaceObject
                 "DELETE FROM community2community WHERE parent_comm_id= ? "
                         + " AND child_comm_id= ? ", getID(), c.getID());
 
+        CommunityClosure.updateCommunity(ourContext, c.getID());
+
         ourContext.addEvent(new Event(Event.REMOVE, Constants.COMMUNITY,
                 getID(), Constants.COMMUNITY, c.getID(), c.getHandle()));
 
@@ -1572,6 +1603,7 @@ public class Community extends DSpaceObject
     public void setMetadata(String field, int value)
     {
         communityRow.setColumn(field, value);
+        modified = true;
     }
 
     public DSpaceObject getAdminObject(int action) throws SQLException